@@ -10,10 +10,32 @@ import java.io.File;
 public interface Application {
 
     /**
-     * Returns the application folder
+     * Returns the application folder, or, if the application
+     * is read from an archive, the archive file itself.
+     * See {@link #getArchive()}
      *
-     * @return the application folder
+     * @return the application folder, or archive file
      */
     File getFolder();
 
+    /**
+     * Returns the zip, jar or war file the application is read from, or null,
+     * if the application is a folder. If the archive has one single top-level
+     * folder, and nothing else, that folder is the application root.
+     * <br>
+     * Archives are never extracted as a whole before a transformation template is performed.
+     * Instead, only entries needed by transformation utilities are extracted
+     * as the transformation goes, as done by {@link Configuration#isOverlay()}, and the
+     * remaining ones at the end. If the transformed application is compressed, entries
+     * left unchanged are copied from the archive as they are, without being compressed again.
+     * Upgrade paths extract the whole archive before the first upgrade step.
+     * Applications read from archives cannot be transformed in place,
+     * nor with blank transformation templates, and cannot be planned.
+     *
+     * @return the archive file the application is read from, or null
+     */
+    default File getArchive() {
+        return null;
+    }
+
 }
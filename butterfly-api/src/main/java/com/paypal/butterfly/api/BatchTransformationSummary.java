@@ -0,0 +1,72 @@
+package com.paypal.butterfly.api;
+
+import java.util.Map;
+
+/**
+ * POJO summarizing the transformation of a batch of applications,
+ * retrieved when all of them have been transformed via
+ * {@link ButterflyFacade#transform(java.util.Collection, Class, String, Configuration, int, java.util.function.Consumer)}
+ *
+ * @author agent
+ */
+public interface BatchTransformationSummary {
+
+    /**
+     * Returns the number of applications in the batch
+     *
+     * @return the number of applications in the batch
+     */
+    int getApplicationsCount();
+
+    /**
+     * Returns the number of applications successfully transformed
+     *
+     * @return the number of applications successfully transformed
+     */
+    int getSuccessfulCount();
+
+    /**
+     * Returns the number of applications whose transformation has been aborted
+     *
+     * @return the number of applications whose transformation has been aborted
+     */
+    int getAbortedCount();
+
+    /**
+     * Returns the number of applications that could not be transformed at all,
+     * for example because they failed validation before transformation
+     *
+     * @return the number of applications that could not be transformed at all
+     */
+    int getErrorCount();
+
+    /**
+     * Returns an unmodifiable map whose keys are the indexes, in the batch, of the applications
+     * that were aborted or could not be transformed, and values are the reasons why.
+     * Indexes follow the iteration order of the application folders collection the batch was given,
+     * which allows telling apart applications given more than once, and the map is sorted by them
+     *
+     * @return an unmodifiable map of failed application indexes and reasons why they failed
+     */
+    Map<Integer, String> getFailures();
+
+    /**
+     * Returns how long, in milliseconds, it took to transform the whole batch
+     *
+     * @return how long, in milliseconds, it took to transform the whole batch
+     */
+    long getTotalDuration();
+
+    /**
+     * Returns the duration, in milliseconds, that {@code percentile} percent of the
+     * application transformations took or less to conclude, using the nearest-rank method.
+     * For example, {@code getDurationPercentile(50)} returns the median transformation duration.
+     * Zero is returned if the batch is empty.
+     *
+     * @param percentile a percentile from 1 to 100
+     * @return the transformation duration, in milliseconds, at the specified percentile
+     * @throws IllegalArgumentException if {@code percentile} is not between 1 and 100
+     */
+    long getDurationPercentile(int percentile);
+
+}
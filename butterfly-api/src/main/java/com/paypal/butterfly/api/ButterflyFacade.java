@@ -6,10 +6,12 @@ import com.paypal.butterfly.extensions.api.exception.TemplateResolutionException
 import com.paypal.butterfly.extensions.api.upgrade.UpgradeStep;
 
 import java.io.File;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * Butterfly façade
@@ -155,8 +157,68 @@ public interface ButterflyFacade {
      *                If <code>templateClass</code> is not a {@link UpgradeStep}, this parameter is ignored.
      * @param configuration Butterfly configuration object
      * @throws IllegalArgumentException if <code>templateClass</code> is a {@link UpgradeStep} and <code>version</code> is not empty and an unknown version
-     * @return the transformation result object
+     * @return the transformation result object. Cancelling it aborts the transformation before its next
+     * transformation utility, interrupting the one being performed, if any
      */
     CompletableFuture<TransformationResult> transform(File applicationFolder, Class<? extends TransformationTemplate> templateClass, String version, Configuration configuration);
 
-}
\ No newline at end of file
+    /**
+     * Plans, in an asynchronous and non-blocking manner, the transformation of an application,
+     * without transforming it. The application folder is not copied, and nothing is written to it, but
+     * conditions, transformation utilities and multiple operations expansions are evaluated against it,
+     * in read-only mode, resulting in the list of operations that would be performed, the files they would
+     * be performed against, and the estimated amount of IO the transformation would require.
+     * See {@link TransformationPlan} for further information.
+     * If <code>templateClass</code> is a {@link UpgradeStep}, all upgrade steps up to <code>version</code> are planned.
+     *
+     * @param applicationFolder application folder
+     * @param templateClass transformation template class
+     * @param version the target upgrade version. If this parameter is null or blank, all upgrade steps up to the latest version are planned.
+     *                If <code>templateClass</code> is not a {@link UpgradeStep}, this parameter is ignored.
+     * @param configuration Butterfly configuration object
+     * @throws IllegalArgumentException if <code>templateClass</code> is a {@link UpgradeStep} and <code>version</code> is not empty and an unknown version
+     * @return the transformation plan object
+     */
+    CompletableFuture<TransformationPlan> plan(File applicationFolder, Class<? extends TransformationTemplate> templateClass, String version, Configuration configuration);
+
+    /**
+     * Resumes, in an asynchronous and non-blocking manner, an upgrade that did not complete,
+     * either because it was aborted, or because its process was killed. After each upgrade step
+     * is completed, a checkpoint file is written next to the transformed application folder,
+     * which is deleted once the whole upgrade is completed. The upgrade is resumed from the last
+     * completed upgrade step, on the same transformed application folder, which is not copied again.
+     * <br>
+     * If the upgrade was interrupted in the middle of an upgrade step, its partial changes are not reverted,
+     * and that step is performed again.
+     *
+     * @param transformedApplicationFolder the transformed application folder of the upgrade to be resumed
+     * @param configuration Butterfly configuration object. Its output folder and modify original folder
+     *                      settings are ignored, since the upgrade is resumed on the same transformed application folder
+     * @throws IllegalArgumentException if there is no valid checkpoint for <code>transformedApplicationFolder</code>
+     * @return the transformation result object
+     */
+    CompletableFuture<TransformationResult> resume(File transformedApplicationFolder, Configuration configuration);
+
+    /**
+     * Transforms a batch of applications in an asynchronous and non-blocking manner, using the same
+     * transformation template and configuration for all of them, while keeping no more than {@code concurrency}
+     * applications being transformed at the same time. Each transformation result is handed to {@code resultConsumer}
+     * as soon as it is available, which means results are not necessarily handed in the same order as
+     * {@code applicationFolders}. Applications that could not be transformed at all, for example
+     * because of a failed validation, produce no transformation result, and are only reported in the summary.
+     * If <code>templateClass</code> is a {@link UpgradeStep}, applications will be upgraded according to <code>version</code>.
+     *
+     * @param applicationFolders the folders of the applications to be transformed
+     * @param templateClass transformation template class
+     * @param version the target upgrade version. If this parameter is null or blank, applications will be upgraded to the latest version.
+     *                If <code>templateClass</code> is not a {@link UpgradeStep}, this parameter is ignored.
+     * @param configuration Butterfly configuration object, used for all applications
+     * @param concurrency the maximum number of applications being transformed at the same time
+     * @param resultConsumer the consumer each transformation result is handed to as soon as it is available.
+     *                       This parameter is optional, so it can be set to null
+     * @throws IllegalArgumentException if <code>templateClass</code> is null, or if {@code concurrency} is lower than 1
+     * @return a summary of the whole batch, available after all applications have been transformed
+     */
+    CompletableFuture<BatchTransformationSummary> transform(Collection<File> applicationFolders, Class<? extends TransformationTemplate> templateClass, String version, Configuration configuration, int concurrency, Consumer<TransformationResult> resultConsumer);
+
+}
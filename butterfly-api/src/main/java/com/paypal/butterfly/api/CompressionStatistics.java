@@ -0,0 +1,57 @@
+package com.paypal.butterfly.api;
+
+import java.io.File;
+
+/**
+ * POJO containing statistics about the compression of the
+ * transformed application folder into a zip file.
+ * Objects of this type are retrieved via {@link TransformationResult#getCompressionStatistics()}
+ *
+ * @author agent
+ */
+public interface CompressionStatistics {
+
+    /**
+     * @return the zip file the transformed application folder has been compressed to
+     */
+    File getZipFile();
+
+    /**
+     * @return how many entries, including folders, were written to the zip file
+     */
+    int getEntriesCount();
+
+    /**
+     * @return how many file entries were stored, as opposed to deflated,
+     * because they were empty, or were already compressed, such as jar files and images
+     */
+    int getStoredEntriesCount();
+
+    /**
+     * @return how many file entries were copied, as they were, from the archive
+     * the application has been read from, because their content has not changed.
+     * It is always zero if the application has not been read from an archive
+     */
+    int getCopiedEntriesCount();
+
+    /**
+     * @return the sum of the sizes of all compressed files, in bytes
+     */
+    long getUncompressedSize();
+
+    /**
+     * @return the size of the zip file, in bytes
+     */
+    long getCompressedSize();
+
+    /**
+     * @return how long the compression took, in nanoseconds
+     */
+    long getDuration();
+
+    /**
+     * @return how many uncompressed bytes were compressed per second
+     */
+    double getThroughput();
+
+}
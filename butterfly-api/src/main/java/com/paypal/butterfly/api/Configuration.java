@@ -52,4 +52,309 @@ public interface Configuration {
      */
     Properties getProperties();
 
+    /**
+     * Returns whether transformation utilities that do not depend on each other
+     * can be performed concurrently. Utilities depend on each other when one of them
+     * uses results or attributes produced by the other, when they perform against
+     * overlapping files, and at least one of them changes them, or when one of them
+     * might abort the transformation. Regardless of this setting, the transformation
+     * result is always the same as if the utilities were performed sequentially.
+     * <br>
+     * The default value is {@code false}.
+     *
+     * @return whether independent transformation utilities can be performed concurrently
+     */
+    boolean isParallelUtilities();
+
+    /**
+     * Sets whether transformation utilities that do not depend on each other
+     * can be performed concurrently. See {@link #isParallelUtilities()}.
+     *
+     * @param parallelUtilities whether independent transformation utilities can be performed concurrently
+     * @return this configuration object
+     */
+    Configuration setParallelUtilities(boolean parallelUtilities);
+
+    /**
+     * Returns the number of threads used to evaluate conditions against multiple files,
+     * as done by {@code FilterFiles} and {@code MultipleConditions}. If set to 1, conditions
+     * are evaluated sequentially. Regardless of this setting, results are always the same,
+     * including their order, and how warnings are aggregated.
+     * <br>
+     * The default value is 1.
+     *
+     * @return the number of threads used to evaluate conditions against multiple files
+     */
+    int getConditionsParallelism();
+
+    /**
+     * Sets the number of threads used to evaluate conditions against multiple files.
+     * See {@link #getConditionsParallelism()}.
+     *
+     * @param conditionsParallelism the number of threads used to evaluate conditions against multiple files
+     * @return this configuration object
+     * @throws IllegalArgumentException if {@code conditionsParallelism} is smaller than 1
+     */
+    Configuration setConditionsParallelism(int conditionsParallelism);
+
+    /**
+     * Returns whether the transformation is incremental. Incremental transformations write
+     * a manifest next to the transformed application folder, with the content hashes of all
+     * application files, before and after the transformation, plus a fingerprint of the
+     * transformation template. The next incremental transformation of the same application,
+     * with the same template, carries over from the previous transformed application folder
+     * every file whose original content has not changed, skipping the operations
+     * that would be performed against it.
+     * <br>
+     * Only operations confined to a single file, set via relative path, are skipped.
+     * Incremental transformations are not applicable if the original application folder
+     * is modified, or if the transformation template is blank, in which case this setting is ignored.
+     * <br>
+     * The default value is {@code false}.
+     *
+     * @return whether the transformation is incremental
+     */
+    boolean isIncremental();
+
+    /**
+     * Sets whether the transformation is incremental. See {@link #isIncremental()}.
+     *
+     * @param incremental whether the transformation is incremental
+     * @return this configuration object
+     */
+    Configuration setIncremental(boolean incremental);
+
+    /**
+     * Returns whether the transformed application folder is prepared in copy-on-write mode.
+     * Instead of copying every application file up front, files are cloned (reflinked) when
+     * the file system supports it, or hard linked otherwise, and each hard link is replaced by
+     * an actual copy right before an operation changes its file. Before utilities that could change
+     * any file, such as Maven goals, all hard links are replaced. If neither is supported,
+     * files are just copied. Regardless of this setting, the transformation result is always the same.
+     * <br>
+     * Files still hard linked at the end of the transformation are replaced by copies then,
+     * so the transformed application folder never shares files with the original one afterwards.
+     * That means hard links only defer copying files, instead of avoiding it, unless the output is zipped,
+     * see {@link #isZipOutput()}, in which case they are kept, since the transformed application folder
+     * is deleted once zipped. This setting is ignored if the original application folder is modified.
+     * <br>
+     * The default value is {@code false}.
+     *
+     * @return whether the transformed application folder is prepared in copy-on-write mode
+     */
+    boolean isCopyOnWrite();
+
+    /**
+     * Sets whether the transformed application folder is prepared in copy-on-write mode.
+     * See {@link #isCopyOnWrite()}.
+     *
+     * @param copyOnWrite whether the transformed application folder is prepared in copy-on-write mode
+     * @return this configuration object
+     */
+    Configuration setCopyOnWrite(boolean copyOnWrite);
+
+    /**
+     * Returns whether the transformed application folder is an overlay on top of the original
+     * application folder. Instead of copying every application file up front, the transformed
+     * application folder starts empty, and files are copied up to it only when a transformation
+     * utility needs them. All other files are placed in it only at the end of the transformation,
+     * as copies, or, if {@link #isCopyOnWrite()} is also set, as hard links. Regardless of this setting,
+     * the transformation result is always the same.
+     * <br>
+     * Before a transformation utility that is neither confined to a file nor overlay aware
+     * is performed, all files are copied up, which is always safe, but makes the overlay pointless
+     * from then on. See {@code TransformationUtility#isOverlayAware()}.
+     * This setting is ignored if the original application folder is modified, if the transformation
+     * template is blank, or if it is an upgrade path, since upgrade paths are checkpointed.
+     * <br>
+     * The default value is {@code false}.
+     *
+     * @return whether the transformed application folder is an overlay on top of the original application folder
+     */
+    boolean isOverlay();
+
+    /**
+     * Sets whether the transformed application folder is an overlay on top of the original
+     * application folder. See {@link #isOverlay()}.
+     *
+     * @param overlay whether the transformed application folder is an overlay on top of the original application folder
+     * @return this configuration object
+     */
+    Configuration setOverlay(boolean overlay);
+
+    /**
+     * Returns the number of threads used to copy folders, as done when preparing the
+     * transformed application folder, when preparing the baseline application folder of
+     * blank transformation templates, and by {@code CopyDirectory} and {@code MoveDirectory}.
+     * If set to 1, files are copied sequentially. Regardless of this setting, the copied
+     * folders are always the same, and so is the error reported if a copy fails.
+     * <br>
+     * The default value is 4.
+     *
+     * @return the number of threads used to copy folders
+     */
+    int getCopyParallelism();
+
+    /**
+     * Sets the number of threads used to copy folders.
+     * See {@link #getCopyParallelism()}.
+     *
+     * @param copyParallelism the number of threads used to copy folders
+     * @return this configuration object
+     * @throws IllegalArgumentException if {@code copyParallelism} is smaller than 1
+     */
+    Configuration setCopyParallelism(int copyParallelism);
+
+    /**
+     * Returns how long, in milliseconds, each transformation utility is allowed to run,
+     * unless the utility sets its own timeout. A utility that runs out of time is interrupted,
+     * and results in an error, which aborts the transformation if the utility is set to abort on failure.
+     * Zero means there is no limit.
+     * <br>
+     * Utilities that have a timeout are performed by a separate thread, from a small pool shared by all
+     * transformations. A utility that runs out of time is left behind, and might still be changing files,
+     * or the transformation context, until it reacts to the interruption, while the transformation moves on.
+     * <br>
+     * The default value is 0.
+     *
+     * @return how long, in milliseconds, each transformation utility is allowed to run
+     */
+    long getUtilityTimeout();
+
+    /**
+     * Sets how long, in milliseconds, each transformation utility is allowed to run.
+     * See {@link #getUtilityTimeout()}.
+     *
+     * @param utilityTimeout how long, in milliseconds, each transformation utility is allowed to run,
+     *                       or zero, if there is no limit
+     * @return this configuration object
+     * @throws IllegalArgumentException if {@code utilityTimeout} is negative
+     */
+    Configuration setUtilityTimeout(long utilityTimeout);
+
+    /**
+     * Returns how long, in milliseconds, the whole transformation is allowed to run.
+     * Once that time is over, the thread performing the transformation is interrupted, as if it had been
+     * cancelled, so that the utility being performed results in an error, as long as it reacts to interruption,
+     * and the transformation is aborted before the next utility is performed. Utilities are not performed by
+     * separate threads because of this setting, see {@link #getUtilityTimeout()}.
+     * Zero means there is no limit.
+     * <br>
+     * The default value is 0.
+     *
+     * @return how long, in milliseconds, the whole transformation is allowed to run
+     */
+    long getTransformationTimeout();
+
+    /**
+     * Sets how long, in milliseconds, the whole transformation is allowed to run.
+     * See {@link #getTransformationTimeout()}.
+     *
+     * @param transformationTimeout how long, in milliseconds, the whole transformation is allowed to run,
+     *                              or zero, if there is no limit
+     * @return this configuration object
+     * @throws IllegalArgumentException if {@code transformationTimeout} is negative
+     */
+    Configuration setTransformationTimeout(long transformationTimeout);
+
+    /**
+     * Returns the maximum number of records kept in memory by the execution trace of the transformation,
+     * which records every transformation utility performed, in binary format, with little overhead,
+     * regardless of the log level. Once that number is reached, the oldest records are overwritten.
+     * If the transformation is aborted, the last utilities performed are logged from it.
+     * The trace is only written to a file if {@link #isTraceFile()} is true.
+     * If set to 0, no execution trace is recorded.
+     * <br>
+     * The default value is 256.
+     *
+     * @return the maximum number of records kept by the execution trace of the transformation
+     */
+    int getTraceCapacity();
+
+    /**
+     * Sets the maximum number of records kept in memory by the execution trace of the transformation.
+     * See {@link #getTraceCapacity()}.
+     *
+     * @param traceCapacity the maximum number of records kept by the execution trace
+     *                      of the transformation, or zero, if no trace should be recorded
+     * @return this configuration object
+     * @throws IllegalArgumentException if {@code traceCapacity} is negative
+     */
+    Configuration setTraceCapacity(int traceCapacity);
+
+    /**
+     * Returns whether the execution trace of the transformation is written to a file,
+     * next to the transformed application folder, see {@link TransformationResult#getTraceFile()},
+     * which means it is written next to the original application folder if
+     * {@link #isModifyOriginalFolder()} is true. Only then the size of the file each utility
+     * has been performed against is measured and recorded. It has no effect if
+     * {@link #getTraceCapacity()} is 0.
+     * <br>
+     * The default value is {@code false}.
+     *
+     * @return whether the execution trace of the transformation is written to a file
+     */
+    boolean isTraceFile();
+
+    /**
+     * Sets whether the execution trace of the transformation is written to a file.
+     * See {@link #isTraceFile()}.
+     *
+     * @param traceFile whether the execution trace of the transformation is written to a file
+     * @return this configuration object
+     */
+    Configuration setTraceFile(boolean traceFile);
+
+    /**
+     * Returns the size, in number of elements, above which collections, maps and arrays
+     * held by the transformation context are released from memory, as soon as no transformation
+     * utility refers to them any longer. Which utilities refer to them is found out by analyzing
+     * the transformation template, before it is performed, based on {@code dependsOn},
+     * {@code executeIf}, {@code executeUnless}, {@code set}, {@code absolute} and files attributes.
+     * <br>
+     * Released transformation context attributes are spilled to disk, and read back from it,
+     * if they are ever requested again, as long as they are immutable, such as the sets of files produced
+     * by utilities that find files. Released transformation utilities results keep their types
+     * and details, but have their values replaced by a short summary. If set to 0, nothing is released.
+     * <br>
+     * The default value is 0.
+     *
+     * @return the size above which transformation context values no longer referred to are released from memory
+     */
+    int getRetentionThreshold();
+
+    /**
+     * Sets the size, in number of elements, above which collections, maps and arrays
+     * held by the transformation context are released from memory, as soon as no transformation
+     * utility refers to them any longer. See {@link #getRetentionThreshold()}.
+     *
+     * @param retentionThreshold the size above which transformation context values no longer
+     *                           referred to are released from memory, or zero, if nothing should be released
+     * @return this configuration object
+     * @throws IllegalArgumentException if {@code retentionThreshold} is negative
+     */
+    Configuration setRetentionThreshold(int retentionThreshold);
+
+    /**
+     * Returns whether the results of utility conditions, set via {@code executeIf(UtilityCondition)},
+     * are kept during the transformation, so that the same condition is not evaluated again
+     * against the same unchanged file. Only conditions confined to their files have their results kept.
+     * Keeping them costs one SHA-256 digest of each file a condition is evaluated against, so that
+     * files rewritten with the same content do not have their results discarded.
+     * <br>
+     * The default value is {@code true}.
+     *
+     * @return whether the results of utility conditions are kept during the transformation
+     */
+    boolean isConditionCache();
+
+    /**
+     * Sets whether the results of utility conditions are kept during the transformation.
+     * See {@link #isConditionCache()}.
+     *
+     * @param conditionCache whether the results of utility conditions are kept during the transformation
+     * @return this configuration object
+     */
+    Configuration setConditionCache(boolean conditionCache);
+
 }
@@ -0,0 +1,52 @@
+package com.paypal.butterfly.api;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Strategy in charge of creating the executor service transformations are performed by.
+ * Butterfly offers the following built-in strategies:
+ * <ol>
+ *     <li>{@code default}: a thread pool growing from one thread per core up to two threads per core</li>
+ *     <li>{@code fixed}: a fixed thread pool, whose size can be set via {@code butterfly.executor.threads}</li>
+ *     <li>{@code fork-join}: a work-stealing fork-join pool</li>
+ *     <li>{@code virtual-threads}: a new virtual thread per task, only available if the Java runtime supports it</li>
+ * </ol>
+ * The strategy to be used is chosen by setting property {@code butterfly.executor.strategy}
+ * with its name. Custom strategies can be offered by registering them as Spring beans.
+ *
+ * @author agent
+ */
+public interface ExecutorStrategy {
+
+    /**
+     * Returns the name used to choose this strategy
+     *
+     * @return the name used to choose this strategy
+     */
+    String getName();
+
+    /**
+     * Creates the executor service transformations are performed by.
+     * This method is called only once per strategy object.
+     *
+     * @return the executor service transformations are performed by
+     */
+    ExecutorService createExecutor();
+
+    /**
+     * Returns the number of tasks waiting to be performed
+     * by the executor created by this strategy
+     *
+     * @return the number of tasks waiting to be performed
+     */
+    int getQueueDepth();
+
+    /**
+     * Returns the approximate number of threads actively performing
+     * tasks in the executor created by this strategy
+     *
+     * @return the approximate number of threads actively performing tasks
+     */
+    int getActiveThreadCount();
+
+}
@@ -0,0 +1,51 @@
+package com.paypal.butterfly.api;
+
+import java.util.SortedMap;
+
+/**
+ * POJO containing how long a set of transformation utilities took
+ * to be performed. All durations are measured with a monotonic clock,
+ * and given in nanoseconds. Durations are aggregated in a histogram
+ * whose buckets are at most 1/32 (about 3%) wide, relative to their values,
+ * so percentiles are approximate within that precision.
+ * Objects of this type are retrieved via {@link TransformationStatistics#getTimingsPerUtilityClass()}
+ * and {@link TransformationStatistics#getTimingsPerUtilityName()}
+ *
+ * @author agent
+ */
+public interface TimingStatistics {
+
+    /**
+     * @return how many times utilities were performed
+     */
+    long getCount();
+
+    /**
+     * @return the sum of the durations of all times utilities were performed
+     */
+    long getSum();
+
+    /**
+     * @return the longest duration of all times utilities were performed
+     */
+    long getMax();
+
+    /**
+     * Returns the approximate duration that {@code percentile} percent
+     * of the times utilities were performed took or less, or zero,
+     * if utilities were never performed
+     *
+     * @param percentile a percentile greater than 0 and lower than or equal to 100
+     * @return the approximate duration at the specified percentile
+     * @throws IllegalArgumentException if {@code percentile} is not greater than 0 and lower than or equal to 100
+     */
+    long getPercentile(double percentile);
+
+    /**
+     * @return an unmodifiable sorted map whose keys are the histogram buckets upper bounds,
+     * and values are how many times utilities took up to that duration, and more than the
+     * previous bucket upper bound. Empty buckets are not present
+     */
+    SortedMap<Long, Long> getHistogram();
+
+}
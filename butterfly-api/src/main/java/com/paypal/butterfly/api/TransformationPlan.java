@@ -0,0 +1,118 @@
+package com.paypal.butterfly.api;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Execution plan of a transformation, produced by a dry-run, as opposed to the transformation itself.
+ * When planning a transformation, the application folder is not copied, and nothing is written to it,
+ * but conditions, transformation utilities (such as the ones used to find files) and
+ * multiple operations expansions are evaluated against the original application folder, in read-only mode,
+ * allowing to know in advance which operations would be performed, and against which files.
+ * <br>
+ * Notice that, since operations are not actually performed when planning,
+ * the plan is approximate whenever a transformation utility depends on changes
+ * that would have been made by a previous operation.
+ * Objects of this type are retrieved via {@link ButterflyFacade#plan(java.io.File, Class, String, Configuration)}
+ *
+ * @author agent
+ */
+public interface TransformationPlan {
+
+    /**
+     * Returns the request of the transformation that was planned
+     *
+     * @return the request of the transformation that was planned
+     */
+    TransformationRequest getTransformationRequest();
+
+    /**
+     * Returns an unmodifiable list of all operations that would be performed,
+     * in the same order they would be performed
+     *
+     * @return all operations that would be performed
+     */
+    List<PlannedOperation> getOperations();
+
+    /**
+     * @return how many operations would be performed
+     */
+    int getOperationsCount();
+
+    /**
+     * @return how many operations would be skipped, due to conditions or dependencies not met
+     */
+    int getSkippedOperationsCount();
+
+    /**
+     * Returns the estimated amount of bytes that would be read by the planned operations,
+     * which is the sum of the sizes of their target files and folders
+     *
+     * @return the estimated amount of bytes read
+     */
+    long getEstimatedBytesRead();
+
+    /**
+     * Returns the estimated amount of bytes that would be written by the planned operations,
+     * which, since operations usually rewrite their target files, is also the sum of
+     * the sizes of their target files and folders, plus the size of the application folder
+     * itself, which is copied before the transformation, unless the original folder is modified
+     *
+     * @return the estimated amount of bytes written
+     */
+    long getEstimatedBytesWritten();
+
+    /**
+     * Returns true if all transformation utilities could be planned, or false, if
+     * planning was interrupted, for example because a transformation utility set to abort
+     * on failure could not be evaluated. In that case the plan contains only the operations
+     * planned until the interruption
+     *
+     * @return true if all transformation utilities could be planned
+     */
+    boolean isComplete();
+
+    /**
+     * A transformation operation that would be performed
+     */
+    interface PlannedOperation {
+
+        /**
+         * @return the execution order of the operation, as in {@code TransformationUtility#getOrder()}
+         */
+        String getOrder();
+
+        /**
+         * @return the name of the operation
+         */
+        String getName();
+
+        /**
+         * @return the name of the operation class
+         */
+        String getClassName();
+
+        /**
+         * @return the description of the operation
+         */
+        String getDescription();
+
+        /**
+         * Returns the file or folder the operation would be performed against,
+         * or null, if the operation is not performed against a specific file or folder
+         *
+         * @return the file or folder the operation would be performed against
+         */
+        File getTargetFile();
+
+        /**
+         * Returns the size of the file the operation would be performed against, or,
+         * if that is a folder, the sum of all files sizes under it, or zero, if there is no target file
+         *
+         * @return the size of the file or folder the operation would be performed against
+         */
+        long getTargetFileSize();
+
+    }
+
+}
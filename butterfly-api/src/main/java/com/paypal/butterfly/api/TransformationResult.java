@@ -161,6 +161,25 @@ public interface TransformationResult {
      */
     AbortDetails getAbortDetails();
 
+    /**
+     * Returns statistics about the compression of the transformed application
+     * folder into a zip file, or null, if it has not been compressed.
+     * See {@link Configuration#isZipOutput()}
+     *
+     * @return statistics about the compression of the transformed application folder, or null
+     */
+    CompressionStatistics getCompressionStatistics();
+
+    /**
+     * Returns the binary execution trace file, placed next to the transformed application folder,
+     * or null, if it has not been asked for, or if it could not be written.
+     * See {@link Configuration#isTraceFile()}. It can be turned into JSON, or into
+     * a flame graph, by {@code com.paypal.butterfly.core.ExecutionTraceDecoder}
+     *
+     * @return the binary execution trace file, or null
+     */
+    File getTraceFile();
+
     /**
      * Returns a String representing this transformation result object in JSON format
      *
@@ -1,5 +1,7 @@
 package com.paypal.butterfly.api;
 
+import java.util.Map;
+
 /**
  * POJO containing statistics about
  * the result of a transformation template execution
@@ -98,4 +100,38 @@ public interface TransformationStatistics {
      */
     int getManualInstructionsCount();
 
+    /**
+     * @return an unmodifiable map whose keys are transformation utility class names,
+     * and values are how long utilities of each class took to be performed
+     */
+    Map<String, TimingStatistics> getTimingsPerUtilityClass();
+
+    /**
+     * @return an unmodifiable map whose keys are transformation utility names,
+     * and values are how long each utility took to be performed. Utilities
+     * performed more than once, for example inside loops, are aggregated, and so are
+     * the ones created for each file by multiple operations, filters and multiple
+     * conditions, under the name of their parent, or of their condition template
+     */
+    Map<String, TimingStatistics> getTimingsPerUtilityName();
+
+    /**
+     * @return how many times the result of a utility condition, set via
+     * {@code TransformationUtility#executeIf(UtilityCondition)}, was reused,
+     * instead of evaluating the condition again against the same unchanged file
+     */
+    long getConditionCacheHitCount();
+
+    /**
+     * @return how many times a utility condition, whose result could be reused,
+     * had to be evaluated, since no result was kept for the same unchanged file
+     */
+    long getConditionCacheMissCount();
+
+    /**
+     * @return the ratio of utility condition results reused, over all utility
+     * conditions whose results could be reused, or zero, if there was none
+     */
+    double getConditionCacheHitRate();
+
 }
@@ -0,0 +1,23 @@
+package com.paypal.butterfly.api.exception;
+
+import com.paypal.butterfly.extensions.api.exception.ButterflyRuntimeException;
+
+/**
+ * Thrown when a transformation request is not accepted, either
+ * because too many requests are already waiting to be performed,
+ * or because there are not enough resources, such as free disk
+ * space or heap memory, to perform it
+ *
+ * @author agent
+ */
+public class TransformationRejectedException extends ButterflyRuntimeException {
+
+    public TransformationRejectedException(String exceptionMessage) {
+        super(exceptionMessage);
+    }
+
+    public TransformationRejectedException(String exceptionMessage, Throwable throwable) {
+        super(exceptionMessage, throwable);
+    }
+
+}
@@ -212,7 +212,11 @@ class ButterflyCliRunner extends ButterflyCliOption {
                 logger.info("----------------------------------------------");
                 logger.info("Application has been transformed successfully!");
                 logger.info("----------------------------------------------");
-                logger.info("Transformed application folder: {}", transformationResult.getTransformedApplicationDir());
+                if (transformationResult.getCompressionStatistics() != null) {
+                    logger.info("Transformed application zip file: {}", transformationResult.getCompressionStatistics().getZipFile());
+                } else {
+                    logger.info("Transformed application folder: {}", transformationResult.getTransformedApplicationDir());
+                }
                 logger.info("Check log file for details: {}", LogFileDefiner.getLogFile().getAbsolutePath());
 
                 if (transformationResult.hasManualInstructions()) {
@@ -1,10 +1,12 @@
 package com.paypal.butterfly.cli.logging;
 
+import ch.qos.logback.classic.AsyncAppender;
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.AsyncAppenderBase;
 import ch.qos.logback.core.ConsoleAppender;
 import ch.qos.logback.core.OutputStreamAppender;
 import org.slf4j.LoggerFactory;
@@ -20,6 +22,10 @@ public class LogbackLogConfigurator extends LogConfigurator {
 
     private static final LoggerContext loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
 
+    // Context properties set in logback.xml
+    private static final String LOG_QUEUE_SIZE_PROPERTY = "logQueueSize";
+    private static final String LOG_DISCARDING_THRESHOLD_PROPERTY = "logDiscardingThreshold";
+
     private boolean verboseMode = false;
 
     @Override
@@ -62,16 +68,38 @@ public class LogbackLogConfigurator extends LogConfigurator {
             consoleAppender.setContext(loggerContext);
             consoleAppender.start();
 
+            // In verbose mode every transformation log event goes to the console,
+            // so it is written asynchronously, same as the log file
+            AsyncAppender asyncConsoleAppender = new AsyncAppender();
+            asyncConsoleAppender.setName("ASYNC_CONSOLE");
+            asyncConsoleAppender.setContext(loggerContext);
+            asyncConsoleAppender.setQueueSize(getIntProperty(LOG_QUEUE_SIZE_PROPERTY, AsyncAppenderBase.DEFAULT_QUEUE_SIZE));
+            asyncConsoleAppender.setDiscardingThreshold(getIntProperty(LOG_DISCARDING_THRESHOLD_PROPERTY, 0));
+            asyncConsoleAppender.addAppender(consoleAppender);
+            asyncConsoleAppender.start();
+
             loggerContext.getLogger("com.paypal.butterfly.cli").detachAppender("CONSOLE");
-            loggerContext.getLogger("ROOT").addAppender(consoleAppender);
+            loggerContext.getLogger("ROOT").addAppender(asyncConsoleAppender);
 //        } else {
             // TODO
         }
     }
 
+    private static int getIntProperty(String name, int defaultValue) {
+        String value = loggerContext.getProperty(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " logging property: " + value, e);
+        }
+    }
+
     @Override
     public void setLogToFile(boolean on) {
-        loggerContext.getLogger("ROOT").detachAppender("FILE");
+        loggerContext.getLogger("ROOT").detachAppender("ASYNC_FILE");
     }
 
     @Override
@@ -1,6 +1,9 @@
 package com.paypal.butterfly.cli.logging;
 
+import ch.qos.logback.classic.AsyncAppender;
 import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.powermock.modules.testng.PowerMockTestCase;
@@ -39,6 +42,23 @@ public class LogbackLogConfiguratorTest extends PowerMockTestCase {
         Assert.assertTrue(loggerContext.getLogger("com.paypal.butterfly").getLevel() == ch.qos.logback.classic.Level.INFO);
     }
 
+    @Test
+    public void testVerboseModeIsAsynchronous() {
+        Assert.assertNotNull(logbackVerboseConfigurator);
+        Assert.assertNotNull(loggerContext);
+        logbackVerboseConfigurator.setVerboseMode(true);
+        Appender<ILoggingEvent> appender = loggerContext.getLogger("ROOT").getAppender("ASYNC_CONSOLE");
+        try {
+            Assert.assertTrue(logbackVerboseConfigurator.isVerboseMode());
+            Assert.assertTrue(appender instanceof AsyncAppender);
+            Assert.assertTrue(appender.isStarted());
+            Assert.assertEquals(((AsyncAppender) appender).getDiscardingThreshold(), 0);
+        } finally {
+            loggerContext.getLogger("ROOT").detachAppender(appender);
+            appender.stop();
+        }
+    }
+
 
     @Test
     public void testLoggerAsStringAndLogBackLevelAsInfo() {
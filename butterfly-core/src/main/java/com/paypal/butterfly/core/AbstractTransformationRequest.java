@@ -68,6 +68,9 @@ abstract class AbstractTransformationRequest implements TransformationRequest {
 
         this.application = application;
         this.configuration = configuration;
+        if (application.getArchive() != null && (configuration.isModifyOriginalFolder() || blank)) {
+            throw new IllegalArgumentException("Applications read from archives cannot be transformed in place, nor with blank transformation templates");
+        }
         setBlank(blank);
     }
 
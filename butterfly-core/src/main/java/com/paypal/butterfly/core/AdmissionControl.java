@@ -0,0 +1,247 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.api.Configuration;
+import com.paypal.butterfly.api.TransformationRequest;
+import com.paypal.butterfly.api.TransformationResult;
+import com.paypal.butterfly.api.exception.TransformationRejectedException;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Decides whether transformation requests are accepted to be performed,
+ * based on the number of requests already waiting to be performed,
+ * and, optionally, on the free disk space where the transformed application
+ * will be placed and on the free heap memory.
+ * <br>
+ * When the maximum number of waiting requests is reached, new ones are handled
+ * according to the {@link RejectionPolicy}. Requests not accepted result in a
+ * {@link CompletableFuture} failed with a {@link TransformationRejectedException}.
+ * <br>
+ * Notice that requests submitted by the threads performing transformations,
+ * including the ones running their completion callbacks, are never blocked, nor
+ * performed by them. Otherwise, all of those threads could end up waiting for requests
+ * that can only be performed by themselves, or hold their own transformations back
+ * while performing others. Batches of applications are submitted by their own threads
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class AdmissionControl {
+
+    private static final long MEGABYTE = 1024 * 1024;
+
+    private static final String EXECUTOR_REJECTION_MESSAGE = "Transformation request rejected by the transformation engine executor";
+
+    // Set while a thread is performing a transformation, or running its completion callbacks
+    private static final ThreadLocal<Boolean> performing = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * What to do with a transformation request when the maximum
+     * number of requests waiting to be performed has been reached
+     */
+    enum RejectionPolicy {
+
+        // Waits until there is room for the request, unless submitted
+        // by a thread performing transformations, in which case it is rejected
+        BLOCK("block"),
+
+        // Rejects the request right away
+        FAIL_FAST("fail-fast"),
+
+        // Performs the request in the calling thread, unless it is
+        // a thread performing transformations, in which case it is rejected
+        CALLER_RUNS("caller-runs");
+
+        private final String name;
+
+        RejectionPolicy(String name) {
+            this.name = name;
+        }
+
+        static RejectionPolicy fromName(String name) {
+            for (RejectionPolicy policy : values()) {
+                if (policy.name.equals(name)) {
+                    return policy;
+                }
+            }
+            throw new IllegalArgumentException("Unknown rejection policy: " + name);
+        }
+
+    }
+
+    // Null if the number of requests waiting to be performed is unbounded
+    private final Semaphore waitingPermits;
+
+    private final int queueCapacity;
+    private final RejectionPolicy rejectionPolicy;
+
+    // Zero if there is no limit
+    private final long minFreeDiskSpace;
+    private final long minFreeHeap;
+
+    /**
+     * Creates an admission control
+     *
+     * @param queueCapacity the maximum number of requests waiting to be performed,
+     *                      or zero, if there is no limit
+     * @param rejectionPolicy what to do with requests once {@code queueCapacity} is reached
+     * @param minFreeDiskSpace the minimum free disk space, in megabytes, in the folder where the transformed
+     *                         application will be placed, or zero, if there is no limit
+     * @param minFreeHeap the minimum free heap memory, in megabytes, or zero, if there is no limit
+     */
+    AdmissionControl(int queueCapacity, RejectionPolicy rejectionPolicy, long minFreeDiskSpace, long minFreeHeap) {
+        if (queueCapacity < 0 || minFreeDiskSpace < 0 || minFreeHeap < 0) {
+            throw new IllegalArgumentException("Admission control limits cannot be negative");
+        }
+        if (rejectionPolicy == null) {
+            throw new IllegalArgumentException("Rejection policy cannot be null");
+        }
+        this.queueCapacity = queueCapacity;
+        this.waitingPermits = (queueCapacity > 0 ? new Semaphore(queueCapacity) : null);
+        this.rejectionPolicy = rejectionPolicy;
+        this.minFreeDiskSpace = minFreeDiskSpace * MEGABYTE;
+        this.minFreeHeap = minFreeHeap * MEGABYTE;
+    }
+
+    /**
+     * Submits a transformation to be performed by {@code executor}, if the
+     * transformation request is accepted
+     *
+     * @param transformationRequest the transformation request
+     * @param transformer the transformer in charge of performing the transformation
+     * @param executor the executor the transformation is performed by
+     * @return a {@link CompletableFuture} object referring to the result of the transformation,
+     * or failed with a {@link TransformationRejectedException}, if the request was not accepted
+     */
+    CompletableFuture<TransformationResult> submit(TransformationRequest transformationRequest, Supplier<TransformationResult> transformer, Executor executor) {
+        try {
+            checkResources(transformationRequest);
+        } catch (TransformationRejectedException e) {
+            return failed(e);
+        }
+
+        if (waitingPermits == null) {
+            return supplyAsync(transformer, executor);
+        }
+
+        if (!waitingPermits.tryAcquire()) {
+            switch (rejectionPolicy) {
+                case BLOCK:
+                    if (performing.get()) {
+                        return failed(new TransformationRejectedException(String.format("Transformation request rejected, since there are already %d transformation requests waiting to be performed, and waiting from a thread performing transformations could deadlock", queueCapacity)));
+                    }
+                    try {
+                        waitingPermits.acquire();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return failed(new TransformationRejectedException("Transformation request rejected, since it was interrupted while waiting to be accepted", e));
+                    }
+                    break;
+                case CALLER_RUNS:
+                    if (performing.get()) {
+                        return failed(new TransformationRejectedException(String.format("Transformation request rejected, since there are already %d transformation requests waiting to be performed, and threads performing transformations cannot perform another one on top of it", queueCapacity)));
+                    }
+                    try {
+                        return CompletableFuture.completedFuture(transformer.get());
+                    } catch (RuntimeException e) {
+                        return failed(e);
+                    }
+                default:
+                    return failed(new TransformationRejectedException(String.format("Transformation request rejected, since there are already %d transformation requests waiting to be performed", queueCapacity)));
+            }
+        }
+
+        // The request is not waiting anymore once it starts being performed, or once it is cancelled,
+        // in which case it is never performed
+        AtomicBoolean waiting = new AtomicBoolean(true);
+        Runnable stopWaiting = () -> {
+            if (waiting.compareAndSet(true, false)) {
+                waitingPermits.release();
+            }
+        };
+        try {
+            CompletableFuture<TransformationResult> future = CompletableFuture.supplyAsync(() -> {
+                stopWaiting.run();
+                return transformer.get();
+            }, marking(executor));
+            future.whenComplete((result, throwable) -> stopWaiting.run());
+            return future;
+        } catch (RejectedExecutionException e) {
+            stopWaiting.run();
+            return failed(new TransformationRejectedException(EXECUTOR_REJECTION_MESSAGE, e));
+        }
+    }
+
+    /*
+     * Marks the threads running the tasks submitted to the executor while they run them.
+     * Since the task completing a future also runs the callbacks depending on it,
+     * those are covered as well
+     */
+    private static Executor marking(Executor executor) {
+        return command -> executor.execute(() -> {
+            boolean previous = performing.get();
+            performing.set(true);
+            try {
+                command.run();
+            } finally {
+                performing.set(previous);
+            }
+        });
+    }
+
+    private static CompletableFuture<TransformationResult> supplyAsync(Supplier<TransformationResult> transformer, Executor executor) {
+        try {
+            return CompletableFuture.supplyAsync(transformer, marking(executor));
+        } catch (RejectedExecutionException e) {
+            return failed(new TransformationRejectedException(EXECUTOR_REJECTION_MESSAGE, e));
+        }
+    }
+
+    private void checkResources(TransformationRequest transformationRequest) {
+        if (minFreeHeap > 0) {
+            Runtime runtime = Runtime.getRuntime();
+            long freeHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+            if (freeHeap < minFreeHeap) {
+                throw new TransformationRejectedException(String.format("Transformation request rejected, since there are only %d MB of free heap memory, while at least %d MB are required", freeHeap / MEGABYTE, minFreeHeap / MEGABYTE));
+            }
+        }
+        if (minFreeDiskSpace > 0) {
+            File outputFolder = getOutputFolder(transformationRequest);
+            if (outputFolder != null && outputFolder.exists()) {
+                long freeDiskSpace = outputFolder.getUsableSpace();
+                if (freeDiskSpace < minFreeDiskSpace) {
+                    throw new TransformationRejectedException(String.format("Transformation request rejected, since there are only %d MB of free disk space at %s, while at least %d MB are required", freeDiskSpace / MEGABYTE, outputFolder, minFreeDiskSpace / MEGABYTE));
+                }
+            }
+        }
+    }
+
+    /*
+     * Returns the folder where the transformed application will be placed
+     */
+    private static File getOutputFolder(TransformationRequest transformationRequest) {
+        File applicationFolder = transformationRequest.getApplication().getFolder();
+        Configuration configuration = transformationRequest.getConfiguration();
+        if (configuration.isModifyOriginalFolder()) {
+            return applicationFolder;
+        }
+        if (configuration.getOutputFolder() != null) {
+            return configuration.getOutputFolder();
+        }
+        File parent = applicationFolder.getParentFile();
+        return (parent != null ? parent : new File(System.getProperty("user.dir")));
+    }
+
+    private static CompletableFuture<TransformationResult> failed(Throwable throwable) {
+        CompletableFuture<TransformationResult> future = new CompletableFuture<>();
+        future.completeExceptionally(throwable);
+        return future;
+    }
+
+}
@@ -3,18 +3,26 @@ package com.paypal.butterfly.core;
 import com.paypal.butterfly.api.Application;
 
 import java.io.File;
+import java.util.Locale;
 
 /**
- * The application to be transformed
+ * The application to be transformed, either
+ * from a folder, or from an archive file
  *
  * @author facarvalho
  */
 class ApplicationImpl implements Application {
 
     private File folder;
+    private File archive;
 
     ApplicationImpl(File applicationFolder) {
-        setFolder(applicationFolder);
+        if (isArchive(applicationFolder)) {
+            folder = applicationFolder;
+            archive = applicationFolder;
+        } else {
+            setFolder(applicationFolder);
+        }
     }
 
     @Override
@@ -22,6 +30,11 @@ class ApplicationImpl implements Application {
         return folder;
     }
 
+    @Override
+    public File getArchive() {
+        return archive;
+    }
+
     void setFolder(File folder) {
         if(folder == null || !folder.exists() || !folder.isDirectory()) {
             throw new IllegalArgumentException(String.format("Invalid application folder %s",folder));
@@ -29,6 +42,20 @@ class ApplicationImpl implements Application {
         this.folder = folder;
     }
 
+    /**
+     * Returns true if this file is a zip, jar or war file
+     *
+     * @param file the file to be checked
+     * @return true if this file is a zip, jar or war file
+     */
+    static boolean isArchive(File file) {
+        if (file == null || !file.isFile()) {
+            return false;
+        }
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        return name.endsWith(".zip") || name.endsWith(".jar") || name.endsWith(".war");
+    }
+
     @Override
     public String toString() {
         return folder.getAbsolutePath();
@@ -0,0 +1,87 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.api.BatchTransformationSummary;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * POJO summarizing the transformation of a batch of applications
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class BatchTransformationSummaryImpl implements BatchTransformationSummary {
+
+    private int applicationsCount;
+    private int successfulCount;
+    private int abortedCount;
+    private int errorCount;
+    private Map<Integer, String> failures;
+    private long totalDuration;
+
+    // Duration of every application transformation, sorted
+    private long[] durations;
+
+    BatchTransformationSummaryImpl(int successfulCount, int abortedCount, int errorCount, Map<Integer, String> failures, long totalDuration, long[] durations) {
+        this.applicationsCount = durations.length;
+        this.successfulCount = successfulCount;
+        this.abortedCount = abortedCount;
+        this.errorCount = errorCount;
+        this.failures = Collections.unmodifiableMap(failures);
+        this.totalDuration = totalDuration;
+        this.durations = Arrays.copyOf(durations, durations.length);
+        Arrays.sort(this.durations);
+    }
+
+    @Override
+    public int getApplicationsCount() {
+        return applicationsCount;
+    }
+
+    @Override
+    public int getSuccessfulCount() {
+        return successfulCount;
+    }
+
+    @Override
+    public int getAbortedCount() {
+        return abortedCount;
+    }
+
+    @Override
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    @Override
+    public Map<Integer, String> getFailures() {
+        return failures;
+    }
+
+    @Override
+    public long getTotalDuration() {
+        return totalDuration;
+    }
+
+    @Override
+    public long getDurationPercentile(int percentile) {
+        if (percentile < 1 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 1 and 100");
+        }
+        if (durations.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * durations.length);
+        return durations[rank - 1];
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[applications: %d][successful: %d][aborted: %d][errors: %d][total duration: %d ms][p50: %d ms][p90: %d ms][p99: %d ms]",
+                applicationsCount, successfulCount, abortedCount, errorCount, totalDuration,
+                getDurationPercentile(50), getDurationPercentile(90), getDurationPercentile(99));
+    }
+
+}
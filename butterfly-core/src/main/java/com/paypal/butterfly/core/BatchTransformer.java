@@ -0,0 +1,173 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.api.BatchTransformationSummary;
+import com.paypal.butterfly.api.TransformationResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Transforms a batch of applications, keeping no more than a given
+ * number of them being transformed at the same time. Every transformation result
+ * is handed to a consumer as soon as it is available, and a summary of the whole
+ * batch is provided when all of them are concluded.
+ * <br>
+ * Transformations are started by a thread dedicated to the batch, never by the
+ * threads performing transformations, which could otherwise end up waiting for room
+ * in the transformation engine queue, which only they could make
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class BatchTransformer {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchTransformer.class);
+
+    private static final AtomicInteger batchCount = new AtomicInteger();
+
+    private final List<File> applicationFolders;
+    private final int applicationsCount;
+    private int nextIndex = 0;
+    private final Function<File, CompletableFuture<TransformationResult>> transformation;
+    private final Consumer<TransformationResult> resultConsumer;
+    private final CompletableFuture<BatchTransformationSummary> summary = new CompletableFuture<>();
+
+    // Starts every transformation of the batch. Its thread is let go whenever idle
+    private final ThreadPoolExecutor submitter;
+
+    private long startTime;
+    private int concludedCount = 0;
+    private int successfulCount = 0;
+    private int abortedCount = 0;
+    private int errorCount = 0;
+    // Keyed by the index of the application in the batch, since the same folder could be given more than once
+    private final Map<Integer, String> failures = new TreeMap<>();
+    private final long[] durations;
+
+    /**
+     * Creates a batch transformer
+     *
+     * @param applicationFolders the folders of the applications to be transformed
+     * @param transformation the function starting the transformation of an application,
+     *                       given its folder
+     * @param resultConsumer the consumer every transformation result is handed to,
+     *                       as soon as it is available, or null, if not necessary
+     */
+    BatchTransformer(Collection<File> applicationFolders, Function<File, CompletableFuture<TransformationResult>> transformation, Consumer<TransformationResult> resultConsumer) {
+        this.applicationFolders = new ArrayList<>(applicationFolders);
+        this.applicationsCount = this.applicationFolders.size();
+        this.transformation = transformation;
+        this.resultConsumer = resultConsumer;
+        this.durations = new long[applicationsCount];
+        this.submitter = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "butterfly-batch-" + batchCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.submitter.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Starts transforming the batch of applications, keeping no more than {@code concurrency}
+     * of them being transformed at the same time
+     *
+     * @param concurrency the maximum number of applications being transformed at the same time
+     * @return a {@link CompletableFuture} object referring to the summary of the batch, after
+     * all applications have been transformed
+     */
+    CompletableFuture<BatchTransformationSummary> start(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be greater than zero");
+        }
+        startTime = System.currentTimeMillis();
+        if (applicationsCount == 0) {
+            concludeBatch();
+        }
+        for (int i = 0; i < concurrency && i < applicationsCount; i++) {
+            submitter.execute(this::transformNext);
+        }
+        return summary;
+    }
+
+    /*
+     * Transforms the next application of the batch, if any, and then the following one,
+     * and so on, until one of them can't be concluded right away. In that case, the next
+     * application is only transformed when that one is concluded
+     */
+    private void transformNext() {
+        int index;
+        while ((index = nextApplicationIndex()) < applicationsCount) {
+            int applicationIndex = index;
+            File folder = applicationFolders.get(index);
+            long applicationStartTime = System.currentTimeMillis();
+            CompletableFuture<TransformationResult> future;
+            try {
+                future = transformation.apply(folder);
+            } catch (RuntimeException e) {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+            CompletableFuture<Void> concluded = future.handle((result, throwable) -> {
+                conclude(applicationIndex, folder, System.currentTimeMillis() - applicationStartTime, result, throwable);
+                return null;
+            });
+            if (!concluded.isDone()) {
+                concluded.thenRunAsync(this::transformNext, submitter);
+                return;
+            }
+        }
+    }
+
+    private synchronized int nextApplicationIndex() {
+        return (nextIndex < applicationsCount ? nextIndex++ : applicationsCount);
+    }
+
+    private void conclude(int applicationIndex, File applicationFolder, long duration, TransformationResult result, Throwable throwable) {
+        if (result != null && resultConsumer != null) {
+            try {
+                resultConsumer.accept(result);
+            } catch (RuntimeException e) {
+                logger.error("Transformation result consumer has failed when handling result of application " + applicationFolder, e);
+            }
+        }
+
+        boolean lastOne;
+        synchronized (this) {
+            if (throwable != null) {
+                Throwable cause = (throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable);
+                errorCount++;
+                failures.put(applicationIndex, String.valueOf(cause.getMessage()));
+            } else if (result.isSuccessful()) {
+                successfulCount++;
+            } else {
+                abortedCount++;
+                failures.put(applicationIndex, (result.getAbortDetails() != null ? result.getAbortDetails().getAbortMessage() : "Transformation has been aborted"));
+            }
+            durations[applicationIndex] = duration;
+            concludedCount++;
+            lastOne = concludedCount == applicationsCount;
+        }
+
+        if (lastOne) {
+            concludeBatch();
+        }
+    }
+
+    private synchronized void concludeBatch() {
+        long totalDuration = System.currentTimeMillis() - startTime;
+        BatchTransformationSummary batchTransformationSummary = new BatchTransformationSummaryImpl(successfulCount, abortedCount, errorCount, failures, totalDuration, durations);
+        logger.info("Batch transformation concluded {}", batchTransformationSummary);
+        summary.complete(batchTransformationSummary);
+    }
+
+}
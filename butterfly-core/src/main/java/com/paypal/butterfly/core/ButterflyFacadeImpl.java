@@ -11,8 +11,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 /**
  * Butterfly Façade implementation
@@ -35,6 +38,10 @@ class ButterflyFacadeImpl implements ButterflyFacade {
     @Autowired
     private CompressionHandler compressionHandler;
 
+    // Compiled transformation templates, shared by all transformations performed with the same
+    // template class. Templates that are not reusable, or cannot be compiled, are instantiated for every transformation instead
+    private final Map<Class<? extends TransformationTemplate>, Optional<ExecutionPlan>> executionPlans = new ConcurrentHashMap<>();
+
     @Override
     public String getButterflyVersion() {
         return VERSION;
@@ -102,20 +109,111 @@ class ButterflyFacadeImpl implements ButterflyFacade {
 
     @Override
     public CompletableFuture<TransformationResult> transform(File applicationFolder, Class<? extends TransformationTemplate> templateClass, String version, Configuration configuration) {
-        TransformationTemplate template = getTemplate(templateClass);
+        return transform(newTransformationRequest(applicationFolder, templateClass, version, configuration));
+    }
+
+    @Override
+    public CompletableFuture<TransformationPlan> plan(File applicationFolder, Class<? extends TransformationTemplate> templateClass, String version, Configuration configuration) {
+        TransformationRequest transformationRequest = newTransformationRequest(applicationFolder, templateClass, version, configuration);
+        if (transformationRequest.getApplication().getArchive() != null) {
+            throw new IllegalArgumentException("Applications read from archives cannot be planned");
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Transformation plan request configuration: {}", configuration);
+        }
+        return transformationEngine.plan(transformationRequest);
+    }
+
+    private TransformationRequest newTransformationRequest(File applicationFolder, Class<? extends TransformationTemplate> templateClass, String version, Configuration configuration) {
+        if(templateClass == null) {
+            throw new IllegalArgumentException("Template class cannot be null");
+        }
         Application application = new ApplicationImpl(applicationFolder);
         TransformationRequest transformationRequest;
 
-        if (template instanceof UpgradeStep) {
+        if (UpgradeStep.class.isAssignableFrom(templateClass)) {
             UpgradePath upgradePath = getUpgradePath(templateClass, version);
             transformationRequest = new UpgradePathTransformationRequest(application, upgradePath, configuration);
         } else {
-            transformationRequest = new TemplateTransformationRequest(application, template, configuration);
+            Optional<ExecutionPlan> executionPlan = getExecutionPlan(templateClass);
+            if (executionPlan.isPresent()) {
+                transformationRequest = new TemplateTransformationRequest(application, executionPlan.get(), configuration);
+            } else {
+                transformationRequest = new TemplateTransformationRequest(application, getTemplate(templateClass), configuration);
+            }
         }
 
+        return transformationRequest;
+    }
+
+    /*
+     * Returns the compiled transformation template, compiling it first, if necessary,
+     * or an empty optional, if the template is not reusable, or cannot be compiled
+     */
+    private Optional<ExecutionPlan> getExecutionPlan(Class<? extends TransformationTemplate> templateClass) {
+        return executionPlans.computeIfAbsent(templateClass, c -> {
+            TransformationTemplate template = getTemplate(c);
+            if (!template.isReusable()) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(new ExecutionPlan(template));
+            } catch (InternalException e) {
+                logger.debug("Transformation template {} cannot be compiled, and will be instantiated for every transformation", c.getName(), e);
+                return Optional.empty();
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<TransformationResult> resume(File transformedApplicationFolder, Configuration configuration) {
+        if (transformedApplicationFolder == null) {
+            throw new IllegalArgumentException("Transformed application folder cannot be null");
+        }
+        UpgradeCheckpoint checkpoint;
+        try {
+            checkpoint = UpgradeCheckpoint.read(transformedApplicationFolder);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("There is no valid upgrade checkpoint for " + transformedApplicationFolder, e);
+        }
+
+        Class<? extends TransformationTemplate> firstStepClass = getTemplateClass(checkpoint.getFirstStepClassName());
+        UpgradePath upgradePath = getUpgradePath(firstStepClass, checkpoint.getUpgradeVersion()).startFrom(checkpoint.getReachedVersion());
+        Application application = new ApplicationImpl(new File(checkpoint.getApplicationFolder()));
+        TransformationRequest transformationRequest = new UpgradePathTransformationRequest(application, upgradePath, configuration, checkpoint);
+
         return transform(transformationRequest);
     }
 
+    /*
+     * Returns the transformation template class, among the ones
+     * provided by the registered extensions, with the given name
+     */
+    private Class<? extends TransformationTemplate> getTemplateClass(String templateClassName) {
+        for (Extension<?> extension : extensionRegistry.getExtensions()) {
+            for (Class<? extends TransformationTemplate> templateClass : extension.getTemplateClasses()) {
+                if (templateClass.getName().equals(templateClassName)) {
+                    return templateClass;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Transformation template " + templateClassName + " is not provided by any registered extension");
+    }
+
+    @Override
+    public CompletableFuture<BatchTransformationSummary> transform(Collection<File> applicationFolders, Class<? extends TransformationTemplate> templateClass, String version, Configuration configuration, int concurrency, Consumer<TransformationResult> resultConsumer) {
+        if (applicationFolders == null) {
+            throw new IllegalArgumentException("Application folders collection cannot be null");
+        }
+
+        // Making sure template class is valid before starting the batch,
+        // otherwise every single application transformation would fail the same way
+        getTemplate(templateClass);
+
+        BatchTransformer batchTransformer = new BatchTransformer(applicationFolders, f -> transform(f, templateClass, version, configuration), resultConsumer);
+        return batchTransformer.start(concurrency);
+    }
+
     private UpgradePath getUpgradePath(Class<? extends TransformationTemplate> transformationTemplate, String version) {
         Class<? extends UpgradeStep> upgradeStep = (Class<? extends UpgradeStep>) transformationTemplate;
         UpgradePath upgradePath;
@@ -137,7 +235,20 @@ class ButterflyFacadeImpl implements ButterflyFacade {
         CompletableFuture<TransformationResult> transformationResult = transformationEngine.perform(transformationRequest);
 
         if(!configuration.isModifyOriginalFolder() && configuration.isZipOutput()){
-            transformationResult.thenAcceptAsync(compressionHandler::compress);
+            // The returned future only completes after compression, so its statistics are part of the result
+            CompletableFuture<TransformationResult> performed = transformationResult;
+            transformationResult = performed.thenApply(result -> {
+                compressionHandler.compress(result);
+                return result;
+            });
+
+            // Cancelling the returned future has to cancel the transformation as well
+            CompletableFuture<TransformationResult> compressed = transformationResult;
+            compressed.whenComplete((result, throwable) -> {
+                if (compressed.isCancelled()) {
+                    performed.cancel(true);
+                }
+            });
         }
 
         return transformationResult;
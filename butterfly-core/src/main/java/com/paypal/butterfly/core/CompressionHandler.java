@@ -9,13 +9,11 @@ import org.springframework.stereotype.Component;
 
 import com.paypal.butterfly.api.TransformationResult;
 
-import net.lingala.zip4j.core.ZipFile;
-import net.lingala.zip4j.model.ZipParameters;
-import net.lingala.zip4j.util.Zip4jConstants;
-
 /**
  * This bean takes care of compressing the output folder,
- * which results in a zip file
+ * which results in a zip file. Entries are compressed in parallel,
+ * and statistics about the compression, including its throughput,
+ * are added to the transformation result
  *
  * @author facarvalho, matcurtis
  */
@@ -24,23 +22,24 @@ class CompressionHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(CompressionHandler.class);
 
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+
     void compress(TransformationResult transformationResult) {
         File inputFile = transformationResult.getTransformedApplicationDir().getAbsoluteFile();
         File compressedFile = new File(transformationResult.getTransformedApplicationDir().getAbsolutePath() + ".zip");
 
         logger.info("Compressing transformed application");
 
-        try {
-            ZipFile zipFile = new ZipFile(compressedFile);
-            ZipParameters parameters = new ZipParameters();
+        // Entries not changed by the transformation are copied as they are from the application archive, if any
+        File sourceArchive = transformationResult.getTransformationRequest().getApplication().getArchive();
 
-            parameters.setCompressionMethod(Zip4jConstants.COMP_DEFLATE);
-            parameters.setCompressionLevel(Zip4jConstants.DEFLATE_LEVEL_NORMAL);
-
-            zipFile.addFolder(inputFile, parameters);
+        try {
+            CompressionStatisticsImpl compressionStatistics = new ParallelZipWriter(PARALLELISM).write(inputFile, compressedFile, sourceArchive);
             FileUtils.deleteDirectory(transformationResult.getTransformedApplicationDir());
+            ((TransformationResultImpl) transformationResult).setCompressionStatistics(compressionStatistics);
 
             logger.info("Transformed application has been compressed to {}", compressedFile.getAbsoluteFile());
+            logger.info("Compression statistics: {}", compressionStatistics);
         } catch (Exception e) {
             logger.error("An exception happened when compressing transformed application", e);
         }
@@ -0,0 +1,85 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.api.CompressionStatistics;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * POJO containing statistics about the compression
+ * of the transformed application folder
+ *
+ * @see {@link CompressionStatistics}
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class CompressionStatisticsImpl implements CompressionStatistics {
+
+    private final File zipFile;
+    private final int entriesCount;
+    private final int storedEntriesCount;
+    private final int copiedEntriesCount;
+    private final long uncompressedSize;
+    private final long compressedSize;
+    private final long duration;
+    private final double throughput;
+
+    CompressionStatisticsImpl(File zipFile, int entriesCount, int storedEntriesCount, int copiedEntriesCount, long uncompressedSize, long compressedSize, long duration) {
+        this.zipFile = zipFile;
+        this.entriesCount = entriesCount;
+        this.storedEntriesCount = storedEntriesCount;
+        this.copiedEntriesCount = copiedEntriesCount;
+        this.uncompressedSize = uncompressedSize;
+        this.compressedSize = compressedSize;
+        this.duration = duration;
+        this.throughput = (duration > 0 ? uncompressedSize * (double) TimeUnit.SECONDS.toNanos(1) / duration : 0);
+    }
+
+    @Override
+    public File getZipFile() {
+        return zipFile;
+    }
+
+    @Override
+    public int getEntriesCount() {
+        return entriesCount;
+    }
+
+    @Override
+    public int getStoredEntriesCount() {
+        return storedEntriesCount;
+    }
+
+    @Override
+    public int getCopiedEntriesCount() {
+        return copiedEntriesCount;
+    }
+
+    @Override
+    public long getUncompressedSize() {
+        return uncompressedSize;
+    }
+
+    @Override
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    @Override
+    public long getDuration() {
+        return duration;
+    }
+
+    @Override
+    public double getThroughput() {
+        return throughput;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d entries (%d stored, %d copied), %d bytes compressed to %d bytes in %d ms (%.1f MB/s)", entriesCount, storedEntriesCount, copiedEntriesCount,
+                uncompressedSize, compressedSize, TimeUnit.NANOSECONDS.toMillis(duration), throughput / (1024 * 1024));
+    }
+
+}
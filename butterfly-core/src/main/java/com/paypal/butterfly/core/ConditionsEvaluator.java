@@ -0,0 +1,145 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.extensions.api.PerformResult;
+import com.paypal.butterfly.extensions.api.TUExecutionResult;
+import com.paypal.butterfly.extensions.api.UtilityCondition;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Evaluates utility conditions, each one created for a different file,
+ * in parallel, using a fork-join pool. Results are returned in the same
+ * order as the conditions, regardless of the order they are evaluated in.
+ * <br>
+ * Conditions after the first decisive one, which is either one that fails,
+ * or one that results in the stop value, are not evaluated, and their results,
+ * if they were already being evaluated, are meaningless. That way callers can
+ * process results in order, stopping at the first decisive one, exactly as if
+ * conditions had been evaluated sequentially.
+ * <br>
+ * Evaluation also stops once the transformation is interrupted, either because
+ * it has been cancelled, or because it has run out of time, in which case the
+ * remaining results are left null, and the caller is expected to abort.
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class ConditionsEvaluator {
+
+    // Number of chunks handed to each worker, in average, to balance
+    // conditions that take longer than others to be evaluated
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    private final ForkJoinPool pool;
+
+    // Tells whether the transformation has been interrupted
+    private final BooleanSupplier interrupted;
+
+    ConditionsEvaluator(int parallelism, BooleanSupplier interrupted) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be greater than zero");
+        }
+        pool = new ForkJoinPool(parallelism);
+        this.interrupted = interrupted;
+    }
+
+    /**
+     * Evaluates all conditions in parallel, returning their perform results
+     * in the same order. Results after the first decisive one must be ignored.
+     * The transformation context is made thread safe, if it was not yet.
+     *
+     * @param conditions the conditions to be evaluated
+     * @param stopValue the condition value that makes any further evaluation
+     *                  unnecessary, or null, if all conditions should be evaluated
+     *                  (unless one of them fails)
+     * @param timingName the name how long the conditions took to be evaluated is registered under
+     * @param transformedAppFolder the folder where the transformed application code is
+     * @param transformationContext the transformation context object
+     * @return the perform results, in the same order as the conditions
+     */
+    PerformResult[] evaluate(List<? extends UtilityCondition> conditions, Boolean stopValue, String timingName, File transformedAppFolder, TransformationContextImpl transformationContext) {
+        int size = conditions.size();
+        PerformResult[] results = new PerformResult[size];
+        RuntimeException[] exceptions = new RuntimeException[size];
+        AtomicInteger firstDecisive = new AtomicInteger(Integer.MAX_VALUE);
+
+        // Conditions register their results and timings from the pool threads
+        transformationContext.setThreadSafe();
+
+        int chunkSize = Math.max(1, size / (pool.getParallelism() * CHUNKS_PER_WORKER));
+        List<Callable<Void>> chunks = new ArrayList<>();
+        for (int start = 0; start < size; start += chunkSize) {
+            int from = start;
+            int to = Math.min(start + chunkSize, size);
+
+            // Binding has to happen here, since only the calling thread
+            // knows on behalf of which utility conditions are evaluated
+            Runnable chunk = transformationContext.bindToCurrentUtility(() -> {
+                for (int i = from; i < to && i < firstDecisive.get() && !interrupted.getAsBoolean(); i++) {
+                    try {
+                        results[i] = Transformer.perform(conditions.get(i), "-", timingName, transformedAppFolder, transformationContext);
+                    } catch (RuntimeException e) {
+                        exceptions[i] = e;
+                    }
+                    if (exceptions[i] != null || isDecisive(results[i], stopValue)) {
+                        firstDecisive.accumulateAndGet(i, Math::min);
+                    }
+                }
+            });
+            chunks.add(() -> {
+                chunk.run();
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> future : pool.invokeAll(chunks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (interrupted.getAsBoolean()) {
+                // The caller aborts the transformation
+                return results;
+            }
+            throw new InternalException("Interrupted while evaluating conditions", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new InternalException("Unexpected failure when evaluating conditions", e.getCause());
+        }
+
+        for (int i = 0; i < size && i <= firstDecisive.get(); i++) {
+            if (exceptions[i] != null) {
+                throw exceptions[i];
+            }
+        }
+
+        return results;
+    }
+
+    private static boolean isDecisive(PerformResult result, Boolean stopValue) {
+        if (!result.getType().equals(PerformResult.Type.EXECUTION_RESULT)) {
+            return true;
+        }
+        TUExecutionResult executionResult = (TUExecutionResult) result.getExecutionResult();
+        if (!executionResult.getType().equals(TUExecutionResult.Type.VALUE) && !executionResult.getType().equals(TUExecutionResult.Type.WARNING)) {
+            return true;
+        }
+        return stopValue != null && stopValue.equals(executionResult.getValue());
+    }
+
+    void shutdown() {
+        pool.shutdown();
+    }
+
+}
@@ -10,6 +10,7 @@ import java.util.stream.Collectors;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
 import com.paypal.butterfly.api.Configuration;
+import com.paypal.butterfly.extensions.api.TreeCopier;
 
 /**
  * Butterfly configuration object
@@ -23,6 +24,18 @@ class ConfigurationImpl implements Configuration {
     private File outputFolder = null;
     private boolean zipOutput = false;
     private boolean modifyOriginalFolder = true;
+    private boolean parallelUtilities = false;
+    private int conditionsParallelism = 1;
+    private boolean incremental = false;
+    private boolean copyOnWrite = false;
+    private boolean overlay = false;
+    private int copyParallelism = TreeCopier.DEFAULT_PARALLELISM;
+    private long utilityTimeout = 0;
+    private long transformationTimeout = 0;
+    private int traceCapacity = ExecutionTrace.DEFAULT_CAPACITY;
+    private boolean traceFile = false;
+    private int retentionThreshold = 0;
+    private boolean conditionCache = true;
 
     private static final Pattern propertyNameRegex = Pattern.compile("^[a-zA-Z\\._-]*$");
 
@@ -149,9 +162,159 @@ class ConfigurationImpl implements Configuration {
         return modifyOriginalFolder;
     }
 
+    @Override
+    public boolean isParallelUtilities() {
+        return parallelUtilities;
+    }
+
+    @Override
+    public Configuration setParallelUtilities(boolean parallelUtilities) {
+        this.parallelUtilities = parallelUtilities;
+        return this;
+    }
+
+    @Override
+    public int getConditionsParallelism() {
+        return conditionsParallelism;
+    }
+
+    @Override
+    public Configuration setConditionsParallelism(int conditionsParallelism) {
+        if (conditionsParallelism < 1) {
+            throw new IllegalArgumentException("Conditions parallelism must be greater than zero");
+        }
+        this.conditionsParallelism = conditionsParallelism;
+        return this;
+    }
+
+    @Override
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    @Override
+    public Configuration setIncremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    @Override
+    public boolean isCopyOnWrite() {
+        return copyOnWrite;
+    }
+
+    @Override
+    public Configuration setCopyOnWrite(boolean copyOnWrite) {
+        this.copyOnWrite = copyOnWrite;
+        return this;
+    }
+
+    @Override
+    public boolean isOverlay() {
+        return overlay;
+    }
+
+    @Override
+    public Configuration setOverlay(boolean overlay) {
+        this.overlay = overlay;
+        return this;
+    }
+
+    @Override
+    public int getCopyParallelism() {
+        return copyParallelism;
+    }
+
+    @Override
+    public Configuration setCopyParallelism(int copyParallelism) {
+        if (copyParallelism < 1) {
+            throw new IllegalArgumentException("Copy parallelism must be greater than zero");
+        }
+        this.copyParallelism = copyParallelism;
+        return this;
+    }
+
+    @Override
+    public long getUtilityTimeout() {
+        return utilityTimeout;
+    }
+
+    @Override
+    public Configuration setUtilityTimeout(long utilityTimeout) {
+        if (utilityTimeout < 0) {
+            throw new IllegalArgumentException("Utility timeout cannot be negative");
+        }
+        this.utilityTimeout = utilityTimeout;
+        return this;
+    }
+
+    @Override
+    public long getTransformationTimeout() {
+        return transformationTimeout;
+    }
+
+    @Override
+    public Configuration setTransformationTimeout(long transformationTimeout) {
+        if (transformationTimeout < 0) {
+            throw new IllegalArgumentException("Transformation timeout cannot be negative");
+        }
+        this.transformationTimeout = transformationTimeout;
+        return this;
+    }
+
+    @Override
+    public int getTraceCapacity() {
+        return traceCapacity;
+    }
+
+    @Override
+    public Configuration setTraceCapacity(int traceCapacity) {
+        if (traceCapacity < 0) {
+            throw new IllegalArgumentException("Trace capacity cannot be negative");
+        }
+        this.traceCapacity = traceCapacity;
+        return this;
+    }
+
+    @Override
+    public boolean isTraceFile() {
+        return traceFile;
+    }
+
+    @Override
+    public Configuration setTraceFile(boolean traceFile) {
+        this.traceFile = traceFile;
+        return this;
+    }
+
+    @Override
+    public int getRetentionThreshold() {
+        return retentionThreshold;
+    }
+
+    @Override
+    public Configuration setRetentionThreshold(int retentionThreshold) {
+        if (retentionThreshold < 0) {
+            throw new IllegalArgumentException("Retention threshold cannot be negative");
+        }
+        this.retentionThreshold = retentionThreshold;
+        return this;
+    }
+
+    @Override
+    public boolean isConditionCache() {
+        return conditionCache;
+    }
+
+    @Override
+    public Configuration setConditionCache(boolean conditionCache) {
+        this.conditionCache = conditionCache;
+        return this;
+    }
+
     @Override
     public String toString() {
-        return String.format("{ properties: %s, outputFolder: %s, zipOutput: %s, modifyOriginalFolder: %s}", properties, outputFolder, zipOutput, modifyOriginalFolder);
+        return String.format("{ properties: %s, outputFolder: %s, zipOutput: %s, modifyOriginalFolder: %s, parallelUtilities: %s, conditionsParallelism: %s, incremental: %s, copyOnWrite: %s, overlay: %s, copyParallelism: %s, utilityTimeout: %s, transformationTimeout: %s, traceCapacity: %s, traceFile: %s, retentionThreshold: %s, conditionCache: %s}", properties, outputFolder, zipOutput, modifyOriginalFolder, parallelUtilities, conditionsParallelism, incremental, copyOnWrite, overlay, copyParallelism, utilityTimeout, transformationTimeout, traceCapacity, traceFile, retentionThreshold, conditionCache);
     }
 
     @Override
@@ -176,6 +339,42 @@ class ConfigurationImpl implements Configuration {
         if(this.modifyOriginalFolder != configuration.isModifyOriginalFolder()) {
             return false;
         }
+        if(this.parallelUtilities != configuration.isParallelUtilities()) {
+            return false;
+        }
+        if(this.conditionsParallelism != configuration.getConditionsParallelism()) {
+            return false;
+        }
+        if(this.incremental != configuration.isIncremental()) {
+            return false;
+        }
+        if(this.copyOnWrite != configuration.isCopyOnWrite()) {
+            return false;
+        }
+        if(this.overlay != configuration.isOverlay()) {
+            return false;
+        }
+        if(this.copyParallelism != configuration.getCopyParallelism()) {
+            return false;
+        }
+        if(this.utilityTimeout != configuration.getUtilityTimeout()) {
+            return false;
+        }
+        if(this.transformationTimeout != configuration.getTransformationTimeout()) {
+            return false;
+        }
+        if(this.traceCapacity != configuration.getTraceCapacity()) {
+            return false;
+        }
+        if(this.traceFile != configuration.isTraceFile()) {
+            return false;
+        }
+        if(this.retentionThreshold != configuration.getRetentionThreshold()) {
+            return false;
+        }
+        if(this.conditionCache != configuration.isConditionCache()) {
+            return false;
+        }
         if (this.outputFolder == null && configuration.getOutputFolder() != null) {
             return false;
         }
@@ -190,7 +389,7 @@ class ConfigurationImpl implements Configuration {
 
     @Override
     public int hashCode() {
-        return new HashCodeBuilder().append(this.outputFolder).append(this.zipOutput).append(this.modifyOriginalFolder).toHashCode();
+        return new HashCodeBuilder().append(this.outputFolder).append(this.zipOutput).append(this.modifyOriginalFolder).append(this.parallelUtilities).append(this.conditionsParallelism).append(this.incremental).append(this.copyOnWrite).append(this.overlay).append(this.copyParallelism).append(this.utilityTimeout).append(this.transformationTimeout).append(this.traceCapacity).append(this.traceFile).append(this.retentionThreshold).append(this.conditionCache).toHashCode();
     }
 
 }
@@ -0,0 +1,363 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.extensions.api.*;
+import com.paypal.butterfly.extensions.api.utilities.ResultCondition;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Array;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Releases large transformation context values from memory, as soon as no transformation utility refers to them any longer.
+ * <br>
+ * Before utilities are performed, they are analyzed, together with their children, to find out the last top level
+ * utility that refers to each result or attribute, via {@code dependsOn}, {@code executeIf}, {@code executeUnless},
+ * {@code set}, {@code absolute}, files attributes, loops attributes and result conditions. After that utility is performed,
+ * or right away, if nobody refers to it, or if it was produced after its last reference, a value is released if it is
+ * a collection, map or array with more elements than the retention threshold:
+ * <ol>
+ *     <li>Attributes are spilled to disk, in a temporary folder, being read back from it, if they are ever requested again.
+ *     They are also softly referenced, so they are read back from memory, unless the garbage collector has reclaimed them.
+ *     Since what is read back from disk is a copy, only immutable attributes, such as {@link FileSet}, are spilled,
+ *     otherwise changes made to them after they have been released would be lost. Any other attribute is kept in memory.</li>
+ *     <li>Results keep their types, details, exceptions and warnings, which is all dependency checks, result conditions
+ *     and upgrade checkpoints look at, but have their values replaced by a short summary.</li>
+ * </ol>
+ * Attributes read during execution, although not declared, are still honored, since spilled attributes are read back from disk.
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class ContextRetention {
+
+    private static final Logger logger = LoggerFactory.getLogger(ContextRetention.class);
+
+    // Used while utilities are performed concurrently, in which case only values nobody refers to are released right away
+    private static final int UNKNOWN_INDEX = -1;
+
+    private final int threshold;
+
+    // Used to read spilled attributes back, so that their classes are found even if they come from the extension
+    private final ClassLoader classLoader;
+
+    // Index of the last top level utility referring to each result or attribute
+    private final Map<String, Integer> lastReferences = new HashMap<>();
+
+    // Results and attributes whose last reference is each top level utility
+    private final List<List<String>> releasedAfter;
+
+    private volatile int currentIndex = UNKNOWN_INDEX;
+
+    private final AtomicLong spilledCount = new AtomicLong();
+
+    // Created when the first value is spilled
+    private File spillFolder;
+
+    /**
+     * Analyzes a list of top level transformation utilities, to find out when
+     * each result or attribute they refer to is no longer needed
+     *
+     * @param utilities the top level transformation utilities
+     * @param threshold the size above which collections, maps and arrays are released
+     * @param classLoader the class loader used to read spilled attributes back, usually the transformation template one
+     * @throws IllegalArgumentException if {@code threshold} is smaller than 1
+     */
+    ContextRetention(List<TransformationUtility> utilities, int threshold, ClassLoader classLoader) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("Retention threshold must be greater than zero");
+        }
+        this.threshold = threshold;
+        this.classLoader = classLoader;
+
+        for (int i = 0; i < utilities.size(); i++) {
+            Set<String> references = new HashSet<>();
+            addReferences(utilities.get(i), references);
+            for (String name : references) {
+                lastReferences.put(name, i);
+            }
+        }
+        releasedAfter = new ArrayList<>(utilities.size());
+        for (int i = 0; i < utilities.size(); i++) {
+            releasedAfter.add(new ArrayList<>());
+        }
+        lastReferences.forEach((name, index) -> releasedAfter.get(index).add(name));
+    }
+
+    /*
+     * Collects the results and attributes the utility, and its children, if any, refer to
+     */
+    private static void addReferences(TransformationUtility utility, Set<String> references) {
+        if (utility == null) {
+            return;
+        }
+        references.addAll(utility.getDependencies());
+        references.addAll(utility.getLatePropertiesAttributes().values());
+        addAll(references, utility.getIfConditionAttributeName(), utility.getUnlessConditionAttributeName(), utility.getAbsoluteFileFromContextAttribute());
+        addReferences(utility.getUtilityCondition(), references);
+
+        if (utility instanceof ResultCondition) {
+            addAll(references, ((ResultCondition) utility).getUtilityName());
+        }
+        if (utility instanceof TransformationUtilityLoop) {
+            TransformationUtilityLoop loop = (TransformationUtilityLoop) utility;
+            addAll(references, loop.getAttribute());
+            addReferences(loop.getCondition(), references);
+            addReferences(loop.getTemplate(), references);
+        } else if (utility instanceof MultipleOperations) {
+            addAll(references, ((MultipleOperations) utility).getFilesAttributes());
+            addReferences(((MultipleOperations) utility).getTemplateOperation(), references);
+        } else if (utility instanceof FilterFiles) {
+            addAll(references, ((FilterFiles) utility).getFilesAttributes());
+            addReferences(((FilterFiles) utility).getConditionTemplate(), references);
+        } else if (utility instanceof MultipleConditions) {
+            addAll(references, ((MultipleConditions) utility).getFilesAttributes());
+            addReferences(((MultipleConditions) utility).getConditionTemplate(), references);
+        } else if (utility instanceof TransformationUtilityParent) {
+            for (TransformationUtility child : ((TransformationUtilityParent) utility).getChildren()) {
+                addReferences(child, references);
+            }
+        }
+    }
+
+    private static void addAll(Set<String> set, String... names) {
+        if (names != null) {
+            for (String name : names) {
+                if (name != null) {
+                    set.add(name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the index of the top level utility being performed,
+     * or {@code -1}, if utilities are being performed concurrently
+     *
+     * @param currentIndex the index of the top level utility being performed
+     */
+    void setCurrentIndex(int currentIndex) {
+        this.currentIndex = currentIndex;
+    }
+
+    /**
+     * Returns the results and attributes no longer referred to after the given top level utility is performed
+     *
+     * @param index the index of the top level utility
+     * @return the results and attributes no longer referred to after the given top level utility is performed
+     */
+    List<String> getReleasedAfter(int index) {
+        return releasedAfter.get(index);
+    }
+
+    /**
+     * Returns true if no utility, from the one being performed on, refers to the given result or attribute
+     *
+     * @param name the result or attribute name
+     * @return true if no utility, from the one being performed on, refers to the given result or attribute
+     */
+    boolean isReleased(String name) {
+        Integer lastReference = lastReferences.get(name);
+        if (lastReference == null) {
+            return true;
+        }
+        int index = currentIndex;
+        return index != UNKNOWN_INDEX && lastReference < index;
+    }
+
+    /**
+     * Returns the attribute to be kept in the transformation context, which is a {@link SpilledAttribute},
+     * if the attribute is released and large, or the attribute itself otherwise
+     *
+     * @param name the attribute name
+     * @param attribute the attribute
+     * @return the attribute to be kept in the transformation context
+     */
+    Object retain(String name, Object attribute) {
+        return (isReleased(name) ? release(name, attribute) : attribute);
+    }
+
+    /**
+     * Returns the result to be kept in the transformation context, which is a compacted copy,
+     * if the result is released and its value is large, or the result itself otherwise
+     *
+     * @param name the result name
+     * @param result the result
+     * @return the result to be kept in the transformation context
+     */
+    PerformResult retain(String name, PerformResult result) {
+        return (isReleased(name) ? release(result) : result);
+    }
+
+    /**
+     * Spills the attribute to disk, if it is large and immutable,
+     * returning a {@link SpilledAttribute}, or the attribute itself otherwise
+     *
+     * @param name the attribute name
+     * @param attribute the attribute
+     * @return the attribute to be kept in the transformation context
+     */
+    Object release(String name, Object attribute) {
+        if (!isImmutable(attribute) || !isLarge(attribute)) {
+            return attribute;
+        }
+        try {
+            File file = new File(getSpillFolder(), spilledCount.incrementAndGet() + ".bin");
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                out.writeObject(attribute);
+            }
+            logger.debug("Transformation context attribute {} has been spilled to {}", name, file);
+            return new SpilledAttribute(name, file, attribute, classLoader);
+        } catch (IOException e) {
+            logger.warn("Transformation context attribute " + name + " could not be spilled to disk, and will be kept in memory", e);
+            return attribute;
+        }
+    }
+
+    /**
+     * Returns a copy of the result, without its value, if it is large, or the result itself otherwise
+     *
+     * @param result the result
+     * @return the result to be kept in the transformation context
+     */
+    PerformResult release(PerformResult result) {
+        if (result.getType() != PerformResult.Type.EXECUTION_RESULT || !(result.getExecutionResult() instanceof TUExecutionResult)) {
+            return result;
+        }
+        TUExecutionResult executionResult = (TUExecutionResult) result.getExecutionResult();
+        Object value = executionResult.getValue();
+        if (!isLarge(value)) {
+            return result;
+        }
+
+        TransformationUtility utility = executionResult.getSource();
+        String summary = String.format("%s with %d elements, released from memory", value.getClass().getSimpleName(), size(value));
+        TUExecutionResult compactedExecutionResult;
+        switch (executionResult.getType()) {
+            case VALUE:
+                compactedExecutionResult = TUExecutionResult.value(utility, executionResult.getDetails(), summary);
+                break;
+            case WARNING:
+                compactedExecutionResult = TUExecutionResult.warning(utility, executionResult.getDetails(), summary);
+                break;
+            case ERROR:
+                compactedExecutionResult = TUExecutionResult.error(utility, summary, executionResult.getException(), executionResult.getDetails());
+                break;
+            default:
+                return result;
+        }
+        executionResult.getWarnings().forEach(compactedExecutionResult::addWarning);
+
+        PerformResult compactedResult = PerformResult.executionResult(result.getSource(), compactedExecutionResult);
+        compactedResult.setDetails(result.getDetails());
+        result.getWarnings().forEach(compactedResult::addWarning);
+        return compactedResult;
+    }
+
+    /*
+     * Only immutable, and serializable, attributes can be spilled, since they are read back as copies
+     */
+    private static boolean isImmutable(Object value) {
+        return value instanceof FileSet;
+    }
+
+    private boolean isLarge(Object value) {
+        return size(value) > threshold;
+    }
+
+    private static int size(Object value) {
+        if (value instanceof Collection) {
+            return ((Collection) value).size();
+        }
+        if (value instanceof Map) {
+            return ((Map) value).size();
+        }
+        if (value != null && value.getClass().isArray()) {
+            return Array.getLength(value);
+        }
+        return 0;
+    }
+
+    private synchronized File getSpillFolder() throws IOException {
+        if (spillFolder == null) {
+            spillFolder = Files.createTempDirectory("butterfly-context-").toFile();
+        }
+        return spillFolder;
+    }
+
+    /**
+     * Deletes all spilled attributes. It must be called only
+     * once the transformation context is no longer needed
+     */
+    synchronized void close() {
+        if (spillFolder != null) {
+            FileUtils.deleteQuietly(spillFolder);
+            spillFolder = null;
+        }
+    }
+
+    /**
+     * A transformation context attribute spilled to disk, which is read back from it,
+     * unless the garbage collector has not reclaimed it yet
+     */
+    static final class SpilledAttribute {
+
+        private final String name;
+        private final File file;
+        private final ClassLoader classLoader;
+        private volatile SoftReference<Object> attribute;
+
+        private SpilledAttribute(String name, File file, Object attribute, ClassLoader classLoader) {
+            this.name = name;
+            this.file = file;
+            this.classLoader = classLoader;
+            this.attribute = new SoftReference<>(attribute);
+        }
+
+        Object get() {
+            Object value = attribute.get();
+            if (value == null) {
+                try (ObjectInputStream in = new ClassLoaderObjectInputStream(new BufferedInputStream(new FileInputStream(file)), classLoader)) {
+                    value = in.readObject();
+                } catch (IOException | ClassNotFoundException e) {
+                    throw new InternalException("Transformation context attribute " + name + " could not be read back from " + file, e);
+                }
+                attribute = new SoftReference<>(value);
+            }
+            return value;
+        }
+
+    }
+
+    /*
+     * Resolves classes via the given class loader, falling back to the default resolution
+     */
+    private static final class ClassLoaderObjectInputStream extends ObjectInputStream {
+
+        private final ClassLoader classLoader;
+
+        private ClassLoaderObjectInputStream(InputStream in, ClassLoader classLoader) throws IOException {
+            super(in);
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (classLoader != null) {
+                try {
+                    return Class.forName(desc.getName(), false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    // Falls back to the default resolution below
+                }
+            }
+            return super.resolveClass(desc);
+        }
+
+    }
+
+}
@@ -0,0 +1,317 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.extensions.api.TransformationContext;
+import com.paypal.butterfly.extensions.api.TransformationOperation;
+import com.paypal.butterfly.extensions.api.TransformationUtility;
+import com.paypal.butterfly.extensions.api.exception.TransformationUtilityException;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transformed application folder prepared in copy-on-write mode. Instead of copying
+ * every application file up front, the whole folder is cloned (reflinked) when the file system
+ * supports it, which is copy-on-write by itself. Otherwise, files are hard linked, and each hard link
+ * is replaced by an actual copy right before an operation changes its file, which keeps the original
+ * application files untouched. If hard links are not supported either, files are just copied.
+ * <br>
+ * Hard links are only used on file systems supporting the unix attribute view, since links are
+ * detected via their link count. That also allows a transformed application folder prepared
+ * by a previous transformation to be attached to, for example, when resuming an upgrade path.
+ * Hard links left untouched by the transformation are replaced by copies at its end,
+ * see {@link #detach()}, so the transformed application folder never shares files with the original one
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class CopyOnWriteFolder {
+
+    private static final Logger logger = LoggerFactory.getLogger(CopyOnWriteFolder.class);
+
+    private static final long REFLINK_TIMEOUT_MINUTES = 30;
+
+    enum Mode {
+        REFLINK, HARD_LINK, COPY
+    }
+
+    private final File transformedAppFolder;
+
+    private Mode mode;
+
+    // Number of files hard linked when preparing the folder
+    private long linkedFilesCount = 0;
+
+    // Whether files are still being hard linked while preparing the folder
+    private boolean linking;
+
+    // Set once all hard links left in the folder have been replaced by copies
+    private volatile boolean allLinksBroken = false;
+
+    private CopyOnWriteFolder(File transformedAppFolder, Mode mode) {
+        this.transformedAppFolder = transformedAppFolder;
+        this.mode = mode;
+    }
+
+    /**
+     * Prepares the transformed application folder, which must already exist and be empty,
+     * with the same content as the original application folder
+     *
+     * @param applicationFolder the original application folder
+     * @param transformedAppFolder the transformed application folder
+     * @return the transformed application folder prepared in copy-on-write mode
+     * @throws IOException if the transformed application folder could not be prepared
+     */
+    static CopyOnWriteFolder prepare(File applicationFolder, File transformedAppFolder) throws IOException {
+        if (reflink(applicationFolder, transformedAppFolder)) {
+            return new CopyOnWriteFolder(transformedAppFolder, Mode.REFLINK);
+        }
+
+        CopyOnWriteFolder copyOnWriteFolder = new CopyOnWriteFolder(transformedAppFolder, (isUnixViewSupported(transformedAppFolder) ? Mode.HARD_LINK : Mode.COPY));
+        copyOnWriteFolder.linkTree(applicationFolder.toPath(), transformedAppFolder.toPath());
+        return copyOnWriteFolder;
+    }
+
+    /**
+     * Attaches to a transformed application folder prepared, in copy-on-write mode,
+     * by a previous transformation, so that its hard links are replaced by copies
+     * before operations change their files
+     *
+     * @param transformedAppFolder the transformed application folder
+     * @return the transformed application folder attached to in copy-on-write mode
+     */
+    static CopyOnWriteFolder attach(File transformedAppFolder) {
+        return new CopyOnWriteFolder(transformedAppFolder, (isUnixViewSupported(transformedAppFolder) ? Mode.HARD_LINK : Mode.COPY));
+    }
+
+    Mode getMode() {
+        return mode;
+    }
+
+    long getLinkedFilesCount() {
+        return linkedFilesCount;
+    }
+
+    /**
+     * Replaces by copies the hard links a transformation utility is about to change.
+     * If the utility is an operation confined to a file, only that file, or files under it,
+     * if it is a folder, are replaced. Other utilities confined to a file, or overlay aware,
+     * only read files, so nothing is replaced for them. Otherwise, since there is no way to know
+     * which files the utility is going to change, for example running a Maven goal,
+     * all hard links left in the transformed application folder are replaced
+     *
+     * @param utility the transformation utility about to be performed
+     * @param transformationContext the transformation context
+     * @throws TransformationUtilityException if any hard link could not be replaced by a copy
+     */
+    void beforeUtility(TransformationUtility utility, TransformationContext transformationContext) throws TransformationUtilityException {
+        if (mode != Mode.HARD_LINK || allLinksBroken) {
+            return;
+        }
+        boolean isTO = utility instanceof TransformationOperation;
+        if (!isTO && (utility.isConfinedToFile() || utility.isOverlayAware())) {
+            return;
+        }
+        if (!isTO || !utility.isConfinedToFile()) {
+            breakLinks(transformedAppFolder);
+            allLinksBroken = true;
+            return;
+        }
+
+        File targetFile;
+        try {
+            targetFile = utility.getAbsoluteFile(transformedAppFolder, transformationContext);
+        } catch (TransformationUtilityException e) {
+            // The operation itself is going to fail the same way, without changing any file
+            return;
+        }
+        breakLinks(targetFile);
+    }
+
+    /**
+     * Replaces by copies all hard links left in the transformed application folder,
+     * so that none of its files is shared with the original application folder anymore.
+     * From then on, operations are performed against the transformed application folder
+     * as if it had been prepared by copying files
+     *
+     * @throws TransformationUtilityException if any hard link could not be replaced by a copy
+     */
+    void detach() throws TransformationUtilityException {
+        breakLinks(transformedAppFolder);
+        allLinksBroken = true;
+    }
+
+    /**
+     * Replaces by a copy the hard link of a file, or the ones under it, if it is a folder
+     *
+     * @param file the file or folder whose hard links should be replaced
+     * @throws TransformationUtilityException if any hard link could not be replaced by a copy
+     */
+    void breakLinks(File file) throws TransformationUtilityException {
+        if (mode != Mode.HARD_LINK || allLinksBroken) {
+            return;
+        }
+        Path path = file.toPath();
+        try {
+            if (Files.isRegularFile(path, LinkOption.NOFOLLOW_LINKS)) {
+                breakLink(path);
+            } else if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                        if (attrs.isRegularFile()) {
+                            breakLink(file);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+        } catch (IOException e) {
+            throw new TransformationUtilityException("File " + file + " could not be detached from the original application file", e);
+        }
+    }
+
+    /*
+     * Replaces a hard link by a copy of the file it refers to, as long as its link count is greater than one.
+     * The copy is written next to the link, and then moved over it, so the original file is never written to.
+     * This is synchronized to prevent two threads from replacing the same link
+     */
+    private synchronized void breakLink(Path file) throws IOException {
+        Object linkCount = Files.getAttribute(file, "unix:nlink", LinkOption.NOFOLLOW_LINKS);
+        if (!(linkCount instanceof Integer) || (Integer) linkCount <= 1) {
+            return;
+        }
+        Path copy = file.resolveSibling(file.getFileName() + ".butterfly-cow");
+        Files.copy(file, copy, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        try {
+            Files.move(copy, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(copy, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /*
+     * Hard links all regular files from the original application folder, creating the same
+     * folders structure. Symbolic links are followed, and their targets copied, as done by
+     * FileUtils.copyDirectory, except for symbolic links to one of their own parent folders,
+     * which are skipped, since following them would never end. If a hard link cannot be created,
+     * for example because the folders are in different file systems, that file and the following ones are copied instead
+     */
+    private void linkTree(Path source, Path target) throws IOException {
+        linking = (mode == Mode.HARD_LINK);
+        Files.walkFileTree(source, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Path targetFile = target.resolve(source.relativize(file).toString());
+                if (linking && attrs.isRegularFile() && !Files.isSymbolicLink(file)) {
+                    try {
+                        Files.createLink(targetFile, file);
+                        linkedFilesCount++;
+                        return FileVisitResult.CONTINUE;
+                    } catch (UnsupportedOperationException | IOException e) {
+                        logger.debug("Hard links are not supported, application files will be copied instead", e);
+                        linking = false;
+                    }
+                }
+                Files.copy(file, targetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                if (exc instanceof FileSystemLoopException) {
+                    logger.warn("Symbolic link {} refers to one of its parent folders, and has not been followed", file);
+                    return FileVisitResult.CONTINUE;
+                }
+                throw exc;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                Files.setLastModifiedTime(target.resolve(source.relativize(dir).toString()), Files.getLastModifiedTime(dir));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        // Links created before a failure are still replaced before changed
+        if (linkedFilesCount == 0) {
+            mode = Mode.COPY;
+        }
+    }
+
+    static boolean isUnixViewSupported(File folder) {
+        try {
+            return Files.getFileStore(folder.toPath()).supportsFileAttributeView("unix");
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /*
+     * Clones the original application folder using the copy-on-write support of the file system,
+     * via GNU cp, returning false if that is not supported, in which case the transformed application
+     * folder is left empty. Symbolic links are followed, as done by FileUtils.copyDirectory.
+     * Since symbolic links to folders could make cp run into a cycle, the folder is not cloned if it has any
+     */
+    private static boolean reflink(File applicationFolder, File transformedAppFolder) throws IOException {
+        if (!System.getProperty("os.name", "").toLowerCase().startsWith("linux") || hasFolderSymbolicLinks(applicationFolder.toPath())) {
+            return false;
+        }
+        ProcessBuilder processBuilder = new ProcessBuilder("cp", "-R", "-L", "-T", "--reflink=always", "--preserve=mode,timestamps",
+                applicationFolder.getAbsolutePath(), transformedAppFolder.getAbsolutePath());
+        processBuilder.redirectErrorStream(true);
+        processBuilder.redirectOutput(new File("/dev/null"));
+        boolean cloned;
+        try {
+            Process process = processBuilder.start();
+            cloned = process.waitFor(REFLINK_TIMEOUT_MINUTES, TimeUnit.MINUTES) && process.exitValue() == 0;
+            if (!cloned) {
+                process.destroyForcibly();
+            }
+        } catch (IOException e) {
+            logger.debug("Application folder could not be cloned", e);
+            cloned = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalException("Interrupted while cloning the application folder", e);
+        }
+        if (!cloned) {
+            FileUtils.cleanDirectory(transformedAppFolder);
+        }
+        return cloned;
+    }
+
+    /*
+     * Returns true if any symbolic link under the folder refers to a folder, without following any of them
+     */
+    private static boolean hasFolderSymbolicLinks(Path folder) throws IOException {
+        boolean[] found = {false};
+        Files.walkFileTree(folder, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isSymbolicLink() && Files.isDirectory(file)) {
+                    found[0] = true;
+                    return FileVisitResult.TERMINATE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return found[0];
+    }
+
+}
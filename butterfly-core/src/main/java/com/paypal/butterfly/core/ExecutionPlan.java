@@ -0,0 +1,224 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.extensions.api.TransformationTemplate;
+import com.paypal.butterfly.extensions.api.TransformationUtility;
+import com.paypal.butterfly.extensions.api.TransformationUtilityParent;
+
+import org.w3c.dom.Node;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpression;
+import java.io.Closeable;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.text.Format;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+
+/**
+ * Compiled transformation template, which can be shared by many transformations,
+ * concurrent or not, saving each one of them from instantiating the template again,
+ * which would build all its utilities again. Only templates declared as reusable,
+ * see {@link TransformationTemplate#isReusable()}, are supposed to be compiled.
+ * <br>
+ * Because transformation utilities hold per transformation state (whether they have been performed,
+ * properties set during transformation time, children created during transformation time, etc),
+ * the template utilities are kept as a prototype, validated once, and never performed.
+ * Every transformation performs its own copy of them instead, in which every reference from one
+ * utility to another (parents, children, conditions, loops and multiple operations templates, etc)
+ * refers to the copy, while all other state, which is set when the template is defined, is shared.
+ * The template itself is shared as well, and is supposed to not change after being instantiated.
+ * <br>
+ * Standard mutable collections and maps ({@link ArrayList}, {@link HashMap}, etc), and atomic counters, are copied too.
+ * Templates whose utilities hold references to other utilities in any other kind of collection or map cannot be compiled.
+ * <br>
+ * Helper objects that are not thread safe, such as XPath expressions and DOM nodes, must not be shared either.
+ * Utilities holding them must create their own in {@link TransformationUtility#clone()}, as the XPath utilities do,
+ * otherwise their templates cannot be compiled.
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class ExecutionPlan {
+
+    // Instance fields of each transformation utility class, and its super classes,
+    // that might refer to other utilities, to mutable collections, or to atomic counters
+    private static final ClassValue<Field[]> REFERENCE_FIELDS = new ClassValue<Field[]>() {
+        @Override
+        protected Field[] computeValue(Class<?> clazz) {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    Class<?> type = field.getType();
+                    if (Modifier.isStatic(modifiers) || type.isPrimitive() || type.isEnum() || type == String.class || type == Boolean.class || type == Character.class
+                            || Number.class.isAssignableFrom(type) && type.getPackage() == Number.class.getPackage()) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    fields.add(field);
+                }
+            }
+            return fields.toArray(new Field[0]);
+        }
+    };
+
+    // Helper types known to not be thread safe, which cannot be shared among copies.
+    // This is only a safety net, since reusable templates are expected to not share any mutable object
+    private static final Class<?>[] NOT_THREAD_SAFE_TYPES = {
+            XPathExpression.class, XPath.class, Node.class, DocumentBuilder.class,
+            javax.xml.transform.Transformer.class, Format.class, Matcher.class, Closeable.class
+    };
+
+    private final TransformationTemplate template;
+
+    /**
+     * Compiles a transformation template into an execution plan
+     *
+     * @param template the transformation template, which must not be used for anything else afterwards
+     * @throws InternalException if the template has already been performed, or
+     * if its utilities cannot be copied
+     */
+    ExecutionPlan(TransformationTemplate template) {
+        if (template == null) {
+            throw new IllegalArgumentException("Transformation template cannot be null");
+        }
+        this.template = template;
+
+        // Copying the utilities once validates the whole utilities tree
+        Map<Object, Object> copies = new IdentityHashMap<>();
+        copyAll(template.getUtilities(), copies);
+        for (Object object : copies.keySet()) {
+            if (object instanceof TransformationUtility && ((TransformationUtility) object).hasBeenPerformed()) {
+                throw new InternalException("Transformation template " + template.getName() + " cannot be compiled, since utility " + ((TransformationUtility) object).getName() + " has already been performed");
+            }
+        }
+    }
+
+    /**
+     * Returns the transformation template
+     *
+     * @return the transformation template
+     */
+    TransformationTemplate getTemplate() {
+        return template;
+    }
+
+    /**
+     * Returns a new copy of the template utilities, to be performed by one single transformation.
+     * Copies are created one at a time, since helper objects created by {@link TransformationUtility#clone()}
+     * are usually created out of the prototype ones, which might not be thread safe even for reading
+     *
+     * @return a new copy of the template utilities
+     */
+    synchronized List<TransformationUtility> newUtilities() {
+        return copyAll(template.getUtilities(), new IdentityHashMap<>());
+    }
+
+    private static List<TransformationUtility> copyAll(List<TransformationUtility> utilities, Map<Object, Object> copies) {
+        List<TransformationUtility> utilitiesCopy = new ArrayList<>(utilities.size());
+        for (TransformationUtility utility : utilities) {
+            utilitiesCopy.add((TransformationUtility) copy(utility, copies));
+        }
+        return utilitiesCopy;
+    }
+
+    /*
+     * Returns the copy of the given object, if it is a transformation utility, or an object referring
+     * to one, or the object itself otherwise. Parents that are not utilities, such as the template, are shared
+     */
+    private static Object copy(Object object, Map<Object, Object> copies) {
+        if (object == null || object instanceof TransformationUtilityParent && !(object instanceof TransformationUtility)) {
+            return object;
+        }
+        Object copy = copies.get(object);
+        if (copy != null) {
+            return copy;
+        }
+
+        if (object instanceof TransformationUtility) {
+            TransformationUtility utilityCopy = ((TransformationUtility) object).clone();
+            copies.put(object, utilityCopy);
+            for (Field field : REFERENCE_FIELDS.get(object.getClass())) {
+                try {
+                    Object value = field.get(object);
+                    Object valueCopy = copy(value, copies);
+                    if (valueCopy != value) {
+                        field.set(utilityCopy, valueCopy);
+                    } else if (value != null && field.get(utilityCopy) == value && isNotThreadSafe(value)) {
+                        throw new InternalException("Field " + field + " holds a " + value.getClass().getName() + ", which is not thread safe, and is not recreated when cloning the utility");
+                    }
+                } catch (IllegalAccessException e) {
+                    throw new InternalException("Field " + field + " could not be copied", e);
+                }
+            }
+            return utilityCopy;
+        }
+
+        if (object instanceof Collection || object instanceof Map) {
+            copy = copyContainer(object, copies);
+        } else if (object instanceof AtomicBoolean) {
+            copy = new AtomicBoolean(((AtomicBoolean) object).get());
+        } else if (object instanceof AtomicInteger) {
+            copy = new AtomicInteger(((AtomicInteger) object).get());
+        } else if (object instanceof AtomicLong) {
+            copy = new AtomicLong(((AtomicLong) object).get());
+        } else if (object instanceof TransformationUtility[]) {
+            Object[] array = (Object[]) object;
+            Object[] arrayCopy = (Object[]) Array.newInstance(array.getClass().getComponentType(), array.length);
+            for (int i = 0; i < array.length; i++) {
+                arrayCopy[i] = copy(array[i], copies);
+            }
+            copy = arrayCopy;
+        } else {
+            copy = object;
+        }
+        copies.put(object, copy);
+        return copy;
+    }
+
+    private static boolean isNotThreadSafe(Object object) {
+        for (Class<?> type : NOT_THREAD_SAFE_TYPES) {
+            if (type.isInstance(object)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Copies standard mutable collections and maps, since they
+     * might be changed during transformation time
+     */
+    private static Object copyContainer(Object container, Map<Object, Object> copies) {
+        Class<?> type = container.getClass();
+        if (type == ArrayList.class || type == LinkedList.class || type == HashSet.class || type == LinkedHashSet.class) {
+            Collection<Object> collectionCopy = (type == ArrayList.class ? new ArrayList<>() : type == LinkedList.class ? new LinkedList<>() : type == HashSet.class ? new HashSet<>() : new LinkedHashSet<>());
+            for (Object element : (Collection<?>) container) {
+                collectionCopy.add(copy(element, copies));
+            }
+            return collectionCopy;
+        }
+        if (type == HashMap.class || type == LinkedHashMap.class) {
+            Map<Object, Object> mapCopy = (type == HashMap.class ? new HashMap<>() : new LinkedHashMap<>());
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) container).entrySet()) {
+                mapCopy.put(entry.getKey(), copy(entry.getValue(), copies));
+            }
+            return mapCopy;
+        }
+
+        Collection<?> values = (container instanceof Map ? ((Map<?, ?>) container).values() : (Collection<?>) container);
+        for (Object value : values) {
+            if (value instanceof TransformationUtility) {
+                throw new InternalException("Transformation utilities held by " + type.getName() + " cannot be copied");
+            }
+        }
+        return container;
+    }
+
+}
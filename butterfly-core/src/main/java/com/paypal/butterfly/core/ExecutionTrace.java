@@ -0,0 +1,290 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.extensions.api.PerformResult;
+import com.paypal.butterfly.extensions.api.TOExecutionResult;
+import com.paypal.butterfly.extensions.api.TUExecutionResult;
+import com.paypal.butterfly.extensions.api.TransformationOperation;
+import com.paypal.butterfly.extensions.api.TransformationUtility;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records, in a ring buffer, one fixed-size binary record per transformation utility performed,
+ * holding its order path, its name, its perform and execution result types, when it started and ended,
+ * as given by {@link System#nanoTime()}, and how many bytes its target file had after it was performed.
+ * Once the buffer is full, the oldest records are overwritten.
+ * <br>
+ * Records are written straight into arrays allocated when the trace is created, so recording
+ * does not allocate memory, and is safe to be done concurrently. Order paths are recorded up to
+ * {@link #MAX_ORDER_DEPTH} levels, and each level is capped at 65535.
+ * <br>
+ * A small trace is kept by default, so that the last utilities performed can be logged
+ * if the transformation is aborted. Only if asked for, the trace is written to a binary file,
+ * next to the transformed application folder, and can be turned into JSON,
+ * or into a flame graph, by {@link ExecutionTraceDecoder}
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class ExecutionTrace {
+
+    static final String FILE_SUFFIX = ".trace";
+
+    static final int MAGIC = 0x42465452;
+    static final int VERSION = 1;
+
+    static final int DEFAULT_CAPACITY = 256;
+
+    static final int MAX_ORDER_DEPTH = 8;
+
+    // Used when a record has no perform, or execution, result type
+    static final int NO_TYPE = 0xFF;
+
+    // Number of longs per record, which are: the first four order levels,
+    // the last four order levels, result types, start, end and bytes
+    private static final int RECORD_LONGS = 6;
+
+    private final int capacity;
+    private final int mask;
+    private final long[] records;
+    private final String[] utilityNames;
+    private final AtomicLong recordsCount = new AtomicLong();
+    private final boolean recordingBytes;
+
+    /**
+     * Creates an execution trace that records target file sizes
+     *
+     * @param capacity the maximum number of records kept, rounded up to a power of two
+     * @throws IllegalArgumentException if {@code capacity} is smaller than 1
+     */
+    ExecutionTrace(int capacity) {
+        this(capacity, true);
+    }
+
+    /**
+     * Creates an execution trace
+     *
+     * @param capacity the maximum number of records kept, rounded up to a power of two
+     * @param recordingBytes whether target file sizes are supposed to be measured and recorded,
+     *                       which is only worth it if the trace is going to be written to a file
+     * @throws IllegalArgumentException if {@code capacity} is smaller than 1
+     */
+    ExecutionTrace(int capacity, boolean recordingBytes) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Execution trace capacity must be greater than zero");
+        }
+        this.capacity = (capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1);
+        mask = this.capacity - 1;
+        records = new long[this.capacity * RECORD_LONGS];
+        utilityNames = new String[this.capacity];
+        this.recordingBytes = recordingBytes;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    boolean isRecordingBytes() {
+        return recordingBytes;
+    }
+
+    /**
+     * Returns how many records have been recorded, including the ones already overwritten
+     *
+     * @return how many records have been recorded
+     */
+    long getRecordsCount() {
+        return recordsCount.get();
+    }
+
+    /**
+     * Records a transformation utility that has been performed
+     *
+     * @param utility the transformation utility
+     * @param order the utility order path, such as {@code 3.1.2}, or {@code -} for conditions evaluated against multiple files
+     * @param result the utility perform result, or null, if performing it threw an exception
+     * @param start when the utility started, as given by {@link System#nanoTime()}
+     * @param end when the utility ended, as given by {@link System#nanoTime()}
+     * @param bytes how many bytes its target file had after it was performed, or zero, if not applicable
+     */
+    void record(TransformationUtility utility, String order, PerformResult result, long start, long end, long bytes) {
+        long sequence = recordsCount.getAndIncrement();
+        int slot = (int) (sequence & mask);
+        int offset = slot * RECORD_LONGS;
+
+        long firstLevels = 0;
+        long lastLevels = 0;
+        int depth = 0;
+        int level = 0;
+        boolean digits = false;
+        int length = order.length();
+        for (int i = 0; i <= length; i++) {
+            char c = (i < length ? order.charAt(i) : '.');
+            if (c >= '0' && c <= '9') {
+                level = Math.min(level * 10 + (c - '0'), 0xFFFF);
+                digits = true;
+            } else if (c == '.' && digits) {
+                if (depth < 4) {
+                    firstLevels |= (long) level << (16 * depth);
+                } else if (depth < MAX_ORDER_DEPTH) {
+                    lastLevels |= (long) level << (16 * (depth - 4));
+                }
+                depth++;
+                level = 0;
+                digits = false;
+            }
+        }
+
+        int performResultType = NO_TYPE;
+        int executionResultType = NO_TYPE;
+        if (result != null) {
+            performResultType = result.getType().ordinal();
+            if (result.getType() == PerformResult.Type.EXECUTION_RESULT && result.getExecutionResult() != null) {
+                executionResultType = ((Enum) result.getExecutionResult().getType()).ordinal();
+            }
+        }
+        long types = performResultType | executionResultType << 8 | (utility instanceof TransformationOperation ? 1 : 0) << 16 | (long) Math.min(depth, 0xFF) << 24;
+
+        records[offset] = firstLevels;
+        records[offset + 1] = lastLevels;
+        records[offset + 2] = types;
+        records[offset + 3] = start;
+        records[offset + 4] = end;
+        records[offset + 5] = bytes;
+        utilityNames[slot] = utility.getName();
+    }
+
+    /**
+     * Writes the records kept, from the oldest to the newest, to a binary file.
+     * Utility names are written once, in a table, and records refer to them by index.
+     * This is not supposed to be called while utilities are still being recorded
+     *
+     * @param traceFile the file the trace is written to
+     * @param requestId the id of the transformation request
+     * @throws IOException if the file could not be written
+     */
+    void write(File traceFile, String requestId) throws IOException {
+        long total = recordsCount.get();
+        int count = (int) Math.min(total, capacity);
+        long first = total - count;
+
+        Map<String, Integer> utilityIds = new HashMap<>();
+        String[] names = new String[count];
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            String name = utilityNames[(int) ((first + i) & mask)];
+            Integer id = utilityIds.get(name);
+            if (id == null) {
+                id = utilityIds.size();
+                utilityIds.put(name, id);
+                names[id] = name;
+            }
+            ids[i] = id;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(traceFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(requestId);
+            out.writeLong(total);
+            out.writeInt(utilityIds.size());
+            for (int i = 0; i < utilityIds.size(); i++) {
+                out.writeUTF(names[i]);
+            }
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                int offset = (int) ((first + i) & mask) * RECORD_LONGS;
+                out.writeLong(first + i);
+                out.writeInt(ids[i]);
+                for (int j = 0; j < RECORD_LONGS; j++) {
+                    out.writeLong(records[offset + j]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Describes the newest records kept, from the oldest to the newest, one per line,
+     * with the utility order path, name, perform and execution result types, and how long it took.
+     * This is not supposed to be called while utilities are still being recorded
+     *
+     * @param maxRecords the maximum number of records described
+     * @return the newest records kept, one per line
+     */
+    String describeLast(int maxRecords) {
+        long total = recordsCount.get();
+        int count = (int) Math.min(Math.min(total, capacity), maxRecords);
+        StringBuilder description = new StringBuilder();
+        for (long sequence = total - count; sequence < total; sequence++) {
+            int slot = (int) (sequence & mask);
+            int offset = slot * RECORD_LONGS;
+            long types = records[offset + 2];
+            String executionResult = executionResult(types);
+            description.append(String.format("\t%s\t%s\t%s%s\t%d ms%n",
+                    order(records[offset], records[offset + 1], types),
+                    utilityNames[slot],
+                    performResult(types),
+                    (executionResult == null ? "" : " (" + executionResult + ")"),
+                    TimeUnit.NANOSECONDS.toMillis(records[offset + 4] - records[offset + 3])));
+        }
+        return description.toString();
+    }
+
+    /*
+     * Returns the order path held by a record, such as 3.1.2, or - for conditions evaluated against multiple files
+     */
+    static String order(long firstLevels, long lastLevels, long types) {
+        int depth = (int) (types >>> 24 & 0xFF);
+        if (depth == 0) {
+            return "-";
+        }
+        StringBuilder order = new StringBuilder();
+        for (int i = 0; i < Math.min(depth, MAX_ORDER_DEPTH); i++) {
+            long levels = (i < 4 ? firstLevels : lastLevels);
+            if (i > 0) {
+                order.append('.');
+            }
+            order.append(levels >>> (16 * (i % 4)) & 0xFFFF);
+        }
+        return order.toString();
+    }
+
+    static boolean isOperation(long types) {
+        return (types >>> 16 & 1) == 1;
+    }
+
+    /*
+     * Returns the perform result type held by a record, or EXCEPTION, if performing the utility threw an exception
+     */
+    static String performResult(long types) {
+        int performResultType = (int) (types & 0xFF);
+        return (performResultType == NO_TYPE ? "EXCEPTION" : PerformResult.Type.values()[performResultType].name());
+    }
+
+    /*
+     * Returns the execution result type held by a record, or null, if it has none
+     */
+    static String executionResult(long types) {
+        int executionResultType = (int) (types >>> 8 & 0xFF);
+        if (executionResultType == NO_TYPE) {
+            return null;
+        }
+        return (isOperation(types) ? TOExecutionResult.Type.values()[executionResultType].name() : TUExecutionResult.Type.values()[executionResultType].name());
+    }
+
+    /**
+     * Returns the trace file of a transformed application folder,
+     * which is placed next to it
+     *
+     * @param transformedAppFolder the transformed application folder
+     * @return the trace file of a transformed application folder
+     */
+    static File getTraceFile(File transformedAppFolder) {
+        return new File(transformedAppFolder.getAbsoluteFile().getParentFile(), transformedAppFolder.getName() + FILE_SUFFIX);
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.paypal.butterfly.core;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes binary execution trace files, written next to transformed application
+ * folders, turning them into JSON, or into a flame graph, in the folded stacks format,
+ * which can be rendered by tools such as {@code flamegraph.pl} and speedscope.
+ * <br>
+ * In the flame graph, each utility is stacked on top of its parents, according to
+ * its order path, and its width is how long it took to be performed, in microseconds.
+ * Conditions evaluated against multiple files are not stacked on top of any parent.
+ * <br>
+ * It can also be run from the command line, as in
+ * {@code java com.paypal.butterfly.core.ExecutionTraceDecoder <trace file> [json|flamegraph]}
+ *
+ * @author agent
+ */
+public final class ExecutionTraceDecoder {
+
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    private ExecutionTraceDecoder() {
+    }
+
+    /**
+     * Decodes an execution trace file into JSON. Record start times are relative
+     * to the start of the oldest record kept
+     *
+     * @param traceFile the execution trace file
+     * @return the execution trace as JSON
+     * @throws IOException if the file could not be read, or is not an execution trace file
+     */
+    public static String toJson(File traceFile) throws IOException {
+        return gson.toJson(read(traceFile));
+    }
+
+    /**
+     * Decodes an execution trace file into a flame graph, in the folded stacks format
+     *
+     * @param traceFile the execution trace file
+     * @return the execution trace as a flame graph, in the folded stacks format
+     * @throws IOException if the file could not be read, or is not an execution trace file
+     */
+    public static String toFlameGraph(File traceFile) throws IOException {
+        Trace trace = read(traceFile);
+
+        // The latest utility performed with each order path, used to name the frames of its children
+        Map<String, String> frames = new HashMap<>();
+        Map<String, Long> stacks = new LinkedHashMap<>();
+        for (Record record : trace.records) {
+            StringBuilder stack = new StringBuilder();
+            if (!record.order.equals("-")) {
+                int dot = record.order.indexOf('.');
+                while (dot != -1) {
+                    String parentFrame = frames.get(record.order.substring(0, dot));
+                    if (parentFrame != null) {
+                        stack.append(parentFrame).append(';');
+                    }
+                    dot = record.order.indexOf('.', dot + 1);
+                }
+                frames.put(record.order, frame(record.utility));
+            }
+            stack.append(frame(record.utility));
+            stacks.merge(stack.toString(), TimeUnit.NANOSECONDS.toMicros(record.durationNanos), Long::sum);
+        }
+
+        StringBuilder flameGraph = new StringBuilder();
+        stacks.forEach((stack, micros) -> flameGraph.append(stack).append(' ').append(micros).append('\n'));
+        return flameGraph.toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2 || (args.length == 2 && !args[1].equals("json") && !args[1].equals("flamegraph"))) {
+            System.err.println("Usage: ExecutionTraceDecoder <trace file> [json|flamegraph]");
+            System.exit(1);
+        }
+        File traceFile = new File(args[0]);
+        System.out.print(args.length == 2 && args[1].equals("flamegraph") ? toFlameGraph(traceFile) : toJson(traceFile) + "\n");
+    }
+
+    // Semicolons separate frames in the folded stacks format, and spaces separate stacks from their values
+    private static String frame(String utilityName) {
+        return utilityName.replace(';', '_').replace(' ', '_');
+    }
+
+    private static Trace read(File traceFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(traceFile)))) {
+            if (in.readInt() != ExecutionTrace.MAGIC) {
+                throw new IOException(traceFile + " is not an execution trace file");
+            }
+            int version = in.readInt();
+            if (version != ExecutionTrace.VERSION) {
+                throw new IOException("Unsupported execution trace version " + version + " in " + traceFile);
+            }
+
+            Trace trace = new Trace();
+            trace.requestId = in.readUTF();
+            trace.recordsCount = in.readLong();
+            String[] utilityNames = new String[in.readInt()];
+            for (int i = 0; i < utilityNames.length; i++) {
+                utilityNames[i] = in.readUTF();
+            }
+
+            int count = in.readInt();
+            trace.droppedRecordsCount = trace.recordsCount - count;
+            trace.records = new ArrayList<>(count);
+            long firstStart = 0;
+            for (int i = 0; i < count; i++) {
+                Record record = new Record();
+                record.sequence = in.readLong();
+                record.utility = utilityNames[in.readInt()];
+                long firstLevels = in.readLong();
+                long lastLevels = in.readLong();
+                long types = in.readLong();
+                long start = in.readLong();
+                long end = in.readLong();
+                record.bytes = in.readLong();
+
+                if (i == 0) {
+                    firstStart = start;
+                }
+                record.startNanos = start - firstStart;
+                record.durationNanos = end - start;
+                record.order = ExecutionTrace.order(firstLevels, lastLevels, types);
+                record.type = (ExecutionTrace.isOperation(types) ? "operation" : "utility");
+                record.performResult = ExecutionTrace.performResult(types);
+                record.executionResult = ExecutionTrace.executionResult(types);
+                trace.records.add(record);
+            }
+            return trace;
+        } catch (EOFException | ArrayIndexOutOfBoundsException e) {
+            throw new IOException("Invalid execution trace file " + traceFile, e);
+        }
+    }
+
+    /*
+     * POJOs serialized to JSON
+     */
+
+    private static class Trace {
+        private String requestId;
+        private long recordsCount;
+        private long droppedRecordsCount;
+        private List<Record> records;
+    }
+
+    private static class Record {
+        private long sequence;
+        private String order;
+        private String utility;
+        private String type;
+        private String performResult;
+        private String executionResult;
+        private long startNanos;
+        private long durationNanos;
+        private long bytes;
+    }
+
+}
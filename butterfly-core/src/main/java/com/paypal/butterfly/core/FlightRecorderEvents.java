@@ -0,0 +1,93 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.api.TransformationRequest;
+import com.paypal.butterfly.extensions.api.PerformResult;
+import com.paypal.butterfly.extensions.api.TransformationUtility;
+import com.paypal.butterfly.extensions.api.upgrade.UpgradeStep;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Emits JDK Flight Recorder events for transformations, upgrade steps and utilities.
+ * Every event is started by a {@code begin} method, which returns an opaque event object,
+ * and concluded by the corresponding {@code end} method, which receives it back.
+ * {@code begin} methods return null whenever the event is not being recorded, in which case
+ * calling the {@code end} method is harmless, and cheap.
+ * <br>
+ * If the Java runtime has no JDK Flight Recorder, a no-op instance is used instead,
+ * without ever loading any JDK Flight Recorder class
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+abstract class FlightRecorderEvents {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecorderEvents.class);
+
+    private static final String JFR_EVENTS_CLASS_NAME = "com.paypal.butterfly.core.JfrFlightRecorderEvents";
+
+    private static final FlightRecorderEvents INSTANCE = createInstance();
+
+    private static FlightRecorderEvents createInstance() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (FlightRecorderEvents) Class.forName(JFR_EVENTS_CLASS_NAME).newInstance();
+        } catch (ClassNotFoundException | LinkageError e) {
+            logger.debug("JDK Flight Recorder is not available, no Butterfly events will be recorded");
+        } catch (InstantiationException | IllegalAccessException | RuntimeException e) {
+            logger.warn("JDK Flight Recorder events could not be set up, no Butterfly events will be recorded", e);
+        }
+        return new NoOpFlightRecorderEvents();
+    }
+
+    static FlightRecorderEvents getInstance() {
+        return INSTANCE;
+    }
+
+    abstract Object beginTransformation();
+
+    abstract void endTransformation(Object event, TransformationRequest transformationRequest, boolean successful);
+
+    abstract Object beginUpgradeStep();
+
+    abstract void endUpgradeStep(Object event, UpgradeStep upgradeStep, boolean successful);
+
+    abstract Object beginUtility();
+
+    abstract void endUtility(Object event, TransformationUtility utility, String order, PerformResult result, long bytesRead, long bytesWritten);
+
+    /*
+     * Used when JDK Flight Recorder is not available
+     */
+    private static class NoOpFlightRecorderEvents extends FlightRecorderEvents {
+
+        @Override
+        Object beginTransformation() {
+            return null;
+        }
+
+        @Override
+        void endTransformation(Object event, TransformationRequest transformationRequest, boolean successful) {
+        }
+
+        @Override
+        Object beginUpgradeStep() {
+            return null;
+        }
+
+        @Override
+        void endUpgradeStep(Object event, UpgradeStep upgradeStep, boolean successful) {
+        }
+
+        @Override
+        Object beginUtility() {
+            return null;
+        }
+
+        @Override
+        void endUtility(Object event, TransformationUtility utility, String order, PerformResult result, long bytesRead, long bytesWritten) {
+        }
+
+    }
+
+}
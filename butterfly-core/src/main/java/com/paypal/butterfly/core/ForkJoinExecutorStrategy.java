@@ -0,0 +1,50 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.api.ExecutorStrategy;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Executor strategy based on a work-stealing {@link ForkJoinPool}
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class ForkJoinExecutorStrategy implements ExecutorStrategy {
+
+    static final String NAME = "fork-join";
+
+    private final int parallelism;
+
+    private ForkJoinPool executor;
+
+    ForkJoinExecutorStrategy(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Invalid parallelism for executor strategy " + NAME);
+        }
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public ExecutorService createExecutor() {
+        executor = new ForkJoinPool(parallelism);
+        return executor;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return (executor == null ? 0 : (int) Math.min(Integer.MAX_VALUE, executor.getQueuedSubmissionCount() + executor.getQueuedTaskCount()));
+    }
+
+    @Override
+    public int getActiveThreadCount() {
+        return (executor == null ? 0 : executor.getActiveThreadCount());
+    }
+
+}
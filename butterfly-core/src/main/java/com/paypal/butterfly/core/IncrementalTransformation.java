@@ -0,0 +1,568 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.api.Configuration;
+import com.paypal.butterfly.api.TransformationRequest;
+import com.paypal.butterfly.api.exception.TransformationException;
+import com.paypal.butterfly.extensions.api.MultipleOperations;
+import com.paypal.butterfly.extensions.api.TransformationOperation;
+import com.paypal.butterfly.extensions.api.TransformationTemplate;
+import com.paypal.butterfly.extensions.api.TransformationUtility;
+import com.paypal.butterfly.extensions.api.TransformationUtilityParent;
+import com.paypal.butterfly.extensions.api.exception.TransformationUtilityException;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps track of an incremental transformation, carrying over files from the
+ * transformed application folder of a previous equivalent transformation.
+ * <br>
+ * A file is carried over if its original content has not changed since the previous
+ * transformation, and if the very same operations are performed against it, in the same order.
+ * Since that can only be known for sure once the transformation is over, operations are skipped
+ * optimistically, as long as they match the ones previously performed. If they stop matching,
+ * the file is restored from the original application folder, and the skipped operations
+ * are performed, followed by the one that did not match.
+ * <br>
+ * Only operations confined to a single file, set via relative path, are skipped,
+ * and only if they have no execution conditions, dependencies or properties set
+ * via transformation context attributes. Operations match only if their properties
+ * have the same values, and previous transformations are only equivalent if the
+ * extension jar has not changed. Any other operation that might change a file
+ * being carried over, and any utility that might read it before all its operations have been
+ * skipped, causes it to be restored and its skipped operations to be performed first
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class IncrementalTransformation {
+
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalTransformation.class);
+
+    static final String CARRIED_OVER_DETAILS = "Carried over from previous transformation output";
+
+    // Depth limit when fingerprinting objects referred to by operations, protecting against cyclic references
+    private static final int MAX_FINGERPRINT_DEPTH = 8;
+
+    // Instance fields declared by each operation class, and its super classes, up to TransformationOperation,
+    // or up to Object for any other class, whose values make up the fingerprint of its objects
+    private static final ClassValue<Field[]> FINGERPRINT_FIELDS = new ClassValue<Field[]>() {
+        @Override
+        protected Field[] computeValue(Class<?> clazz) {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = clazz; c != null && c != Object.class && c != TransformationOperation.class && c != TransformationUtility.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()) && !field.isSynthetic()) {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+            }
+            return fields.toArray(new Field[0]);
+        }
+    };
+
+    // Stands for operations whose properties could not be fingerprinted, which are then never skipped
+    private static final String NO_FINGERPRINT = "?";
+
+    private final File applicationFolder;
+    private final File transformedAppFolder;
+    private final TransformationManifest manifest;
+
+    // Null if there is no previous equivalent transformation
+    private final TransformationManifest previous;
+
+    // Operations performed, or skipped, against each file, in order
+    private final Map<String, List<String>> operations = new HashMap<>();
+
+    // Files currently being carried over
+    private final Map<String, CarryOver> carryOvers = new HashMap<>();
+
+    // Files that cannot be carried over anymore
+    private final Set<String> discarded = new HashSet<>();
+
+    // Set once an operation that might have changed any file has been performed
+    private boolean allDiscarded = false;
+
+    // Skipped operations being performed after all
+    private final Set<TransformationUtility> replaying = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private IncrementalTransformation(File applicationFolder, File transformedAppFolder, TransformationManifest manifest, TransformationManifest previous) {
+        this.applicationFolder = applicationFolder;
+        this.transformedAppFolder = transformedAppFolder;
+        this.manifest = manifest;
+        this.previous = previous;
+    }
+
+    /**
+     * Starts an incremental transformation, if the transformation request is incremental,
+     * and that is applicable to it, returning null otherwise
+     *
+     * @param transformationRequest the transformation request
+     * @param transformedAppFolder the transformed application folder
+     * @return the incremental transformation, or null, if not applicable
+     */
+    static IncrementalTransformation start(TransformationRequest transformationRequest, File transformedAppFolder) {
+        Configuration configuration = transformationRequest.getConfiguration();
+        if (!configuration.isIncremental()) {
+            return null;
+        }
+        if (configuration.isModifyOriginalFolder() || transformationRequest.isBlank()) {
+            logger.warn("Incremental transformation is not applicable when modifying the original application folder, or when using a blank transformation template");
+            return null;
+        }
+        if (transformationRequest.getApplication().getArchive() != null) {
+            logger.warn("Incremental transformation is not applicable when the application is read from an archive");
+            return null;
+        }
+        if (transformationRequest instanceof UpgradePathTransformationRequest && ((UpgradePathTransformationRequest) transformationRequest).getCheckpoint() != null) {
+            logger.warn("Incremental transformation is not applicable when resuming an upgrade path");
+            return null;
+        }
+
+        File applicationFolder = transformationRequest.getApplication().getFolder().getAbsoluteFile();
+        String fingerprint = getFingerprint(transformationRequest);
+
+        TransformationManifest manifest = new TransformationManifest()
+                .setButterflyVersion(transformationRequest.getButterflyVersion())
+                .setTemplateFingerprint(fingerprint)
+                .setApplicationFolder(applicationFolder.getAbsolutePath())
+                .setTransformedApplicationFolder(transformedAppFolder.getAbsolutePath())
+                .setTimestamp(transformationRequest.getTimestamp());
+        try {
+            manifest.setInputs(TransformationManifest.hashFolder(applicationFolder));
+        } catch (IOException e) {
+            logger.warn("Transformation will not be incremental, since the original application files could not be hashed", e);
+            return null;
+        }
+
+        TransformationManifest previous = TransformationManifest.findPrevious(transformedAppFolder.getAbsoluteFile().getParentFile(), applicationFolder, fingerprint);
+        if (previous == null) {
+            logger.info("No previous equivalent transformation has been found, all files will be transformed");
+        } else {
+            logger.info("Previous transformation output:\t\t{}", previous.getTransformedApplicationFolder());
+        }
+
+        return new IncrementalTransformation(applicationFolder, transformedAppFolder, manifest, previous);
+    }
+
+    /*
+     * Returns a fingerprint of everything, besides the application files,
+     * that could change the outcome of the transformation
+     */
+    static String getFingerprint(TransformationRequest transformationRequest) {
+        StringBuilder fingerprint = new StringBuilder()
+                .append(transformationRequest.getButterflyVersion()).append('\n')
+                .append(transformationRequest.getExtensionName()).append('\n')
+                .append(transformationRequest.getExtensionVersion()).append('\n')
+                .append(transformationRequest.getTemplateClassName()).append('\n');
+        if (transformationRequest instanceof UpgradePathTransformationRequest) {
+            UpgradePath upgradePath = ((UpgradePathTransformationRequest) transformationRequest).getUpgradePath();
+            fingerprint.append(upgradePath.getOriginalVersion()).append('\n').append(upgradePath.getUpgradeVersion()).append('\n');
+        }
+        Properties properties = transformationRequest.getConfiguration().getProperties();
+        if (properties != null) {
+            new TreeSet<>(properties.stringPropertyNames()).forEach(name -> fingerprint.append(name).append('=').append(properties.getProperty(name)).append('\n'));
+        }
+
+        // The extension might have been rebuilt without changing its version
+        Set<Class<?>> extensionClasses = new LinkedHashSet<>();
+        if (transformationRequest instanceof TemplateTransformationRequest) {
+            TransformationTemplate template = ((TemplateTransformationRequest) transformationRequest).getTemplate();
+            extensionClasses.add(template.getExtensionClass());
+            extensionClasses.add(template.getClass());
+        } else if (transformationRequest instanceof UpgradePathTransformationRequest) {
+            extensionClasses.add(((UpgradePathTransformationRequest) transformationRequest).getUpgradePath().getExtension());
+        }
+        Set<String> codeSources = new TreeSet<>();
+        for (Class<?> extensionClass : extensionClasses) {
+            File codeSource = getCodeSource(extensionClass);
+            if (codeSource != null) {
+                codeSources.add(codeSource.getAbsolutePath());
+            }
+        }
+        for (String codeSource : codeSources) {
+            fingerprint.append(codeSource).append('=').append(hashCodeSource(new File(codeSource))).append('\n');
+        }
+
+        return TransformationManifest.hash(fingerprint.toString());
+    }
+
+    /*
+     * Returns the jar file, or classes folder, a class has been loaded from, or null, if unknown
+     */
+    private static File getCodeSource(Class<?> clazz) {
+        if (clazz == null || clazz.getProtectionDomain() == null) {
+            return null;
+        }
+        CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null || !"file".equals(codeSource.getLocation().getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(codeSource.getLocation().toURI());
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /*
+     * Returns the hash of a jar file, or of all files under a classes folder,
+     * or a random value, if it could not be hashed, so that no previous
+     * transformation is ever considered equivalent
+     */
+    private static String hashCodeSource(File codeSource) {
+        try {
+            if (codeSource.isDirectory()) {
+                return TransformationManifest.hash(TransformationManifest.hashFolder(codeSource).toString());
+            }
+            return TransformationManifest.hash(codeSource);
+        } catch (IOException e) {
+            logger.warn("Extension {} could not be hashed, no previous transformation will be considered equivalent", codeSource, e);
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    /**
+     * Decides whether an operation should be skipped, in which case its target file is carried
+     * over from the previous transformation output. If this operation does not match the
+     * operations previously performed against its target file, the file is restored, and any
+     * operation skipped so far against it is performed via {@code performer}.
+     * <br>
+     * Operations that might change other files, and utilities that are not operations,
+     * are never skipped, but the files being carried over they might change, or read
+     * before all their operations have been skipped, are restored the same way
+     *
+     * @param utility the utility about to be performed
+     * @param order the utility execution order
+     * @param transformationContext the transformation context the utility is performed with
+     * @param performer performs skipped operations, if they turn out to be necessary after all
+     * @return true if the operation should be skipped
+     * @throws TransformationException if any skipped operation, performed after all, aborts the transformation
+     */
+    synchronized boolean carryOver(TransformationUtility utility, String order, TransformationContextImpl transformationContext, UtilitiesScheduler.UtilityPerformer performer) throws TransformationException {
+        if (replaying.remove(utility) || utility instanceof TransformationUtilityParent) {
+            return false;
+        }
+        String relativePath = null;
+        if (utility.isConfinedToFile()) {
+            relativePath = getTargetFile(utility, transformationContext);
+            if (relativePath == null) {
+                // Its target could not be resolved, so it is not going to be performed against any file
+                return false;
+            }
+        }
+        if (!(utility instanceof TransformationOperation)) {
+            // Utilities must read files as they would be if no operation had been skipped
+            discardUnder(relativePath, false);
+            return false;
+        }
+        if (relativePath == null || new File(transformedAppFolder, relativePath).isDirectory()) {
+            // Operations that might change more than one file, which then cannot be carried over anymore
+            discardUnder(relativePath, true);
+            return false;
+        }
+        String signature = getSignature(utility);
+        operations.computeIfAbsent(relativePath, k -> new ArrayList<>()).add(signature);
+
+        CarryOver carryOver = carryOvers.get(relativePath);
+        if (carryOver == null) {
+            if (allDiscarded || discarded.contains(relativePath) || !isCandidate(relativePath)) {
+                return false;
+            }
+            carryOver = new CarryOver(previous.getOperations().get(relativePath));
+            carryOvers.put(relativePath, carryOver);
+        }
+
+        int next = carryOver.skipped.size();
+        if (next < carryOver.expected.size() && carryOver.expected.get(next).equals(signature) && !signature.endsWith(NO_FINGERPRINT) && isSkippable(utility)) {
+            if (next == 0 && !copyPreviousOutput(relativePath)) {
+                carryOvers.remove(relativePath);
+                discarded.add(relativePath);
+                return false;
+            }
+            carryOver.skipped.add(new SkippedOperation(utility, order, transformationContext, performer));
+            return true;
+        }
+
+        discard(relativePath);
+        return false;
+    }
+
+    /**
+     * Performs the operations skipped against files whose previous transformation
+     * output resulted from more operations than the ones performed now
+     *
+     * @throws InternalTransformationException if any skipped operation, performed after all, aborts the transformation
+     */
+    synchronized void finish() throws InternalTransformationException {
+        for (String relativePath : new ArrayList<>(carryOvers.keySet())) {
+            CarryOver carryOver = carryOvers.get(relativePath);
+            if (carryOver.skipped.size() < carryOver.expected.size()) {
+                try {
+                    discard(relativePath);
+                } catch (TransformationException e) {
+                    throw new InternalTransformationException(e, carryOver.skipped.get(0).transformationContext);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the manifest of this transformation next to the transformed application folder.
+     * Failing to do so is logged, but does not fail the transformation
+     */
+    synchronized void writeManifest() {
+        File manifestFile = TransformationManifest.getManifestFile(transformedAppFolder);
+        try {
+            manifest.setOutputs(TransformationManifest.hashFolder(transformedAppFolder));
+            manifest.setOperations(operations);
+            manifest.write(manifestFile);
+            logger.info("Transformation manifest:\t\t\t{}", manifestFile);
+            logger.info("Files carried over:\t\t\t\t{}", carryOvers.size());
+        } catch (IOException e) {
+            logger.warn("Transformation manifest {} could not be written", manifestFile, e);
+        }
+    }
+
+    /*
+     * Restores a file being carried over, and performs the operations skipped against it
+     */
+    private void discard(String relativePath) throws TransformationException {
+        discarded.add(relativePath);
+        CarryOver carryOver = carryOvers.remove(relativePath);
+        if (carryOver == null || carryOver.skipped.isEmpty()) {
+            return;
+        }
+        logger.debug("File {} cannot be carried over from previous transformation output, its operations will be performed", relativePath);
+        try {
+            FileUtils.copyFile(new File(applicationFolder, relativePath), new File(transformedAppFolder, relativePath));
+        } catch (IOException e) {
+            throw new InternalException("File " + relativePath + " could not be restored from the original application folder", e);
+        }
+        for (SkippedOperation skippedOperation : carryOver.skipped) {
+            replaying.add(skippedOperation.utility);
+            skippedOperation.performer.perform(skippedOperation.utility, skippedOperation.order);
+        }
+    }
+
+    /*
+     * Restores the files being carried over under a folder, or all of them, if the folder is null.
+     * Unless they are discarded for good, only the ones whose operations have not been all skipped yet
+     * are restored, and the others may still be carried over
+     */
+    private void discardUnder(String folderRelativePath, boolean forGood) throws TransformationException {
+        for (String relativePath : new ArrayList<>(carryOvers.keySet())) {
+            CarryOver carryOver = carryOvers.get(relativePath);
+            if (carryOver != null && isUnder(relativePath, folderRelativePath) && (forGood || carryOver.skipped.size() < carryOver.expected.size())) {
+                discard(relativePath);
+            }
+        }
+        if (!forGood) {
+            return;
+        }
+        if (folderRelativePath == null) {
+            allDiscarded = true;
+        } else {
+            manifest.getInputs().keySet().stream().filter(relativePath -> isUnder(relativePath, folderRelativePath)).forEach(discarded::add);
+        }
+    }
+
+    private static boolean isUnder(String relativePath, String folderRelativePath) {
+        return folderRelativePath == null || folderRelativePath.isEmpty() || relativePath.equals(folderRelativePath) || relativePath.startsWith(folderRelativePath + "/");
+    }
+
+    private boolean isCandidate(String relativePath) {
+        if (previous == null) {
+            return false;
+        }
+        String input = manifest.getInputs().get(relativePath);
+        List<String> previousOperations = previous.getOperations().get(relativePath);
+        return input != null && input.equals(previous.getInputs().get(relativePath))
+                && previous.getOutputs().containsKey(relativePath)
+                && previousOperations != null && !previousOperations.isEmpty();
+    }
+
+    /*
+     * Copies a file from the previous transformation output, as long
+     * as it has not been changed since then
+     */
+    private boolean copyPreviousOutput(String relativePath) {
+        File previousOutput = new File(previous.getTransformedApplicationFolder(), relativePath);
+        try {
+            if (!previousOutput.isFile() || !TransformationManifest.hash(previousOutput).equals(previous.getOutputs().get(relativePath))) {
+                logger.debug("File {} has changed in previous transformation output, it cannot be carried over", relativePath);
+                return false;
+            }
+            FileUtils.copyFile(previousOutput, new File(transformedAppFolder, relativePath));
+            return true;
+        } catch (IOException e) {
+            logger.debug("File {} could not be carried over from previous transformation output", relativePath, e);
+            return false;
+        }
+    }
+
+    /*
+     * Returns the path, relative to the application folder, of the file or folder this utility
+     * is confined to, set via relative path or transformation context attribute, or null,
+     * if it could not be resolved, or if it is not under the application folder
+     */
+    private String getTargetFile(TransformationUtility utility, TransformationContextImpl transformationContext) {
+        File targetFile;
+        try {
+            targetFile = utility.getAbsoluteFile(transformedAppFolder, transformationContext);
+        } catch (TransformationUtilityException e) {
+            return null;
+        }
+        String relativePath = TransformationManifest.getRelativePath(transformedAppFolder.toPath(), targetFile.toPath());
+        return (relativePath.equals("..") || relativePath.startsWith("../") ? null : relativePath);
+    }
+
+    /*
+     * Operations are identified by their class, name and properties values. Operations generated by
+     * multiple operations are named after their parent, since their own names depend on how
+     * many files the parent found
+     */
+    private static String getSignature(TransformationUtility utility) {
+        TransformationUtilityParent parent = utility.getParent();
+        String name = (parent instanceof MultipleOperations ? parent.getName() : utility.getName());
+        return utility.getClass().getName() + ":" + name + ":" + getPropertiesFingerprint(utility);
+    }
+
+    /*
+     * Returns the hash of the properties values of an operation, which is equal to the
+     * hash of another operation only if both are of the same class and their properties
+     * have the same values, or NO_FINGERPRINT, if it could not be calculated
+     */
+    private static String getPropertiesFingerprint(TransformationUtility utility) {
+        try {
+            StringBuilder fingerprint = new StringBuilder();
+            appendObjectFingerprint(fingerprint, utility, 0);
+            return TransformationManifest.hash(fingerprint.toString());
+        } catch (IllegalAccessException | RuntimeException e) {
+            return NO_FINGERPRINT;
+        }
+    }
+
+    private static void appendObjectFingerprint(StringBuilder fingerprint, Object object, int depth) throws IllegalAccessException {
+        fingerprint.append(object.getClass().getName()).append('{');
+        for (Field field : FINGERPRINT_FIELDS.get(object.getClass())) {
+            fingerprint.append(field.getName()).append('=');
+            appendValueFingerprint(fingerprint, field.get(object), depth + 1);
+            fingerprint.append(';');
+        }
+        fingerprint.append('}');
+    }
+
+    /*
+     * Unlike condition fingerprints, which only live as long as the transformation,
+     * these are stored in the manifest, so they must not depend on hash codes or
+     * on iteration order of sets and maps
+     */
+    private static void appendValueFingerprint(StringBuilder fingerprint, Object value, int depth) throws IllegalAccessException {
+        if (value == null) {
+            fingerprint.append("null");
+        } else if (depth > MAX_FINGERPRINT_DEPTH) {
+            fingerprint.append(value.getClass().getName());
+        } else if (value instanceof Enum) {
+            fingerprint.append(((Enum<?>) value).getDeclaringClass().getName()).append('.').append(((Enum<?>) value).name());
+        } else if (value instanceof Class) {
+            fingerprint.append(((Class<?>) value).getName());
+        } else if (value instanceof Pattern) {
+            fingerprint.append(((Pattern) value).pattern()).append('/').append(((Pattern) value).flags());
+        } else if (value instanceof Set || value instanceof Map) {
+            Collection<?> elements = (value instanceof Set ? (Set<?>) value : ((Map<?, ?>) value).entrySet());
+            Set<String> sorted = new TreeSet<>();
+            for (Object element : elements) {
+                StringBuilder elementFingerprint = new StringBuilder();
+                if (element instanceof Map.Entry) {
+                    appendValueFingerprint(elementFingerprint, ((Map.Entry<?, ?>) element).getKey(), depth + 1);
+                    elementFingerprint.append('=');
+                    appendValueFingerprint(elementFingerprint, ((Map.Entry<?, ?>) element).getValue(), depth + 1);
+                } else {
+                    appendValueFingerprint(elementFingerprint, element, depth + 1);
+                }
+                sorted.add(elementFingerprint.toString());
+            }
+            fingerprint.append(sorted);
+        } else if (value instanceof Collection) {
+            fingerprint.append('[');
+            for (Object element : (Collection<?>) value) {
+                appendValueFingerprint(fingerprint, element, depth + 1);
+                fingerprint.append(',');
+            }
+            fingerprint.append(']');
+        } else if (value.getClass().isArray()) {
+            fingerprint.append('[');
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++) {
+                appendValueFingerprint(fingerprint, Array.get(value, i), depth + 1);
+                fingerprint.append(',');
+            }
+            fingerprint.append(']');
+        } else {
+            String className = value.getClass().getName();
+            if (className.startsWith("java.") || className.startsWith("javax.") || className.startsWith("jdk.") || className.startsWith("sun.")) {
+                fingerprint.append(value);
+            } else {
+                appendObjectFingerprint(fingerprint, value, depth);
+            }
+        }
+    }
+
+    /*
+     * Operations whose execution depends on anything other than their
+     * own target file cannot be skipped, including the ones generated by multiple
+     * operations whose properties are set via transformation context attribute
+     */
+    private static boolean isSkippable(TransformationUtility utility) {
+        TransformationUtilityParent parent = utility.getParent();
+        return utility.getAbsoluteFileFromContextAttribute() == null
+                && utility.getIfConditionAttributeName() == null
+                && utility.getUnlessConditionAttributeName() == null
+                && utility.getUtilityCondition() == null
+                && utility.getDependencies().isEmpty()
+                && utility.getLatePropertiesAttributes().isEmpty()
+                && !(parent instanceof MultipleOperations && ((MultipleOperations) parent).getPropertyAttribute() != null);
+    }
+
+    private static class CarryOver {
+
+        // Operations performed against the file in the previous transformation
+        private final List<String> expected;
+
+        private final List<SkippedOperation> skipped = new ArrayList<>();
+
+        private CarryOver(List<String> expected) {
+            this.expected = expected;
+        }
+
+    }
+
+    private static class SkippedOperation {
+
+        private final TransformationUtility utility;
+        private final String order;
+        private final TransformationContextImpl transformationContext;
+        private final UtilitiesScheduler.UtilityPerformer performer;
+
+        private SkippedOperation(TransformationUtility utility, String order, TransformationContextImpl transformationContext, UtilitiesScheduler.UtilityPerformer performer) {
+            this.utility = utility;
+            this.order = order;
+            this.transformationContext = transformationContext;
+            this.performer = performer;
+        }
+
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.api.TransformationRequest;
+import com.paypal.butterfly.extensions.api.PerformResult;
+import com.paypal.butterfly.extensions.api.TransformationUtility;
+import com.paypal.butterfly.extensions.api.upgrade.UpgradeStep;
+import jdk.jfr.*;
+
+/**
+ * JDK Flight Recorder based implementation of {@link FlightRecorderEvents}.
+ * This class is only loaded, via reflection, if JDK Flight Recorder is available
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class JfrFlightRecorderEvents extends FlightRecorderEvents {
+
+    private static final String CATEGORY = "Butterfly";
+
+    // Checked before any event object is created, so that nothing is allocated while events are not being recorded
+    private static final EventType TRANSFORMATION_EVENT_TYPE = EventType.getEventType(TransformationEvent.class);
+    private static final EventType UPGRADE_STEP_EVENT_TYPE = EventType.getEventType(UpgradeStepEvent.class);
+    private static final EventType UTILITY_EVENT_TYPE = EventType.getEventType(UtilityEvent.class);
+
+    @Override
+    Object beginTransformation() {
+        if (!TRANSFORMATION_EVENT_TYPE.isEnabled()) {
+            return null;
+        }
+        TransformationEvent event = new TransformationEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void endTransformation(Object event, TransformationRequest transformationRequest, boolean successful) {
+        if (event == null) {
+            return;
+        }
+        TransformationEvent transformationEvent = (TransformationEvent) event;
+        transformationEvent.end();
+        if (transformationEvent.shouldCommit()) {
+            transformationEvent.requestId = transformationRequest.getId();
+            transformationEvent.applicationFolder = transformationRequest.getApplication().getFolder().getAbsolutePath();
+            transformationEvent.templateClassName = transformationRequest.getTemplateClassName();
+            transformationEvent.successful = successful;
+            transformationEvent.commit();
+        }
+    }
+
+    @Override
+    Object beginUpgradeStep() {
+        if (!UPGRADE_STEP_EVENT_TYPE.isEnabled()) {
+            return null;
+        }
+        UpgradeStepEvent event = new UpgradeStepEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void endUpgradeStep(Object event, UpgradeStep upgradeStep, boolean successful) {
+        if (event == null) {
+            return;
+        }
+        UpgradeStepEvent upgradeStepEvent = (UpgradeStepEvent) event;
+        upgradeStepEvent.end();
+        if (upgradeStepEvent.shouldCommit()) {
+            upgradeStepEvent.templateClassName = upgradeStep.getClass().getName();
+            upgradeStepEvent.currentVersion = upgradeStep.getCurrentVersion();
+            upgradeStepEvent.nextVersion = upgradeStep.getNextVersion();
+            upgradeStepEvent.successful = successful;
+            upgradeStepEvent.commit();
+        }
+    }
+
+    @Override
+    Object beginUtility() {
+        if (!UTILITY_EVENT_TYPE.isEnabled()) {
+            return null;
+        }
+        UtilityEvent event = new UtilityEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    void endUtility(Object event, TransformationUtility utility, String order, PerformResult result, long bytesRead, long bytesWritten) {
+        if (event == null) {
+            return;
+        }
+        UtilityEvent utilityEvent = (UtilityEvent) event;
+        utilityEvent.end();
+        if (utilityEvent.shouldCommit()) {
+            utilityEvent.utilityName = utility.getName();
+            utilityEvent.utilityClassName = utility.getClass().getName();
+            utilityEvent.order = order;
+            utilityEvent.relativePath = utility.getRelativePath();
+            if (result != null) {
+                utilityEvent.performResultType = result.getType().name();
+                if (result.getExecutionResult() != null) {
+                    utilityEvent.executionResultType = result.getExecutionResult().getType().toString();
+                }
+            }
+            utilityEvent.bytesRead = bytesRead;
+            utilityEvent.bytesWritten = bytesWritten;
+            utilityEvent.commit();
+        }
+    }
+
+    @Name("com.paypal.butterfly.Transformation")
+    @Label("Transformation")
+    @Description("Transformation of an application, including all its upgrade steps, if any")
+    @Category(CATEGORY)
+    static class TransformationEvent extends Event {
+
+        @Label("Request Id")
+        String requestId;
+
+        @Label("Application Folder")
+        String applicationFolder;
+
+        @Label("Template Class")
+        String templateClassName;
+
+        @Label("Successful")
+        boolean successful;
+
+    }
+
+    @Name("com.paypal.butterfly.UpgradeStep")
+    @Label("Upgrade Step")
+    @Description("Upgrade step performed as part of an upgrade path")
+    @Category(CATEGORY)
+    static class UpgradeStepEvent extends Event {
+
+        @Label("Template Class")
+        String templateClassName;
+
+        @Label("Current Version")
+        String currentVersion;
+
+        @Label("Next Version")
+        String nextVersion;
+
+        @Label("Successful")
+        boolean successful;
+
+    }
+
+    @Name("com.paypal.butterfly.Utility")
+    @Label("Utility")
+    @Description("Transformation utility or operation performed against an application")
+    @Category(CATEGORY)
+    static class UtilityEvent extends Event {
+
+        @Label("Utility Name")
+        String utilityName;
+
+        @Label("Utility Class")
+        String utilityClassName;
+
+        @Label("Order")
+        String order;
+
+        @Label("Relative Path")
+        String relativePath;
+
+        @Label("Perform Result Type")
+        String performResultType;
+
+        @Label("Execution Result Type")
+        String executionResultType;
+
+        @Label("Bytes Read")
+        @Description("Size of the target file before the utility was performed, only measured for utilities confined to a single file set via relative path")
+        @DataAmount
+        long bytesRead;
+
+        @Label("Bytes Written")
+        @Description("Size of the target file after a successful operation, only measured for operations confined to a single file set via relative path")
+        @DataAmount
+        long bytesWritten;
+
+    }
+
+}
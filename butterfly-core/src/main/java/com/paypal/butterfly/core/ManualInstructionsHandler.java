@@ -16,7 +16,7 @@ class ManualInstructionsHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(ManualInstructionsHandler.class);
 
-    private static final String MANUAL_INSTRUCTIONS_DIR = "BUTTERFLY_MANUAL_INSTRUCTIONS";
+    static final String MANUAL_INSTRUCTIONS_DIR = "BUTTERFLY_MANUAL_INSTRUCTIONS";
     static final String MANUAL_INSTRUCTIONS_MAIN_FILE = "BUTTERFLY_MANUAL_INSTRUCTIONS.md";
 
     @Autowired
@@ -0,0 +1,242 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.extensions.api.FolderOverlay;
+import com.paypal.butterfly.extensions.api.TransformationUtility;
+import com.paypal.butterfly.extensions.api.UtilityCondition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Overlay of the transformed application folder (upper layer) on top of the original
+ * application folder (lower layer). The transformed application folder starts empty, and
+ * files and folders are copied up to it only when a transformation utility needs them.
+ * Once copied up, a file or folder is only read from, and written to, the upper layer,
+ * so files deleted or moved during the transformation are never brought back.
+ * <br>
+ * Before a transformation utility that is neither confined to a file nor overlay aware is performed,
+ * and at the end of the transformation, the overlay is materialized, which means every file not copied
+ * up yet is placed in the upper layer, either as a copy, or, if so configured, as a hard link
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class OverlayFolder implements FolderOverlay {
+
+    private static final Logger logger = LoggerFactory.getLogger(OverlayFolder.class);
+
+    private final Path applicationFolder;
+    private final Path transformedAppFolder;
+
+    // Whether files not changed by the transformation are hard linked, instead of copied, when materializing
+    private final boolean link;
+
+    // Paths, relative to the application folder, of the files and folders already copied up.
+    // Folders are only added after their whole content has been copied up. Any path in here,
+    // or under a folder in here, missing in the upper layer, has been deleted or moved
+    private final Set<String> copiedUp = new HashSet<>();
+
+    private boolean materialized = false;
+    private long copiedUpFilesCount = 0;
+    private long materializedFilesCount = 0;
+
+    /**
+     * Creates an overlay of the transformed application folder, which must
+     * already exist and be empty, on top of the original application folder
+     *
+     * @param applicationFolder the original application folder
+     * @param transformedAppFolder the transformed application folder
+     * @param link whether files not changed by the transformation are hard linked,
+     *             instead of copied, when materializing, if the file system supports that
+     */
+    OverlayFolder(File applicationFolder, File transformedAppFolder, boolean link) {
+        this(applicationFolder.toPath(), transformedAppFolder, link);
+    }
+
+    /**
+     * Creates an overlay of the transformed application folder, which must already
+     * exist and be empty, on top of a folder that might be in another file system,
+     * such as the root folder of an application archive
+     *
+     * @param applicationFolder the original application folder
+     * @param transformedAppFolder the transformed application folder
+     * @param link whether files not changed by the transformation are hard linked,
+     *             instead of copied, when materializing, if the file system supports that
+     */
+    OverlayFolder(Path applicationFolder, File transformedAppFolder, boolean link) {
+        this.applicationFolder = applicationFolder.toAbsolutePath().normalize();
+        this.transformedAppFolder = transformedAppFolder.toPath().toAbsolutePath().normalize();
+        this.link = link && CopyOnWriteFolder.isUnixViewSupported(transformedAppFolder);
+    }
+
+    @Override
+    public synchronized void copyUp(File file) throws IOException {
+        if (materialized) {
+            return;
+        }
+        Path path = file.toPath().toAbsolutePath().normalize();
+        if (!path.startsWith(transformedAppFolder)) {
+            return;
+        }
+        String relativePath = TransformationManifest.getRelativePath(transformedAppFolder, path);
+        if (isCopiedUp(relativePath)) {
+            return;
+        }
+
+        Path lowerPath = applicationFolder.resolve(relativePath);
+        Path upperPath = transformedAppFolder.resolve(relativePath);
+        if (Files.isDirectory(lowerPath)) {
+            copyTree(lowerPath, false);
+            copiedUp.add(relativePath);
+        } else if (Files.exists(lowerPath)) {
+            if (!Files.exists(upperPath, LinkOption.NOFOLLOW_LINKS)) {
+                Files.createDirectories(upperPath.getParent());
+                Files.copy(lowerPath, upperPath, StandardCopyOption.COPY_ATTRIBUTES);
+                copiedUpFilesCount++;
+            }
+            copiedUp.add(relativePath);
+        } else if (upperPath.getParent() != null && Files.isDirectory(lowerPath.getParent())) {
+            // The file is about to be created, so its folder must be present
+            Files.createDirectories(upperPath.getParent());
+        }
+    }
+
+    /**
+     * Materializes the overlay before performing a transformation utility, if it is neither
+     * confined to a file nor overlay aware, or if it has a utility condition that is not
+     *
+     * @param utility the transformation utility about to be performed
+     * @throws IOException if the overlay could not be materialized
+     */
+    synchronized void beforeUtility(TransformationUtility utility) throws IOException {
+        if (materialized) {
+            return;
+        }
+        UtilityCondition utilityCondition = utility.getUtilityCondition();
+        if (!isSafe(utility) || (utilityCondition != null && !isSafe(utilityCondition))) {
+            logger.debug("Overlay is being materialized, since {} is neither confined to a file nor overlay aware", utility.getName());
+            materialize();
+        }
+    }
+
+    private static boolean isSafe(TransformationUtility utility) {
+        return utility.isConfinedToFile() || utility.isOverlayAware();
+    }
+
+    /**
+     * Places in the transformed application folder every file not copied up yet,
+     * except the ones deleted or moved during the transformation.
+     * After that, this overlay does nothing else
+     *
+     * @throws IOException if any file could not be placed in the transformed application folder
+     */
+    synchronized void materialize() throws IOException {
+        if (materialized) {
+            return;
+        }
+        if (!isCopiedUp("")) {
+            copyTree(applicationFolder, true);
+        }
+        materialized = true;
+        logger.debug("Overlay has been materialized, {} files were copied up during the transformation, and {} files afterwards", copiedUpFilesCount, materializedFilesCount);
+    }
+
+    boolean isMaterialized() {
+        return materialized;
+    }
+
+    long getCopiedUpFilesCount() {
+        return copiedUpFilesCount;
+    }
+
+    long getMaterializedFilesCount() {
+        return materializedFilesCount;
+    }
+
+    /**
+     * Returns whether files not changed by the transformation are hard linked,
+     * instead of copied, when materializing
+     *
+     * @return whether files are hard linked when materializing
+     */
+    boolean isLink() {
+        return link;
+    }
+
+    /*
+     * Returns true if this path, or any of its parent folders, has already been copied up
+     */
+    private boolean isCopiedUp(String relativePath) {
+        if (copiedUp.contains(relativePath)) {
+            return true;
+        }
+        int i = relativePath.lastIndexOf('/');
+        while (i >= 0) {
+            if (copiedUp.contains(relativePath.substring(0, i))) {
+                return true;
+            }
+            i = relativePath.lastIndexOf('/', i - 1);
+        }
+        return !relativePath.isEmpty() && copiedUp.contains("");
+    }
+
+    /*
+     * Copies up the content of a folder, skipping files and folders already copied up,
+     * and files already present in the upper layer, since they have been created during
+     * the transformation. Symbolic links are followed, as done by FileUtils.copyDirectory.
+     * When materializing, files might be hard linked, instead of copied
+     */
+    private void copyTree(Path lowerFolder, boolean materializing) throws IOException {
+        Files.walkFileTree(lowerFolder, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+            private boolean linking = materializing && link;
+
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                String relativePath = TransformationManifest.getRelativePath(applicationFolder, dir);
+                if (!dir.equals(lowerFolder) && copiedUp.contains(relativePath)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                Path upperDir = transformedAppFolder.resolve(relativePath);
+                if (!Files.exists(upperDir, LinkOption.NOFOLLOW_LINKS)) {
+                    Files.createDirectories(upperDir);
+                    Files.setLastModifiedTime(upperDir, attrs.lastModifiedTime());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                String relativePath = TransformationManifest.getRelativePath(applicationFolder, file);
+                Path upperFile = transformedAppFolder.resolve(relativePath);
+                if (copiedUp.contains(relativePath) || Files.exists(upperFile, LinkOption.NOFOLLOW_LINKS)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (linking && attrs.isRegularFile() && !Files.isSymbolicLink(file)) {
+                    try {
+                        Files.createLink(upperFile, file);
+                        materializedFilesCount++;
+                        return FileVisitResult.CONTINUE;
+                    } catch (UnsupportedOperationException | IOException e) {
+                        logger.debug("Hard links are not supported, application files will be copied instead", e);
+                        linking = false;
+                    }
+                }
+                Files.copy(file, upperFile, StandardCopyOption.COPY_ATTRIBUTES);
+                if (materializing) {
+                    materializedFilesCount++;
+                } else {
+                    copiedUpFilesCount++;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+}
@@ -0,0 +1,694 @@
+package com.paypal.butterfly.core;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a folder, and all its content, to a zip file, preparing entries in parallel.
+ * Each file is read, and deflated, by a worker thread, while entries are written to the
+ * zip file, by the calling thread, in the same order they were submitted, which is depth-first,
+ * with the entries of each folder sorted by name. So, regardless of the parallelism,
+ * the zip file content is always the same.
+ * <br>
+ * Entries are prefixed by the folder name. Files that are empty, or already compressed,
+ * such as jar files and images, are stored instead of deflated, and so are files that would
+ * get larger if deflated. Small files are deflated in memory, while large ones are deflated
+ * to temporary files, and at most a few entries per thread are prepared ahead of being written,
+ * so memory usage is bounded. Zip64 extensions are used only when needed.
+ * <br>
+ * If the folder has been extracted from an archive, files whose content is the same
+ * as their archive entries are copied from the archive as they are, without being compressed again.
+ * Archive entries are matched by their paths relative to the archive single top-level folder,
+ * if it has nothing else, or to its root folder otherwise
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class ParallelZipWriter {
+
+    // Files larger than this are deflated to temporary files, instead of in memory
+    private static final int IN_MEMORY_LIMIT = 4 * 1024 * 1024;
+
+    // Maximum number of entries prepared ahead of being written, per worker thread
+    private static final int ENTRIES_PER_THREAD = 4;
+
+    private static final int DEFLATE_LEVEL = 5;
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "jar", "war", "ear", "zip", "gz", "tgz", "bz2", "xz", "7z", "rar",
+            "png", "jpg", "jpeg", "gif", "webp", "ico", "mp3", "mp4", "woff", "woff2"));
+
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final long ZIP64_LIMIT = 0xFFFFFFFFL;
+    private static final int ZIP64_ENTRIES_LIMIT = 0xFFFF;
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private final int parallelism;
+
+    /**
+     * Creates a parallel zip writer
+     *
+     * @param parallelism the number of threads used to prepare entries
+     * @throws IllegalArgumentException if {@code parallelism} is smaller than 1
+     */
+    ParallelZipWriter(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Zip writer parallelism must be greater than zero");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Writes a folder, and all its content, to a zip file. If that fails,
+     * the zip file is deleted
+     *
+     * @param folder the folder to be compressed
+     * @param zipFile the zip file to be written
+     * @return statistics about the compression
+     * @throws IOException if the folder could not be compressed
+     */
+    CompressionStatisticsImpl write(File folder, File zipFile) throws IOException {
+        return write(folder, zipFile, null);
+    }
+
+    /**
+     * Writes a folder, and all its content, to a zip file, copying from the archive
+     * the folder has been extracted from the entries whose content has not changed.
+     * If that fails, the zip file is deleted
+     *
+     * @param folder the folder to be compressed
+     * @param zipFile the zip file to be written
+     * @param sourceArchive the archive the folder has been extracted from, or null
+     * @return statistics about the compression
+     * @throws IOException if the folder could not be compressed
+     */
+    CompressionStatisticsImpl write(File folder, File zipFile, File sourceArchive) throws IOException {
+        long start = System.nanoTime();
+        Path root = folder.toPath().toAbsolutePath().normalize();
+        List<Path> paths = new ArrayList<>();
+        list(root, paths);
+
+        try (FileChannel sourceChannel = (sourceArchive == null ? null : FileChannel.open(sourceArchive.toPath(), StandardOpenOption.READ))) {
+            Map<String, ArchiveEntry> sourceEntries = (sourceChannel == null ? Collections.emptyMap() : readCentralDirectory(sourceChannel));
+            return write(root, paths, zipFile, sourceChannel, sourceEntries, start);
+        }
+    }
+
+    private CompressionStatisticsImpl write(Path root, List<Path> paths, File zipFile, FileChannel sourceChannel, Map<String, ArchiveEntry> sourceEntries, long start) throws IOException {
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "butterfly-zip-writer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<Future<Entry>> pendingEntries = new ArrayDeque<>();
+        int storedEntriesCount = 0;
+        int copiedEntriesCount = 0;
+        long uncompressedSize = 0;
+        boolean written = false;
+        try (ZipOutput zipOutput = new ZipOutput(zipFile, sourceChannel)) {
+            int next = 0;
+            while (next < paths.size() || !pendingEntries.isEmpty()) {
+                while (next < paths.size() && pendingEntries.size() < parallelism * ENTRIES_PER_THREAD) {
+                    Path path = paths.get(next++);
+                    String relativePath = root.relativize(path).toString().replace(File.separatorChar, '/');
+                    String name = root.getFileName() + (path.equals(root) ? "" : "/" + relativePath);
+                    ArchiveEntry sourceEntry = sourceEntries.get(relativePath);
+                    pendingEntries.add(executor.submit(() -> prepare(path, name, sourceEntry, sourceChannel)));
+                }
+                Entry entry = get(pendingEntries.poll());
+                zipOutput.write(entry);
+                if (!entry.directory) {
+                    uncompressedSize += entry.size;
+                    if (entry.sourceOffset >= 0) {
+                        copiedEntriesCount++;
+                    } else if (entry.method == STORED) {
+                        storedEntriesCount++;
+                    }
+                }
+            }
+            zipOutput.finish();
+            written = true;
+        } finally {
+            executor.shutdownNow();
+            for (Future<Entry> pendingEntry : pendingEntries) {
+                discard(pendingEntry);
+            }
+            if (!written) {
+                Files.deleteIfExists(zipFile.toPath());
+            }
+        }
+
+        return new CompressionStatisticsImpl(zipFile, paths.size(), storedEntriesCount, copiedEntriesCount, uncompressedSize, zipFile.length(), System.nanoTime() - start);
+    }
+
+    /*
+     * Lists a folder and all its content, depth-first, with the entries of each folder sorted by name.
+     * Symbolic links are followed
+     */
+    private static void list(Path folder, List<Path> paths) throws IOException {
+        paths.add(folder);
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(folder)) {
+            for (Path entry : directoryStream) {
+                entries.add(entry);
+            }
+        }
+        entries.sort(Comparator.comparing(entry -> entry.getFileName().toString()));
+        for (Path entry : entries) {
+            if (Files.isDirectory(entry)) {
+                list(entry, paths);
+            } else {
+                paths.add(entry);
+            }
+        }
+    }
+
+    private static Entry get(Future<Entry> pendingEntry) throws IOException {
+        try {
+            return pendingEntry.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing entries");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Entry could not be compressed", e.getCause());
+        }
+    }
+
+    /*
+     * Deletes the temporary file of an entry prepared, but never written
+     */
+    private static void discard(Future<Entry> pendingEntry) {
+        if (pendingEntry.cancel(true) || !pendingEntry.isDone()) {
+            return;
+        }
+        try {
+            Path dataFile = pendingEntry.get().dataFile;
+            if (dataFile != null) {
+                Files.deleteIfExists(dataFile);
+            }
+        } catch (InterruptedException | ExecutionException | IOException e) {
+            // Nothing to be discarded
+        }
+    }
+
+    /*
+     * Reads, and deflates, if applicable, a file, or just reads
+     * the attributes of a folder. If the file content is the same as its
+     * source archive entry, it is not deflated, since that entry is going to be
+     * copied as it is. This is called by worker threads
+     */
+    private static Entry prepare(Path path, String name, ArchiveEntry sourceEntry, FileChannel sourceChannel) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        Entry entry = new Entry();
+        entry.time = dosTime(attributes.lastModifiedTime().toMillis());
+        entry.unixMode = unixMode(path, attributes.isDirectory());
+        if (attributes.isDirectory()) {
+            entry.name = name + "/";
+            entry.directory = true;
+            entry.method = STORED;
+            entry.data = new byte[0];
+            return entry;
+        }
+
+        entry.name = name;
+        long size = attributes.size();
+        if (sourceEntry != null && sourceEntry.size == size && crc(path, entry) == sourceEntry.crc) {
+            entry.method = sourceEntry.method;
+            entry.crc = sourceEntry.crc;
+            entry.compressedSize = sourceEntry.compressedSize;
+            entry.sourceOffset = getDataOffset(sourceChannel, sourceEntry);
+            return entry;
+        }
+        entry.size = 0;
+        if (size <= IN_MEMORY_LIMIT) {
+            byte[] bytes = Files.readAllBytes(path);
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            entry.crc = crc.getValue();
+            entry.size = bytes.length;
+            byte[] deflated = (bytes.length > 0 && !isCompressed(name) ? deflate(bytes) : null);
+            if (deflated != null && deflated.length < bytes.length) {
+                entry.method = DEFLATED;
+                entry.data = deflated;
+            } else {
+                entry.method = STORED;
+                entry.data = bytes;
+            }
+            entry.compressedSize = entry.data.length;
+        } else if (isCompressed(name)) {
+            entry.method = STORED;
+            entry.sourceFile = path;
+            entry.crc = crc(path, entry);
+            entry.compressedSize = entry.size;
+        } else {
+            entry.method = DEFLATED;
+            entry.dataFile = Files.createTempFile("butterfly-zip-entry", ".deflated");
+            CRC32 crc = new CRC32();
+            Deflater deflater = new Deflater(DEFLATE_LEVEL, true);
+            try (InputStream in = Files.newInputStream(path);
+                 DeflaterOutputStream out = new DeflaterOutputStream(new BufferedOutputStream(Files.newOutputStream(entry.dataFile)), deflater, 64 * 1024)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    crc.update(buffer, 0, read);
+                    out.write(buffer, 0, read);
+                    entry.size += read;
+                }
+            } catch (IOException e) {
+                Files.deleteIfExists(entry.dataFile);
+                throw e;
+            } finally {
+                deflater.end();
+            }
+            entry.crc = crc.getValue();
+            entry.compressedSize = Files.size(entry.dataFile);
+        }
+        return entry;
+    }
+
+    private static boolean isCompressed(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot > name.lastIndexOf('/') && COMPRESSED_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(DEFLATE_LEVEL, true);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 64);
+            byte[] buffer = new byte[Math.min(bytes.length + 64, 64 * 1024)];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static long crc(Path path, Entry entry) throws IOException {
+        CRC32 crc = new CRC32();
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+                entry.size += read;
+            }
+        }
+        return crc.getValue();
+    }
+
+    /*
+     * Reads the central directory of an archive, returning its entries, except folders,
+     * encrypted entries, and entries neither stored nor deflated, by their paths relative to
+     * the archive single top-level folder, if it has nothing else, or to its root folder otherwise
+     */
+    private static Map<String, ArchiveEntry> readCentralDirectory(FileChannel channel) throws IOException {
+        long archiveSize = channel.size();
+        int tailSize = (int) Math.min(archiveSize, 0xFFFF + 22);
+        ByteBuffer tail = read(channel, archiveSize - tailSize, tailSize);
+        int end = -1;
+        for (int i = tailSize - 22; i >= 0; i--) {
+            if (tail.getInt(i) == 0x06054b50) {
+                end = i;
+                break;
+            }
+        }
+        if (end < 0) {
+            throw new IOException("Application archive central directory could not be found");
+        }
+        long centralDirectorySize = tail.getInt(end + 12) & ZIP64_LIMIT;
+        long centralDirectoryOffset = tail.getInt(end + 16) & ZIP64_LIMIT;
+        if ((centralDirectorySize == ZIP64_LIMIT || centralDirectoryOffset == ZIP64_LIMIT) && end >= 20 && tail.getInt(end - 20) == 0x07064b50) {
+            ByteBuffer zip64End = read(channel, tail.getLong(end - 12), 56);
+            if (zip64End.getInt(0) == 0x06064b50) {
+                centralDirectorySize = zip64End.getLong(40);
+                centralDirectoryOffset = zip64End.getLong(48);
+            }
+        }
+        if (centralDirectorySize > Integer.MAX_VALUE) {
+            throw new IOException("Application archive central directory is too large");
+        }
+
+        ByteBuffer centralDirectory = read(channel, centralDirectoryOffset, (int) centralDirectorySize);
+        Map<String, ArchiveEntry> entries = new HashMap<>();
+        Set<String> topLevelNames = new HashSet<>();
+        boolean topLevelFile = false;
+        int position = 0;
+        while (position + 46 <= centralDirectory.limit() && centralDirectory.getInt(position) == 0x02014b50) {
+            int flags = centralDirectory.getShort(position + 8) & 0xFFFF;
+            ArchiveEntry entry = new ArchiveEntry();
+            entry.method = centralDirectory.getShort(position + 10) & 0xFFFF;
+            entry.crc = centralDirectory.getInt(position + 16) & ZIP64_LIMIT;
+            entry.compressedSize = centralDirectory.getInt(position + 20) & ZIP64_LIMIT;
+            entry.size = centralDirectory.getInt(position + 24) & ZIP64_LIMIT;
+            int nameLength = centralDirectory.getShort(position + 28) & 0xFFFF;
+            int extraLength = centralDirectory.getShort(position + 30) & 0xFFFF;
+            int commentLength = centralDirectory.getShort(position + 32) & 0xFFFF;
+            entry.localHeaderOffset = centralDirectory.getInt(position + 42) & ZIP64_LIMIT;
+
+            byte[] nameBytes = new byte[nameLength];
+            centralDirectory.position(position + 46);
+            centralDirectory.get(nameBytes);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+            readZip64Extra(centralDirectory, position + 46 + nameLength, extraLength, entry);
+            position += 46 + nameLength + extraLength + commentLength;
+
+            int slash = name.indexOf('/');
+            topLevelNames.add(slash < 0 ? name : name.substring(0, slash));
+            topLevelFile |= (slash < 0);
+            if (!name.endsWith("/") && (flags & 1) == 0 && (entry.method == STORED || entry.method == DEFLATED)) {
+                entries.put(name, entry);
+            }
+        }
+
+        if (topLevelNames.size() != 1 || topLevelFile) {
+            return entries;
+        }
+        String prefix = topLevelNames.iterator().next() + "/";
+        Map<String, ArchiveEntry> relativeEntries = new HashMap<>();
+        entries.forEach((name, entry) -> relativeEntries.put(name.substring(prefix.length()), entry));
+        return relativeEntries;
+    }
+
+    private static void readZip64Extra(ByteBuffer centralDirectory, int extraOffset, int extraLength, ArchiveEntry entry) {
+        int position = extraOffset;
+        while (position + 4 <= extraOffset + extraLength) {
+            int id = centralDirectory.getShort(position) & 0xFFFF;
+            int size = centralDirectory.getShort(position + 2) & 0xFFFF;
+            if (id == 0x0001) {
+                int field = position + 4;
+                if (entry.size == ZIP64_LIMIT && field + 8 <= position + 4 + size) {
+                    entry.size = centralDirectory.getLong(field);
+                    field += 8;
+                }
+                if (entry.compressedSize == ZIP64_LIMIT && field + 8 <= position + 4 + size) {
+                    entry.compressedSize = centralDirectory.getLong(field);
+                    field += 8;
+                }
+                if (entry.localHeaderOffset == ZIP64_LIMIT && field + 8 <= position + 4 + size) {
+                    entry.localHeaderOffset = centralDirectory.getLong(field);
+                }
+                return;
+            }
+            position += 4 + size;
+        }
+    }
+
+    /*
+     * Returns the offset of an archive entry content, right after its local header
+     */
+    private static long getDataOffset(FileChannel channel, ArchiveEntry entry) throws IOException {
+        ByteBuffer localHeader = read(channel, entry.localHeaderOffset, 30);
+        if (localHeader.getInt(0) != 0x04034b50) {
+            throw new IOException("Application archive entry local header could not be found");
+        }
+        return entry.localHeaderOffset + 30 + (localHeader.getShort(26) & 0xFFFF) + (localHeader.getShort(28) & 0xFFFF);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of application archive");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int unixMode(Path path, boolean directory) {
+        if (!POSIX) {
+            return 0;
+        }
+        int mode = (directory ? 040000 : 0100000);
+        try {
+            for (PosixFilePermission permission : Files.getPosixFilePermissions(path)) {
+                mode |= 1 << (8 - permission.ordinal());
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            return 0;
+        }
+        return mode;
+    }
+
+    /*
+     * Converts a time to the MS-DOS date and time format used by zip files
+     */
+    private static long dosTime(long millis) {
+        LocalDateTime time = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        if (time.getYear() < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return ((long) (time.getYear() - 1980) << 25) | (time.getMonthValue() << 21) | (time.getDayOfMonth() << 16)
+                | (time.getHour() << 11) | (time.getMinute() << 5) | (time.getSecond() >> 1);
+    }
+
+    /*
+     * An entry of the archive the folder has been extracted from
+     */
+    private static final class ArchiveEntry {
+        private int method;
+        private long crc;
+        private long size;
+        private long compressedSize;
+        private long localHeaderOffset;
+    }
+
+    /*
+     * A zip entry ready to be written. Its content is either in memory,
+     * in a temporary file, already deflated, in the source file, to be stored,
+     * or in the source archive, to be copied as it is
+     */
+    private static final class Entry {
+        private String name;
+        private boolean directory;
+        private int method;
+        private long time;
+        private int unixMode;
+        private long crc;
+        private long size;
+        private long compressedSize;
+        private byte[] data;
+        private Path dataFile;
+        private Path sourceFile;
+        private long sourceOffset = -1;
+        private long offset;
+    }
+
+    /*
+     * Zip file output, writing local headers and entries content as entries come,
+     * and the central directory at the end
+     */
+    private static final class ZipOutput implements Closeable {
+
+        private static final int UTF8_FLAG = 0x0800;
+
+        private final OutputStream out;
+        private final FileChannel sourceChannel;
+        private final List<Entry> entries = new ArrayList<>();
+        private long position = 0;
+
+        private ZipOutput(File zipFile, FileChannel sourceChannel) throws IOException {
+            out = new BufferedOutputStream(new FileOutputStream(zipFile), 64 * 1024);
+            this.sourceChannel = sourceChannel;
+        }
+
+        private void write(Entry entry) throws IOException {
+            byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+            boolean zip64 = entry.size >= ZIP64_LIMIT || entry.compressedSize >= ZIP64_LIMIT;
+            entry.offset = position;
+
+            writeInt(0x04034b50);
+            writeShort(zip64 ? 45 : (entry.method == DEFLATED ? 20 : 10));
+            writeShort(UTF8_FLAG);
+            writeShort(entry.method);
+            writeInt(entry.time);
+            writeInt(entry.crc);
+            writeInt(zip64 ? ZIP64_LIMIT : entry.compressedSize);
+            writeInt(zip64 ? ZIP64_LIMIT : entry.size);
+            writeShort(name.length);
+            writeShort(zip64 ? 20 : 0);
+            writeBytes(name, name.length);
+            if (zip64) {
+                writeShort(0x0001);
+                writeShort(16);
+                writeLong(entry.size);
+                writeLong(entry.compressedSize);
+            }
+
+            if (entry.sourceOffset >= 0) {
+                copy(entry.sourceOffset, entry.compressedSize);
+            } else if (entry.data != null) {
+                writeBytes(entry.data, entry.data.length);
+                entry.data = null;
+            } else if (entry.dataFile != null) {
+                try {
+                    copy(entry.dataFile, entry.compressedSize);
+                } finally {
+                    Files.deleteIfExists(entry.dataFile);
+                    entry.dataFile = null;
+                }
+            } else {
+                copy(entry.sourceFile, entry.size);
+                entry.sourceFile = null;
+            }
+            entries.add(entry);
+        }
+
+        private void copy(Path file, long expectedSize) throws IOException {
+            long copied = 0;
+            try (InputStream in = Files.newInputStream(file)) {
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    writeBytes(buffer, read);
+                    copied += read;
+                }
+            }
+            if (copied != expectedSize) {
+                throw new IOException("File " + file + " has changed while being compressed");
+            }
+        }
+
+        private void copy(long sourceOffset, long length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            long copied = 0;
+            while (copied < length) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), length - copied));
+                int read = sourceChannel.read(buffer, sourceOffset + copied);
+                if (read < 0) {
+                    throw new EOFException("Unexpected end of application archive");
+                }
+                writeBytes(buffer.array(), read);
+                copied += read;
+            }
+        }
+
+        private void finish() throws IOException {
+            long centralDirectoryOffset = position;
+            for (Entry entry : entries) {
+                byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+                boolean sizeZip64 = entry.size >= ZIP64_LIMIT || entry.compressedSize >= ZIP64_LIMIT;
+                boolean offsetZip64 = entry.offset >= ZIP64_LIMIT;
+                int extraLength = (sizeZip64 ? 16 : 0) + (offsetZip64 ? 8 : 0);
+                boolean unix = entry.unixMode != 0;
+
+                writeInt(0x02014b50);
+                writeShort((unix ? 3 << 8 : 0) | 45);
+                writeShort(extraLength > 0 ? 45 : (entry.method == DEFLATED ? 20 : 10));
+                writeShort(UTF8_FLAG);
+                writeShort(entry.method);
+                writeInt(entry.time);
+                writeInt(entry.crc);
+                writeInt(sizeZip64 ? ZIP64_LIMIT : entry.compressedSize);
+                writeInt(sizeZip64 ? ZIP64_LIMIT : entry.size);
+                writeShort(name.length);
+                writeShort(extraLength > 0 ? extraLength + 4 : 0);
+                writeShort(0);
+                writeShort(0);
+                writeShort(0);
+                writeInt(((long) entry.unixMode << 16) | (entry.directory ? 0x10 : 0));
+                writeInt(offsetZip64 ? ZIP64_LIMIT : entry.offset);
+                writeBytes(name, name.length);
+                if (extraLength > 0) {
+                    writeShort(0x0001);
+                    writeShort(extraLength);
+                    if (sizeZip64) {
+                        writeLong(entry.size);
+                        writeLong(entry.compressedSize);
+                    }
+                    if (offsetZip64) {
+                        writeLong(entry.offset);
+                    }
+                }
+            }
+            long centralDirectorySize = position - centralDirectoryOffset;
+
+            boolean zip64 = entries.size() >= ZIP64_ENTRIES_LIMIT || centralDirectoryOffset >= ZIP64_LIMIT || centralDirectorySize >= ZIP64_LIMIT;
+            if (zip64) {
+                long zip64EndOffset = position;
+                writeInt(0x06064b50);
+                writeLong(44);
+                writeShort(45);
+                writeShort(45);
+                writeInt(0);
+                writeInt(0);
+                writeLong(entries.size());
+                writeLong(entries.size());
+                writeLong(centralDirectorySize);
+                writeLong(centralDirectoryOffset);
+
+                writeInt(0x07064b50);
+                writeInt(0);
+                writeLong(zip64EndOffset);
+                writeInt(1);
+            }
+
+            writeInt(0x06054b50);
+            writeShort(0);
+            writeShort(0);
+            writeShort(zip64 ? ZIP64_ENTRIES_LIMIT : entries.size());
+            writeShort(zip64 ? ZIP64_ENTRIES_LIMIT : entries.size());
+            writeInt(zip64 ? ZIP64_LIMIT : centralDirectorySize);
+            writeInt(zip64 ? ZIP64_LIMIT : centralDirectoryOffset);
+            writeShort(0);
+            out.flush();
+        }
+
+        private void writeShort(int value) throws IOException {
+            out.write(value & 0xFF);
+            out.write((value >>> 8) & 0xFF);
+            position += 2;
+        }
+
+        private void writeInt(long value) throws IOException {
+            writeShort((int) (value & 0xFFFF));
+            writeShort((int) ((value >>> 16) & 0xFFFF));
+        }
+
+        private void writeLong(long value) throws IOException {
+            writeInt(value & ZIP64_LIMIT);
+            writeInt(value >>> 32);
+        }
+
+        private void writeBytes(byte[] bytes, int length) throws IOException {
+            out.write(bytes, 0, length);
+            position += length;
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+    }
+
+}
@@ -1,9 +1,12 @@
 package com.paypal.butterfly.core;
 
 import com.paypal.butterfly.extensions.api.TransformationTemplate;
+import com.paypal.butterfly.extensions.api.TransformationUtility;
 import com.paypal.butterfly.api.Application;
 import com.paypal.butterfly.api.Configuration;
 
+import java.util.List;
+
 /**
  * Represents an specific transformation, made of one single
  * {@link TransformationTemplate}, to be applied against a specific application
@@ -18,6 +21,14 @@ class TemplateTransformationRequest extends AbstractTransformationRequest {
     // The transformation template to be applied against an application
     private transient TransformationTemplate template;
 
+    // The compiled transformation template, if it is shared with other transformations, or null otherwise
+    private transient ExecutionPlan executionPlan;
+
+    TemplateTransformationRequest(Application application, ExecutionPlan executionPlan, Configuration configuration) {
+        this(application, executionPlan.getTemplate(), configuration);
+        this.executionPlan = executionPlan;
+    }
+
     TemplateTransformationRequest(Application application, TransformationTemplate template, Configuration configuration) {
         super(application, configuration, template.isBlank());
         if (template == null) {
@@ -36,6 +47,16 @@ class TemplateTransformationRequest extends AbstractTransformationRequest {
         return template;
     }
 
+    /**
+     * Returns the utilities to be performed, which are a new copy of the template
+     * utilities, if the template is shared with other transformations
+     *
+     * @return the utilities to be performed
+     */
+    List<TransformationUtility> getUtilities() {
+        return (executionPlan == null ? template.getUtilities() : executionPlan.newUtilities());
+    }
+
     @Override
     public String toString() {
         return String.format(TO_STRING_SYNTAX, getApplication(), template, templateClassName);
@@ -0,0 +1,58 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.api.ExecutorStrategy;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor strategy based on a {@link ThreadPoolExecutor}
+ * with an unbounded queue
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class ThreadPoolExecutorStrategy implements ExecutorStrategy {
+
+    static final String DEFAULT = "default";
+    static final String FIXED = "fixed";
+
+    private final String name;
+    private final int minThreads;
+    private final int maxThreads;
+
+    private ThreadPoolExecutor executor;
+
+    ThreadPoolExecutorStrategy(String name, int minThreads, int maxThreads) {
+        if (minThreads < 1 || maxThreads < minThreads) {
+            throw new IllegalArgumentException("Invalid number of threads for executor strategy " + name);
+        }
+        this.name = name;
+        this.minThreads = minThreads;
+        this.maxThreads = maxThreads;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public ExecutorService createExecutor() {
+        executor = new ThreadPoolExecutor(minThreads, maxThreads, 5, TimeUnit.MINUTES, new LinkedBlockingQueue<>());
+        return executor;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return (executor == null ? 0 : executor.getQueue().size());
+    }
+
+    @Override
+    public int getActiveThreadCount() {
+        return (executor == null ? 0 : executor.getActiveCount());
+    }
+
+}
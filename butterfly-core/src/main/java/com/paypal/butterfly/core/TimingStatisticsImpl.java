@@ -0,0 +1,98 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.api.TimingStatistics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * POJO to hold how long a set of transformation utilities took to be performed.
+ * Durations are aggregated in a sparse log-linear histogram, similar to HDR histograms,
+ * whose buckets are at most 1/32 wide relative to their values. That keeps its
+ * size small, regardless of how many durations are recorded
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class TimingStatisticsImpl implements TimingStatistics {
+
+    // Number of bits, after the most significant one, preserved in the buckets upper bounds
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private long count = 0;
+    private long sum = 0;
+    private long max = 0;
+    private TreeMap<Long, Long> histogram = new TreeMap<>();
+
+    /**
+     * Records a new duration
+     *
+     * @param duration the duration, in nanoseconds
+     */
+    synchronized void record(long duration) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("Duration cannot be negative");
+        }
+        count++;
+        sum += duration;
+        max = Math.max(max, duration);
+        histogram.merge(getBucketUpperBound(duration), 1L, Long::sum);
+    }
+
+    /*
+     * Returns the upper bound of the histogram bucket the value belongs to.
+     * Values up to 2^SUB_BUCKET_BITS have their own buckets, while larger ones
+     * have their least significant bits rounded up
+     */
+    static long getBucketUpperBound(long value) {
+        int significantBits = 64 - Long.numberOfLeadingZeros(value);
+        int shift = significantBits - SUB_BUCKET_BITS - 1;
+        if (shift <= 0) {
+            return value;
+        }
+        long mask = (1L << shift) - 1;
+        return value | mask;
+    }
+
+    @Override
+    public synchronized long getCount() {
+        return count;
+    }
+
+    @Override
+    public synchronized long getSum() {
+        return sum;
+    }
+
+    @Override
+    public synchronized long getMax() {
+        return max;
+    }
+
+    @Override
+    public synchronized long getPercentile(double percentile) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be greater than 0 and lower than or equal to 100");
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100.0 * count);
+        long accumulated = 0;
+        for (Map.Entry<Long, Long> bucket : histogram.entrySet()) {
+            accumulated += bucket.getValue();
+            if (accumulated >= rank) {
+                return Math.min(bucket.getKey(), max);
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public synchronized SortedMap<Long, Long> getHistogram() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(histogram));
+    }
+
+}
@@ -1,8 +1,12 @@
 package com.paypal.butterfly.core;
 
+import com.paypal.butterfly.extensions.api.ConditionCache;
+import com.paypal.butterfly.extensions.api.FolderOverlay;
 import com.paypal.butterfly.extensions.api.PerformResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.TransformationTemplate;
+import com.paypal.butterfly.extensions.api.TransformationUtility;
+import com.paypal.butterfly.extensions.api.TreeCopier;
 import com.paypal.butterfly.api.AbortDetails;
 import com.paypal.butterfly.api.TransformationStatistics;
 import com.paypal.butterfly.extensions.api.utilities.ManualInstructionRecord;
@@ -10,6 +14,8 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Transformation context implementation
@@ -22,6 +28,9 @@ import java.util.*;
 @SuppressFBWarnings("URF_UNREAD_FIELD")
 class TransformationContextImpl implements TransformationContext {
 
+    // Stands for null attributes once this context is thread safe, since concurrent maps do not accept null values
+    private static final Object NULL_ATTRIBUTE = new Object();
+
     private TransformationTemplate transformationTemplate;
     private Map<String, Object> attributes = new HashMap<>();
     private Map<String, PerformResult> results = new HashMap<>();
@@ -32,6 +41,25 @@ class TransformationContextImpl implements TransformationContext {
     private String upgradeCorrelationId;
     private AbortDetails abortDetails;
 
+    // Only set while utilities are being performed concurrently
+    private UtilitiesScheduler utilitiesScheduler;
+
+    private boolean threadSafe = false;
+
+    // Only set if the transformation is performed with an overlay
+    private FolderOverlay folderOverlay;
+
+    private TreeCopier treeCopier = TreeCopier.SEQUENTIAL;
+
+    // Only set if utility condition results are kept
+    private ConditionCache conditionCache;
+
+    // Only set if the transformation execution is being traced
+    private ExecutionTrace executionTrace;
+
+    // Only set if large values are released from memory once no longer referred to
+    private ContextRetention retention;
+
     private TransformationContextImpl() {
     }
 
@@ -54,6 +82,75 @@ class TransformationContextImpl implements TransformationContext {
         return this;
     }
 
+    TransformationContextImpl setFolderOverlay(FolderOverlay folderOverlay) {
+        this.folderOverlay = folderOverlay;
+        return this;
+    }
+
+    @Override
+    public FolderOverlay getFolderOverlay() {
+        return folderOverlay;
+    }
+
+    TransformationContextImpl setTreeCopier(TreeCopier treeCopier) {
+        if(treeCopier == null) {
+            throw new IllegalArgumentException("Tree copier object cannot be null");
+        }
+        this.treeCopier = treeCopier;
+        return this;
+    }
+
+    @Override
+    public TreeCopier getTreeCopier() {
+        return treeCopier;
+    }
+
+    TransformationContextImpl setConditionCache(ConditionCache conditionCache) {
+        this.conditionCache = conditionCache;
+        return this;
+    }
+
+    @Override
+    public ConditionCache getConditionCache() {
+        return conditionCache;
+    }
+
+    TransformationContextImpl setExecutionTrace(ExecutionTrace executionTrace) {
+        this.executionTrace = executionTrace;
+        return this;
+    }
+
+    ExecutionTrace getExecutionTrace() {
+        return executionTrace;
+    }
+
+    TransformationContextImpl setRetention(ContextRetention retention) {
+        this.retention = retention;
+        return this;
+    }
+
+    /**
+     * Releases from memory the results and attributes no longer referred to
+     * after the given top level utility has been performed. See {@link ContextRetention}
+     *
+     * @param index the index of the top level utility that has just been performed
+     */
+    void release(int index) {
+        if (retention == null) {
+            return;
+        }
+        for (String name : retention.getReleasedAfter(index)) {
+            PerformResult result = results.get(name);
+            if (result != null) {
+                results.put(name, retention.release(result));
+            }
+            Object attribute = attributes.get(name);
+            if (attribute != null && attribute != NULL_ATTRIBUTE) {
+                attributes.put(name, retention.release(name, attribute));
+            }
+        }
+    }
+
     @Override
     public Object get(String name) {
         if(StringUtils.isBlank(name)) {
@@ -62,7 +159,10 @@ class TransformationContextImpl implements TransformationContext {
             // TransformationContextException could be a good one, however, it is a checked exception, we definitely need a runtime exception here.
             throw new IllegalArgumentException("Transformation context attribute key cannot be null");
         }
-        return attributes.get(name);
+        if (utilitiesScheduler != null && !utilitiesScheduler.awaitAttribute(name)) {
+            return null;
+        }
+        return unmaskNull(attributes.get(name));
     }
 
     @Override
@@ -70,11 +170,17 @@ class TransformationContextImpl implements TransformationContext {
         if(StringUtils.isBlank(utilityName)) {
             throw new IllegalArgumentException("Result key cannot be null");
         }
+        if (utilitiesScheduler != null && !utilitiesScheduler.awaitAttribute(utilityName)) {
+            return null;
+        }
         return results.get(utilityName);
     }
 
     @Override
     public boolean contains(String name) {
+        if (utilitiesScheduler != null && !utilitiesScheduler.awaitAttribute(name)) {
+            return false;
+        }
         return attributes.containsKey(name);
     }
 
@@ -94,7 +200,7 @@ class TransformationContextImpl implements TransformationContext {
 //             // TransformationContextException could be a good one, however, it is a checked exception, we definitely need a runtime exception here.
 //            throw new IllegalArgumentException("Transformation context attribute name and object cannot be null nor blank");
 //        }
-        attributes.put(name, attributeObject);
+        attributes.put(name, maskNull(retention == null ? attributeObject : retention.retain(name, attributeObject)));
     }
 
     /**
@@ -112,7 +218,7 @@ class TransformationContextImpl implements TransformationContext {
         if(resultObject == null) {
             throw new IllegalArgumentException("Result object is null for key " + name);
         }
-        results.put(name, resultObject);
+        results.put(name, (retention == null ? resultObject : retention.retain(name, resultObject)));
 
         if (collectStats) {
             statistics.registerResult(resultObject);
@@ -137,6 +243,20 @@ class TransformationContextImpl implements TransformationContext {
         return this;
     }
 
+    /**
+     * Registers how long a transformation utility took to be performed
+     *
+     * @param utility the transformation utility
+     * @param name the name the timing is registered under, which is shared by
+     *             all utilities created by the same parent for each file
+     * @param duration how long the utility took to be performed, in nanoseconds
+     */
+    void registerTiming(TransformationUtility utility, String name, long duration) {
+        if (collectStats) {
+            statistics.registerTiming(utility, name, duration);
+        }
+    }
+
     /**
      * Returns the {@link TransformationTemplate} object
      * whose execution originated this context object
@@ -167,7 +287,19 @@ class TransformationContextImpl implements TransformationContext {
         return successfulTransformation;
     }
 
+    /**
+     * Returns the statistics of this transformation context, having
+     * published any results counted concurrently to them
+     *
+     * @return the statistics of this transformation context
+     */
     TransformationStatistics getStatistics() {
+        if (statistics != null) {
+            statistics.publish();
+            if (conditionCache != null) {
+                statistics.setConditionCacheCounts(conditionCache.getHitCount(), conditionCache.getMissCount());
+            }
+        }
         return statistics;
     }
 
@@ -189,10 +321,115 @@ class TransformationContextImpl implements TransformationContext {
         return context;
     }
 
+    /**
+     * Sets the scheduler performing utilities concurrently against this context,
+     * or null, after all of them have been performed. Once a scheduler is set,
+     * this context becomes safe to be used by multiple threads, and every read
+     * waits for the utilities that are supposed to write the requested attribute
+     * before the reader, as if they were all performed sequentially.
+     *
+     * @param utilitiesScheduler the scheduler performing utilities concurrently against this context
+     * @return this transformation context object
+     */
+    TransformationContextImpl setUtilitiesScheduler(UtilitiesScheduler utilitiesScheduler) {
+        if (utilitiesScheduler != null) {
+            setThreadSafe();
+        }
+        this.utilitiesScheduler = utilitiesScheduler;
+        return this;
+    }
+
+    /**
+     * Makes this context safe to be written and read by multiple threads.
+     * Once made thread safe, this context remains so until the end of the transformation.
+     * It must be called by the thread performing utilities, before any other thread
+     * is given access to this context.
+     * <br>
+     * Until then, attributes, results and statistics are kept in plain collections and fields,
+     * so utilities performed sequentially pay no synchronization cost. Afterwards, attributes and
+     * results are kept in concurrent maps, whose reads do not lock, and which guarantee an attribute
+     * put by one utility happens-before it is read by another one, manual instructions are kept
+     * in a copy-on-write list, since they are rarely registered, and statistics are counted
+     * by {@link java.util.concurrent.atomic.LongAdder} objects.
+     *
+     * @return this transformation context object
+     */
+    TransformationContextImpl setThreadSafe() {
+        if (!threadSafe) {
+            Map<String, Object> concurrentAttributes = new ConcurrentHashMap<>(Math.max(attributes.size() * 2, 16));
+            attributes.forEach((name, value) -> concurrentAttributes.put(name, (value == null ? NULL_ATTRIBUTE : value)));
+            attributes = concurrentAttributes;
+            results = new ConcurrentHashMap<>(results);
+            manualInstructionRecords = new CopyOnWriteArrayList<>(manualInstructionRecords);
+            if (statistics != null) {
+                statistics.setThreadSafe();
+            }
+            threadSafe = true;
+        }
+        return this;
+    }
+
+    private Object maskNull(Object attributeObject) {
+        return (attributeObject == null && threadSafe ? NULL_ATTRIBUTE : attributeObject);
+    }
+
+    private static Object unmaskNull(Object attributeObject) {
+        if (attributeObject instanceof ContextRetention.SpilledAttribute) {
+            return ((ContextRetention.SpilledAttribute) attributeObject).get();
+        }
+        return (attributeObject == NULL_ATTRIBUTE ? null : attributeObject);
+    }
+
+    /**
+     * Returns a runnable that runs {@code runnable} on behalf of the utility being
+     * performed by the calling thread. It must be used whenever a utility is performed
+     * with the help of other threads, so that their reads from this context are ordered
+     * as if utilities were performed sequentially. See {@link #setUtilitiesScheduler(UtilitiesScheduler)}.
+     *
+     * @param runnable the runnable to be bound to the utility being performed by the calling thread
+     * @return a runnable bound to the utility being performed by the calling thread
+     */
+    Runnable bindToCurrentUtility(Runnable runnable) {
+        UtilitiesScheduler scheduler = utilitiesScheduler;
+        return (scheduler == null ? runnable : scheduler.bindToCurrentNode(runnable));
+    }
+
     String getUpgradeCorrelationId() {
         return upgradeCorrelationId;
     }
 
+    /**
+     * Sets the upgrade correlation id, which is otherwise generated when the transformation
+     * template is set. Used when resuming an upgrade path, to preserve its original correlation id
+     *
+     * @param upgradeCorrelationId the upgrade correlation id
+     * @return this transformation context object
+     */
+    TransformationContextImpl setUpgradeCorrelationId(String upgradeCorrelationId) {
+        this.upgradeCorrelationId = upgradeCorrelationId;
+        return this;
+    }
+
+    /**
+     * Returns a copy of all transformation context attributes
+     *
+     * @return a copy of all transformation context attributes
+     */
+    Map<String, Object> getAttributes() {
+        Map<String, Object> attributesCopy = new HashMap<>(attributes.size() * 2);
+        attributes.forEach((name, value) -> attributesCopy.put(name, unmaskNull(value)));
+        return attributesCopy;
+    }
+
+    /**
+     * Returns a copy of all transformation utilities results
+     *
+     * @return a copy of all transformation utilities results
+     */
+    Map<String, PerformResult> getResults() {
+        return new HashMap<>(results);
+    }
+
     TransformationContextImpl transformationAborted(Exception ex, String abortMessage, String utilityName, String utilityClassName) {
         successfulTransformation = false;
         abortDetails = new AbortDetailsImpl(ex, abortMessage, transformationTemplate.getName(), transformationTemplate.getClass().getName(), utilityName, utilityClassName);
@@ -205,7 +442,7 @@ class TransformationContextImpl implements TransformationContext {
 
     void setProperties(Properties properties) {
         if (properties != null && !properties.isEmpty()) {
-            properties.entrySet().forEach(p -> attributes.put("$" + p.getKey(), p.getValue()));
+            properties.entrySet().forEach(p -> put("$" + p.getKey(), p.getValue()));
         }
     }
 
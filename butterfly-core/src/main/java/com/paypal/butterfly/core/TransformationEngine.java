@@ -1,17 +1,20 @@
 package com.paypal.butterfly.core;
 
+import com.paypal.butterfly.api.ExecutorStrategy;
 import com.paypal.butterfly.api.TransformationListener;
+import com.paypal.butterfly.api.TransformationPlan;
 import com.paypal.butterfly.api.TransformationRequest;
 import com.paypal.butterfly.api.TransformationResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.*;
 
 /**
@@ -23,6 +26,30 @@ import java.util.concurrent.*;
 @Component
 class TransformationEngine {
 
+    private static final Logger logger = LoggerFactory.getLogger(TransformationEngine.class);
+
+    // Property used to choose the executor strategy, by its name
+    static final String EXECUTOR_STRATEGY_PROPERTY = "butterfly.executor.strategy";
+
+    // Property used to set the number of threads of the fixed executor strategy
+    static final String EXECUTOR_THREADS_PROPERTY = "butterfly.executor.threads";
+
+    // Property used to set the number of threads performing utilities that have a timeout,
+    // in addition to the ones left behind by utilities that have run out of time
+    static final String UTILITY_THREADS_PROPERTY = "butterfly.executor.utility.threads";
+
+    // Property used to limit the number of transformation requests waiting to be performed
+    static final String QUEUE_CAPACITY_PROPERTY = "butterfly.executor.queue.capacity";
+
+    // Property used to choose what to do with requests once the queue capacity is reached.
+    // Requests submitted by threads performing transformations are never blocked, see AdmissionControl
+    static final String REJECTION_POLICY_PROPERTY = "butterfly.executor.rejection.policy";
+
+    // Properties used to set the minimum free disk space in the output folder, and heap memory,
+    // both in megabytes, for transformation requests to be accepted
+    static final String MIN_FREE_DISK_PROPERTY = "butterfly.admission.min.free.disk";
+    static final String MIN_FREE_HEAP_PROPERTY = "butterfly.admission.min.free.heap";
+
     private Collection<TransformationListener> transformationListeners;
 
     @Autowired
@@ -36,10 +63,21 @@ class TransformationEngine {
     private static final int MIN_THREAD_POOL_SIZE = Runtime.getRuntime().availableProcessors();
     private static final int MAX_THREAD_POOL_SIZE = MIN_THREAD_POOL_SIZE * 2;
 
-    private ExecutorService executor = new ThreadPoolExecutor(MIN_THREAD_POOL_SIZE, MAX_THREAD_POOL_SIZE, 5, TimeUnit.MINUTES, new LinkedBlockingQueue<>());
+    private ExecutorStrategy executorStrategy;
+
+    private ExecutorService executor;
+
+    private UtilityTimeoutExecutor utilityTimeoutExecutor;
+
+    private AdmissionControl admissionControl;
 
     @PostConstruct
-    void setupListeners() {
+    void setup() {
+        setupListeners();
+        setupExecutor();
+    }
+
+    private void setupListeners() {
         Map<String, TransformationListener> beans = applicationContext.getBeansOfType(TransformationListener.class);
         transformationListeners = beans.values();
         if (transformationListeners == null) {
@@ -50,23 +88,142 @@ class TransformationEngine {
         manualInstructionsHandler = applicationContext.getBean(ManualInstructionsHandler.class);
     }
 
+    private void setupExecutor() {
+        Environment environment = applicationContext.getEnvironment();
+        String strategyName = (environment == null ? null : environment.getProperty(EXECUTOR_STRATEGY_PROPERTY));
+        String threads = (environment == null ? null : environment.getProperty(EXECUTOR_THREADS_PROPERTY));
+
+        executorStrategy = getExecutorStrategy(strategyName, threads);
+        executor = executorStrategy.createExecutor();
+        logger.debug("Transformation engine executor strategy: {}", executorStrategy.getName());
+
+        long utilityThreads = getLongProperty(environment, UTILITY_THREADS_PROPERTY);
+        utilityTimeoutExecutor = new UtilityTimeoutExecutor(utilityThreads > 0 ? (int) utilityThreads : MAX_THREAD_POOL_SIZE);
+
+        String rejectionPolicy = (environment == null ? null : environment.getProperty(REJECTION_POLICY_PROPERTY));
+        admissionControl = new AdmissionControl(
+                (int) getLongProperty(environment, QUEUE_CAPACITY_PROPERTY),
+                (rejectionPolicy == null ? AdmissionControl.RejectionPolicy.FAIL_FAST : AdmissionControl.RejectionPolicy.fromName(rejectionPolicy.trim())),
+                getLongProperty(environment, MIN_FREE_DISK_PROPERTY),
+                getLongProperty(environment, MIN_FREE_HEAP_PROPERTY)
+        );
+    }
+
+    /*
+     * Returns the value of a numeric property, or zero, if not set
+     */
+    private static long getLongProperty(Environment environment, String propertyName) {
+        String value = (environment == null ? null : environment.getProperty(propertyName));
+        if (value == null || value.trim().isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for property " + propertyName + ": " + value, e);
+        }
+    }
+
+    /*
+     * Returns the executor strategy with the given name, which can be either one of the built-in
+     * strategies, or a strategy registered as a Spring bean. If no name is given, the default strategy
+     * is returned. The default strategy is also returned, with a warning, if virtual threads are
+     * requested but not supported by the Java runtime
+     */
+    private ExecutorStrategy getExecutorStrategy(String strategyName, String threads) {
+        if (strategyName == null || strategyName.trim().isEmpty() || strategyName.trim().equals(ThreadPoolExecutorStrategy.DEFAULT)) {
+            return new ThreadPoolExecutorStrategy(ThreadPoolExecutorStrategy.DEFAULT, MIN_THREAD_POOL_SIZE, MAX_THREAD_POOL_SIZE);
+        }
+        strategyName = strategyName.trim();
+
+        Map<String, ExecutorStrategy> beans = applicationContext.getBeansOfType(ExecutorStrategy.class);
+        if (beans != null) {
+            for (ExecutorStrategy strategy : beans.values()) {
+                if (strategyName.equals(strategy.getName())) {
+                    return strategy;
+                }
+            }
+        }
+
+        switch (strategyName) {
+            case ThreadPoolExecutorStrategy.FIXED:
+                int size = MAX_THREAD_POOL_SIZE;
+                if (threads != null) {
+                    try {
+                        size = Integer.parseInt(threads.trim());
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid number of executor threads: " + threads, e);
+                    }
+                }
+                return new ThreadPoolExecutorStrategy(ThreadPoolExecutorStrategy.FIXED, size, size);
+            case ForkJoinExecutorStrategy.NAME:
+                return new ForkJoinExecutorStrategy(MAX_THREAD_POOL_SIZE);
+            case VirtualThreadsExecutorStrategy.NAME:
+                if (VirtualThreadsExecutorStrategy.isSupported()) {
+                    return new VirtualThreadsExecutorStrategy();
+                }
+                logger.warn("Virtual threads are not supported by this Java runtime, default executor strategy will be used instead");
+                return new ThreadPoolExecutorStrategy(ThreadPoolExecutorStrategy.DEFAULT, MIN_THREAD_POOL_SIZE, MAX_THREAD_POOL_SIZE);
+            default:
+                throw new IllegalArgumentException("Unknown executor strategy: " + strategyName);
+        }
+    }
+
+    /**
+     * Returns the strategy that created the executor transformations are performed by,
+     * which also offers queue depth and active thread gauges
+     *
+     * @return the strategy that created the executor transformations are performed by
+     */
+    ExecutorStrategy getExecutorStrategy() {
+        return executorStrategy;
+    }
+
     /**
      * Perform an application transformation based on the specified {@link TransformationRequest}
      * object
      *
      * @param transformationRequest the transformationRequest object
-     * @return a {@link CompletableFuture} object referring to the result after performing this transformation request
+     * @return a {@link CompletableFuture} object referring to the result after performing this transformation request,
+     * or failed with a {@link com.paypal.butterfly.api.exception.TransformationRejectedException}, if the request is
+     * not accepted by the admission control. Cancelling it cancels the transformation
      */
     CompletableFuture<TransformationResult> perform(TransformationRequest transformationRequest) {
-        return CompletableFuture.supplyAsync(
-                Transformer.createTransformer(transformationRequest, transformationListeners, manualInstructionsHandler, validator),
-                executor
-        );
+        Transformer transformer = Transformer.createTransformer(transformationRequest, transformationListeners, manualInstructionsHandler, validator, utilityTimeoutExecutor);
+        return cancelling(admissionControl.submit(transformationRequest, transformer, executor), transformer);
+    }
+
+    /**
+     * Plans an application transformation based on the specified {@link TransformationRequest}
+     * object, without performing it. Since planning does not write any file, and is
+     * usually short lived, it is not subject to the admission control
+     *
+     * @param transformationRequest the transformationRequest object
+     * @return a {@link CompletableFuture} object referring to the plan of this transformation request.
+     * Cancelling it cancels the planning
+     */
+    CompletableFuture<TransformationPlan> plan(TransformationRequest transformationRequest) {
+        Transformer transformer = Transformer.createTransformer(transformationRequest, Collections.emptyList(), manualInstructionsHandler, validator, utilityTimeoutExecutor);
+        return cancelling(CompletableFuture.supplyAsync(transformer::plan, executor), transformer);
+    }
+
+    /*
+     * Cancelling a CompletableFuture does not interrupt the task completing it,
+     * so the transformer has to be told about it
+     */
+    private static <T> CompletableFuture<T> cancelling(CompletableFuture<T> future, Transformer transformer) {
+        future.whenComplete((result, throwable) -> {
+            if (future.isCancelled()) {
+                transformer.cancel();
+            }
+        });
+        return future;
     }
 
     @PreDestroy
     void shutdownExecutor() {
         executor.shutdown();
+        utilityTimeoutExecutor.shutdown();
     }
 
 }
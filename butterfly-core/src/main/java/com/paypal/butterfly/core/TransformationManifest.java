@@ -0,0 +1,282 @@
+package com.paypal.butterfly.core;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * POJO persisted, as JSON, next to a transformed application folder when the
+ * transformation is incremental. It holds the SHA-256 hashes of all application files,
+ * before and after the transformation, the transformation template fingerprint,
+ * and, per file, the list of operations performed against it, in order
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class TransformationManifest {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransformationManifest.class);
+
+    static final String FILE_SUFFIX = ".manifest.json";
+
+    private static final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private String butterflyVersion;
+    private String templateFingerprint;
+    private String applicationFolder;
+    private String transformedApplicationFolder;
+    private long timestamp;
+
+    // Keys are file paths relative to the application folder, always separated by forward slashes
+    private Map<String, String> inputs = new TreeMap<>();
+    private Map<String, String> outputs = new TreeMap<>();
+    private Map<String, List<String>> operations = new TreeMap<>();
+
+    String getButterflyVersion() {
+        return butterflyVersion;
+    }
+
+    TransformationManifest setButterflyVersion(String butterflyVersion) {
+        this.butterflyVersion = butterflyVersion;
+        return this;
+    }
+
+    String getTemplateFingerprint() {
+        return templateFingerprint;
+    }
+
+    TransformationManifest setTemplateFingerprint(String templateFingerprint) {
+        this.templateFingerprint = templateFingerprint;
+        return this;
+    }
+
+    String getApplicationFolder() {
+        return applicationFolder;
+    }
+
+    TransformationManifest setApplicationFolder(String applicationFolder) {
+        this.applicationFolder = applicationFolder;
+        return this;
+    }
+
+    String getTransformedApplicationFolder() {
+        return transformedApplicationFolder;
+    }
+
+    TransformationManifest setTransformedApplicationFolder(String transformedApplicationFolder) {
+        this.transformedApplicationFolder = transformedApplicationFolder;
+        return this;
+    }
+
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    TransformationManifest setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+        return this;
+    }
+
+    Map<String, String> getInputs() {
+        return inputs;
+    }
+
+    TransformationManifest setInputs(Map<String, String> inputs) {
+        this.inputs = new TreeMap<>(inputs);
+        return this;
+    }
+
+    Map<String, String> getOutputs() {
+        return outputs;
+    }
+
+    TransformationManifest setOutputs(Map<String, String> outputs) {
+        this.outputs = new TreeMap<>(outputs);
+        return this;
+    }
+
+    Map<String, List<String>> getOperations() {
+        return operations;
+    }
+
+    TransformationManifest setOperations(Map<String, List<String>> operations) {
+        this.operations = new TreeMap<>(operations);
+        return this;
+    }
+
+    /**
+     * Writes this manifest as a JSON file
+     *
+     * @param manifestFile the manifest file
+     * @throws IOException if the file could not be written
+     */
+    void write(File manifestFile) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(manifestFile), StandardCharsets.UTF_8)) {
+            gson.toJson(this, writer);
+        }
+    }
+
+    /**
+     * Reads a manifest from a JSON file
+     *
+     * @param manifestFile the manifest file
+     * @return the manifest read from the file
+     * @throws IOException if the file could not be read, or is not a valid manifest
+     */
+    static TransformationManifest read(File manifestFile) throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(manifestFile), StandardCharsets.UTF_8)) {
+            TransformationManifest manifest = gson.fromJson(reader, TransformationManifest.class);
+            if (manifest == null || manifest.inputs == null || manifest.outputs == null || manifest.operations == null) {
+                throw new IOException("Invalid transformation manifest " + manifestFile);
+            }
+            return manifest;
+        } catch (JsonParseException e) {
+            throw new IOException("Invalid transformation manifest " + manifestFile, e);
+        }
+    }
+
+    /**
+     * Returns the manifest file of a transformed application folder,
+     * which is placed next to it
+     *
+     * @param transformedAppFolder the transformed application folder
+     * @return the manifest file of a transformed application folder
+     */
+    static File getManifestFile(File transformedAppFolder) {
+        return new File(transformedAppFolder.getAbsoluteFile().getParentFile(), transformedAppFolder.getName() + FILE_SUFFIX);
+    }
+
+    /**
+     * Returns the latest manifest, placed in {@code location}, written by a transformation of
+     * {@code applicationFolder} whose template fingerprint is {@code templateFingerprint},
+     * and whose transformed application folder still exists, or null, if there is none
+     *
+     * @param location the folder where previous transformed application folders were placed
+     * @param applicationFolder the original application folder
+     * @param templateFingerprint the transformation template fingerprint
+     * @return the latest manifest of a previous equivalent transformation, or null, if there is none
+     */
+    static TransformationManifest findPrevious(File location, File applicationFolder, String templateFingerprint) {
+        String prefix = applicationFolder.getName() + "-transformed-";
+        File[] manifestFiles = location.listFiles((dir, name) -> name.startsWith(prefix) && name.endsWith(FILE_SUFFIX));
+        if (manifestFiles == null) {
+            return null;
+        }
+
+        TransformationManifest latest = null;
+        for (File manifestFile : manifestFiles) {
+            TransformationManifest manifest;
+            try {
+                manifest = read(manifestFile);
+            } catch (IOException e) {
+                logger.debug("Transformation manifest {} will be ignored, since it could not be read", manifestFile, e);
+                continue;
+            }
+            if (applicationFolder.getAbsolutePath().equals(manifest.applicationFolder)
+                    && templateFingerprint.equals(manifest.templateFingerprint)
+                    && manifest.transformedApplicationFolder != null
+                    && new File(manifest.transformedApplicationFolder).isDirectory()
+                    && (latest == null || manifest.timestamp > latest.timestamp)) {
+                latest = manifest;
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * Returns the SHA-256 hashes of all files under {@code folder}, except the ones
+     * under {@code .git} folders, keyed by their paths relative to {@code folder}
+     *
+     * @param folder the folder whose files should be hashed
+     * @return the hashes of all files under {@code folder}
+     * @throws IOException if any file could not be read
+     */
+    static Map<String, String> hashFolder(File folder) throws IOException {
+        Path root = folder.toPath();
+        Map<String, String> hashes = new TreeMap<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return (dir.getFileName() != null && dir.getFileName().toString().equals(".git") ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE);
+            }
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile()) {
+                    hashes.put(getRelativePath(root, file), hash(file.toFile()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return hashes;
+    }
+
+    /**
+     * Returns the SHA-256 hash of a file, as a hexadecimal string
+     *
+     * @param file the file to be hashed
+     * @return the SHA-256 hash of the file
+     * @throws IOException if the file could not be read
+     */
+    static String hash(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream inputStream = new FileInputStream(file)) {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Returns the SHA-256 hash of a string, as a hexadecimal string
+     *
+     * @param value the string to be hashed
+     * @return the SHA-256 hash of the string
+     */
+    static String hash(String value) {
+        return toHex(newDigest().digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Returns the path of {@code file} relative to {@code root},
+     * normalized and separated by forward slashes
+     *
+     * @param root the root folder
+     * @param file the file
+     * @return the path of {@code file} relative to {@code root}
+     */
+    static String getRelativePath(Path root, Path file) {
+        return root.toAbsolutePath().normalize().relativize(file.toAbsolutePath().normalize()).toString().replace(File.separatorChar, '/');
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new InternalException("SHA-256 algorithm is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+}
@@ -0,0 +1,196 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.api.TransformationPlan;
+import com.paypal.butterfly.api.TransformationRequest;
+import com.paypal.butterfly.extensions.api.TransformationUtility;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * POJO describing a transformation plan. Operations can be added to it concurrently,
+ * when utilities are planned in parallel, and are kept sorted by their execution order
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class TransformationPlanImpl implements TransformationPlan {
+
+    // Sorts execution orders, such as "2.10.1", by each one of their numeric parts
+    private static final Comparator<String> ORDER_COMPARATOR = (order1, order2) -> {
+        String[] parts1 = order1.split("\\.");
+        String[] parts2 = order2.split("\\.");
+        for (int i = 0; i < Math.min(parts1.length, parts2.length); i++) {
+            int comparison;
+            try {
+                comparison = Long.compare(Long.parseLong(parts1[i]), Long.parseLong(parts2[i]));
+            } catch (NumberFormatException e) {
+                comparison = parts1[i].compareTo(parts2[i]);
+            }
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(parts1.length, parts2.length);
+    };
+
+    private TransformationRequest transformationRequest;
+    private List<PlannedOperation> operations = new ArrayList<>();
+    private int skippedOperationsCount = 0;
+    private long estimatedBytesRead = 0;
+    private long estimatedBytesWritten;
+    private boolean complete = false;
+
+    /**
+     * Creates a new transformation plan
+     *
+     * @param transformationRequest the request of the transformation being planned
+     * @param preparationBytes the amount of bytes written when preparing the
+     *                         transformed application folder, before the transformation
+     */
+    TransformationPlanImpl(TransformationRequest transformationRequest, long preparationBytes) {
+        this.transformationRequest = transformationRequest;
+        this.estimatedBytesWritten = preparationBytes;
+    }
+
+    /**
+     * Adds an operation that would be performed
+     *
+     * @param order the operation execution order
+     * @param operation the operation
+     * @param targetFile the file or folder the operation would be performed against, or null, if none
+     */
+    synchronized void addOperation(String order, TransformationUtility operation, File targetFile) {
+        PlannedOperationImpl plannedOperation = new PlannedOperationImpl(order, operation, targetFile);
+        int i = Collections.binarySearch(operations, plannedOperation, (o1, o2) -> ORDER_COMPARATOR.compare(o1.getOrder(), o2.getOrder()));
+        operations.add(i < 0 ? -i - 1 : i + 1, plannedOperation);
+        estimatedBytesRead += plannedOperation.getTargetFileSize();
+        estimatedBytesWritten += plannedOperation.getTargetFileSize();
+    }
+
+    /**
+     * Registers an operation would be skipped
+     */
+    synchronized void addSkippedOperation() {
+        skippedOperationsCount++;
+    }
+
+    synchronized void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    @Override
+    public TransformationRequest getTransformationRequest() {
+        return transformationRequest;
+    }
+
+    @Override
+    public synchronized List<PlannedOperation> getOperations() {
+        return Collections.unmodifiableList(new ArrayList<>(operations));
+    }
+
+    @Override
+    public synchronized int getOperationsCount() {
+        return operations.size();
+    }
+
+    @Override
+    public synchronized int getSkippedOperationsCount() {
+        return skippedOperationsCount;
+    }
+
+    @Override
+    public synchronized long getEstimatedBytesRead() {
+        return estimatedBytesRead;
+    }
+
+    @Override
+    public synchronized long getEstimatedBytesWritten() {
+        return estimatedBytesWritten;
+    }
+
+    @Override
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("TransformationPlan{operations=%d, skipped=%d, estimatedBytesRead=%d, estimatedBytesWritten=%d, complete=%s}",
+                operations.size(), skippedOperationsCount, estimatedBytesRead, estimatedBytesWritten, complete);
+    }
+
+    /**
+     * Returns the size of a file, or, if it is a folder, the sum of all files sizes
+     * under it, or zero, if it is null or does not exist
+     *
+     * @param file the file or folder
+     * @return the size of the file or folder
+     */
+    static long sizeOf(File file) {
+        if (file == null || !file.exists()) {
+            return 0;
+        }
+        return (file.isDirectory() ? FileUtils.sizeOfDirectory(file) : file.length());
+    }
+
+    private static class PlannedOperationImpl implements PlannedOperation {
+
+        private final String order;
+        private final String name;
+        private final String className;
+        private final String description;
+        private final File targetFile;
+        private final long targetFileSize;
+
+        private PlannedOperationImpl(String order, TransformationUtility operation, File targetFile) {
+            this.order = order;
+            this.name = operation.getName();
+            this.className = operation.getClass().getName();
+            this.description = operation.getDescription();
+            this.targetFile = targetFile;
+            this.targetFileSize = sizeOf(targetFile);
+        }
+
+        @Override
+        public String getOrder() {
+            return order;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getClassName() {
+            return className;
+        }
+
+        @Override
+        public String getDescription() {
+            return description;
+        }
+
+        @Override
+        public File getTargetFile() {
+            return targetFile;
+        }
+
+        @Override
+        public long getTargetFileSize() {
+            return targetFileSize;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s %s", order, name, (targetFile == null ? "" : targetFile));
+        }
+
+    }
+
+}
@@ -17,6 +17,7 @@ import com.google.gson.stream.JsonWriter;
 import com.paypal.butterfly.api.TransformationRequest;
 import com.paypal.butterfly.api.TransformationResult;
 import com.paypal.butterfly.api.AbortDetails;
+import com.paypal.butterfly.api.CompressionStatistics;
 import com.paypal.butterfly.api.TransformationMetrics;
 
 /**
@@ -46,6 +47,8 @@ class TransformationResultImpl implements TransformationResult {
     private List<TransformationMetrics> transformationMetrics;
     private transient Map<String, TransformationMetrics> transformationMetricsMap;
     private AbortDetails abortDetails;
+    private CompressionStatistics compressionStatistics;
+    private File traceFile;
 
     TransformationResultImpl(TransformationRequest transformationRequest, File transformedApplicationDir) {
         id = UUID.randomUUID().toString();
@@ -134,6 +137,16 @@ class TransformationResultImpl implements TransformationResult {
         return this;
     }
 
+    TransformationResultImpl setCompressionStatistics(CompressionStatistics compressionStatistics) {
+        this.compressionStatistics = compressionStatistics;
+        return this;
+    }
+
+    TransformationResultImpl setTraceFile(File traceFile) {
+        this.traceFile = traceFile;
+        return this;
+    }
+
     @Override
     public String getId() {
         return id;
@@ -219,6 +232,16 @@ class TransformationResultImpl implements TransformationResult {
         return abortDetails;
     }
 
+    @Override
+    public CompressionStatistics getCompressionStatistics() {
+        return compressionStatistics;
+    }
+
+    @Override
+    public File getTraceFile() {
+        return traceFile;
+    }
+
     @Override
     public String toJson() {
         if (gson == null) {
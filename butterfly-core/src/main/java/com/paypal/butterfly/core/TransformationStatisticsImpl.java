@@ -1,12 +1,23 @@
 package com.paypal.butterfly.core;
 
 import com.paypal.butterfly.extensions.api.*;
+import com.paypal.butterfly.api.TimingStatistics;
 import com.paypal.butterfly.api.TransformationStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
- * POJO to hold transformation statistics
+ * POJO to hold transformation statistics.
+ * <br>
+ * Results are counted straight into its fields, unless it has been made thread safe,
+ * in which case they are counted by {@link LongAdder} objects, one per counter, so that
+ * concurrent utilities do not contend for a lock, and published to its fields by {@link #publish()}
  *
  * @author facarvalho
  */
@@ -30,23 +41,62 @@ class TransformationStatisticsImpl implements TransformationStatistics {
     // Number of necessary manual instructions (if any)
     private int manualInstructionsCount = 0;
 
+    // How many utility condition results were reused, or had to be evaluated, see ConditionCache
+    private long conditionCacheHitCount = 0;
+    private long conditionCacheMissCount = 0;
+
+    // How long utilities took to be performed, per utility class name and per utility name
+    private Map<String, TimingStatistics> timingsPerUtilityClass = new TreeMap<>();
+    private Map<String, TimingStatistics> timingsPerUtilityName = new TreeMap<>();
+
+    // Only set once these statistics are made thread safe, holding one adder per counter
+    private transient LongAdder[] adders;
+
+    /**
+     * Makes these statistics safe to be registered by multiple threads.
+     * It must be called before any other thread is given access to them
+     */
+    void setThreadSafe() {
+        if (adders == null) {
+            adders = new LongAdder[Counter.values().length];
+            for (int i = 0; i < adders.length; i++) {
+                adders[i] = new LongAdder();
+            }
+            timingsPerUtilityClass = new ConcurrentSkipListMap<>(timingsPerUtilityClass);
+            timingsPerUtilityName = new ConcurrentSkipListMap<>(timingsPerUtilityName);
+        }
+    }
+
+    /**
+     * Publishes the results counted since these statistics were made thread safe,
+     * or since the last time they were published, to its fields.
+     * It must be called after all registering threads have finished
+     */
+    void publish() {
+        if (adders != null) {
+            for (Counter counter : Counter.values()) {
+                add(counter, (int) adders[counter.ordinal()].sumThenReset());
+            }
+        }
+    }
+
     void registerResult(PerformResult result) {
 
         ExecutionResult executionResult = null;
 
         switch (result.getType()) {
             case ERROR:
-                performResults.errorCount ++;
+                increment(Counter.PERFORM_RESULT_ERROR);
                 break;
             case EXECUTION_RESULT:
-                performResults.executionResultCount++;
+                increment(Counter.PERFORM_RESULT_EXECUTION_RESULT);
                 executionResult = result.getExecutionResult();
                 break;
             case SKIPPED_CONDITION:
-                performResults.skippedConditionCount++;
+                increment(Counter.PERFORM_RESULT_SKIPPED_CONDITION);
                 break;
             case SKIPPED_DEPENDENCY:
-                performResults.skippedDependencyCount++;
+                increment(Counter.PERFORM_RESULT_SKIPPED_DEPENDENCY);
                 break;
             default:
                 logger.error("Unknown result type {}", result.getType());
@@ -56,21 +106,21 @@ class TransformationStatisticsImpl implements TransformationStatistics {
         TransformationUtility source = result.getSource();
 
         if (source instanceof TransformationOperation) {
-            operationsCount++;
+            increment(Counter.OPERATIONS);
             if (executionResult != null) {
                 TOExecutionResult toExecutionResult = (TOExecutionResult) executionResult;
                 switch (toExecutionResult.getType()) {
                     case NO_OP:
-                        executionResults.operations.noOpCount++;
+                        increment(Counter.TO_NO_OP);
                         break;
                     case SUCCESS:
-                        executionResults.operations.successCount++;
+                        increment(Counter.TO_SUCCESS);
                         break;
                     case WARNING:
-                        executionResults.operations.warningCount++;
+                        increment(Counter.TO_WARNING);
                         break;
                     case ERROR:
-                        executionResults.operations.errorCount++;
+                        increment(Counter.TO_ERROR);
                         break;
                     default:
                         logger.error("Unknown result type {}", result.getType());
@@ -78,21 +128,21 @@ class TransformationStatisticsImpl implements TransformationStatistics {
                 }
             }
         } else {
-            utilitiesCount++;
+            increment(Counter.UTILITIES);
             if (executionResult != null) {
                 TUExecutionResult tuExecutionResult = (TUExecutionResult) executionResult;
                 switch (tuExecutionResult.getType()) {
                     case NULL:
-                        executionResults.utilities.nullCount++;
+                        increment(Counter.TU_NULL);
                         break;
                     case VALUE:
-                        executionResults.utilities.valueCount++;
+                        increment(Counter.TU_VALUE);
                         break;
                     case WARNING:
-                        executionResults.utilities.warningCount++;
+                        increment(Counter.TU_WARNING);
                         break;
                     case ERROR:
-                        executionResults.utilities.errorCount++;
+                        increment(Counter.TU_ERROR);
                         break;
                     default:
                         logger.error("Unknown result type {}", result.getType());
@@ -103,7 +153,93 @@ class TransformationStatisticsImpl implements TransformationStatistics {
     }
 
     void addManualInstruction() {
-        manualInstructionsCount++;
+        increment(Counter.MANUAL_INSTRUCTIONS);
+    }
+
+    /**
+     * Registers how long a transformation utility took to be performed
+     *
+     * @param utility the transformation utility
+     * @param name the name the timing is registered under, which is shared by
+     *             all utilities created by the same parent for each file
+     * @param duration how long the utility took to be performed, in nanoseconds
+     */
+    void registerTiming(TransformationUtility utility, String name, long duration) {
+        ((TimingStatisticsImpl) timingsPerUtilityClass.computeIfAbsent(utility.getClass().getName(), k -> new TimingStatisticsImpl())).record(duration);
+        ((TimingStatisticsImpl) timingsPerUtilityName.computeIfAbsent(name, k -> new TimingStatisticsImpl())).record(duration);
+    }
+
+    /**
+     * Sets how many utility condition results were reused,
+     * or had to be evaluated, during the transformation
+     *
+     * @param hitCount how many utility condition results were reused
+     * @param missCount how many utility conditions had to be evaluated
+     */
+    void setConditionCacheCounts(long hitCount, long missCount) {
+        conditionCacheHitCount = hitCount;
+        conditionCacheMissCount = missCount;
+    }
+
+    private void increment(Counter counter) {
+        LongAdder[] adders = this.adders;
+        if (adders != null) {
+            adders[counter.ordinal()].increment();
+        } else {
+            add(counter, 1);
+        }
+    }
+
+    private void add(Counter counter, int count) {
+        switch (counter) {
+            case UTILITIES:
+                utilitiesCount += count;
+                break;
+            case OPERATIONS:
+                operationsCount += count;
+                break;
+            case PERFORM_RESULT_ERROR:
+                performResults.errorCount += count;
+                break;
+            case PERFORM_RESULT_EXECUTION_RESULT:
+                performResults.executionResultCount += count;
+                break;
+            case PERFORM_RESULT_SKIPPED_CONDITION:
+                performResults.skippedConditionCount += count;
+                break;
+            case PERFORM_RESULT_SKIPPED_DEPENDENCY:
+                performResults.skippedDependencyCount += count;
+                break;
+            case TU_NULL:
+                executionResults.utilities.nullCount += count;
+                break;
+            case TU_VALUE:
+                executionResults.utilities.valueCount += count;
+                break;
+            case TU_WARNING:
+                executionResults.utilities.warningCount += count;
+                break;
+            case TU_ERROR:
+                executionResults.utilities.errorCount += count;
+                break;
+            case TO_NO_OP:
+                executionResults.operations.noOpCount += count;
+                break;
+            case TO_SUCCESS:
+                executionResults.operations.successCount += count;
+                break;
+            case TO_WARNING:
+                executionResults.operations.warningCount += count;
+                break;
+            case TO_ERROR:
+                executionResults.operations.errorCount += count;
+                break;
+            case MANUAL_INSTRUCTIONS:
+                manualInstructionsCount += count;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown counter " + counter);
+        }
     }
 
     @Override
@@ -181,6 +317,41 @@ class TransformationStatisticsImpl implements TransformationStatistics {
         return manualInstructionsCount;
     }
 
+    @Override
+    public Map<String, TimingStatistics> getTimingsPerUtilityClass() {
+        return Collections.unmodifiableMap(new TreeMap<>(timingsPerUtilityClass));
+    }
+
+    @Override
+    public Map<String, TimingStatistics> getTimingsPerUtilityName() {
+        return Collections.unmodifiableMap(new TreeMap<>(timingsPerUtilityName));
+    }
+
+    @Override
+    public long getConditionCacheHitCount() {
+        return conditionCacheHitCount;
+    }
+
+    @Override
+    public long getConditionCacheMissCount() {
+        return conditionCacheMissCount;
+    }
+
+    @Override
+    public double getConditionCacheHitRate() {
+        long total = conditionCacheHitCount + conditionCacheMissCount;
+        return (total == 0 ? 0 : (double) conditionCacheHitCount / total);
+    }
+
+    // Every counter kept by these statistics
+    private enum Counter {
+        UTILITIES, OPERATIONS,
+        PERFORM_RESULT_ERROR, PERFORM_RESULT_EXECUTION_RESULT, PERFORM_RESULT_SKIPPED_CONDITION, PERFORM_RESULT_SKIPPED_DEPENDENCY,
+        TU_NULL, TU_VALUE, TU_WARNING, TU_ERROR,
+        TO_NO_OP, TO_SUCCESS, TO_WARNING, TO_ERROR,
+        MANUAL_INSTRUCTIONS
+    }
+
     // Statistics per perform result
     private static class PerformResults {
         private int errorCount = 0;
@@ -18,9 +18,16 @@ import org.springframework.stereotype.Component;
 import javax.annotation.PostConstruct;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.Callable;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
@@ -39,6 +46,9 @@ class Transformer implements Supplier<TransformationResult> {
 
     private static final String ORDER_FORMAT = "%s.%d";
 
+    // Number of execution trace records logged when the transformation is aborted
+    private static final int ABORT_TRACE_RECORDS = 20;
+
     private Collection<TransformationListener> transformationListeners;
 
     private ManualInstructionsHandler manualInstructionsHandler;
@@ -47,16 +57,97 @@ class Transformer implements Supplier<TransformationResult> {
 
     private TransformationRequest transformationRequest;
 
+    private static final AtomicInteger utilitiesThreadCount = new AtomicInteger();
+
+    // Bounded, because most utilities are IO heavy, but their number is unknown beforehand
+    private static final int UTILITIES_POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+    // Used to perform independent utilities concurrently, when that is enabled, along with the thread
+    // performing the transformation. It is only created when necessary, and shut down when the transformation is over
+    private ThreadPoolExecutor utilitiesExecutor;
+
+    // Used to copy folders, according to the configured copy parallelism
+    private TreeCopier treeCopier;
+
+    // Used to evaluate conditions against multiple files in parallel, when that is enabled.
+    // It is only created when necessary, and shut down when the transformation is over
+    private ConditionsEvaluator conditionsEvaluator;
+
+    private static final AtomicInteger operationsThreadCount = new AtomicInteger();
+
+    // Used to perform operations generated by multiple operations concurrently, when that is enabled, along with
+    // the thread performing the transformation. It is only created when necessary, sized after the greatest
+    // multiple operations parallelism, minus one, and shut down when the transformation is over
+    private ThreadPoolExecutor operationsExecutor;
+
+    // Only set if the transformation is incremental
+    private IncrementalTransformation incrementalTransformation;
+
+    // Only set if the transformed application folder has been prepared in copy-on-write mode,
+    // or if an overlay has been materialized with hard links
+    private volatile CopyOnWriteFolder copyOnWriteFolder;
+
+    // Only set if the transformed application folder is an overlay on top of the original application folder
+    private OverlayFolder overlayFolder;
+
+    // Only set if the application is read from an archive
+    private FileSystem archiveFileSystem;
+
+    // Only set if the transformation execution is traced, which it is by default, in a small in-memory trace
+    private ExecutionTrace executionTrace;
+
+    // One per transformation template performed, if large context values are released once no longer referred to
+    private final List<ContextRetention> retentions = new ArrayList<>();
+
+    // Only set if the transformation is being planned, as opposed to performed
+    private TransformationPlanImpl transformationPlan;
+
+    // Set when the transformation is cancelled, and checked before every utility is performed
+    private volatile boolean cancelled = false;
+
+    // The thread performing the transformation, interrupted if it is cancelled
+    private Thread transformationThread;
+
+    // When the transformation runs out of time, as given by System.nanoTime,
+    // only meaningful if the configuration sets a transformation timeout
+    private long deadline;
+
+    // Interrupts the thread performing the transformation once it runs out of time,
+    // only set if the configuration sets a transformation timeout
+    private ScheduledFuture<?> deadlineInterruption;
+
+    // Set once the thread performing the transformation has been interrupted for running out of time
+    private boolean deadlineInterrupted = false;
+
+    // Performs utilities that have a timeout, owned by the transformation engine
+    private UtilityTimeoutExecutor utilityTimeoutExecutor;
+
+    // Only set if no executor has been given for utilities that have a timeout, in which case
+    // it is created when necessary, and shut down when the transformation is over
+    private UtilityTimeoutExecutor ownUtilityTimeoutExecutor;
+
+    // Interrupts transformations that run out of time, created only when necessary
+    private static ScheduledThreadPoolExecutor deadlineScheduler;
+
     private Transformer() {
     }
 
     static Transformer createTransformer(TransformationRequest request, Collection<TransformationListener> listeners, ManualInstructionsHandler handler, TransformationValidator validator) {
+        return createTransformer(request, listeners, handler, validator, null);
+    }
+
+    static Transformer createTransformer(TransformationRequest request, Collection<TransformationListener> listeners, ManualInstructionsHandler handler, TransformationValidator validator, UtilityTimeoutExecutor utilityTimeoutExecutor) {
         Transformer transformer = new Transformer();
 
         transformer.transformationRequest = request;
         transformer.transformationListeners = listeners;
         transformer.manualInstructionsHandler = handler;
         transformer.validator = validator;
+        transformer.utilityTimeoutExecutor = utilityTimeoutExecutor;
+        transformer.treeCopier = new TreeCopier(request.getConfiguration().getCopyParallelism());
+        if (request.getConfiguration().getTraceCapacity() > 0) {
+            transformer.executionTrace = new ExecutionTrace(request.getConfiguration().getTraceCapacity(), request.getConfiguration().isTraceFile());
+        }
 
         return transformer;
     }
@@ -64,6 +155,68 @@ class Transformer implements Supplier<TransformationResult> {
     @Override
     public TransformationResult get() {
 
+        Object transformationEvent = FlightRecorderEvents.getInstance().beginTransformation();
+        TransformationResult transformationResult = null;
+        start();
+        try {
+            transformationResult = transform();
+            return transformationResult;
+        } finally {
+            finish();
+            FlightRecorderEvents.getInstance().endTransformation(transformationEvent, transformationRequest, transformationResult != null && transformationResult.isSuccessful());
+        }
+    }
+
+    /**
+     * Cancels the transformation. It is aborted before its next transformation utility
+     * is performed, and the thread performing it is interrupted, so that utilities
+     * waiting on external processes, or on their timeouts, are released.
+     * If the transformation is not running yet, it is aborted as soon as it starts
+     */
+    synchronized void cancel() {
+        cancelled = true;
+        if (transformationThread != null) {
+            transformationThread.interrupt();
+        }
+    }
+
+    private synchronized void start() {
+        transformationThread = Thread.currentThread();
+        long transformationTimeout = transformationRequest.getConfiguration().getTransformationTimeout();
+        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(transformationTimeout);
+        if (transformationTimeout > 0) {
+            // The deadline is checked before every utility is performed, and the utility
+            // being performed when it is reached is interrupted, as if it had been cancelled
+            deadlineInterruption = getDeadlineScheduler().schedule(this::interruptOnDeadline, transformationTimeout, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void interruptOnDeadline() {
+        if (transformationThread != null) {
+            deadlineInterrupted = true;
+            transformationThread.interrupt();
+        }
+    }
+
+    private synchronized void finish() {
+        transformationThread = null;
+        retentions.forEach(ContextRetention::close);
+        retentions.clear();
+        if (deadlineInterruption != null) {
+            deadlineInterruption.cancel(false);
+            deadlineInterruption = null;
+        }
+        if (ownUtilityTimeoutExecutor != null) {
+            ownUtilityTimeoutExecutor.shutdown();
+            ownUtilityTimeoutExecutor = null;
+        }
+        if (cancelled || deadlineInterrupted) {
+            // The thread might belong to a pool, so it must not be left interrupted
+            Thread.interrupted();
+        }
+    }
+
+    private TransformationResult transform() {
         // Throws an ApplicationValidationException if validation fails
         validator.preTransformation(transformationRequest);
 
@@ -75,11 +228,39 @@ class Transformer implements Supplier<TransformationResult> {
         logger.info("Transformation template:\t\t\t{}", transformationRequest.getTemplateClassName());
 
         File transformedAppFolder = prepareOutputFolder(transformationRequest);
+        incrementalTransformation = IncrementalTransformation.start(transformationRequest, transformedAppFolder);
         List<TransformationContextImpl> transformationContexts = new ArrayList<>();
 
-        TransformationResult transformationResult = performTransformation(transformedAppFolder, transformationRequest, transformationContexts);
+        TransformationResult transformationResult;
+        try {
+            try {
+                transformationResult = performTransformation(transformedAppFolder, transformationRequest, transformationContexts);
+            } finally {
+                if (conditionsEvaluator != null) {
+                    conditionsEvaluator.shutdown();
+                }
+                shutdownPools();
+            }
+            if (overlayFolder != null) {
+                try {
+                    materializeOverlay(transformedAppFolder);
+                } catch (IOException e) {
+                    String exceptionMessage = String.format("An exception occurred when materializing the transformed application folder (%s)", transformedAppFolder);
+                    throw new InternalException(exceptionMessage, e);
+                }
+            }
+        } finally {
+            closeArchive();
+        }
+        reportExecutionTrace(transformedAppFolder, (TransformationResultImpl) transformationResult);
+        if (copyOnWriteFolder != null) {
+            detachTransformedAppFolder(transformedAppFolder);
+        }
 
         if (transformationResult.isSuccessful()) {
+            if (incrementalTransformation != null) {
+                incrementalTransformation.writeManifest();
+            }
             manualInstructionsHandler.processManualInstructions(transformationResult, transformationContexts);
             transformationListeners.forEach(l -> l.postTransformation(transformationRequest, transformationResult));
         } else {
@@ -89,6 +270,140 @@ class Transformer implements Supplier<TransformationResult> {
         return transformationResult;
     }
 
+    /**
+     * Plans the transformation, as opposed to performing it. Conditions, transformation utilities
+     * and multiple operations expansions are evaluated against the original application folder,
+     * but transformation operations are not executed. The application folder is not copied,
+     * nothing is written to it, and transformation listeners are not notified
+     *
+     * @return the transformation plan
+     */
+    TransformationPlan plan() {
+        start();
+        try {
+            return planTransformation();
+        } finally {
+            finish();
+        }
+    }
+
+    private TransformationPlan planTransformation() {
+        // Throws an ApplicationValidationException if validation fails
+        validator.preTransformation(transformationRequest);
+
+        logger.info("Planning transformation with template {}", transformationRequest.getTemplateClassName());
+
+        Application application = transformationRequest.getApplication();
+        Configuration configuration = transformationRequest.getConfiguration();
+
+        // The original application folder is copied, either to the transformed application folder,
+        // or, when it is modified by a blank template, to the baseline application folder
+        boolean copied = configuration.isModifyOriginalFolder() == transformationRequest.isBlank();
+        transformationPlan = new TransformationPlanImpl(transformationRequest, (copied ? TransformationPlanImpl.sizeOf(application.getFolder()) : 0));
+
+        TransformationResult transformationResult;
+        try {
+            transformationResult = performTransformation(application.getFolder(), transformationRequest, new ArrayList<>());
+        } finally {
+            if (conditionsEvaluator != null) {
+                conditionsEvaluator.shutdown();
+            }
+            shutdownPools();
+        }
+        transformationPlan.setComplete(transformationResult.isSuccessful());
+
+        logger.info("Transformation plan: {}", transformationPlan);
+
+        return transformationPlan;
+    }
+
+    /*
+     * Places every file not copied up yet in the transformed application folder. If they are
+     * hard linked, they are handled from then on as if the folder had been prepared in copy-on-write mode
+     */
+    private void materializeOverlay(File transformedAppFolder) throws IOException {
+        overlayFolder.materialize();
+        if (overlayFolder.isLink() && copyOnWriteFolder == null) {
+            copyOnWriteFolder = CopyOnWriteFolder.attach(transformedAppFolder);
+        }
+    }
+
+    /*
+     * Opens the application archive as a file system, returning its application root folder,
+     * which is its single top-level folder, if it has nothing else, or its root folder otherwise
+     */
+    private Path openArchive(File archive) throws IOException {
+        archiveFileSystem = FileSystems.newFileSystem(archive.toPath(), (ClassLoader) null);
+        Path root = archiveFileSystem.getPath("/");
+        List<Path> topLevelEntries = new ArrayList<>();
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(root)) {
+            for (Path entry : directoryStream) {
+                topLevelEntries.add(entry);
+            }
+        }
+        if (topLevelEntries.size() == 1 && Files.isDirectory(topLevelEntries.get(0))) {
+            return topLevelEntries.get(0);
+        }
+        return root;
+    }
+
+    private void closeArchive() {
+        if (archiveFileSystem == null) {
+            return;
+        }
+        try {
+            archiveFileSystem.close();
+        } catch (IOException e) {
+            logger.warn("Application archive could not be closed", e);
+        }
+        archiveFileSystem = null;
+    }
+
+    /*
+     * Logs the last utilities performed, if the transformation has been aborted,
+     * and writes the execution trace file, if asked for.
+     * Failing to write the execution trace does not fail the transformation
+     */
+    private void reportExecutionTrace(File transformedAppFolder, TransformationResultImpl transformationResult) {
+        if (executionTrace == null) {
+            return;
+        }
+        if (!transformationResult.isSuccessful()) {
+            logger.info("Last utilities performed before the transformation was aborted:{}{}", System.lineSeparator(), executionTrace.describeLast(ABORT_TRACE_RECORDS));
+        }
+        if (!transformationRequest.getConfiguration().isTraceFile()) {
+            return;
+        }
+        File traceFile = ExecutionTrace.getTraceFile(transformedAppFolder);
+        try {
+            executionTrace.write(traceFile, transformationRequest.getId());
+            transformationResult.setTraceFile(traceFile);
+            logger.debug("Execution trace has been written to {} ({} records)", traceFile, executionTrace.getRecordsCount());
+        } catch (IOException e) {
+            logger.warn("Execution trace could not be written to " + traceFile, e);
+        }
+    }
+
+    /*
+     * Files left hard linked to the original application files are replaced by copies, so that
+     * changing the transformed application afterwards does not change the original one.
+     * If the output is zipped, the transformed application folder is deleted right after that,
+     * so only the manual instructions files, which are written to it, must not be shared with
+     * the original application, if it has them
+     */
+    private void detachTransformedAppFolder(File transformedAppFolder) {
+        try {
+            if (transformationRequest.getConfiguration().isZipOutput()) {
+                copyOnWriteFolder.breakLinks(new File(transformedAppFolder, ManualInstructionsHandler.MANUAL_INSTRUCTIONS_MAIN_FILE));
+                copyOnWriteFolder.breakLinks(new File(transformedAppFolder, ManualInstructionsHandler.MANUAL_INSTRUCTIONS_DIR));
+            } else {
+                copyOnWriteFolder.detach();
+            }
+        } catch (TransformationUtilityException e) {
+            throw new InternalException("Transformed application files could not be detached from the original application files", e);
+        }
+    }
+
     /*
      * Returns a list of transformation context objects to be passed to transformation listeners as part of a notification event.
      * Listeners are not suppose to modify these transformation context objects, and that is why the need of this auxiliary method.
@@ -117,13 +432,16 @@ class Transformer implements Supplier<TransformationResult> {
                 UpgradePath upgradePath = ((UpgradePathTransformationRequest) transformationRequest).getUpgradePath();
                 performUpgrade(upgradePath, transformedAppFolder, transformationContexts, transformationRequest);
             } else if (transformationRequest instanceof TemplateTransformationRequest) {
-                TransformationTemplate template = ((TemplateTransformationRequest) transformationRequest).getTemplate();
-                TransformationContextImpl transformationContext = performTemplate(template, transformedAppFolder, null, transformationRequest);
+                TemplateTransformationRequest templateTransformationRequest = (TemplateTransformationRequest) transformationRequest;
+                TransformationContextImpl transformationContext = performTemplate(templateTransformationRequest.getTemplate(), templateTransformationRequest.getUtilities(), transformedAppFolder, null, transformationRequest);
                 transformationContexts.add(transformationContext);
             }
+            if (incrementalTransformation != null) {
+                incrementalTransformation.finish();
+            }
         } catch (InternalTransformationException e) {
             TransformationContextImpl abortedTransformationContext = e.getTransformationContext();
-            if (abortedTransformationContext != null) {
+            if (abortedTransformationContext != null && !transformationContexts.contains(abortedTransformationContext)) {
                 transformationContexts.add(abortedTransformationContext);
             }
 
@@ -148,6 +466,16 @@ class Transformer implements Supplier<TransformationResult> {
 
         UpgradeStep upgradeStep;
         TransformationContextImpl previousContext = null;
+
+        UpgradePathTransformationRequest upgradePathTransformationRequest = (UpgradePathTransformationRequest) transformationRequest;
+        UpgradeCheckpoint checkpoint = UpgradeCheckpoint.create(upgradePathTransformationRequest, transformedAppFolder);
+        if (upgradePathTransformationRequest.getCheckpoint() != null) {
+            logger.info("\tResuming from version {}", checkpoint.getReachedVersion());
+
+            // Only the upgrade correlation id is carried over from the previous context
+            previousContext = TransformationContextImpl.getTransformationContext(null).setUpgradeCorrelationId(checkpoint.getUpgradeCorrelationId());
+        }
+
         while (upgradePath.hasNext()) {
             upgradeStep = upgradePath.next();
 
@@ -159,8 +487,41 @@ class Transformer implements Supplier<TransformationResult> {
 
             // The context passed to this method call is not the same as the one returned,
             // although the variable holding them is the same
-            previousContext = performTemplate(upgradeStep, transformedAppFolder, previousContext, transformationRequest);
+            writeCheckpoint(checkpoint.stepStarted(upgradeStep));
+            Object upgradeStepEvent = FlightRecorderEvents.getInstance().beginUpgradeStep();
+            boolean successful = false;
+            try {
+                previousContext = performTemplate(upgradeStep, upgradeStep.getUtilities(), transformedAppFolder, previousContext, transformationRequest);
+                successful = true;
+            } finally {
+                FlightRecorderEvents.getInstance().endUpgradeStep(upgradeStepEvent, upgradeStep, successful);
+            }
             transformationContexts.add(previousContext);
+            writeCheckpoint(checkpoint.stepCompleted(upgradeStep, previousContext));
+        }
+
+        try {
+            if (transformationPlan == null) {
+                checkpoint.delete();
+            }
+        } catch (IOException e) {
+            logger.warn("Upgrade checkpoint could not be deleted", e);
+        }
+    }
+
+    /*
+     * Failing to write a checkpoint does not fail the transformation,
+     * it only prevents it from being resumed later.
+     * Checkpoints are not written when planning
+     */
+    private void writeCheckpoint(UpgradeCheckpoint checkpoint) {
+        if (transformationPlan != null) {
+            return;
+        }
+        try {
+            checkpoint.write();
+        } catch (IOException e) {
+            logger.warn("Upgrade checkpoint could not be written", e);
         }
     }
 
@@ -168,11 +529,11 @@ class Transformer implements Supplier<TransformationResult> {
      * Transform the application based on a single transformation template.
      * *** Notice that this transformation template can also be an upgrade step ***
      */
-    private TransformationContextImpl performTemplate(TransformationTemplate template, File transformedAppFolder, TransformationContextImpl previousTransformationContext, TransformationRequest transformationRequest) throws InternalTransformationException {
+    private TransformationContextImpl performTemplate(TransformationTemplate template, List<TransformationUtility> utilities, File transformedAppFolder, TransformationContextImpl previousTransformationContext, TransformationRequest transformationRequest) throws InternalTransformationException {
         logger.info("====================================================================================================================================");
         logger.info("Beginning transformation");
 
-        TransformationContextImpl transformationContext = performUtilities(template, template.getUtilities(), transformedAppFolder, previousTransformationContext, transformationRequest);
+        TransformationContextImpl transformationContext = performUtilities(template, utilities, transformedAppFolder, previousTransformationContext, transformationRequest);
 
         logger.info("");
         logger.info("Transformation has been completed");
@@ -190,9 +551,24 @@ class Transformer implements Supplier<TransformationResult> {
         TransformationContextImpl transformationContext = TransformationContextImpl.getTransformationContext(previousTransformationContext);
         transformationContext.setTransformationTemplate(template);
         transformationContext.setProperties(transformationRequest.getConfiguration().getProperties());
+        transformationContext.setFolderOverlay(overlayFolder);
+        transformationContext.setTreeCopier(treeCopier);
+        transformationContext.setConditionCache(transformationRequest.getConfiguration().isConditionCache() ? new ConditionCache() : null);
+
+        // Planning is not traced
+        transformationContext.setExecutionTrace(transformationPlan == null ? executionTrace : null);
+
+        ContextRetention retention = null;
+        int retentionThreshold = transformationRequest.getConfiguration().getRetentionThreshold();
+        if (retentionThreshold > 0) {
+            retention = new ContextRetention(utilities, retentionThreshold, template.getClass().getClassLoader());
+            retentions.add(retention);
+            transformationContext.setRetention(retention);
+        }
 
         if (template.isBlank()) {
-            File baseline = ((AbstractTransformationRequest) transformationRequest).getBaselineApplicationDir();
+            // When planning, the application folder is not moved to the baseline application folder
+            File baseline = (transformationPlan == null ? ((AbstractTransformationRequest) transformationRequest).getBaselineApplicationDir() : transformationRequest.getApplication().getFolder());
             if (baseline == null || !baseline.exists() || !baseline.isDirectory()) {
                 // TODO save exception and abortion description into the transformationContext
                 throw new InternalTransformationException("Baseline application location is invalid: " + baseline, transformationContext);
@@ -201,12 +577,23 @@ class Transformer implements Supplier<TransformationResult> {
         }
 
         try {
-            TransformationUtility utility;
-            for(Object transformationUtilityObj: utilities) {
-                utility = (TransformationUtility) transformationUtilityObj;
-                performUtility(utility, transformedAppFolder, transformationContext, String.valueOf(operationsExecutionOrder));
-                if (utility instanceof TransformationOperation || utility instanceof TransformationUtilityParent) {
-                    operationsExecutionOrder++;
+            if (transformationRequest.getConfiguration().isParallelUtilities()) {
+                performUtilitiesConcurrently(utilities, transformedAppFolder, transformationContext);
+                for (int i = 0; i < utilities.size(); i++) {
+                    transformationContext.release(i);
+                }
+            } else {
+                TransformationUtility utility;
+                for (int i = 0; i < utilities.size(); i++) {
+                    utility = utilities.get(i);
+                    if (retention != null) {
+                        retention.setCurrentIndex(i);
+                    }
+                    performUtility(utility, transformedAppFolder, transformationContext, String.valueOf(operationsExecutionOrder));
+                    transformationContext.release(i);
+                    if (utility instanceof TransformationOperation || utility instanceof TransformationUtilityParent) {
+                        operationsExecutionOrder++;
+                    }
                 }
             }
         } catch (TransformationException e) {
@@ -217,19 +604,48 @@ class Transformer implements Supplier<TransformationResult> {
         return transformationContext;
     }
 
+    /*
+     * Performs a list of transformation utilities concurrently, whenever they do not depend
+     * on each other, producing the same results as if they were performed sequentially
+     */
+    private void performUtilitiesConcurrently(List<TransformationUtility> utilities, File transformedAppFolder, TransformationContextImpl transformationContext) throws TransformationException {
+        UtilitiesScheduler utilitiesScheduler = new UtilitiesScheduler(utilities, getUtilitiesExecutor(),
+                (utility, order) -> performUtility(utility, transformedAppFolder, transformationContext, order));
+
+        transformationContext.setUtilitiesScheduler(utilitiesScheduler);
+        try {
+            utilitiesScheduler.perform();
+        } finally {
+            transformationContext.setUtilitiesScheduler(null);
+        }
+    }
+
     /*
      * Perform a condition against multiple files
      */
-    private PerformResult performConditions(MultipleConditions utility, Set<File> files, File transformedAppFolder, TransformationContextImpl transformationContext) throws TransformationException {
+    private PerformResult performConditions(MultipleConditions utility, Collection<File> files, File transformedAppFolder, TransformationContextImpl transformationContext) throws TransformationException {
 
         UtilityCondition condition;
         boolean allMode = utility.getMode().equals(MultipleConditions.Mode.ALL);
         boolean result = false;
 
+        // Conditions created for each file are timed under the name of their template
+        String timingName = utility.getConditionTemplate().getName();
+
+        List<UtilityCondition> conditions = null;
+        PerformResult[] performResults = null;
+        if (isConditionsParallel(files)) {
+            conditions = files.stream().map(utility::newConditionInstance).collect(Collectors.toList());
+            performResults = getConditionsEvaluator().evaluate(conditions, !allMode, timingName, transformedAppFolder, transformationContext);
+        }
+
+        int i = 0;
         for (File file : files) {
-            condition = utility.newConditionInstance(file);
+            checkInterruption(utility, transformationContext);
+            condition = (conditions != null ? conditions.get(i) : utility.newConditionInstance(file));
 
-            PerformResult innerPerformResult = condition.perform(transformedAppFolder, transformationContext);
+            PerformResult innerPerformResult = (performResults != null ? performResults[i] : perform(condition, "-", timingName, transformedAppFolder, transformationContext));
+            i++;
             processUtilityExecutionResult(condition, innerPerformResult, transformationContext);
 
             if(innerPerformResult.getType().equals(PerformResult.Type.EXECUTION_RESULT) &&
@@ -260,7 +676,7 @@ class Transformer implements Supplier<TransformationResult> {
     /*
      * Perform a filter in a list of files based on a condition
      */
-    private PerformResult performFiles(FilterFiles utility, Set<File> files, File transformedAppFolder, TransformationContextImpl transformationContext) throws TransformationException {
+    private PerformResult performFiles(FilterFiles utility, Collection<File> files, File transformedAppFolder, TransformationContextImpl transformationContext) throws TransformationException {
 
         SingleCondition condition;
         boolean conditionResult;
@@ -268,10 +684,23 @@ class Transformer implements Supplier<TransformationResult> {
 
         int warnings = 0;
 
+        // Conditions created for each file are timed under the name of their template
+        String timingName = utility.getConditionTemplate().getName();
+
+        List<SingleCondition> conditions = null;
+        PerformResult[] performResults = null;
+        if (isConditionsParallel(files)) {
+            conditions = files.stream().map(utility::newConditionInstance).collect(Collectors.toList());
+            performResults = getConditionsEvaluator().evaluate(conditions, null, timingName, transformedAppFolder, transformationContext);
+        }
+
+        int i = 0;
         for (File file : files) {
-            condition = utility.newConditionInstance(file);
+            checkInterruption(utility, transformationContext);
+            condition = (conditions != null ? conditions.get(i) : utility.newConditionInstance(file));
 
-            PerformResult innerPerformResult = condition.perform(transformedAppFolder, transformationContext);
+            PerformResult innerPerformResult = (performResults != null ? performResults[i] : perform(condition, "-", timingName, transformedAppFolder, transformationContext));
+            i++;
 
             processUtilityExecutionResult(condition, innerPerformResult, transformationContext);
 
@@ -299,15 +728,27 @@ class Transformer implements Supplier<TransformationResult> {
             }
         }
 
+        FileSet filteredFiles = FileSet.of(transformedAppFolder, subList);
         TUExecutionResult filterFilesExecutionResult;
         if (warnings == 0) {
-            filterFilesExecutionResult = TUExecutionResult.value(utility, subList);
+            filterFilesExecutionResult = TUExecutionResult.value(utility, filteredFiles);
         } else {
-            filterFilesExecutionResult = TUExecutionResult.warning(utility, warnings + " warnings were generated when filtering files", subList);
+            filterFilesExecutionResult = TUExecutionResult.warning(utility, warnings + " warnings were generated when filtering files", filteredFiles);
         }
         return PerformResult.executionResult(utility, filterFilesExecutionResult);
     }
 
+    private boolean isConditionsParallel(Collection<File> files) {
+        return transformationRequest.getConfiguration().getConditionsParallelism() > 1 && files.size() > 1;
+    }
+
+    private synchronized ConditionsEvaluator getConditionsEvaluator() {
+        if (conditionsEvaluator == null) {
+            conditionsEvaluator = new ConditionsEvaluator(transformationRequest.getConfiguration().getConditionsParallelism(), this::isInterrupted);
+        }
+        return conditionsEvaluator;
+    }
+
     /*
      * Perform a list of utilities, under a parent, in an application
      */
@@ -321,6 +762,11 @@ class Transformer implements Supplier<TransformationResult> {
         // TODO print number of \t based on depth of parents
         logger.info("\t{}\t - Executing utilities parent {}", order, utilityParent.getName());
 
+        if (isChildrenParallel(utilityParent)) {
+            performChildrenConcurrently((MultipleOperations) utilityParent, transformedAppFolder, transformationContext, order);
+            return;
+        }
+
         String childOrder;
         int i = 1;
         for(TransformationUtility utility : utilityParent.getChildren()) {
@@ -332,15 +778,161 @@ class Transformer implements Supplier<TransformationResult> {
         }
     }
 
+    private boolean isChildrenParallel(TransformationUtilityParent utilityParent) {
+        if (!(utilityParent instanceof MultipleOperations)) {
+            return false;
+        }
+        MultipleOperations multipleOperations = (MultipleOperations) utilityParent;
+
+        // Operations that might change files other than their own are performed sequentially
+        return multipleOperations.getParallelism() > 1
+                && !multipleOperations.getTemplateOperation().isAbortOnFailure()
+                && multipleOperations.getTemplateOperation().isConfinedToFile()
+                && multipleOperations.getChildren().size() > 1;
+    }
+
+    /*
+     * Perform the operations generated by a multiple operations utility concurrently, partitioned by
+     * the file each one is performed against. Operations against the same file are performed sequentially,
+     * in their original order, and every operation keeps the order it would have if all were performed sequentially.
+     * They are performed by the thread performing the transformation, along with threads from a pool owned by this transformer
+     */
+    private void performChildrenConcurrently(MultipleOperations multipleOperations, File transformedAppFolder, TransformationContextImpl transformationContext, String order) throws TransformationException {
+        List<TransformationUtility> children = multipleOperations.getChildren();
+        Map<List<String>, List<Integer>> partitions = new LinkedHashMap<>();
+        for (int i = 0; i < children.size(); i++) {
+            TransformationUtility child = children.get(i);
+            List<String> targetFile = Arrays.asList(child.getAbsoluteFileFromContextAttribute(), child.getRelativePath());
+            partitions.computeIfAbsent(targetFile, k -> new ArrayList<>()).add(i);
+        }
+
+        Exception[] exceptions = new Exception[children.size()];
+        AtomicInteger firstFailure = new AtomicInteger(Integer.MAX_VALUE);
+
+        transformationContext.setThreadSafe();
+        List<List<Integer>> partitionsList = new ArrayList<>(partitions.values());
+        AtomicInteger nextPartition = new AtomicInteger();
+        Runnable worker = transformationContext.bindToCurrentUtility(() -> {
+            int p;
+            while ((p = nextPartition.getAndIncrement()) < partitionsList.size()) {
+                for (int i : partitionsList.get(p)) {
+                    if (i > firstFailure.get()) {
+                        break;
+                    }
+                    try {
+                        performUtility(children.get(i), transformedAppFolder, transformationContext, String.format(ORDER_FORMAT, order, i + 1));
+                    } catch (TransformationException | RuntimeException e) {
+                        exceptions[i] = e;
+                        firstFailure.accumulateAndGet(i, Math::min);
+                    }
+                }
+            }
+        });
+
+        // The calling thread is one of the workers, and the others are only waited for if they have
+        // started, since the pool threads might all be busy, for example with other multiple operations
+        int workers = Math.min(multipleOperations.getParallelism(), partitionsList.size());
+        List<AtomicBoolean> claims = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 1; w < workers; w++) {
+            AtomicBoolean claim = new AtomicBoolean();
+            futures.add(getOperationsExecutor(workers - 1).submit(() -> {
+                if (claim.compareAndSet(false, true)) {
+                    worker.run();
+                }
+            }));
+            claims.add(claim);
+        }
+        worker.run();
+
+        try {
+            for (int w = 0; w < futures.size(); w++) {
+                if (claims.get(w).compareAndSet(false, true)) {
+                    futures.get(w).cancel(false);
+                } else {
+                    futures.get(w).get();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalException("Interrupted while performing " + multipleOperations.getName(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new InternalException("Unexpected failure when performing " + multipleOperations.getName(), e.getCause());
+        }
+
+        if (firstFailure.get() != Integer.MAX_VALUE) {
+            Exception exception = exceptions[firstFailure.get()];
+            if (exception instanceof TransformationException) {
+                throw (TransformationException) exception;
+            }
+            throw (RuntimeException) exception;
+        }
+    }
+
+    private synchronized Executor getUtilitiesExecutor() {
+        if (utilitiesExecutor == null) {
+            utilitiesExecutor = new ThreadPoolExecutor(UTILITIES_POOL_SIZE, UTILITIES_POOL_SIZE, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "butterfly-utilities-" + utilitiesThreadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            utilitiesExecutor.allowCoreThreadTimeOut(true);
+        }
+        return utilitiesExecutor;
+    }
+
+    private synchronized ExecutorService getOperationsExecutor(int threads) {
+        if (operationsExecutor == null) {
+            operationsExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "butterfly-operations-" + operationsThreadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            operationsExecutor.allowCoreThreadTimeOut(true);
+        } else if (threads > operationsExecutor.getMaximumPoolSize()) {
+            operationsExecutor.setMaximumPoolSize(threads);
+            operationsExecutor.setCorePoolSize(threads);
+        }
+        return operationsExecutor;
+    }
+
+    private synchronized void shutdownPools() {
+        if (utilitiesExecutor != null) {
+            utilitiesExecutor.shutdown();
+        }
+        if (operationsExecutor != null) {
+            operationsExecutor.shutdown();
+        }
+    }
+
     /*
      * Perform an transformation utility against an application. Notice that this utility can also be
      * actually a transformation operation
      */
     private void performUtility(TransformationUtility utility, File transformedAppFolder, TransformationContextImpl transformationContext, String order) throws TransformationException {
+        checkInterruption(utility, transformationContext);
+
         boolean isTO = utility instanceof TransformationOperation;
         PerformResult result = null;
         try {
-            result = utility.perform(transformedAppFolder, transformationContext);
+            if (overlayFolder != null && !overlayFolder.isMaterialized()) {
+                overlayUtility(utility, transformedAppFolder);
+            }
+            if (copyOnWriteFolder != null) {
+                copyOnWriteFolder.beforeUtility(utility, transformationContext);
+            }
+            if (isTO && transformationPlan != null) {
+                result = planOperation(utility, order, transformedAppFolder, transformationContext);
+            } else if (incrementalTransformation != null && incrementalTransformation.carryOver(utility, order, transformationContext,
+                    (u, o) -> performUtility(u, transformedAppFolder, transformationContext, o))) {
+                result = PerformResult.executionResult(utility, TOExecutionResult.noOp((TransformationOperation) utility, IncrementalTransformation.CARRIED_OVER_DETAILS));
+                invalidateConditionResults(utility, result, transformedAppFolder, transformationContext);
+            } else {
+                result = performWithinTimeout(utility, order, transformedAppFolder, transformationContext);
+            }
 
             switch (result.getType()) {
                 case SKIPPED_CONDITION:
@@ -366,12 +958,12 @@ class Transformer implements Supplier<TransformationResult> {
                         if(utility instanceof MultipleConditions) {
 
                             /* Executing a condition against multiple files */
-                            Set<File> files = (Set<File>) executionValue;
+                            Collection<File> files = (Collection<File>) executionValue;
                             result = performConditions((MultipleConditions) utility, files, transformedAppFolder, transformationContext);
                         } else if(utility instanceof FilterFiles) {
 
                             /* Execute a filter in a list of files based on a condition */
-                            Set<File> files = (Set<File>) executionValue;
+                            Collection<File> files = (Collection<File>) executionValue;
                             result = performFiles((FilterFiles) utility, files, transformedAppFolder, transformationContext);
                         }
 
@@ -422,6 +1014,238 @@ class Transformer implements Supplier<TransformationResult> {
         }
     }
 
+    /*
+     * Returns true if the transformation has been cancelled, or if it has run out of time
+     */
+    private boolean isInterrupted() {
+        return cancelled || transformationRequest.getConfiguration().getTransformationTimeout() > 0 && System.nanoTime() - deadline >= 0;
+    }
+
+    /*
+     * Aborts the transformation if it has been cancelled, or if it has run out of time.
+     * This is checked before every utility is performed, and also between files, when
+     * evaluating conditions against multiple files
+     */
+    private void checkInterruption(TransformationUtility utility, TransformationContextImpl transformationContext) throws TransformationException {
+        String abortionMessage;
+        if (cancelled) {
+            abortionMessage = "Transformation has been cancelled";
+        } else if (transformationRequest.getConfiguration().getTransformationTimeout() > 0 && System.nanoTime() - deadline >= 0) {
+            abortionMessage = String.format("Transformation has not finished within %d ms", transformationRequest.getConfiguration().getTransformationTimeout());
+        } else {
+            return;
+        }
+        logger.error("*** {} ***", abortionMessage);
+        TransformationException exception = new TransformationException(abortionMessage);
+        transformationContext.transformationAborted(exception, abortionMessage, utility.getName(), utility.getClass().getName());
+        throw exception;
+    }
+
+    /*
+     * Performs a transformation utility in a separate thread if it has a timeout. The transformation timeout, on the
+     * other hand, is enforced by interrupting the thread performing the transformation, and checked before every utility.
+     * The utility timeout only starts counting once it starts running, not while it waits for a thread.
+     * If the utility runs out of time, its thread is interrupted and left behind, and the utility results in an error.
+     * Notice that the utility might still be changing files, or the transformation context, until it reacts to
+     * the interruption. Notice also that, for utilities parents and loops, the timeout applies to each one of their
+     * children, not to the whole
+     */
+    private PerformResult performWithinTimeout(TransformationUtility utility, String order, File transformedAppFolder, TransformationContextImpl transformationContext) {
+        long timeout = (utility.getTimeout() > 0 ? utility.getTimeout() : transformationRequest.getConfiguration().getUtilityTimeout());
+        if (timeout == 0) {
+            return perform(utility, order, transformedAppFolder, transformationContext);
+        }
+
+        // The utility thread is left behind if it runs out of time, and might still register its timing afterwards
+        transformationContext.setThreadSafe();
+
+        String exceptionMessage;
+        try {
+            return getUtilityTimeoutExecutor().call(() -> perform(utility, order, transformedAppFolder, transformationContext), timeout, transformationContext::bindToCurrentUtility);
+        } catch (TimeoutException e) {
+            exceptionMessage = String.format("%s has not finished within %d ms", utility.getName(), timeout);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exceptionMessage = String.format("Interrupted while performing %s", utility.getName());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new InternalException("Unexpected failure when performing " + utility.getName(), e.getCause());
+        }
+        return PerformResult.error(utility, new TransformationUtilityException(exceptionMessage));
+    }
+
+    private synchronized UtilityTimeoutExecutor getUtilityTimeoutExecutor() {
+        if (utilityTimeoutExecutor != null) {
+            return utilityTimeoutExecutor;
+        }
+        if (ownUtilityTimeoutExecutor == null) {
+            ownUtilityTimeoutExecutor = new UtilityTimeoutExecutor(1);
+        }
+        return ownUtilityTimeoutExecutor;
+    }
+
+    private static synchronized ScheduledExecutorService getDeadlineScheduler() {
+        if (deadlineScheduler == null) {
+            deadlineScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "butterfly-deadline");
+                thread.setDaemon(true);
+                return thread;
+            });
+            deadlineScheduler.setRemoveOnCancelPolicy(true);
+        }
+        return deadlineScheduler;
+    }
+
+    /*
+     * Materializes the overlay before performing a utility that is neither confined to a file nor overlay aware
+     */
+    private void overlayUtility(TransformationUtility utility, File transformedAppFolder) throws TransformationUtilityException {
+        try {
+            overlayFolder.beforeUtility(utility);
+            if (overlayFolder.isMaterialized()) {
+                materializeOverlay(transformedAppFolder);
+            }
+        } catch (IOException e) {
+            throw new TransformationUtilityException("The transformed application folder could not be materialized before performing " + utility.getName(), e);
+        }
+    }
+
+    /*
+     * Plans a transformation operation, registering it in the transformation plan if its
+     * conditions are met. The operation itself is not executed, resulting instead in a no-op
+     */
+    private PerformResult planOperation(TransformationUtility utility, String order, File transformedAppFolder, TransformationContextImpl transformationContext) {
+        PerformResult result = utility.plan(transformedAppFolder, transformationContext);
+        if (result != null) {
+            if (result.getType().equals(PerformResult.Type.SKIPPED_CONDITION) || result.getType().equals(PerformResult.Type.SKIPPED_DEPENDENCY)) {
+                transformationPlan.addSkippedOperation();
+            }
+            return result;
+        }
+
+        File targetFile;
+        try {
+            targetFile = utility.getAbsoluteFile(transformedAppFolder, transformationContext);
+        } catch (TransformationUtilityException e) {
+            // Not all operations are performed against a specific file or folder
+            targetFile = null;
+        }
+        transformationPlan.addOperation(order, utility, targetFile);
+
+        logger.info("\t{}\t - Planned: {}", order, utility.getDescription());
+
+        return PerformResult.executionResult(utility, TOExecutionResult.noOp((TransformationOperation) utility, "Planned, not performed"));
+    }
+
+    /*
+     * Perform a transformation utility, registering how long it took, recording it
+     * in the execution trace, if it is being traced, and emitting a JDK Flight Recorder
+     * event, if it is being recorded
+     */
+    static PerformResult perform(TransformationUtility utility, String order, File transformedAppFolder, TransformationContextImpl transformationContext) {
+        TransformationUtilityParent parent = utility.getParent();
+
+        // Operations created for each file are timed under the name of their multiple operations parent
+        String timingName = (parent instanceof MultipleOperations ? parent.getName() : utility.getName());
+        return perform(utility, order, timingName, transformedAppFolder, transformationContext);
+    }
+
+    /*
+     * Same as above, registering how long the utility took under the given name,
+     * which is used for conditions created for each file
+     */
+    static PerformResult perform(TransformationUtility utility, String order, String timingName, File transformedAppFolder, TransformationContextImpl transformationContext) {
+        FlightRecorderEvents flightRecorderEvents = FlightRecorderEvents.getInstance();
+        Object utilityEvent = flightRecorderEvents.beginUtility();
+
+        // The target file size is only measured when the event is being recorded
+        File targetFile = null;
+        long bytesRead = 0;
+        if (utilityEvent != null && utility.isConfinedToFile() && utility.getAbsoluteFileFromContextAttribute() == null && utility.getRelativePath() != null) {
+            targetFile = new File(transformedAppFolder, utility.getRelativePath());
+            bytesRead = (targetFile.isFile() ? targetFile.length() : 0);
+        }
+
+        PerformResult result = null;
+        long start = System.nanoTime();
+        try {
+            result = utility.perform(transformedAppFolder, transformationContext);
+            return result;
+        } finally {
+            long end = System.nanoTime();
+            transformationContext.registerTiming(utility, timingName, end - start);
+            if (utility instanceof TransformationOperation) {
+                invalidateConditionResults(utility, result, transformedAppFolder, transformationContext);
+            }
+            ExecutionTrace executionTrace = transformationContext.getExecutionTrace();
+            if (executionTrace != null || utilityEvent != null) {
+                // The target file is only measured once, and only when the trace file or the event need it
+                long targetFileSize = 0;
+                if (utilityEvent != null || executionTrace.isRecordingBytes()) {
+                    targetFileSize = getTargetFileSize(utility, result, transformedAppFolder, transformationContext);
+                }
+                if (executionTrace != null) {
+                    executionTrace.record(utility, order, result, start, end, targetFileSize);
+                }
+                if (utilityEvent != null) {
+                    long bytesWritten = 0;
+                    if (targetFile != null && targetFileSize > 0 && result.getExecutionResult().getType().equals(TOExecutionResult.Type.SUCCESS)) {
+                        bytesWritten = targetFileSize;
+                    }
+                    flightRecorderEvents.endUtility(utilityEvent, utility, order, result, bytesRead, bytesWritten);
+                }
+            }
+        }
+    }
+
+    /*
+     * Discards the utility condition results kept for the file an operation has been performed against,
+     * or for all files, if the operation is not confined to a file, or if it has not been
+     * performed successfully, including operations returning an error execution result,
+     * in which case it might have changed files partially
+     */
+    private static void invalidateConditionResults(TransformationUtility operation, PerformResult result, File transformedAppFolder, TransformationContextImpl transformationContext) {
+        if (result != null && (result.getType().equals(PerformResult.Type.SKIPPED_CONDITION) || result.getType().equals(PerformResult.Type.SKIPPED_DEPENDENCY))) {
+            return;
+        }
+        ConditionCache conditionCache = transformationContext.getConditionCache();
+        if (conditionCache == null) {
+            return;
+        }
+        if (result != null && result.getType().equals(PerformResult.Type.EXECUTION_RESULT) && operation.isConfinedToFile()
+                && !((TOExecutionResult) result.getExecutionResult()).getType().equals(TOExecutionResult.Type.ERROR)) {
+            try {
+                conditionCache.invalidate(operation.getAbsoluteFile(transformedAppFolder, transformationContext));
+                return;
+            } catch (TransformationUtilityException e) {
+                // Falling back to discarding the results kept for all files
+            }
+        }
+        conditionCache.invalidateAll();
+    }
+
+    /*
+     * Returns the size of the file a utility confined to a file has been successfully performed against,
+     * or zero, if it has been performed against a folder.
+     * By then, its absolute file has already been resolved, so no new object is created
+     */
+    private static long getTargetFileSize(TransformationUtility utility, PerformResult result, File transformedAppFolder, TransformationContextImpl transformationContext) {
+        if (!utility.isConfinedToFile() || result == null || !result.getType().equals(PerformResult.Type.EXECUTION_RESULT)) {
+            return 0;
+        }
+        try {
+            File targetFile = utility.getAbsoluteFile(transformedAppFolder, transformationContext);
+            return (targetFile.isFile() ? targetFile.length() : 0);
+        } catch (TransformationUtilityException e) {
+            return 0;
+        }
+    }
+
     private void processError(TransformationUtility utility, Exception e, String order, TransformationContextImpl transformationContext) throws TransformationException {
         if (utility.isAbortOnFailure()) {
             logger.error("*** Transformation will be aborted due to {}{} ***", (utility instanceof Abort? "" : "failure in "), utility.getName());
@@ -486,7 +1310,10 @@ class Transformer implements Supplier<TransformationResult> {
                 }
                 break;
             case VALUE:
-                logger.debug("\t-\t - [{}][Result: {}][Utility: {}]", utility.toString(),  executionResult.getValue().toString(), utility.getName());
+                // The value is rendered by the logger itself, and only if debug is enabled, since it might be as large as a list of files
+                if (logger.isDebugEnabled()) {
+                    logger.debug("\t-\t - [{}][Result: {}][Utility: {}]", utility, executionResult.getValue(), utility.getName());
+                }
                 break;
             case WARNING:
                 processExecutionResultWarningType(utility, executionResult, "-");
@@ -529,6 +1356,24 @@ class Transformer implements Supplier<TransformationResult> {
 
         logger.info("Original application folder:\t\t" + application.getFolder());
 
+        if (transformationRequest instanceof UpgradePathTransformationRequest && ((UpgradePathTransformationRequest) transformationRequest).getCheckpoint() != null) {
+            // Resuming an upgrade path, on the same transformed application folder
+            UpgradeCheckpoint checkpoint = ((UpgradePathTransformationRequest) transformationRequest).getCheckpoint();
+            transformedAppFolder = new File(checkpoint.getTransformedApplicationFolder());
+            if (!transformedAppFolder.isDirectory()) {
+                String exceptionMessage = String.format("Transformed application folder (%s) to be resumed does not exist", transformedAppFolder);
+                throw new InternalException(exceptionMessage);
+            }
+            if (checkpoint.getStepInProgress() != null) {
+                logger.warn("Upgrade step {} was interrupted, its partial changes have not been reverted", checkpoint.getStepInProgress());
+            }
+            if (checkpoint.isCopyOnWrite()) {
+                copyOnWriteFolder = CopyOnWriteFolder.attach(transformedAppFolder);
+            }
+            logger.info("Transformed application folder:\t" + transformedAppFolder);
+            return transformedAppFolder;
+        }
+
         if (configuration.isModifyOriginalFolder()) {
             transformedAppFolder = application.getFolder();
         } else {
@@ -537,7 +1382,11 @@ class Transformer implements Supplier<TransformationResult> {
                 originalAppParent = new File(System.getProperty("user.dir"));
             }
 
-            String transformedAppFolderName = application.getFolder().getName() + "-transformed-" + simpleDateFormat.format(new Date()) + "-" + transformationRequest.getId();
+            String applicationName = application.getFolder().getName();
+            if (application.getArchive() != null) {
+                applicationName = applicationName.substring(0, applicationName.lastIndexOf('.'));
+            }
+            String transformedAppFolderName = applicationName + "-transformed-" + simpleDateFormat.format(new Date()) + "-" + transformationRequest.getId();
 
             if(configuration.getOutputFolder() != null) {
                 if(!configuration.getOutputFolder().exists()) {
@@ -560,7 +1409,7 @@ class Transformer implements Supplier<TransformationResult> {
         if (configuration.isModifyOriginalFolder()) {
             if (transformationRequest.isBlank()) {
                 try {
-                    FileUtils.copyDirectory(application.getFolder(), baselineAppFolder);
+                    treeCopier.copy(application.getFolder(), baselineAppFolder);
                     for (File file : application.getFolder().listFiles()) {
                         if (file.getName().equals(".git")) continue;
                         FileUtils.forceDelete(file);
@@ -582,8 +1431,26 @@ class Transformer implements Supplier<TransformationResult> {
             if(bDirCreated){
                 if (!transformationRequest.isBlank()) {
                     try {
-                        FileUtils.copyDirectory(application.getFolder(), transformedAppFolder);
+                        if (application.getArchive() != null) {
+                            // Archive entries are extracted only when needed, unless performing an upgrade path,
+                            // since it is checkpointed
+                            overlayFolder = new OverlayFolder(openArchive(application.getArchive()), transformedAppFolder, false);
+                            if (!(transformationRequest instanceof TemplateTransformationRequest)) {
+                                overlayFolder.materialize();
+                                overlayFolder = null;
+                            }
+                            logger.info("Application archive:\t\t\t\t{}", application.getArchive());
+                        } else if (configuration.isOverlay() && transformationRequest instanceof TemplateTransformationRequest) {
+                            overlayFolder = new OverlayFolder(application.getFolder(), transformedAppFolder, configuration.isCopyOnWrite());
+                            logger.info("Overlay mode:\t\t\t\t\ton");
+                        } else if (configuration.isCopyOnWrite()) {
+                            copyOnWriteFolder = CopyOnWriteFolder.prepare(application.getFolder(), transformedAppFolder);
+                            logger.info("Copy-on-write mode:\t\t\t\t{} ({} files linked)", copyOnWriteFolder.getMode(), copyOnWriteFolder.getLinkedFilesCount());
+                        } else {
+                            treeCopier.copy(application.getFolder(), transformedAppFolder);
+                        }
                     } catch (IOException e) {
+                        closeArchive();
                         String exceptionMessage = String.format(
                                 "An exception occurred when preparing the transformed application folder (%s). Check also if the original application folder (%s) is valid",
                                 transformedAppFolder, application.getFolder());
@@ -0,0 +1,282 @@
+package com.paypal.butterfly.core;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.paypal.butterfly.extensions.api.PerformResult;
+import com.paypal.butterfly.extensions.api.upgrade.UpgradeStep;
+
+import java.io.*;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * POJO persisted, as JSON, next to the transformed application folder of an upgrade path
+ * transformation, after each upgrade step is completed. It records the version reached,
+ * the upgrade steps completed so far, and a short summary of the context attributes and results
+ * produced by the last completed step, allowing a later transformation request to resume the upgrade path
+ * from the last completed step, on the same transformed application folder.
+ * <br>
+ * The checkpoint is deleted once the whole upgrade path is completed
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class UpgradeCheckpoint {
+
+    static final String FILE_SUFFIX = ".checkpoint.json";
+
+    private static final Gson gson = new GsonBuilder().serializeNulls().setPrettyPrinting().create();
+
+    // Maximum length of simple context attribute values recorded in the checkpoint
+    private static final int MAX_VALUE_LENGTH = 200;
+
+    private String butterflyVersion;
+    private String requestId;
+    private String applicationFolder;
+    private String transformedApplicationFolder;
+    private String extensionName;
+    private String extensionVersion;
+    private String firstStepClassName;
+    private String originalVersion;
+    private String upgradeVersion;
+    private String upgradeCorrelationId;
+
+    // Whether the transformed application folder was prepared in copy-on-write mode
+    private boolean copyOnWrite;
+
+    // The version the application has been upgraded to so far
+    private String reachedVersion;
+
+    // The upgrade step being performed when this checkpoint was written, if any.
+    // If set, the transformed application folder might contain partial changes made by it
+    private String stepInProgress;
+
+    private long timestamp;
+    private List<String> completedSteps = new ArrayList<>();
+
+    // Context attributes, summarized by their types, and results types, of the last completed upgrade step
+    private Map<String, String> attributes = new TreeMap<>();
+    private Map<String, String> results = new TreeMap<>();
+
+    private UpgradeCheckpoint() {
+    }
+
+    /**
+     * Creates the checkpoint of an upgrade path transformation, before any of its steps is performed
+     *
+     * @param transformationRequest the upgrade path transformation request
+     * @param transformedAppFolder the transformed application folder
+     * @return the checkpoint of an upgrade path transformation
+     */
+    static UpgradeCheckpoint create(UpgradePathTransformationRequest transformationRequest, File transformedAppFolder) {
+        UpgradePath upgradePath = transformationRequest.getUpgradePath();
+        UpgradeCheckpoint previous = transformationRequest.getCheckpoint();
+
+        UpgradeCheckpoint checkpoint = new UpgradeCheckpoint();
+        checkpoint.butterflyVersion = transformationRequest.getButterflyVersion();
+        checkpoint.requestId = transformationRequest.getId();
+        checkpoint.applicationFolder = transformationRequest.getApplication().getFolder().getAbsolutePath();
+        checkpoint.transformedApplicationFolder = transformedAppFolder.getAbsolutePath();
+        checkpoint.extensionName = transformationRequest.getExtensionName();
+        checkpoint.extensionVersion = transformationRequest.getExtensionVersion();
+        checkpoint.firstStepClassName = (previous != null ? previous.firstStepClassName : transformationRequest.getTemplateClassName());
+        checkpoint.originalVersion = (previous != null ? previous.originalVersion : upgradePath.getOriginalVersion());
+        checkpoint.upgradeVersion = upgradePath.getUpgradeVersion();
+        checkpoint.reachedVersion = (previous != null ? previous.reachedVersion : upgradePath.getOriginalVersion());
+        checkpoint.copyOnWrite = (previous != null ? previous.copyOnWrite : transformationRequest.getConfiguration().isCopyOnWrite() && !transformationRequest.getConfiguration().isModifyOriginalFolder());
+        if (previous != null) {
+            checkpoint.upgradeCorrelationId = previous.upgradeCorrelationId;
+            checkpoint.completedSteps.addAll(previous.completedSteps);
+        }
+        checkpoint.timestamp = System.currentTimeMillis();
+        return checkpoint;
+    }
+
+    /**
+     * Registers an upgrade step has started being performed
+     *
+     * @param upgradeStep the upgrade step being performed
+     * @return this checkpoint
+     */
+    UpgradeCheckpoint stepStarted(UpgradeStep upgradeStep) {
+        stepInProgress = upgradeStep.getClass().getName();
+        timestamp = System.currentTimeMillis();
+        return this;
+    }
+
+    /**
+     * Registers an upgrade step has been completed
+     *
+     * @param upgradeStep the upgrade step completed
+     * @param transformationContext the transformation context produced by the upgrade step
+     * @return this checkpoint
+     */
+    UpgradeCheckpoint stepCompleted(UpgradeStep upgradeStep, TransformationContextImpl transformationContext) {
+        stepInProgress = null;
+        reachedVersion = upgradeStep.getNextVersion();
+        upgradeCorrelationId = transformationContext.getUpgradeCorrelationId();
+        completedSteps.add(String.format("%s (%s to %s)", upgradeStep.getClass().getName(), upgradeStep.getCurrentVersion(), upgradeStep.getNextVersion()));
+
+        attributes.clear();
+        transformationContext.getAttributes().forEach((name, value) -> attributes.put(name, summarize(value)));
+        results.clear();
+        transformationContext.getResults().forEach((name, result) -> results.put(name, toString(result)));
+
+        timestamp = System.currentTimeMillis();
+        return this;
+    }
+
+    /*
+     * Summarizes a context attribute by its type, plus its size, if it is a collection, map or array,
+     * or its value, truncated, if it is a simple one, such as a string, number or file.
+     * Any other attribute is summarized only by its type, since it might be large, or expensive to convert to string
+     */
+    private static String summarize(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String type = value.getClass().getName();
+        if (value instanceof Collection) {
+            return String.format("%s (%d elements)", type, ((Collection) value).size());
+        }
+        if (value instanceof Map) {
+            return String.format("%s (%d entries)", type, ((Map) value).size());
+        }
+        if (value.getClass().isArray()) {
+            return String.format("%s (%d elements)", value.getClass().getComponentType().getName() + "[]", Array.getLength(value));
+        }
+        if (value instanceof CharSequence || value instanceof Number || value instanceof Boolean || value instanceof Character
+                || value instanceof Enum || value instanceof File) {
+            String string = value.toString();
+            if (string.length() > MAX_VALUE_LENGTH) {
+                string = string.substring(0, MAX_VALUE_LENGTH) + "...";
+            }
+            return String.format("%s: %s", type, string);
+        }
+        return type;
+    }
+
+    private static String toString(PerformResult result) {
+        if (result == null) {
+            return null;
+        }
+        if (result.getType() == PerformResult.Type.EXECUTION_RESULT) {
+            return String.format("%s (%s)", result.getType(), result.getExecutionResult().getType());
+        }
+        return result.getType().toString();
+    }
+
+    String getApplicationFolder() {
+        return applicationFolder;
+    }
+
+    String getTransformedApplicationFolder() {
+        return transformedApplicationFolder;
+    }
+
+    String getFirstStepClassName() {
+        return firstStepClassName;
+    }
+
+    String getOriginalVersion() {
+        return originalVersion;
+    }
+
+    String getUpgradeVersion() {
+        return upgradeVersion;
+    }
+
+    String getReachedVersion() {
+        return reachedVersion;
+    }
+
+    String getStepInProgress() {
+        return stepInProgress;
+    }
+
+    String getUpgradeCorrelationId() {
+        return upgradeCorrelationId;
+    }
+
+    boolean isCopyOnWrite() {
+        return copyOnWrite;
+    }
+
+    List<String> getCompletedSteps() {
+        return Collections.unmodifiableList(completedSteps);
+    }
+
+    Map<String, String> getAttributes() {
+        return Collections.unmodifiableMap(attributes);
+    }
+
+    Map<String, String> getResults() {
+        return Collections.unmodifiableMap(results);
+    }
+
+    /**
+     * Writes this checkpoint next to the transformed application folder.
+     * The file is replaced atomically, whenever the file system supports it,
+     * so that a valid checkpoint is left behind even if the process is killed
+     *
+     * @throws IOException if the checkpoint could not be written
+     */
+    void write() throws IOException {
+        File checkpointFile = getCheckpointFile(new File(transformedApplicationFolder));
+        File temporaryFile = new File(checkpointFile.getParentFile(), checkpointFile.getName() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temporaryFile), StandardCharsets.UTF_8)) {
+            gson.toJson(this, writer);
+        }
+        try {
+            Files.move(temporaryFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.move(temporaryFile.toPath(), checkpointFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Deletes this checkpoint, if it exists
+     *
+     * @throws IOException if the checkpoint could not be deleted
+     */
+    void delete() throws IOException {
+        Files.deleteIfExists(getCheckpointFile(new File(transformedApplicationFolder)).toPath());
+    }
+
+    /**
+     * Reads the checkpoint of a transformed application folder
+     *
+     * @param transformedAppFolder the transformed application folder
+     * @return the checkpoint of the transformed application folder
+     * @throws IOException if there is no checkpoint, or if it could not be read
+     */
+    static UpgradeCheckpoint read(File transformedAppFolder) throws IOException {
+        File checkpointFile = getCheckpointFile(transformedAppFolder);
+        try (Reader reader = new InputStreamReader(new FileInputStream(checkpointFile), StandardCharsets.UTF_8)) {
+            UpgradeCheckpoint checkpoint = gson.fromJson(reader, UpgradeCheckpoint.class);
+            if (checkpoint == null || checkpoint.firstStepClassName == null || checkpoint.reachedVersion == null
+                    || checkpoint.applicationFolder == null || checkpoint.transformedApplicationFolder == null) {
+                throw new IOException("Invalid upgrade checkpoint " + checkpointFile);
+            }
+            return checkpoint;
+        } catch (JsonParseException e) {
+            throw new IOException("Invalid upgrade checkpoint " + checkpointFile, e);
+        }
+    }
+
+    /**
+     * Returns the checkpoint file of a transformed application folder,
+     * which is placed next to it
+     *
+     * @param transformedAppFolder the transformed application folder
+     * @return the checkpoint file of a transformed application folder
+     */
+    static File getCheckpointFile(File transformedAppFolder) {
+        return new File(transformedAppFolder.getAbsoluteFile().getParentFile(), transformedAppFolder.getName() + FILE_SUFFIX);
+    }
+
+}
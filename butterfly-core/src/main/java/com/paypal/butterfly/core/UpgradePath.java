@@ -163,6 +163,32 @@ final class UpgradePath {
         return stepToReturn;
     }
 
+    /**
+     * Moves this upgrade path cursor to the upgrade step that upgrades
+     * from {@code version}, skipping the ones before it. This is used to resume
+     * an upgrade path from a checkpoint
+     *
+     * @param version the version the application has already been upgraded to
+     * @return this upgrade path
+     * @throws IllegalArgumentException if {@code version} is not the "upgrade from" version
+     * of any remaining upgrade step in this upgrade path
+     */
+    UpgradePath startFrom(String version) {
+        UpgradeStep us = nextStep;
+        while (us != null && !us.getCurrentVersion().equals(version)) {
+            if (us.getNextVersion().equals(upgradeVersion)) {
+                us = null;
+            } else {
+                us = us.getNextStep();
+            }
+        }
+        if (us == null) {
+            throw new IllegalArgumentException("Version " + version + " is not part of " + description.toLowerCase());
+        }
+        nextStep = us;
+        return this;
+    }
+
     /**
      * Return the name of the upgrade template to be performed
      * as the first step in this upgrade path
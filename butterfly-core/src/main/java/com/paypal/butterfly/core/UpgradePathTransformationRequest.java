@@ -23,6 +23,9 @@ class UpgradePathTransformationRequest extends AbstractTransformationRequest {
 
     // The upgrade path to be applied
     private transient UpgradePath upgradePath;
+
+    // Set only if this request resumes an upgrade path from a checkpoint
+    private transient UpgradeCheckpoint checkpoint;
     private transient static Gson gson;
 
     UpgradePathTransformationRequest(Application application, UpgradePath upgradePath, Configuration configuration) {
@@ -39,10 +42,28 @@ class UpgradePathTransformationRequest extends AbstractTransformationRequest {
         upgradeStep = true;
     }
 
+    UpgradePathTransformationRequest(Application application, UpgradePath upgradePath, Configuration configuration, UpgradeCheckpoint checkpoint) {
+        this(application, upgradePath, configuration);
+        if (checkpoint == null) {
+            throw new IllegalArgumentException("Upgrade checkpoint cannot be null");
+        }
+        this.checkpoint = checkpoint;
+    }
+
     UpgradePath getUpgradePath() {
         return upgradePath;
     }
 
+    /**
+     * Returns the checkpoint this request resumes its upgrade path from,
+     * or null, if it is not resuming an upgrade path
+     *
+     * @return the checkpoint this request resumes its upgrade path from
+     */
+    UpgradeCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
     private String toJson() {
         if (gson == null) {
             gson = new GsonBuilder().serializeNulls().setPrettyPrinting().registerTypeAdapter(File.class, new TypeAdapter<File>() {
@@ -0,0 +1,502 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.api.exception.TransformationException;
+import com.paypal.butterfly.extensions.api.*;
+import com.paypal.butterfly.extensions.api.utilities.ManualInstruction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Performs a list of transformation utilities concurrently, as long as
+ * they do not depend on each other, producing the same results that would
+ * be produced if they were performed sequentially.
+ * <br>
+ * Before performing any utility, a dependency graph is built, where a utility
+ * depends on every earlier utility that:
+ * <ol>
+ *     <li>produces a result or attribute it refers to via {@code dependsOn}, {@code executeIf},
+ *     {@code executeUnless}, {@code set}, {@code absolute} or files attributes</li>
+ *     <li>performs against an overlapping file, as long as at least one of them changes files</li>
+ *     <li>might abort the transformation, or if the utility itself might abort it</li>
+ * </ol>
+ * Attributes read by utilities during execution, although not declared, are also honored,
+ * since the transformation context, while this scheduler is set to it, makes readers wait for
+ * any earlier utility supposed to produce the requested attribute.
+ * <br>
+ * Utilities are handed to the executor as soon as all utilities they depend on are done.
+ * The thread calling {@link #perform()} also performs the earliest pending utility by itself
+ * whenever the executor has not picked it up yet, which guarantees progress even if the
+ * executor is busy.
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class UtilitiesScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(UtilitiesScheduler.class);
+
+    /**
+     * Performs one transformation utility, given its execution order
+     */
+    @FunctionalInterface
+    interface UtilityPerformer {
+        void perform(TransformationUtility utility, String order) throws TransformationException;
+    }
+
+    private enum State {
+        PENDING, SUBMITTED, DONE
+    }
+
+    private final Node[] nodes;
+
+    private final Executor executor;
+
+    private final UtilityPerformer utilityPerformer;
+
+    // Index of the first node producing each result or attribute
+    private final Map<String, Integer> firstProducers = new HashMap<>();
+
+    // The node being performed by the current thread, if any
+    private final ThreadLocal<Node> currentNode = new ThreadLocal<>();
+
+    // Guards the state of all nodes, besides the two fields below
+    private final Object lock = new Object();
+
+    // Number of nodes handed to the executor that are not done yet
+    private int outstanding = 0;
+
+    // Nodes after this index are not performed, because this one has failed
+    private int stopIndex = Integer.MAX_VALUE;
+
+    UtilitiesScheduler(List<TransformationUtility> utilities, Executor executor, UtilityPerformer utilityPerformer) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        this.executor = executor;
+        this.utilityPerformer = utilityPerformer;
+
+        nodes = new Node[utilities.size()];
+        int operationsExecutionOrder = 1;
+        for (int i = 0; i < nodes.length; i++) {
+            TransformationUtility utility = utilities.get(i);
+            Node node = new Node(i, utility, String.valueOf(operationsExecutionOrder));
+            analyze(node, utility);
+            nodes[i] = node;
+            if (utility instanceof TransformationOperation || utility instanceof TransformationUtilityParent) {
+                operationsExecutionOrder++;
+            }
+        }
+        for (Node node : nodes) {
+            for (String name : node.produced) {
+                Integer firstProducer = firstProducers.putIfAbsent(name, node.index);
+
+                // Whoever produces something produced before must wait for
+                // everybody before it, since any of them could be a reader
+                if (firstProducer != null && firstProducer != node.index) {
+                    node.ordered = true;
+                }
+            }
+        }
+        for (Node node : nodes) {
+            for (int i = 0; i < node.index; i++) {
+                if (dependsOn(node, nodes[i])) {
+                    node.predecessors.add(nodes[i]);
+                }
+            }
+        }
+    }
+
+    /*
+     * Collects what the utility, and its children, if any, produce and refer to,
+     * and which files they perform against
+     */
+    private static void analyze(Node node, TransformationUtility utility) {
+        if (utility.getName() != null) {
+            node.produced.add(utility.getName());
+        }
+        if (utility.getContextAttributeName() != null) {
+            node.produced.add(utility.getContextAttributeName());
+        }
+        addReferences(node, utility);
+        if (utility.isAbortOnFailure() || utility instanceof ManualInstruction || utility instanceof TransformationUtilityLoop) {
+            node.barrier = true;
+        }
+
+        if (utility instanceof TransformationUtilityLoop) {
+            // Loops wait for, and are waited by, everybody else anyway
+            return;
+        }
+        if (utility instanceof MultipleOperations) {
+            MultipleOperations multipleOperations = (MultipleOperations) utility;
+            addAll(node.referenced, multipleOperations.getFilesAttributes());
+            TransformationOperation templateOperation = multipleOperations.getTemplateOperation();
+            if (templateOperation != null) {
+                addReferences(node, templateOperation);
+                node.barrier |= templateOperation.isAbortOnFailure();
+            }
+            node.producesUnknown = true;
+            node.changesFiles = true;
+            addFile(node, null);
+        } else if (utility instanceof FilterFiles) {
+            addAll(node.referenced, ((FilterFiles) utility).getFilesAttributes());
+            node.producesUnknown = true;
+            addFile(node, null);
+        } else if (utility instanceof MultipleConditions) {
+            addAll(node.referenced, ((MultipleConditions) utility).getFilesAttributes());
+            node.producesUnknown = true;
+            addFile(node, null);
+        } else if (utility instanceof TransformationUtilityParent) {
+            for (TransformationUtility child : ((TransformationUtilityParent) utility).getChildren()) {
+                analyze(node, child);
+            }
+        } else {
+            if (utility instanceof TransformationOperation) {
+                node.changesFiles = true;
+            }
+            boolean fileKnown = utility.isConfinedToFile() && utility.getAbsoluteFileFromContextAttribute() == null;
+            addFile(node, fileKnown ? utility.getRelativePath() : null);
+        }
+    }
+
+    private static void addReferences(Node node, TransformationUtility utility) {
+        node.referenced.addAll(utility.getDependencies());
+        node.referenced.addAll(utility.getLatePropertiesAttributes().values());
+        addAll(node.referenced, utility.getIfConditionAttributeName(), utility.getUnlessConditionAttributeName(), utility.getAbsoluteFileFromContextAttribute());
+    }
+
+    private static void addAll(Set<String> set, String... names) {
+        if (names != null) {
+            for (String name : names) {
+                if (name != null) {
+                    set.add(name);
+                }
+            }
+        }
+    }
+
+    /*
+     * Adds a file to the node, where null means the whole application folder
+     */
+    private static void addFile(Node node, String relativePath) {
+        if (node.files == null) {
+            return;
+        }
+        if (relativePath == null) {
+            node.files = null;
+            return;
+        }
+        String path = relativePath;
+        while (path.startsWith(File.separator)) {
+            path = path.substring(1);
+        }
+        while (path.endsWith(File.separator)) {
+            path = path.substring(0, path.length() - 1);
+        }
+        if (path.isEmpty() || path.equals(".")) {
+            node.files = null;
+            return;
+        }
+        node.files.add(path);
+    }
+
+    private boolean dependsOn(Node node, Node earlier) {
+        if (node.ordered || node.barrier || earlier.barrier) {
+            return true;
+        }
+        for (String name : node.referenced) {
+            if (produces(earlier, name)) {
+                return true;
+            }
+        }
+        return (node.changesFiles || earlier.changesFiles) && overlap(node.files, earlier.files);
+    }
+
+    private boolean produces(Node node, String name) {
+        return node.produced.contains(name) || node.producesUnknown && !firstProducers.containsKey(name);
+    }
+
+    private static boolean overlap(List<String> files, List<String> otherFiles) {
+        if (files == null || otherFiles == null) {
+            return true;
+        }
+        for (String file : files) {
+            for (String otherFile : otherFiles) {
+                if (file.equals(otherFile) || file.startsWith(otherFile + File.separator) || otherFile.startsWith(file + File.separator)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Performs all utilities, returning only after all of them are done, or,
+     * in case one of them fails, after all utilities that would have been
+     * performed before it, if they were performed sequentially, are done.
+     *
+     * @throws TransformationException if any utility aborts the transformation
+     */
+    void perform() throws TransformationException {
+        logger.debug("Performing {} utilities concurrently", nodes.length);
+        try {
+            while (true) {
+                List<Node> readyNodes;
+                Node inlineNode;
+                synchronized (lock) {
+                    readyNodes = collectReadyNodes();
+                    if (outstanding == 0) {
+                        break;
+                    }
+                    inlineNode = claimEarliestNode();
+                    if (inlineNode == null && readyNodes.isEmpty()) {
+                        lock.wait();
+                        continue;
+                    }
+                    readyNodes.remove(inlineNode);
+                }
+                submit(readyNodes);
+                if (inlineNode != null) {
+                    run(inlineNode);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalException("Interrupted while performing utilities concurrently", e);
+        }
+
+        for (Node node : nodes) {
+            if (node.failure == null) {
+                continue;
+            }
+            if (node.failure instanceof TransformationException) {
+                throw (TransformationException) node.failure;
+            }
+            if (node.failure instanceof RuntimeException) {
+                throw (RuntimeException) node.failure;
+            }
+            if (node.failure instanceof Error) {
+                throw (Error) node.failure;
+            }
+            throw new InternalException("Utility " + node.utility.getName() + " has failed unexpectedly", node.failure);
+        }
+    }
+
+    /*
+     * Marks all nodes whose predecessors are done as submitted, returning them,
+     * so that they can be handed to the executor once the lock is released.
+     * Must be called holding the lock
+     */
+    private List<Node> collectReadyNodes() {
+        List<Node> readyNodes = new ArrayList<>();
+        for (Node node : nodes) {
+            if (node.index > stopIndex) {
+                break;
+            }
+            if (node.state != State.PENDING || !isReady(node)) {
+                continue;
+            }
+            node.state = State.SUBMITTED;
+            outstanding++;
+            readyNodes.add(node);
+        }
+        return readyNodes;
+    }
+
+    /*
+     * Must be called without holding the lock, since the executor may run the nodes right away
+     */
+    private void submit(List<Node> readyNodes) {
+        for (Node node : readyNodes) {
+            try {
+                executor.execute(() -> {
+                    if (node.claimed.compareAndSet(false, true)) {
+                        run(node);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // It will be run by the thread calling perform
+                logger.debug("Executor has rejected {}, it will be performed by the scheduler thread", node.utility.getName());
+            }
+        }
+    }
+
+    private boolean isReady(Node node) {
+        for (Node predecessor : node.predecessors) {
+            if (predecessor.state != State.DONE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     * Claims the earliest unfinished node, if it has been submitted but not picked up
+     * by the executor yet. Only the earliest one is claimed because it never has to wait
+     * for anything, so the scheduler thread is never blocked while performing it.
+     * Must be called holding the lock
+     */
+    private Node claimEarliestNode() {
+        for (Node node : nodes) {
+            if (node.state == State.DONE) {
+                continue;
+            }
+            if (node.state == State.SUBMITTED && node.claimed.compareAndSet(false, true)) {
+                return node;
+            }
+            return null;
+        }
+        return null;
+    }
+
+    private void run(Node node) {
+        boolean skip;
+        synchronized (lock) {
+            skip = node.index > stopIndex;
+        }
+        if (!skip) {
+            currentNode.set(node);
+            try {
+                utilityPerformer.perform(node.utility, node.order);
+            } catch (Throwable t) {
+                node.failure = t;
+            } finally {
+                currentNode.remove();
+            }
+        }
+        synchronized (lock) {
+            node.state = State.DONE;
+            outstanding--;
+            if (node.failure != null && node.index < stopIndex) {
+                stopIndex = node.index;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Called by the transformation context right before a result or attribute is read.
+     * If the current thread is performing a utility, this method waits until all
+     * earlier utilities that might produce that result or attribute are done.
+     *
+     * @param name the result or attribute name
+     * @return false if that result or attribute should not be visible to the current
+     * thread, since it is only produced by later utilities, which would not have been
+     * performed yet if utilities were performed sequentially
+     */
+    boolean awaitAttribute(String name) {
+        Node node = currentNode.get();
+        if (node == null) {
+            return true;
+        }
+        Integer firstProducer = firstProducers.get(name);
+        if (firstProducer != null && firstProducer > node.index) {
+            return false;
+        }
+        synchronized (lock) {
+            while (hasUnfinishedProducer(node, name)) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InternalException("Interrupted while waiting for transformation context attribute " + name, e);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a runnable that runs {@code runnable} on behalf of the utility being
+     * performed by the calling thread, if any, regardless of the thread running it.
+     * This is necessary when a utility uses other threads to be performed.
+     *
+     * @param runnable the runnable to be bound to the utility being performed by the calling thread
+     * @return a runnable bound to the utility being performed by the calling thread
+     */
+    Runnable bindToCurrentNode(Runnable runnable) {
+        Node node = currentNode.get();
+        if (node == null) {
+            return runnable;
+        }
+        return () -> {
+            Node previousNode = currentNode.get();
+            currentNode.set(node);
+            try {
+                runnable.run();
+            } finally {
+                if (previousNode == null) {
+                    currentNode.remove();
+                } else {
+                    currentNode.set(previousNode);
+                }
+            }
+        };
+    }
+
+    /*
+     * Must be called holding the lock
+     */
+    private boolean hasUnfinishedProducer(Node node, String name) {
+        for (int i = 0; i < node.index; i++) {
+            Node earlier = nodes[i];
+            if (earlier.state == State.DONE || earlier.state == State.PENDING && earlier.index > stopIndex) {
+                continue;
+            }
+            if (produces(earlier, name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class Node {
+
+        private final int index;
+        private final TransformationUtility utility;
+        private final String order;
+
+        // Results and attributes produced by this node
+        private final Set<String> produced = new HashSet<>();
+
+        // Results and attributes this node is known to refer to
+        private final Set<String> referenced = new HashSet<>();
+
+        // Relative paths of the files this node performs against,
+        // or null, meaning the whole application folder
+        private List<String> files = new ArrayList<>();
+
+        // Whether this node changes any of its files
+        private boolean changesFiles = false;
+
+        // Whether this node produces results whose names are
+        // only known during transformation time
+        private boolean producesUnknown = false;
+
+        // Whether this node waits for, and is waited by, every other node
+        private boolean barrier = false;
+
+        // Whether this node waits for every earlier node
+        private boolean ordered = false;
+
+        private final List<Node> predecessors = new ArrayList<>();
+
+        // The fields below are guarded by the scheduler lock, except the claimed flag
+        private State state = State.PENDING;
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+        private Throwable failure;
+
+        private Node(int index, TransformationUtility utility, String order) {
+            this.index = index;
+            this.utility = utility;
+            this.order = order;
+        }
+
+    }
+
+}
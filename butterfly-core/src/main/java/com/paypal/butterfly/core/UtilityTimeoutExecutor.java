@@ -0,0 +1,124 @@
+package com.paypal.butterfly.core;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+/**
+ * Performs transformation utilities that have a timeout, in a bounded pool of
+ * daemon threads, owned by the transformation engine.
+ * <br>
+ * The timeout of each utility only starts counting once it starts running, not while
+ * it waits for a thread. Utilities that run out of time are interrupted, and their threads
+ * are left behind until they react to it. Meanwhile, each one of those threads is replaced
+ * by a new one, so that hung utilities do not take up the pool for good
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class UtilityTimeoutExecutor {
+
+    // States of each utility task
+    private static final int RUNNING = 0;
+    private static final int DONE = 1;
+    private static final int ABANDONED = 2;
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final int threads;
+
+    private final ThreadPoolExecutor executor;
+
+    // Number of threads left behind by utilities that have run out of time, and not finished yet
+    private int abandoned = 0;
+
+    UtilityTimeoutExecutor(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be greater than zero");
+        }
+        this.threads = threads;
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "butterfly-utility-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Calls {@code callable} in one of the pool threads, waiting for it to finish
+     * for up to {@code timeout} milliseconds once it has started running.
+     * If it runs out of time, or if the calling thread is interrupted, it is interrupted
+     * and left behind, and its thread is replaced
+     *
+     * @param callable the utility task
+     * @param timeout the timeout, in milliseconds, counting from when the task starts running
+     * @param binding applied to the task before it is handed to the pool, so that it
+     *                can be bound to the calling thread state
+     * @param <T> the result type
+     * @return the result of {@code callable}
+     * @throws TimeoutException if it runs out of time
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     * @throws ExecutionException if {@code callable} throws an exception
+     */
+    <T> T call(Callable<T> callable, long timeout, UnaryOperator<Runnable> binding) throws TimeoutException, InterruptedException, ExecutionException {
+        FutureTask<T> task = new FutureTask<>(callable);
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger state = new AtomicInteger(RUNNING);
+
+        executor.execute(binding.apply(() -> {
+            started.countDown();
+            try {
+                task.run();
+            } finally {
+                if (!state.compareAndSet(RUNNING, DONE)) {
+                    released();
+                }
+            }
+        }));
+
+        try {
+            started.await();
+            return task.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | InterruptedException e) {
+            task.cancel(true);
+            if (state.compareAndSet(RUNNING, ABANDONED)) {
+                abandoned();
+            }
+            throw e;
+        }
+    }
+
+    /*
+     * Adds a thread to replace the one left behind
+     */
+    private synchronized void abandoned() {
+        abandoned++;
+        executor.setMaximumPoolSize(threads + abandoned);
+        executor.setCorePoolSize(threads + abandoned);
+    }
+
+    /*
+     * Removes the thread added once the one left behind finishes
+     */
+    private synchronized void released() {
+        abandoned--;
+        executor.setCorePoolSize(threads + abandoned);
+        executor.setMaximumPoolSize(threads + abandoned);
+    }
+
+    /**
+     * Returns the number of threads left behind by utilities that have run out of time,
+     * and that have not finished yet
+     *
+     * @return the number of threads left behind by utilities that have run out of time
+     */
+    synchronized int getAbandonedCount() {
+        return abandoned;
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.api.ExecutorStrategy;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor strategy that starts a new virtual thread per task.
+ * Since Butterfly is compiled against Java 8, the virtual thread
+ * executor is obtained via reflection, and this strategy is only
+ * available if the Java runtime supports virtual threads
+ * (see {@link #isSupported()}).
+ * <br>
+ * Virtual threads are cheap to create, and are not pooled,
+ * so tasks are never queued, and the number of active
+ * threads is the number of tasks being performed
+ *
+ * @author agent
+ */
+@SuppressWarnings("PMD.DefaultPackage")
+class VirtualThreadsExecutorStrategy implements ExecutorStrategy {
+
+    static final String NAME = "virtual-threads";
+
+    private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = getFactoryMethod();
+
+    private final AtomicInteger activeThreadCount = new AtomicInteger();
+
+    private static Method getFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if the Java runtime supports virtual threads
+     *
+     * @return true if the Java runtime supports virtual threads
+     */
+    static boolean isSupported() {
+        return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public ExecutorService createExecutor() {
+        if (!isSupported()) {
+            throw new IllegalStateException("Virtual threads are not supported by this Java runtime");
+        }
+        try {
+            ExecutorService executor = (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+            return new CountingExecutorService(executor);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new InternalException("Virtual thread executor could not be created", e);
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return 0;
+    }
+
+    @Override
+    public int getActiveThreadCount() {
+        return activeThreadCount.get();
+    }
+
+    /*
+     * Executor service that delegates to another one,
+     * counting the tasks being performed
+     */
+    private class CountingExecutorService extends AbstractExecutorService {
+
+        private final ExecutorService delegate;
+
+        private CountingExecutorService(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(() -> {
+                activeThreadCount.incrementAndGet();
+                try {
+                    command.run();
+                } finally {
+                    activeThreadCount.decrementAndGet();
+                }
+            });
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+
+    }
+
+}
@@ -0,0 +1,193 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.api.Application;
+import com.paypal.butterfly.api.BatchTransformationSummary;
+import com.paypal.butterfly.api.TransformationRequest;
+import com.paypal.butterfly.api.TransformationResult;
+import com.paypal.butterfly.api.exception.TransformationRejectedException;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+public class AdmissionControlTest {
+
+    private TransformationRequest transformationRequest;
+    private TransformationResult transformationResult;
+    private ExecutorService executor;
+    private CountDownLatch started;
+    private CountDownLatch release;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        Application application = mock(Application.class);
+        when(application.getFolder()).thenReturn(new File("."));
+        transformationRequest = mock(TransformationRequest.class);
+        when(transformationRequest.getApplication()).thenReturn(application);
+        when(transformationRequest.getConfiguration()).thenReturn(new ConfigurationImpl(null));
+        transformationResult = mock(TransformationResult.class);
+        executor = Executors.newSingleThreadExecutor();
+        started = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+    }
+
+    @AfterMethod
+    public void afterMethod() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void failFastTest() throws InterruptedException, ExecutionException {
+        AdmissionControl admissionControl = new AdmissionControl(1, AdmissionControl.RejectionPolicy.FAIL_FAST, 0, 0);
+
+        CompletableFuture<TransformationResult> running = admissionControl.submit(transformationRequest, blockingTransformer(), executor);
+
+        // The first request is not waiting anymore as soon as it starts running
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        CompletableFuture<TransformationResult> waiting = admissionControl.submit(transformationRequest, () -> transformationResult, executor);
+        assertFalse(waiting.isDone());
+
+        CompletableFuture<TransformationResult> rejected = admissionControl.submit(transformationRequest, () -> transformationResult, executor);
+        assertRejected(rejected, "Transformation request rejected, since there are already 1 transformation requests waiting to be performed");
+
+        release.countDown();
+        assertEquals(running.get(), transformationResult);
+        assertEquals(waiting.get(), transformationResult);
+    }
+
+    @Test
+    public void callerRunsTest() throws InterruptedException, ExecutionException {
+        AdmissionControl admissionControl = new AdmissionControl(1, AdmissionControl.RejectionPolicy.CALLER_RUNS, 0, 0);
+
+        CompletableFuture<TransformationResult> running = admissionControl.submit(transformationRequest, blockingTransformer(), executor);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        admissionControl.submit(transformationRequest, () -> transformationResult, executor);
+
+        // Threads performing transformations, or running their completion callbacks, are not supposed to perform others
+        CompletableFuture<TransformationResult> submittedByCallback = running.thenCompose(result -> admissionControl.submit(transformationRequest, () -> transformationResult, executor));
+
+        Thread caller = Thread.currentThread();
+        CompletableFuture<TransformationResult> callerRun = admissionControl.submit(transformationRequest, () -> {
+            assertEquals(Thread.currentThread(), caller);
+            return transformationResult;
+        }, executor);
+        assertTrue(callerRun.isDone());
+        assertEquals(callerRun.get(), transformationResult);
+
+        release.countDown();
+        assertRejected(submittedByCallback, "Transformation request rejected, since there are already 1 transformation requests waiting to be performed, and threads performing transformations cannot perform another one on top of it");
+    }
+
+    @Test
+    public void blockTest() throws InterruptedException, ExecutionException {
+        AdmissionControl admissionControl = new AdmissionControl(1, AdmissionControl.RejectionPolicy.BLOCK, 0, 0);
+
+        CompletableFuture<TransformationResult> running = admissionControl.submit(transformationRequest, blockingTransformer(), executor);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        CompletableFuture<TransformationResult> waiting = admissionControl.submit(transformationRequest, () -> transformationResult, executor);
+
+        // Requests submitted by completion callbacks, run by the only thread able to perform
+        // the waiting request, are rejected, instead of waiting forever
+        CompletableFuture<TransformationResult> submittedByCallback = running.thenCompose(result -> admissionControl.submit(transformationRequest, () -> transformationResult, executor));
+
+        // While requests submitted by any other thread wait until there is room for them
+        CompletableFuture<CompletableFuture<TransformationResult>> blocked = CompletableFuture.supplyAsync(() -> admissionControl.submit(transformationRequest, () -> transformationResult, executor));
+        Thread.sleep(100);
+        assertFalse(blocked.isDone());
+
+        release.countDown();
+        assertRejected(submittedByCallback, "Transformation request rejected, since there are already 1 transformation requests waiting to be performed, and waiting from a thread performing transformations could deadlock");
+        assertEquals(waiting.get(), transformationResult);
+        assertEquals(blocked.get().get(), transformationResult);
+    }
+
+    @Test
+    public void batchBlockTest() throws InterruptedException, ExecutionException, TimeoutException {
+        AdmissionControl admissionControl = new AdmissionControl(1, AdmissionControl.RejectionPolicy.BLOCK, 0, 0);
+
+        // More applications being transformed at the same time than the engine can take, all of them
+        // submitted by the batch own thread, which waits for room, instead of having them rejected
+        List<File> applicationFolders = Collections.nCopies(10, new File("."));
+        BatchTransformer batchTransformer = new BatchTransformer(applicationFolders, folder -> admissionControl.submit(transformationRequest, sleepingTransformer(), executor), null);
+        BatchTransformationSummary summary = batchTransformer.start(4).get(10, TimeUnit.SECONDS);
+
+        assertEquals(summary.getApplicationsCount(), 10);
+        assertEquals(summary.getErrorCount(), 0, String.valueOf(summary.getFailures()));
+        assertEquals(summary.getSuccessfulCount() + summary.getAbortedCount(), 10);
+    }
+
+    @Test
+    public void minFreeDiskSpaceTest() {
+        AdmissionControl admissionControl = new AdmissionControl(0, AdmissionControl.RejectionPolicy.FAIL_FAST, Long.MAX_VALUE / (1024 * 1024), 0);
+        CompletableFuture<TransformationResult> rejected = admissionControl.submit(transformationRequest, () -> transformationResult, executor);
+        assertRejected(rejected, "Transformation request rejected, since there are only \\d+ MB of free disk space at .*, while at least \\d+ MB are required");
+    }
+
+    @Test
+    public void minFreeHeapTest() {
+        AdmissionControl admissionControl = new AdmissionControl(0, AdmissionControl.RejectionPolicy.FAIL_FAST, 0, Long.MAX_VALUE / (1024 * 1024));
+        CompletableFuture<TransformationResult> rejected = admissionControl.submit(transformationRequest, () -> transformationResult, executor);
+        assertRejected(rejected, "Transformation request rejected, since there are only \\d+ MB of free heap memory, while at least \\d+ MB are required");
+    }
+
+    @Test
+    public void rejectedByExecutorTest() {
+        executor.shutdown();
+        AdmissionControl admissionControl = new AdmissionControl(1, AdmissionControl.RejectionPolicy.FAIL_FAST, 0, 0);
+        assertRejected(admissionControl.submit(transformationRequest, () -> transformationResult, executor), "Transformation request rejected by the transformation engine executor");
+
+        // The permit has to be given back after the executor rejection
+        assertRejected(admissionControl.submit(transformationRequest, () -> transformationResult, executor), "Transformation request rejected by the transformation engine executor");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Unknown rejection policy: foo")
+    public void unknownRejectionPolicyTest() {
+        AdmissionControl.RejectionPolicy.fromName("foo");
+    }
+
+    private Supplier<TransformationResult> blockingTransformer() {
+        return () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return transformationResult;
+        };
+    }
+
+    private Supplier<TransformationResult> sleepingTransformer() {
+        return () -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return transformationResult;
+        };
+    }
+
+    private static void assertRejected(CompletableFuture<TransformationResult> future, String messageRegex) {
+        try {
+            future.get();
+            fail("Transformation request was supposed to be rejected");
+        } catch (InterruptedException e) {
+            fail("Interrupted while waiting for transformation request rejection");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TransformationRejectedException);
+            assertTrue(e.getCause().getMessage().matches(messageRegex), e.getCause().getMessage());
+        }
+    }
+
+}
@@ -1,21 +1,28 @@
 package com.paypal.butterfly.core;
 
+import com.paypal.butterfly.api.BatchTransformationSummary;
 import com.paypal.butterfly.api.Configuration;
+import com.paypal.butterfly.api.TransformationResult;
 import com.paypal.butterfly.extensions.api.Extension;
 import com.paypal.butterfly.extensions.api.TransformationTemplate;
 import com.paypal.butterfly.extensions.springboot.ButterflySpringBootExtension;
 import com.paypal.butterfly.extensions.springboot.JavaEEToSpringBoot;
 import com.paypal.butterfly.extensions.springboot.SpringBootUpgrade_1_5_6_to_1_5_7;
+import com.google.common.io.Files;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.powermock.modules.testng.PowerMockTestCase;
 import org.testng.annotations.Test;
 
 import java.io.File;
-import java.util.List;
-import java.util.Properties;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.when;
@@ -83,6 +90,63 @@ public class ButterflyFacadeImplTest extends PowerMockTestCase {
         verify(transformationEngine, times(1)).perform((UpgradePathTransformationRequest) anyObject());
     }
 
+    @Test
+    public void testResume() throws IOException {
+        when(extensionRegistry.getExtensions()).thenReturn(extensionRegistry_test.getExtensions());
+        File transformedAppFolder = Files.createTempDir();
+
+        UpgradePath upgradePath = new UpgradePath(SpringBootUpgrade_1_5_6_to_1_5_7.class);
+        UpgradePathTransformationRequest request = new UpgradePathTransformationRequest(new ApplicationImpl(applicationFolder), upgradePath, new ConfigurationImpl(null));
+        UpgradeCheckpoint.create(request, transformedAppFolder).write();
+
+        butterflyFacadeImpl.resume(transformedAppFolder, new ConfigurationImpl(null));
+
+        ArgumentCaptor<UpgradePathTransformationRequest> captor = ArgumentCaptor.forClass(UpgradePathTransformationRequest.class);
+        verify(transformationEngine, times(1)).perform(captor.capture());
+        UpgradeCheckpoint checkpoint = captor.getValue().getCheckpoint();
+        assertNotNull(checkpoint);
+        assertEquals(checkpoint.getReachedVersion(), "1.5.6");
+        assertEquals(checkpoint.getTransformedApplicationFolder(), transformedAppFolder.getAbsolutePath());
+        assertEquals(captor.getValue().getApplication().getFolder(), applicationFolder.getAbsoluteFile());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "There is no valid upgrade checkpoint for .*")
+    public void testResumeWithoutCheckpoint() {
+        butterflyFacadeImpl.resume(Files.createTempDir(), new ConfigurationImpl(null));
+    }
+
+    @Test
+    public void testBatchTransform() throws ExecutionException, InterruptedException {
+        TransformationResult transformationResult = mock(TransformationResult.class);
+        when(transformationResult.isSuccessful()).thenReturn(true);
+        when(transformationEngine.perform((TemplateTransformationRequest) anyObject())).thenReturn(CompletableFuture.completedFuture(transformationResult));
+
+        File invalidApplicationFolder = new File("testTransformation1");
+        List<File> applicationFolders = Arrays.asList(invalidApplicationFolder, applicationFolder, invalidApplicationFolder, applicationFolder);
+        List<TransformationResult> results = Collections.synchronizedList(new ArrayList<>());
+
+        BatchTransformationSummary summary = butterflyFacadeImpl.transform(applicationFolders, JavaEEToSpringBoot.class, null, new ConfigurationImpl(null), 2, results::add).get();
+
+        verify(transformationEngine, times(2)).perform((TemplateTransformationRequest) anyObject());
+        assertEquals(results.size(), 2);
+        assertEquals(summary.getApplicationsCount(), 4);
+        assertEquals(summary.getSuccessfulCount(), 2);
+        assertEquals(summary.getAbortedCount(), 0);
+        assertEquals(summary.getErrorCount(), 2);
+
+        // The same folder given twice results in two failures
+        assertEquals(summary.getFailures().size(), 2);
+        assertEquals(summary.getFailures().get(0), "Invalid application folder testTransformation1");
+        assertEquals(summary.getFailures().get(2), "Invalid application folder testTransformation1");
+        assertTrue(summary.getDurationPercentile(50) <= summary.getDurationPercentile(100));
+        assertTrue(summary.getTotalDuration() >= 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Concurrency must be greater than zero")
+    public void testBatchTransformWithInvalidConcurrency() {
+        butterflyFacadeImpl.transform(Collections.singletonList(applicationFolder), JavaEEToSpringBoot.class, null, new ConfigurationImpl(null), 0, null);
+    }
+
     @Test
     public void newConfigurationTest() {
         assertNull(butterflyFacadeImpl.newConfiguration(null).getProperties());
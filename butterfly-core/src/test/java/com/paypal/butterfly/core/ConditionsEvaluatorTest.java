@@ -0,0 +1,100 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.api.TransformationStatistics;
+import com.paypal.butterfly.extensions.api.*;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests for {@link ConditionsEvaluator}
+ *
+ * @author agent
+ */
+public class ConditionsEvaluatorTest {
+
+    private static class EvenCondition extends SingleCondition<EvenCondition> {
+
+        private final int number;
+
+        private EvenCondition(int number) {
+            this.number = number;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Check if number is even";
+        }
+
+        @Override
+        protected TUExecutionResult execution(File transformedAppFolder, TransformationContext transformationContext) {
+            return TUExecutionResult.value(this, number % 2 == 0);
+        }
+
+    }
+
+    @Test
+    public void evaluateTest() {
+        // Conditions evaluated in parallel, while utilities are performed sequentially,
+        // which means the context has not been made thread safe yet
+        TransformationContextImpl transformationContext = TransformationContextImpl.getTransformationContext(null);
+        TransformationUtilityParent parent = mock(TransformationUtilityParent.class);
+        when(parent.getName()).thenReturn("Tpl");
+
+        List<EvenCondition> conditions = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            conditions.add(new EvenCondition(i).setParent(parent, i + 1));
+        }
+
+        ConditionsEvaluator conditionsEvaluator = new ConditionsEvaluator(4, () -> false);
+        PerformResult[] results;
+        try {
+            results = conditionsEvaluator.evaluate(conditions, null, "Tpl-TEMPLATE_CONDITION", new File("."), transformationContext);
+        } finally {
+            conditionsEvaluator.shutdown();
+        }
+
+        assertEquals(results.length, 4000);
+        for (int i = 0; i < results.length; i++) {
+            assertEquals(((TUExecutionResult) results[i].getExecutionResult()).getValue(), i % 2 == 0);
+        }
+
+        TransformationStatistics statistics = transformationContext.getStatistics();
+        assertEquals(statistics.getTimingsPerUtilityClass().get(EvenCondition.class.getName()).getCount(), 4000);
+
+        // Timed under the name of their template, instead of their own names, unique per file
+        assertEquals(statistics.getTimingsPerUtilityName().size(), 1);
+        assertEquals(statistics.getTimingsPerUtilityName().get("Tpl-TEMPLATE_CONDITION").getCount(), 4000);
+    }
+
+    @Test
+    public void interruptedTest() {
+        TransformationContextImpl transformationContext = TransformationContextImpl.getTransformationContext(null);
+        List<EvenCondition> conditions = new ArrayList<>();
+        for (int i = 0; i < 4000; i++) {
+            conditions.add(new EvenCondition(i));
+        }
+
+        // The transformation has been cancelled, or has run out of time, so no condition is evaluated
+        ConditionsEvaluator conditionsEvaluator = new ConditionsEvaluator(4, () -> true);
+        PerformResult[] results;
+        try {
+            results = conditionsEvaluator.evaluate(conditions, null, "Tpl-TEMPLATE_CONDITION", new File("."), transformationContext);
+        } finally {
+            conditionsEvaluator.shutdown();
+        }
+
+        assertEquals(results.length, 4000);
+        for (PerformResult result : results) {
+            assertNull(result);
+        }
+        assertTrue(transformationContext.getStatistics().getTimingsPerUtilityClass().isEmpty());
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.extensions.api.*;
+import com.paypal.butterfly.utilities.file.FindFiles;
+import com.paypal.butterfly.utilities.file.LoadFile;
+import com.paypal.butterfly.utilities.operations.file.DeleteFile;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests for {@link ContextRetention}
+ *
+ * @author agent
+ */
+public class ContextRetentionTest {
+
+    @Test
+    public void analysisTest() {
+        TransformationUtilityParent parent = mock(TransformationUtilityParent.class);
+        when(parent.getName()).thenReturn("Tpl");
+        FindFiles findFiles = new FindFiles("*.java", true).setParent(parent, 1);
+        LoadFile loadFile = new LoadFile().setParent(parent, 2);
+        MultipleOperations multipleOperations = new MultipleOperations(new DeleteFile()).setFiles(findFiles.getName()).setParent(parent, 3);
+        DeleteFile deleteFile = new DeleteFile().dependsOn(loadFile.getName()).executeIf("condition").setParent(parent, 4);
+
+        ContextRetention retention = new ContextRetention(Arrays.asList(findFiles, loadFile, multipleOperations, deleteFile), 1, null);
+        assertEquals(retention.getReleasedAfter(0), Collections.emptyList());
+        assertEquals(retention.getReleasedAfter(2), Collections.singletonList(findFiles.getName()));
+        assertEqualsNoOrder(retention.getReleasedAfter(3).toArray(), new Object[] {loadFile.getName(), "condition"});
+
+        // Nobody refers to it
+        assertTrue(retention.isReleased("other"));
+
+        // Utilities are being performed concurrently
+        assertFalse(retention.isReleased(findFiles.getName()));
+
+        retention.setCurrentIndex(2);
+        assertFalse(retention.isReleased(findFiles.getName()));
+        retention.setCurrentIndex(3);
+        assertTrue(retention.isReleased(findFiles.getName()));
+        assertFalse(retention.isReleased(loadFile.getName()));
+    }
+
+    @Test
+    public void spillTest() {
+        TransformationUtilityParent parent = mock(TransformationUtilityParent.class);
+        when(parent.getName()).thenReturn("Tpl");
+        FindFiles findFiles = new FindFiles("*.java", true).setParent(parent, 1);
+        MultipleOperations multipleOperations = new MultipleOperations(new DeleteFile()).setFiles(findFiles.getName()).setParent(parent, 2);
+        ContextRetention retention = new ContextRetention(Arrays.asList(findFiles, multipleOperations), 2, null);
+
+        File root = new File("root").getAbsoluteFile();
+        FileSet files = FileSet.of(root, Arrays.asList(new File(root, "a"), new File(root, "b"), new File(root, "c")));
+        List<File> mutableFiles = new ArrayList<>(files);
+        TransformationContextImpl transformationContext = TransformationContextImpl.getTransformationContext(null).setRetention(retention);
+        retention.setCurrentIndex(0);
+        transformationContext.put(findFiles.getName(), files);
+        transformationContext.put("unreferenced", files);
+        transformationContext.put("mutable", mutableFiles);
+        transformationContext.put("small", Arrays.asList(new File("a"), new File("b")));
+        transformationContext.put("notSerializable", Arrays.asList(new Object(), new Object(), new Object()));
+        transformationContext.putResult(findFiles.getName(), PerformResult.executionResult(findFiles, TUExecutionResult.value(findFiles, "Three files found", files)));
+
+        // Still referred to
+        assertSame(transformationContext.get(findFiles.getName()), files);
+        assertSame(((TUExecutionResult) transformationContext.getResult(findFiles.getName()).getExecutionResult()).getValue(), files);
+
+        // Not referred to, so released right away, unless mutable
+        assertEquals(transformationContext.get("unreferenced"), files);
+        assertSame(transformationContext.get("mutable"), mutableFiles);
+        assertEquals(transformationContext.get("small"), Arrays.asList(new File("a"), new File("b")));
+        assertEquals(((List) transformationContext.get("notSerializable")).size(), 3);
+
+        transformationContext.release(0);
+        retention.setCurrentIndex(1);
+        transformationContext.release(1);
+        assertEquals(transformationContext.get(findFiles.getName()), files);
+        assertEquals(transformationContext.getAttributes().get(findFiles.getName()), files);
+
+        PerformResult result = transformationContext.getResult(findFiles.getName());
+        assertEquals(result.getType(), PerformResult.Type.EXECUTION_RESULT);
+        assertEquals(result.getDetails(), "Three files found");
+        TUExecutionResult executionResult = (TUExecutionResult) result.getExecutionResult();
+        assertEquals(executionResult.getType(), TUExecutionResult.Type.VALUE);
+        assertEquals(executionResult.getValue(), "FileSet with 3 elements, released from memory");
+        retention.close();
+    }
+
+    @Test
+    public void closeTest() {
+        ContextRetention retention = new ContextRetention(Collections.emptyList(), 1, getClass().getClassLoader());
+        FileSet files = FileSet.of(new File("root"), Arrays.asList(new File("root", "a"), new File("root", "b")));
+        Object spilled = retention.release("files", files);
+        assertTrue(spilled instanceof ContextRetention.SpilledAttribute);
+        assertEquals(((ContextRetention.SpilledAttribute) spilled).get(), files);
+        retention.close();
+
+        // Mutable values are kept in memory, since changes made to copies read back from disk would be lost
+        List<String> mutable = new ArrayList<>(Arrays.asList("a", "b"));
+        assertSame(retention.release("mutable", mutable), mutable);
+
+        // Small values are kept as they are
+        List<String> small = Collections.singletonList("a");
+        assertSame(retention.release("small", small), small);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Retention threshold must be greater than zero")
+    public void invalidThresholdTest() {
+        new ContextRetention(Collections.emptyList(), 0, null);
+    }
+
+}
@@ -0,0 +1,141 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.extensions.api.ExecutionResult;
+import com.paypal.butterfly.extensions.api.PerformResult;
+import com.paypal.butterfly.extensions.api.TUExecutionResult;
+import com.paypal.butterfly.extensions.api.TransformationContext;
+import com.paypal.butterfly.extensions.api.TransformationTemplate;
+import com.paypal.butterfly.extensions.api.TransformationUtility;
+import com.paypal.butterfly.extensions.api.TransformationUtilityGroup;
+import com.paypal.butterfly.extensions.api.TransformationUtilityLoop;
+import com.paypal.butterfly.utilities.conditions.XmlXPathExists;
+import com.paypal.butterfly.utilities.xml.XmlXPathRetrieve;
+import org.testng.annotations.Test;
+
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests for {@link ExecutionPlan}
+ *
+ * @author agent
+ */
+public class ExecutionPlanTest extends TestHelper {
+
+    @Test
+    public void newUtilitiesTest() {
+        TransformationTemplate template = getNewTestTransformationTemplate();
+        TransformationUtilityGroup group = new TransformationUtilityGroup();
+        template.add(group, "group");
+        group.add(getNewTestTransformationUtility(), "child");
+        template.loop(getNewTestTransformationUtility(), 2);
+
+        ExecutionPlan executionPlan = new ExecutionPlan(template);
+        assertSame(executionPlan.getTemplate(), template);
+
+        List<TransformationUtility> utilities1 = executionPlan.newUtilities();
+        List<TransformationUtility> utilities2 = executionPlan.newUtilities();
+        assertEquals(utilities1.size(), 2);
+        assertEquals(utilities2.size(), 2);
+
+        for (int i = 0; i < 2; i++) {
+            TransformationUtility original = template.getUtilities().get(i);
+            TransformationUtility copy = utilities1.get(i);
+            assertNotSame(copy, original);
+            assertNotSame(copy, utilities2.get(i));
+            assertEquals(copy.getClass(), original.getClass());
+            assertEquals(copy.getName(), original.getName());
+            assertSame(copy.getParent(), template);
+        }
+
+        // Children refer to the copy of their parents
+        TransformationUtilityGroup groupCopy = (TransformationUtilityGroup) utilities1.get(0);
+        assertEquals(groupCopy.getChildren().size(), 1);
+        TransformationUtility childCopy = groupCopy.getChildren().get(0);
+        assertNotSame(childCopy, group.getChildren().get(0));
+        assertEquals(childCopy.getName(), "child");
+        assertSame(childCopy.getParent(), groupCopy);
+
+        // Loops refer to the copy of their templates
+        TransformationUtilityLoop loop = (TransformationUtilityLoop) template.getUtilities().get(1);
+        TransformationUtilityLoop loopCopy = (TransformationUtilityLoop) utilities1.get(1);
+        assertNotSame(loopCopy.getTemplate(), loop.getTemplate());
+        assertEquals(loopCopy.getTemplate().getName(), loop.getTemplate().getName());
+        assertSame(loopCopy.getTemplate().getParent(), loopCopy);
+        assertEquals(loopCopy.getIterations(), 2);
+
+        // The template utilities remain untouched
+        assertSame(template.getUtilities().get(0), group);
+        assertSame(group.getChildren().get(0).getParent(), group);
+    }
+
+    @Test
+    public void concurrentXPathTest() throws InterruptedException, ExecutionException {
+        TransformationTemplate template = getNewTestTransformationTemplate();
+        template.add(new XmlXPathRetrieve("/project/artifactId").relative("pom.xml"));
+        template.add(new XmlXPathExists("/project/artifactId").relative("pom.xml"));
+        ExecutionPlan executionPlan = new ExecutionPlan(template);
+
+        // XPath expressions are not thread safe, so every copy must have its own
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<Object>>> futures = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                futures.add(executorService.submit(() -> {
+                    List<Object> values = new ArrayList<>();
+                    for (TransformationUtility utility : executionPlan.newUtilities()) {
+                        PerformResult performResult = utility.perform(transformedAppFolder, transformationContext);
+                        values.add(((TUExecutionResult) performResult.getExecutionResult()).getValue());
+                    }
+                    return values;
+                }));
+            }
+            for (Future<List<Object>> future : futures) {
+                assertEquals(future.get(), Arrays.asList("foo", true));
+            }
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test(expectedExceptions = InternalException.class)
+    public void notThreadSafeHelperTest() throws XPathExpressionException {
+        XPathExpression xpathExpression = XPathFactory.newInstance().newXPath().compile("/project/artifactId");
+        TransformationTemplate template = getNewTestTransformationTemplate();
+        template.add(new TransformationUtility() {
+            private final XPathExpression sharedXPathExpression = xpathExpression;
+            @Override
+            public String getDescription() {
+                return "Holds an XPath expression that is not recreated when cloned";
+            }
+            @Override
+            protected ExecutionResult execution(File transformedAppFolder, TransformationContext transformationContext) {
+                return TUExecutionResult.value(this, sharedXPathExpression);
+            }
+        });
+
+        new ExecutionPlan(template);
+    }
+
+    @Test(expectedExceptions = InternalException.class)
+    public void performedTemplateTest() {
+        TransformationTemplate template = getNewTestTransformationTemplate();
+        TransformationUtility utility = getNewTestTransformationUtility();
+        template.add(utility);
+        utility.perform(transformedAppFolder, transformationContext);
+
+        new ExecutionPlan(template);
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.paypal.butterfly.core;
+
+import com.google.common.io.Files;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.paypal.butterfly.extensions.api.*;
+import com.paypal.butterfly.utilities.file.LoadFile;
+import com.paypal.butterfly.utilities.operations.file.DeleteFile;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests for {@link ExecutionTrace} and {@link ExecutionTraceDecoder}
+ *
+ * @author agent
+ */
+public class ExecutionTraceTest {
+
+    @Test
+    public void recordTest() throws IOException {
+        TransformationUtilityParent parent = mock(TransformationUtilityParent.class);
+        when(parent.getName()).thenReturn("Tpl");
+        LoadFile loadFile = new LoadFile().setParent(parent, 1);
+        DeleteFile deleteFile = new DeleteFile().setParent(parent, 2);
+
+        ExecutionTrace executionTrace = new ExecutionTrace(3);
+        assertEquals(executionTrace.getCapacity(), 4);
+        executionTrace.record(loadFile, "1", PerformResult.executionResult(loadFile, TUExecutionResult.value(loadFile, "")), 1000, 3000, 10);
+        executionTrace.record(deleteFile, "2.1.4", PerformResult.executionResult(deleteFile, TOExecutionResult.success(deleteFile, "")), 4000, 9000, 0);
+        executionTrace.record(loadFile, "-", null, 10000, 10500, 0);
+
+        File traceFile = new File(Files.createTempDir(), "app" + ExecutionTrace.FILE_SUFFIX);
+        executionTrace.write(traceFile, "request");
+
+        JsonObject trace = new JsonParser().parse(ExecutionTraceDecoder.toJson(traceFile)).getAsJsonObject();
+        assertEquals(trace.get("requestId").getAsString(), "request");
+        assertEquals(trace.get("recordsCount").getAsLong(), 3);
+        assertEquals(trace.get("droppedRecordsCount").getAsLong(), 0);
+
+        JsonArray records = trace.getAsJsonArray("records");
+        assertEquals(records.size(), 3);
+        JsonObject first = records.get(0).getAsJsonObject();
+        assertEquals(first.get("order").getAsString(), "1");
+        assertEquals(first.get("utility").getAsString(), "Tpl-1-LoadFile");
+        assertEquals(first.get("type").getAsString(), "utility");
+        assertEquals(first.get("performResult").getAsString(), "EXECUTION_RESULT");
+        assertEquals(first.get("executionResult").getAsString(), "VALUE");
+        assertEquals(first.get("startNanos").getAsLong(), 0);
+        assertEquals(first.get("durationNanos").getAsLong(), 2000);
+        assertEquals(first.get("bytes").getAsLong(), 10);
+        JsonObject second = records.get(1).getAsJsonObject();
+        assertEquals(second.get("order").getAsString(), "2.1.4");
+        assertEquals(second.get("type").getAsString(), "operation");
+        assertEquals(second.get("executionResult").getAsString(), "SUCCESS");
+        assertEquals(second.get("startNanos").getAsLong(), 3000);
+        JsonObject third = records.get(2).getAsJsonObject();
+        assertEquals(third.get("order").getAsString(), "-");
+        assertEquals(third.get("performResult").getAsString(), "EXCEPTION");
+        assertNull(third.get("executionResult"));
+
+        assertEquals(ExecutionTraceDecoder.toFlameGraph(traceFile), "Tpl-1-LoadFile 2\nTpl-2-DeleteFile 5\n");
+    }
+
+    @Test
+    public void overwriteTest() throws IOException {
+        TransformationUtilityParent parent = mock(TransformationUtilityParent.class);
+        when(parent.getName()).thenReturn("Tpl");
+        ExecutionTrace executionTrace = new ExecutionTrace(2);
+        for (int i = 1; i <= 5; i++) {
+            LoadFile loadFile = new LoadFile().setParent(parent, i);
+            executionTrace.record(loadFile, "1." + i, PerformResult.skippedCondition(loadFile, ""), i * 1000, i * 1000 + 1000, 0);
+        }
+
+        File traceFile = new File(Files.createTempDir(), "app" + ExecutionTrace.FILE_SUFFIX);
+        executionTrace.write(traceFile, "request");
+
+        JsonObject trace = new JsonParser().parse(ExecutionTraceDecoder.toJson(traceFile)).getAsJsonObject();
+        assertEquals(trace.get("recordsCount").getAsLong(), 5);
+        assertEquals(trace.get("droppedRecordsCount").getAsLong(), 3);
+        JsonArray records = trace.getAsJsonArray("records");
+        assertEquals(records.size(), 2);
+        assertEquals(records.get(0).getAsJsonObject().get("sequence").getAsLong(), 3);
+        assertEquals(records.get(0).getAsJsonObject().get("order").getAsString(), "1.4");
+        assertEquals(records.get(1).getAsJsonObject().get("utility").getAsString(), "Tpl-5-LoadFile");
+        assertEquals(records.get(1).getAsJsonObject().get("performResult").getAsString(), "SKIPPED_CONDITION");
+    }
+
+    @Test
+    public void describeLastTest() {
+        TransformationUtilityParent parent = mock(TransformationUtilityParent.class);
+        when(parent.getName()).thenReturn("Tpl");
+        LoadFile loadFile = new LoadFile().setParent(parent, 1);
+        DeleteFile deleteFile = new DeleteFile().setParent(parent, 2);
+
+        ExecutionTrace executionTrace = new ExecutionTrace(4, false);
+        assertFalse(executionTrace.isRecordingBytes());
+        assertEquals(executionTrace.describeLast(2), "");
+        executionTrace.record(loadFile, "1", PerformResult.executionResult(loadFile, TUExecutionResult.value(loadFile, "")), 0, 1000000, 0);
+        executionTrace.record(loadFile, "2", PerformResult.skippedCondition(loadFile, ""), 1000000, 2000000, 0);
+        executionTrace.record(deleteFile, "3.1", null, 2000000, 5000000, 0);
+
+        String[] lines = executionTrace.describeLast(2).split(System.lineSeparator());
+        assertEquals(lines.length, 2);
+        assertEquals(lines[0], "\t2\tTpl-1-LoadFile\tSKIPPED_CONDITION\t1 ms");
+        assertEquals(lines[1], "\t3.1\tTpl-2-DeleteFile\tEXCEPTION\t3 ms");
+        assertEquals(executionTrace.describeLast(10).split(System.lineSeparator())[0], "\t1\tTpl-1-LoadFile\tEXECUTION_RESULT (VALUE)\t1 ms");
+    }
+
+    @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = ".* is not an execution trace file")
+    public void invalidTraceFileTest() throws IOException {
+        File file = new File(Files.createTempDir(), "app" + ExecutionTrace.FILE_SUFFIX);
+        Files.write(new byte[] {1, 2, 3, 4}, file);
+        ExecutionTraceDecoder.toJson(file);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Execution trace capacity must be greater than zero")
+    public void invalidCapacityTest() {
+        new ExecutionTrace(0);
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.api.ExecutorStrategy;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.env.Environment;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class ExecutorStrategyTest {
+
+    @Mock
+    private ApplicationContext applicationContext;
+
+    @Mock
+    private Environment environment;
+
+    @InjectMocks
+    private TransformationEngine transformationEngine;
+
+    @BeforeMethod
+    public void beforeMethod() {
+        MockitoAnnotations.initMocks(this);
+        Mockito.when(applicationContext.getEnvironment()).thenReturn(environment);
+    }
+
+    @Test
+    public void defaultStrategyTest() {
+        transformationEngine.setup();
+        assertEquals(transformationEngine.getExecutorStrategy().getName(), "default");
+        assertTrue(transformationEngine.getExecutorStrategy() instanceof ThreadPoolExecutorStrategy);
+        transformationEngine.shutdownExecutor();
+    }
+
+    @Test
+    public void fixedStrategyTest() throws Exception {
+        Mockito.when(environment.getProperty(TransformationEngine.EXECUTOR_STRATEGY_PROPERTY)).thenReturn("fixed");
+        Mockito.when(environment.getProperty(TransformationEngine.EXECUTOR_THREADS_PROPERTY)).thenReturn("2");
+        transformationEngine.setup();
+        assertEquals(transformationEngine.getExecutorStrategy().getName(), "fixed");
+        transformationEngine.shutdownExecutor();
+
+        ExecutorStrategy strategy = new ThreadPoolExecutorStrategy("fixed", 1, 1);
+        ExecutorService executor = strategy.createExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> blocking = executor.submit(() -> {
+            started.countDown();
+            release.await();
+            return null;
+        });
+        Future<?> queued = executor.submit(() -> null);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertEquals(strategy.getActiveThreadCount(), 1);
+        assertEquals(strategy.getQueueDepth(), 1);
+
+        release.countDown();
+        blocking.get();
+        queued.get();
+        assertEquals(strategy.getQueueDepth(), 0);
+        executor.shutdown();
+    }
+
+    @Test
+    public void forkJoinStrategyTest() throws Exception {
+        Mockito.when(environment.getProperty(TransformationEngine.EXECUTOR_STRATEGY_PROPERTY)).thenReturn("fork-join");
+        transformationEngine.setup();
+        assertEquals(transformationEngine.getExecutorStrategy().getName(), "fork-join");
+        transformationEngine.shutdownExecutor();
+
+        ExecutorStrategy strategy = new ForkJoinExecutorStrategy(2);
+        ExecutorService executor = strategy.createExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> blocking = executor.submit(() -> {
+            started.countDown();
+            release.await();
+            return null;
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertEquals(strategy.getActiveThreadCount(), 1);
+
+        release.countDown();
+        blocking.get();
+        executor.shutdown();
+    }
+
+    @Test
+    public void virtualThreadsStrategyTest() throws Exception {
+        Mockito.when(environment.getProperty(TransformationEngine.EXECUTOR_STRATEGY_PROPERTY)).thenReturn("virtual-threads");
+        transformationEngine.setup();
+        ExecutorStrategy strategy = transformationEngine.getExecutorStrategy();
+        transformationEngine.shutdownExecutor();
+
+        if (!VirtualThreadsExecutorStrategy.isSupported()) {
+            // Falls back to the default strategy
+            assertEquals(strategy.getName(), "default");
+            return;
+        }
+        assertEquals(strategy.getName(), "virtual-threads");
+
+        ExecutorService executor = strategy.createExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> blocking = executor.submit(() -> {
+            started.countDown();
+            release.await();
+            return null;
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertEquals(strategy.getActiveThreadCount(), 1);
+        assertEquals(strategy.getQueueDepth(), 0);
+
+        release.countDown();
+        blocking.get();
+        executor.shutdown();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Unknown executor strategy: foo")
+    public void unknownStrategyTest() {
+        Mockito.when(environment.getProperty(TransformationEngine.EXECUTOR_STRATEGY_PROPERTY)).thenReturn("foo");
+        transformationEngine.setup();
+    }
+
+}
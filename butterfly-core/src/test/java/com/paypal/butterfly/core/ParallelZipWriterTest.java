@@ -0,0 +1,189 @@
+package com.paypal.butterfly.core;
+
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests for {@link ParallelZipWriter}
+ *
+ * @author agent
+ */
+public class ParallelZipWriterTest {
+
+    // More than the 65535 entries a zip file can have without Zip64 extensions
+    private static final int MANY_FILES_COUNT = 70000;
+    private static final int MANY_FOLDERS_COUNT = 70;
+
+    private File manyFilesFolder;
+
+    @BeforeClass
+    public void createManyFiles() throws IOException {
+        manyFilesFolder = new File(Files.createTempDir(), "many");
+        for (int i = 0; i < MANY_FILES_COUNT; i++) {
+            File file = new File(manyFilesFolder, getManyFilesName(i));
+            file.getParentFile().mkdirs();
+            java.nio.file.Files.write(file.toPath(), ("content " + i).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static String getManyFilesName(int i) {
+        return String.format("folder%02d/file%05d.txt", i % MANY_FOLDERS_COUNT, i);
+    }
+
+    @Test
+    public void writeTest() throws IOException {
+        File folder = new File(Files.createTempDir(), "echo");
+        FileUtils.copyDirectory(new File("../tests/sample-apps/echo"), folder);
+        FileUtils.write(new File(folder, "lib/empty.txt"), "", StandardCharsets.UTF_8);
+        byte[] jarContent = new byte[10000];
+        new Random(1).nextBytes(jarContent);
+        FileUtils.writeByteArrayToFile(new File(folder, "lib/library.jar"), jarContent);
+        StringBuilder largeContent = new StringBuilder();
+        for (int i = 0; largeContent.length() < 5 * 1024 * 1024; i++) {
+            largeContent.append("line ").append(i).append('\n');
+        }
+        FileUtils.write(new File(folder, "lib/large.txt"), largeContent, StandardCharsets.UTF_8);
+
+        File zipFile = new File(folder.getAbsolutePath() + ".zip");
+        CompressionStatisticsImpl compressionStatistics = new ParallelZipWriter(4).write(folder, zipFile);
+
+        List<String> entryNames = new ArrayList<>();
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                entryNames.add(entry.getName());
+                File file = new File(folder.getParentFile(), entry.getName());
+                if (entry.isDirectory()) {
+                    assertTrue(file.isDirectory());
+                    continue;
+                }
+                try (InputStream in = zip.getInputStream(entry)) {
+                    assertEquals(IOUtils.toByteArray(in), FileUtils.readFileToByteArray(file));
+                }
+            }
+            assertEquals(zip.getEntry("echo/lib/library.jar").getMethod(), ZipEntry.STORED);
+            assertEquals(zip.getEntry("echo/lib/empty.txt").getMethod(), ZipEntry.STORED);
+            assertEquals(zip.getEntry("echo/lib/large.txt").getMethod(), ZipEntry.DEFLATED);
+            assertEquals(zip.getEntry("echo/pom.xml").getMethod(), ZipEntry.DEFLATED);
+        }
+
+        // Entries are written depth-first, sorted by name, regardless of parallelism
+        assertEquals(entryNames.get(0), "echo/");
+        assertEquals(entryNames.subList(1, 6), Arrays.asList("echo/README.md", "echo/lib/", "echo/lib/empty.txt", "echo/lib/large.txt", "echo/lib/library.jar"));
+        File sequentialZipFile = new File(folder.getAbsolutePath() + "-sequential.zip");
+        new ParallelZipWriter(1).write(folder, sequentialZipFile);
+        assertTrue(FileUtils.contentEquals(zipFile, sequentialZipFile));
+
+        assertEquals(compressionStatistics.getZipFile(), zipFile);
+        assertEquals(compressionStatistics.getEntriesCount(), entryNames.size());
+        assertEquals(compressionStatistics.getStoredEntriesCount(), 2);
+        assertEquals(compressionStatistics.getUncompressedSize(), FileUtils.sizeOfDirectory(folder));
+        assertEquals(compressionStatistics.getCompressedSize(), zipFile.length());
+        assertTrue(compressionStatistics.getCompressedSize() < compressionStatistics.getUncompressedSize());
+        assertTrue(compressionStatistics.getThroughput() > 0);
+    }
+
+    @Test
+    public void copyFromArchiveTest() throws IOException {
+        File folder = new File(Files.createTempDir(), "echo");
+        FileUtils.copyDirectory(new File("../tests/sample-apps/echo"), folder);
+        File archive = new File(folder.getAbsolutePath() + "-original.zip");
+        new ParallelZipWriter(2).write(folder, archive);
+
+        // Only the changed file has to be compressed again
+        FileUtils.write(new File(folder, "pom.xml"), "<project/>", StandardCharsets.UTF_8);
+        File zipFile = new File(folder.getAbsolutePath() + ".zip");
+        CompressionStatisticsImpl compressionStatistics = new ParallelZipWriter(2).write(folder, zipFile, archive);
+
+        int filesCount = FileUtils.listFiles(folder, null, true).size();
+        assertEquals(compressionStatistics.getCopiedEntriesCount(), filesCount - 1);
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory()) {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        assertEquals(IOUtils.toByteArray(in), FileUtils.readFileToByteArray(new File(folder.getParentFile(), entry.getName())));
+                    }
+                }
+            }
+        }
+
+        // Copying entries as they are gives the same zip file as compressing them again
+        File compressedZipFile = new File(folder.getAbsolutePath() + "-compressed.zip");
+        assertEquals(new ParallelZipWriter(2).write(folder, compressedZipFile).getCopiedEntriesCount(), 0);
+        assertTrue(FileUtils.contentEquals(zipFile, compressedZipFile));
+    }
+
+    @Test
+    public void manyEntriesTest() throws IOException {
+        File zipFile = new File(manyFilesFolder.getAbsolutePath() + ".zip");
+        CompressionStatisticsImpl compressionStatistics = new ParallelZipWriter(2).write(manyFilesFolder, zipFile);
+
+        int entriesCount = 1 + MANY_FOLDERS_COUNT + MANY_FILES_COUNT;
+        assertEquals(compressionStatistics.getEntriesCount(), entriesCount);
+        assertManyFilesZip(zipFile);
+    }
+
+    @Test
+    public void zip64SourceArchiveTest() throws IOException {
+        // Written with Zip64 end of central directory records, since it has too many entries
+        File archive = new File(manyFilesFolder.getAbsolutePath() + "-zip64.zip");
+        new ParallelZipWriter(2).write(manyFilesFolder, archive);
+
+        File zipFile = new File(manyFilesFolder.getAbsolutePath() + "-copied.zip");
+        CompressionStatisticsImpl compressionStatistics = new ParallelZipWriter(2).write(manyFilesFolder, zipFile, archive);
+        assertEquals(compressionStatistics.getCopiedEntriesCount(), MANY_FILES_COUNT);
+        assertManyFilesZip(zipFile);
+        assertTrue(FileUtils.contentEquals(zipFile, archive));
+
+        // Written by the JDK, with a Zip64 end of central directory record as well
+        File jdkArchive = new File(manyFilesFolder.getAbsolutePath() + "-jdk.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jdkArchive))) {
+            for (int i = 0; i < MANY_FILES_COUNT; i++) {
+                out.putNextEntry(new ZipEntry("many/" + getManyFilesName(i)));
+                out.write(("content " + i).getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        File jdkZipFile = new File(manyFilesFolder.getAbsolutePath() + "-jdk-copied.zip");
+        compressionStatistics = new ParallelZipWriter(2).write(manyFilesFolder, jdkZipFile, jdkArchive);
+        assertEquals(compressionStatistics.getCopiedEntriesCount(), MANY_FILES_COUNT);
+        assertManyFilesZip(jdkZipFile);
+    }
+
+    private void assertManyFilesZip(File zipFile) throws IOException {
+        try (ZipFile zip = new ZipFile(zipFile)) {
+            assertEquals(zip.size(), 1 + MANY_FOLDERS_COUNT + MANY_FILES_COUNT);
+            for (int i = 0; i < MANY_FILES_COUNT; i++) {
+                ZipEntry entry = zip.getEntry("many/" + getManyFilesName(i));
+                assertNotNull(entry);
+                try (InputStream in = zip.getInputStream(entry)) {
+                    assertEquals(IOUtils.toString(in, StandardCharsets.UTF_8), "content " + i);
+                }
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Zip writer parallelism must be greater than zero")
+    public void invalidParallelismTest() {
+        new ParallelZipWriter(0);
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.paypal.butterfly.core;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TimingStatisticsImplTest {
+
+    @Test
+    public void bucketsTest() {
+        assertEquals(TimingStatisticsImpl.getBucketUpperBound(0), 0);
+        assertEquals(TimingStatisticsImpl.getBucketUpperBound(63), 63);
+        assertEquals(TimingStatisticsImpl.getBucketUpperBound(64), 65);
+        assertEquals(TimingStatisticsImpl.getBucketUpperBound(65), 65);
+        assertEquals(TimingStatisticsImpl.getBucketUpperBound(66), 67);
+
+        for (long value = 1; value < 1_000_000_000L; value = value * 3 + 1) {
+            long upperBound = TimingStatisticsImpl.getBucketUpperBound(value);
+            assertTrue(upperBound >= value);
+            assertTrue(upperBound - value <= value / 32);
+        }
+    }
+
+    @Test
+    public void percentilesTest() {
+        TimingStatisticsImpl timings = new TimingStatisticsImpl();
+        assertEquals(timings.getPercentile(50), 0);
+
+        for (long i = 1; i <= 100; i++) {
+            timings.record(i * 1_000_000L);
+        }
+
+        assertEquals(timings.getCount(), 100);
+        assertEquals(timings.getSum(), 5050 * 1_000_000L);
+        assertEquals(timings.getMax(), 100_000_000L);
+        assertEquals(timings.getPercentile(100), 100_000_000L);
+
+        long median = timings.getPercentile(50);
+        assertTrue(median >= 50_000_000L && median <= 50_000_000L + 50_000_000L / 32);
+        long p90 = timings.getPercentile(90);
+        assertTrue(p90 >= 90_000_000L && p90 <= 90_000_000L + 90_000_000L / 32);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void invalidPercentileTest() {
+        new TimingStatisticsImpl().getPercentile(0);
+    }
+
+}
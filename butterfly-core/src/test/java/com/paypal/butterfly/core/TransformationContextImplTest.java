@@ -0,0 +1,89 @@
+package com.paypal.butterfly.core;
+
+import com.paypal.butterfly.api.TransformationStatistics;
+import com.paypal.butterfly.extensions.api.PerformResult;
+import com.paypal.butterfly.extensions.api.TOExecutionResult;
+import com.paypal.butterfly.extensions.api.TUExecutionResult;
+import com.paypal.butterfly.extensions.api.TransformationUtilityParent;
+import com.paypal.butterfly.utilities.file.LoadFile;
+import com.paypal.butterfly.utilities.operations.file.DeleteFile;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests for {@link TransformationContextImpl}
+ *
+ * @author agent
+ */
+public class TransformationContextImplTest {
+
+    @Test
+    public void nullAttributesTest() {
+        TransformationContextImpl transformationContext = TransformationContextImpl.getTransformationContext(null);
+        transformationContext.put("before", null);
+        transformationContext.setThreadSafe();
+        transformationContext.put("after", null);
+        transformationContext.put("value", "value");
+
+        assertNull(transformationContext.get("before"));
+        assertNull(transformationContext.get("after"));
+        assertTrue(transformationContext.contains("before"));
+        assertTrue(transformationContext.contains("after"));
+        assertFalse(transformationContext.contains("missing"));
+        assertEquals(transformationContext.get("value"), "value");
+
+        Map<String, Object> attributes = transformationContext.getAttributes();
+        assertEquals(attributes.size(), 3);
+        assertTrue(attributes.containsKey("before"));
+        assertNull(attributes.get("before"));
+        assertNull(attributes.get("after"));
+    }
+
+    @Test
+    public void concurrentStatisticsTest() throws InterruptedException {
+        TransformationContextImpl transformationContext = TransformationContextImpl.getTransformationContext(null);
+        TransformationUtilityParent parent = mock(TransformationUtilityParent.class);
+        when(parent.getName()).thenReturn("Tpl");
+        LoadFile loadFile = new LoadFile().setParent(parent, 1);
+        DeleteFile deleteFile = new DeleteFile().setParent(parent, 2);
+        transformationContext.putResult("first", PerformResult.executionResult(loadFile, TUExecutionResult.nullResult(loadFile)));
+        transformationContext.registerTiming(loadFile, loadFile.getName(), 1000);
+        transformationContext.setThreadSafe();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    transformationContext.putResult(thread + "-" + i, PerformResult.executionResult(deleteFile, TOExecutionResult.success(deleteFile, "")));
+                    transformationContext.registerTiming(deleteFile, deleteFile.getName(), i);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        TransformationStatistics statistics = transformationContext.getStatistics();
+        assertEquals(statistics.getUtilitiesCount(), 1);
+        assertEquals(statistics.getTUExecutionResultNullCount(), 1);
+        assertEquals(statistics.getOperationsCount(), 4000);
+        assertEquals(statistics.getTOExecutionResultSuccessCount(), 4000);
+        assertEquals(statistics.getPerformResultExecutionResultCount(), 4001);
+        assertEquals(statistics.getTimingsPerUtilityClass().get(DeleteFile.class.getName()).getCount(), 4000);
+        assertEquals(statistics.getTimingsPerUtilityClass().get(LoadFile.class.getName()).getCount(), 1);
+        assertEquals(transformationContext.getResults().size(), 4001);
+
+        // Publishing again does not count anything twice
+        assertEquals(transformationContext.getStatistics().getOperationsCount(), 4000);
+    }
+
+}
@@ -2,6 +2,15 @@ package com.paypal.butterfly.core;
 
 import com.google.common.io.Files;
 import com.paypal.butterfly.api.*;
+import com.paypal.butterfly.extensions.api.ContextAttributeRetriever;
+import com.paypal.butterfly.extensions.api.ExecutionResult;
+import com.paypal.butterfly.extensions.api.FilterFiles;
+import com.paypal.butterfly.extensions.api.MultipleConditions;
+import com.paypal.butterfly.extensions.api.MultipleOperations;
+import com.paypal.butterfly.extensions.api.TOExecutionResult;
+import com.paypal.butterfly.extensions.api.TUExecutionResult;
+import com.paypal.butterfly.extensions.api.TransformationContext;
+import com.paypal.butterfly.extensions.api.TransformationOperation;
 import com.paypal.butterfly.extensions.api.TransformationTemplate;
 import com.paypal.butterfly.extensions.api.exception.ApplicationValidationException;
 import com.paypal.butterfly.extensions.api.exception.TransformationUtilityException;
@@ -9,21 +18,42 @@ import com.paypal.butterfly.extensions.api.utilities.Abort;
 import com.paypal.butterfly.extensions.springboot.ButterflySpringBootExtension;
 import com.paypal.butterfly.extensions.springboot.JavaEEToSpringBoot;
 import com.paypal.butterfly.extensions.springboot.SpringBootUpgrade_1_5_6_to_1_5_7;
+import com.paypal.butterfly.utilities.conditions.RegexMatch;
+import com.paypal.butterfly.utilities.file.FindFile;
+import com.paypal.butterfly.utilities.file.FindFiles;
+import com.paypal.butterfly.utilities.operations.file.DeleteFile;
+import com.paypal.butterfly.utilities.operations.file.MoveFile;
+import com.paypal.butterfly.utilities.operations.text.InsertLine;
+import com.paypal.butterfly.utilities.operations.text.ReplaceText;
+import com.paypal.butterfly.extensions.api.TransformationUtility;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.context.ApplicationContext;
+import org.testng.SkipException;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static org.testng.Assert.*;
 import static org.testng.AssertJUnit.assertNull;
@@ -41,7 +71,7 @@ public class TransformationEngineTest extends TestHelper {
         MockitoAnnotations.initMocks(this);
         Mockito.when(applicationContext.getBean(TransformationValidator.class)).thenReturn(new TransformationValidatorImpl());
         Mockito.when(applicationContext.getBean(ManualInstructionsHandler.class)).thenReturn(new ManualInstructionsHandler());
-        transformationEngine.setupListeners();
+        transformationEngine.setup();
     }
 
     @Test
@@ -63,6 +93,10 @@ public class TransformationEngineTest extends TestHelper {
         assertEquals(transformationResult.getTransformedApplicationDir(), transformedAppFolder);
         assertNull(transformationResult.getAbortDetails());
 
+        // The execution trace is only written to a file when explicitly asked for
+        assertNull(transformationResult.getTraceFile());
+        assertFalse(ExecutionTrace.getTraceFile(transformedAppFolder).exists());
+
         List<TransformationMetrics> metricsList = transformationResult.getMetrics();
         assertNotNull(metricsList);
         assertEquals(metricsList.size(), 1);
@@ -86,6 +120,15 @@ public class TransformationEngineTest extends TestHelper {
         assertEquals(statistics.getTUExecutionResultNullCount(), 0);
         assertEquals(statistics.getTUExecutionResultValueCount(), 1);
         assertEquals(statistics.getTUExecutionResultWarningCount(), 0);
+
+        assertEquals(statistics.getTimingsPerUtilityClass().size(), 1);
+        assertEquals(statistics.getTimingsPerUtilityName().size(), 1);
+        TimingStatistics timings = statistics.getTimingsPerUtilityName().values().iterator().next();
+        assertEquals(timings.getCount(), 1);
+        assertEquals(timings.getSum(), timings.getMax());
+        assertEquals(timings.getPercentile(99), timings.getMax());
+        assertEquals(timings.getHistogram().size(), 1);
+        assertTrue(transformationResult.toJson().contains("timingsPerUtilityName"));
     }
 
     @Test
@@ -156,6 +199,7 @@ public class TransformationEngineTest extends TestHelper {
         assertNull(transformationResult.getManualInstructionsFile());
         assertEquals(transformationResult.getTransformedApplicationDir(), appFolder);
         assertNull(transformationResult.getAbortDetails());
+        assertFalse(UpgradeCheckpoint.getCheckpointFile(appFolder).exists());
 
         List<TransformationMetrics> metricsList = transformationResult.getMetrics();
         assertNotNull(metricsList);
@@ -242,6 +286,679 @@ public class TransformationEngineTest extends TestHelper {
         assertTrue(abortDetails.getExceptionStackTrace().startsWith(TransformationUtilityException.class.getName() + ": Abort transformation utility has been executed\n\tat " + Abort.class.getName() + ".execution("));
     }
 
+    @Test
+    public void parallelUtilitiesTest() throws IOException, ExecutionException, InterruptedException {
+        File appFolder = new File("../tests/sample-apps/echo");
+        File transformedAppFolder = new File("./out/test/resources/echo-transformed-parallel");
+        FileUtils.deleteDirectory(transformedAppFolder);
+        FileUtils.copyDirectory(appFolder, transformedAppFolder);
+        System.out.printf("Transformed sample app folder: %s\n", transformedAppFolder.getAbsolutePath());
+
+        Application application = new ApplicationImpl(transformedAppFolder);
+
+        Properties properties = new Properties();
+        properties.put("changeReadme", "true");
+        properties.put("validate", "false");
+        Configuration configuration = new ConfigurationImpl(properties).setParallelUtilities(true);
+
+        TransformationTemplate transformationTemplate = new JavaEEToSpringBoot();
+        AbstractTransformationRequest transformation = new TemplateTransformationRequest(application, transformationTemplate, configuration);
+
+        TransformationResult transformationResult = transformationEngine.perform(transformation).get();
+
+        assertNotNull(transformationResult);
+        assertTrue(transformationResult.isSuccessful());
+        assertTrue(transformationResult.getTransformationRequest().getConfiguration().isParallelUtilities());
+        assertFalse(transformationResult.hasManualInstructions());
+        assertNull(transformationResult.getAbortDetails());
+
+        List<TransformationMetrics> metricsList = transformationResult.getMetrics();
+        assertNotNull(metricsList);
+        assertEquals(metricsList.size(), 1);
+
+        // Same numbers as when utilities are performed sequentially (see javaEEToSpringBootTest)
+        TransformationStatistics statistics = metricsList.get(0).getStatistics();
+        assertEquals(statistics.getPerformResultErrorCount(), 0);
+        assertEquals(statistics.getPerformResultSkippedConditionCount(), 2);
+        assertEquals(statistics.getPerformResultSkippedDependencyCount(), 0);
+        assertEquals(statistics.getTUExecutionResultWarningCount(), 0);
+        assertEquals(statistics.getTUExecutionResultErrorCount(), 0);
+        assertEquals(statistics.getTOExecutionResultWarningCount(), 0);
+        assertEquals(statistics.getTOExecutionResultErrorCount(), 0);
+        assertEquals(statistics.getManualInstructionsCount(), 0);
+    }
+
+    @Test
+    public void parallelUtilitiesAbortTest() throws IOException, URISyntaxException, ExecutionException, InterruptedException {
+        File appFolder = new File(getClass().getResource("/test-app-2").toURI());
+
+        File transformedAppFolder = Files.createTempDir();
+        FileUtils.copyDirectory(appFolder, transformedAppFolder);
+        System.out.printf("Transformed sample app folder: %s\n", transformedAppFolder.getAbsolutePath());
+
+        Application application = new ApplicationImpl(transformedAppFolder);
+        Configuration configuration = new ConfigurationImpl(null).setParallelUtilities(true);
+
+        TransformationTemplate transformationTemplate = new JavaEEToSpringBoot();
+        AbstractTransformationRequest transformation = new TemplateTransformationRequest(application, transformationTemplate, configuration);
+
+        TransformationResult transformationResult = transformationEngine.perform(transformation).get();
+
+        assertNotNull(transformationResult);
+        assertFalse(transformationResult.isSuccessful());
+
+        TransformationStatistics statistics = transformationResult.getMetrics().get(0).getStatistics();
+        assertEquals(statistics.getTUExecutionResultValueCount(), 1);
+        assertEquals(statistics.getTUExecutionResultErrorCount(), 1);
+        assertEquals(statistics.getTOExecutionResultSuccessCount(), 0);
+
+        AbortDetails abortDetails = transformationResult.getAbortDetails();
+        assertNotNull(abortDetails);
+        assertEquals(abortDetails.getUtilityName(), "ButterflySpringBootExtension:JavaEEToSpringBoot-2-Abort");
+        assertEquals(abortDetails.getAbortMessage(), "This application does not have a root pom.xml file");
+    }
+
+    @Test
+    public void conditionsParallelismTest() throws IOException, ExecutionException, InterruptedException {
+        List<String> sequentialFileNames = filterJavaFileNames(1);
+        List<String> parallelFileNames = filterJavaFileNames(4);
+
+        assertEquals(sequentialFileNames.size(), 3);
+        assertEquals(parallelFileNames, sequentialFileNames);
+    }
+
+    /*
+     * Filters the Java files in the echo sample app that refer to Echo, evaluating conditions
+     * with the specified parallelism, and returns the names of the filtered files, sorted
+     */
+    private List<String> filterJavaFileNames(int conditionsParallelism) throws IOException, ExecutionException, InterruptedException {
+        File transformedAppFolder = Files.createTempDir();
+        FileUtils.copyDirectory(new File("../tests/sample-apps/echo"), transformedAppFolder);
+
+        TransformationTemplate transformationTemplate = getNewTestTransformationTemplate();
+        String javaFiles = transformationTemplate.add(new FindFiles(".*\\.java", true).relative("src/main/java"));
+        String echoFiles = transformationTemplate.add(new FilterFiles(new RegexMatch(".*Echo.*")).setFiles(javaFiles));
+        String allInPackage = transformationTemplate.add(new MultipleConditions(new RegexMatch("package com\\.sample\\.app;")).setMode(MultipleConditions.Mode.ALL).setFiles(javaFiles));
+        ContextAttributeRetriever<List<File>> echoFilesRetriever = new ContextAttributeRetriever<>(echoFiles);
+        ContextAttributeRetriever<Boolean> allInPackageRetriever = new ContextAttributeRetriever<>(allInPackage);
+        transformationTemplate.add(echoFilesRetriever);
+        transformationTemplate.add(allInPackageRetriever);
+
+        Application application = new ApplicationImpl(transformedAppFolder);
+        Configuration configuration = new ConfigurationImpl(null).setConditionsParallelism(conditionsParallelism);
+        AbstractTransformationRequest transformation = new TemplateTransformationRequest(application, transformationTemplate, configuration);
+
+        TransformationResult transformationResult = transformationEngine.perform(transformation).get();
+
+        assertTrue(transformationResult.isSuccessful());
+        assertTrue(allInPackageRetriever.getAttributeValue());
+
+        return echoFilesRetriever.getAttributeValue().stream().map(File::getName).sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    public void multipleOperationsParallelismTest() throws IOException, ExecutionException, InterruptedException {
+        File transformedAppFolder = Files.createTempDir();
+        FileUtils.copyDirectory(new File("../tests/sample-apps/echo"), transformedAppFolder);
+
+        TransformationTemplate transformationTemplate = getNewTestTransformationTemplate();
+        String javaFiles = transformationTemplate.add(new FindFiles(".*\\.java", true).relative("src/main/java"));
+        transformationTemplate.add(new MultipleOperations(new ReplaceText("com\\.sample\\.app", "com.sample.echo")).setFiles(javaFiles).setParallelism(4));
+
+        Application application = new ApplicationImpl(transformedAppFolder);
+        Configuration configuration = new ConfigurationImpl(null);
+        AbstractTransformationRequest transformation = new TemplateTransformationRequest(application, transformationTemplate, configuration);
+
+        TransformationResult transformationResult = transformationEngine.perform(transformation).get();
+
+        assertTrue(transformationResult.isSuccessful());
+        TransformationStatistics statistics = transformationResult.getMetrics().get(0).getStatistics();
+        assertEquals(statistics.getOperationsCount(), 4);
+        assertEquals(statistics.getTOExecutionResultSuccessCount(), 4);
+
+        for (File javaFile : FileUtils.listFiles(new File(transformedAppFolder, "src/main/java"), new String[]{"java"}, true)) {
+            String content = FileUtils.readFileToString(javaFile, StandardCharsets.UTF_8);
+            assertTrue(content.contains("package com.sample.echo;"));
+            assertFalse(content.contains("com.sample.app"));
+        }
+    }
+
+    @Test
+    public void multipleOperationsNotConfinedTest() throws IOException, ExecutionException, InterruptedException {
+        File transformedAppFolder = Files.createTempDir();
+        FileUtils.copyDirectory(new File("../tests/sample-apps/echo"), transformedAppFolder);
+
+        // Operations that might change other files are performed sequentially, regardless of the parallelism
+        TransformationTemplate transformationTemplate = getNewTestTransformationTemplate();
+        String javaFiles = transformationTemplate.add(new FindFiles(".*\\.java", true).relative("src/main/java"));
+        RecordThread recordThread = new RecordThread();
+        transformationTemplate.add(new MultipleOperations(recordThread).setFiles(javaFiles).setParallelism(4));
+
+        Application application = new ApplicationImpl(transformedAppFolder);
+        AbstractTransformationRequest transformation = new TemplateTransformationRequest(application, transformationTemplate, new ConfigurationImpl(null));
+
+        TransformationResult transformationResult = transformationEngine.perform(transformation).get();
+
+        assertTrue(transformationResult.isSuccessful());
+        assertEquals(transformationResult.getMetrics().get(0).getStatistics().getOperationsCount(), 4);
+        assertEquals(recordThread.threads.size(), 1);
+    }
+
+    @Test
+    public void incrementalTest() throws IOException, ExecutionException, InterruptedException {
+        File appFolder = new File(Files.createTempDir(), "echo");
+        FileUtils.copyDirectory(new File("../tests/sample-apps/echo"), appFolder);
+        Application application = new ApplicationImpl(appFolder);
+
+        TransformationResult firstResult = performIncrementalTransformation(application);
+        assertTrue(firstResult.isSuccessful());
+        assertEquals(firstResult.getMetrics().get(0).getStatistics().getTOExecutionResultSuccessCount(), 4);
+
+        // Operations created for each file are timed under the name of their parent, along with it
+        Map<String, TimingStatistics> timings = firstResult.getMetrics().get(0).getStatistics().getTimingsPerUtilityName();
+        assertEquals(timings.size(), 2);
+        assertEquals(timings.entrySet().stream().filter(e -> e.getKey().endsWith("-MultipleOperations")).findFirst().get().getValue().getCount(), 5);
+        assertTrue(TransformationManifest.getManifestFile(firstResult.getTransformedApplicationDir()).isFile());
+
+        File changedFile = new File(appFolder, "src/main/java/com/sample/app/Echo.java");
+        FileUtils.writeStringToFile(changedFile, FileUtils.readFileToString(changedFile, StandardCharsets.UTF_8) + "\n// changed\n", StandardCharsets.UTF_8);
+
+        TransformationResult secondResult = performIncrementalTransformation(application);
+        assertTrue(secondResult.isSuccessful());
+        TransformationStatistics statistics = secondResult.getMetrics().get(0).getStatistics();
+        assertEquals(statistics.getTOExecutionResultSuccessCount(), 1);
+        assertEquals(statistics.getTOExecutionResultNoOpCount(), 3);
+
+        for (File javaFile : FileUtils.listFiles(new File(secondResult.getTransformedApplicationDir(), "src/main/java"), new String[]{"java"}, true)) {
+            String content = FileUtils.readFileToString(javaFile, StandardCharsets.UTF_8);
+            assertTrue(content.contains("package com.sample.echo;"));
+            assertFalse(content.contains("com.sample.app"));
+        }
+        assertTrue(FileUtils.readFileToString(new File(secondResult.getTransformedApplicationDir(), "src/main/java/com/sample/app/Echo.java"), StandardCharsets.UTF_8).contains("// changed"));
+    }
+
+    @Test
+    public void incrementalAbsoluteOperationTest() throws IOException, ExecutionException, InterruptedException {
+        File appFolder = new File(Files.createTempDir(), "echo");
+        FileUtils.copyDirectory(new File("../tests/sample-apps/echo"), appFolder);
+        Application application = new ApplicationImpl(appFolder);
+
+        // The carried over file is also changed by an operation whose file is set via transformation context attribute
+        TransformationResult firstResult = performIncrementalTransformation(application, template -> template.add(new InsertLine("// appended").absolute(template.add(new FindFile("Echo.java").relative("src/main/java")))));
+        assertTrue(firstResult.isSuccessful());
+        TransformationResult secondResult = performIncrementalTransformation(application, template -> template.add(new InsertLine("// appended").absolute(template.add(new FindFile("Echo.java").relative("src/main/java")))));
+        assertTrue(secondResult.isSuccessful());
+        TransformationStatistics statistics = secondResult.getMetrics().get(0).getStatistics();
+        assertEquals(statistics.getTOExecutionResultSuccessCount(), 2);
+
+        String content = FileUtils.readFileToString(new File(secondResult.getTransformedApplicationDir(), "src/main/java/com/sample/app/Echo.java"), StandardCharsets.UTF_8);
+        assertTrue(content.contains("package com.sample.echo;"));
+        assertEquals(StringUtils.countMatches(content, "// appended"), 1);
+    }
+
+    @Test
+    public void incrementalFolderOperationTest() throws IOException, ExecutionException, InterruptedException {
+        File appFolder = new File(Files.createTempDir(), "echo");
+        FileUtils.copyDirectory(new File("../tests/sample-apps/echo"), appFolder);
+        Application application = new ApplicationImpl(appFolder);
+
+        // The carried over files are also changed by an operation not confined to a single file
+        TransformationResult firstResult = performIncrementalTransformation(application, template -> template.add(new AppendToJavaFiles().relative("src/main/java")));
+        assertTrue(firstResult.isSuccessful());
+        TransformationResult secondResult = performIncrementalTransformation(application, template -> template.add(new AppendToJavaFiles().relative("src/main/java")));
+        assertTrue(secondResult.isSuccessful());
+        TransformationStatistics statistics = secondResult.getMetrics().get(0).getStatistics();
+        assertEquals(statistics.getTOExecutionResultSuccessCount(), 5);
+
+        for (File javaFile : FileUtils.listFiles(new File(secondResult.getTransformedApplicationDir(), "src/main/java"), new String[]{"java"}, true)) {
+            String content = FileUtils.readFileToString(javaFile, StandardCharsets.UTF_8);
+            assertTrue(content.contains("package com.sample.echo;"));
+            assertEquals(StringUtils.countMatches(content, "// appended"), 1);
+        }
+    }
+
+    @Test
+    public void incrementalChangedPropertiesTest() throws IOException, ExecutionException, InterruptedException {
+        File appFolder = new File(Files.createTempDir(), "echo");
+        FileUtils.copyDirectory(new File("../tests/sample-apps/echo"), appFolder);
+        Application application = new ApplicationImpl(appFolder);
+
+        // Same operation, with the same name, but different properties values
+        TransformationResult firstResult = performIncrementalTransformation(application, template -> template.add(new InsertLine("// first").relative("src/main/java/com/sample/app/EchoMessage.java")));
+        assertTrue(firstResult.isSuccessful());
+        TransformationResult secondResult = performIncrementalTransformation(application, template -> template.add(new InsertLine("// second").relative("src/main/java/com/sample/app/EchoMessage.java")));
+        assertTrue(secondResult.isSuccessful());
+        TransformationStatistics statistics = secondResult.getMetrics().get(0).getStatistics();
+        assertEquals(statistics.getTOExecutionResultSuccessCount(), 2);
+
+        String content = FileUtils.readFileToString(new File(secondResult.getTransformedApplicationDir(), "src/main/java/com/sample/app/EchoMessage.java"), StandardCharsets.UTF_8);
+        assertTrue(content.contains("package com.sample.echo;"));
+        assertFalse(content.contains("// first"));
+        assertTrue(content.contains("// second"));
+    }
+
+    private TransformationResult performIncrementalTransformation(Application application) throws ExecutionException, InterruptedException {
+        return performIncrementalTransformation(application, template -> {});
+    }
+
+    private TransformationResult performIncrementalTransformation(Application application, Consumer<TransformationTemplate> additionalUtilities) throws ExecutionException, InterruptedException {
+        TransformationTemplate transformationTemplate = getNewTestTransformationTemplate();
+        String javaFiles = transformationTemplate.add(new FindFiles(".*\\.java", true).relative("src/main/java"));
+        transformationTemplate.add(new MultipleOperations(new ReplaceText("com\\.sample\\.app", "com.sample.echo")).setFiles(javaFiles));
+        additionalUtilities.accept(transformationTemplate);
+
+        Configuration configuration = new ConfigurationImpl(null, false).setIncremental(true);
+        AbstractTransformationRequest transformation = new TemplateTransformationRequest(application, transformationTemplate, configuration);
+
+        return transformationEngine.perform(transformation).get();
+    }
+
+    @Test
+    public void copyOnWriteTest() throws IOException, ExecutionException, InterruptedException {
+        File appFolder = new File(Files.createTempDir(), "echo");
+        FileUtils.copyDirectory(new File("../tests/sample-apps/echo"), appFolder);
+        Application application = new ApplicationImpl(appFolder);
+
+        // Symbolic link to its own parent folder, which cannot be followed
+        java.nio.file.Files.createSymbolicLink(new File(appFolder, "src/loop").toPath(), appFolder.toPath());
+
+        TransformationTemplate transformationTemplate = getNewTestTransformationTemplate();
+        String javaFiles = transformationTemplate.add(new FindFiles(".*\\.java", true).relative("src/main/java"));
+        transformationTemplate.add(new MultipleOperations(new ReplaceText("com\\.sample\\.app", "com.sample.echo")).setFiles(javaFiles));
+
+        Configuration configuration = new ConfigurationImpl(null, false).setCopyOnWrite(true);
+        AbstractTransformationRequest transformation = new TemplateTransformationRequest(application, transformationTemplate, configuration);
+
+        TransformationResult transformationResult = transformationEngine.perform(transformation).get();
+        assertTrue(transformationResult.isSuccessful());
+        File transformedAppFolder = transformationResult.getTransformedApplicationDir();
+
+        // Original files are left untouched, while the transformed ones are changed
+        for (File javaFile : FileUtils.listFiles(new File(appFolder, "src/main/java"), new String[]{"java"}, true)) {
+            assertTrue(FileUtils.readFileToString(javaFile, StandardCharsets.UTF_8).contains("package com.sample.app;"));
+        }
+        for (File javaFile : FileUtils.listFiles(new File(transformedAppFolder, "src/main/java"), new String[]{"java"}, true)) {
+            assertTrue(FileUtils.readFileToString(javaFile, StandardCharsets.UTF_8).contains("package com.sample.echo;"));
+        }
+        assertEquals(FileUtils.readFileToString(new File(transformedAppFolder, "pom.xml"), StandardCharsets.UTF_8), FileUtils.readFileToString(new File(appFolder, "pom.xml"), StandardCharsets.UTF_8));
+
+        // Untouched files are not shared with the original application after the transformation
+        FileUtils.write(new File(transformedAppFolder, "pom.xml"), "changed", StandardCharsets.UTF_8);
+        assertNotEquals(FileUtils.readFileToString(new File(appFolder, "pom.xml"), StandardCharsets.UTF_8), "changed");
+    }
+
+    @Test
+    public void copyOnWriteUtilityTest() throws IOException, ExecutionException, InterruptedException {
+        File appFolder = new File(Files.createTempDir(), "echo");
+        FileUtils.copyDirectory(new File("../tests/sample-apps/echo"), appFolder);
+        String originalPom = FileUtils.readFileToString(new File(appFolder, "pom.xml"), StandardCharsets.UTF_8);
+        Application application = new ApplicationImpl(appFolder);
+
+        // A utility, not an operation, changing a file in place, as a Maven goal would do
+        TransformationTemplate transformationTemplate = getNewTestTransformationTemplate();
+        transformationTemplate.add(new AppendToPom());
+
+        Configuration configuration = new ConfigurationImpl(null, false).setCopyOnWrite(true);
+        AbstractTransformationRequest transformation = new TemplateTransformationRequest(application, transformationTemplate, configuration);
+
+        TransformationResult transformationResult = transformationEngine.perform(transformation).get();
+        assertTrue(transformationResult.isSuccessful());
+
+        assertEquals(FileUtils.readFileToString(new File(appFolder, "pom.xml"), StandardCharsets.UTF_8), originalPom);
+        assertEquals(FileUtils.readFileToString(new File(transformationResult.getTransformedApplicationDir(), "pom.xml"), StandardCharsets.UTF_8), originalPom + "<!-- appended -->\n");
+    }
+
+    @Test
+    public void overlayTest() throws IOException, ExecutionException, InterruptedException {
+        File appFolder = new File(Files.createTempDir(), "echo");
+        FileUtils.copyDirectory(new File("../tests/sample-apps/echo"), appFolder);
+        Application application = new ApplicationImpl(appFolder);
+
+        TransformationTemplate transformationTemplate = getNewTestTransformationTemplate();
+        String javaFiles = transformationTemplate.add(new FindFiles(".*\\.java", true).relative("src/main/java"));
+        transformationTemplate.add(new MultipleOperations(new ReplaceText("com\\.sample\\.app", "com.sample.echo")).setFiles(javaFiles));
+        transformationTemplate.add(new DeleteFile().relative("README.md"));
+        transformationTemplate.add(new MoveFile().relative("src/main/webapp/WEB-INF/web.xml").setToRelative("src/main/webapp"));
+
+        Configuration configuration = new ConfigurationImpl(null, false).setOverlay(true);
+        AbstractTransformationRequest transformation = new TemplateTransformationRequest(application, transformationTemplate, configuration);
+
+        TransformationResult transformationResult = transformationEngine.perform(transformation).get();
+        assertTrue(transformationResult.isSuccessful());
+        File transformedAppFolder = transformationResult.getTransformedApplicationDir();
+
+        // Changed files are copied up, deleted and moved ones are not brought back, and the others are materialized at the end
+        for (File javaFile : FileUtils.listFiles(new File(transformedAppFolder, "src/main/java"), new String[]{"java"}, true)) {
+            assertTrue(FileUtils.readFileToString(javaFile, StandardCharsets.UTF_8).contains("package com.sample.echo;"));
+        }
+        assertFalse(new File(transformedAppFolder, "README.md").exists());
+        assertFalse(new File(transformedAppFolder, "src/main/webapp/WEB-INF/web.xml").exists());
+        assertTrue(new File(transformedAppFolder, "src/main/webapp/web.xml").exists());
+        assertTrue(new File(transformedAppFolder, "src/main/webapp/WEB-INF/applicationContext.xml").exists());
+        assertEquals(FileUtils.readFileToString(new File(transformedAppFolder, "pom.xml"), StandardCharsets.UTF_8), FileUtils.readFileToString(new File(appFolder, "pom.xml"), StandardCharsets.UTF_8));
+
+        // Original files are left untouched
+        assertTrue(new File(appFolder, "README.md").exists());
+        assertTrue(new File(appFolder, "src/main/webapp/WEB-INF/web.xml").exists());
+        assertTrue(FileUtils.readFileToString(new File(appFolder, "src/main/java/com/sample/app/Echo.java"), StandardCharsets.UTF_8).contains("package com.sample.app;"));
+    }
+
+    @Test
+    public void archiveTest() throws IOException, ExecutionException, InterruptedException {
+        File appFolder = new File(Files.createTempDir(), "echo");
+        FileUtils.copyDirectory(new File("../tests/sample-apps/echo"), appFolder);
+        File archive = new File(appFolder.getAbsolutePath() + ".zip");
+        new ParallelZipWriter(1).write(appFolder, archive);
+        FileUtils.deleteDirectory(appFolder);
+        Application application = new ApplicationImpl(archive);
+        assertEquals(application.getArchive(), archive);
+
+        TransformationTemplate transformationTemplate = getNewTestTransformationTemplate();
+        transformationTemplate.add(new ReplaceText("com\\.sample\\.app", "com.sample.echo").relative("src/main/java/com/sample/app/Echo.java"));
+        transformationTemplate.add(new DeleteFile().relative("README.md"));
+
+        Configuration configuration = new ConfigurationImpl(null, false);
+        AbstractTransformationRequest transformation = new TemplateTransformationRequest(application, transformationTemplate, configuration);
+
+        TransformationResult transformationResult = transformationEngine.perform(transformation).get();
+        assertTrue(transformationResult.isSuccessful());
+        File transformedAppFolder = transformationResult.getTransformedApplicationDir();
+        assertTrue(transformedAppFolder.getName().startsWith("echo-transformed-"));
+
+        // The archive single top-level folder is the application folder, and the archive itself is left untouched
+        assertTrue(FileUtils.readFileToString(new File(transformedAppFolder, "src/main/java/com/sample/app/Echo.java"), StandardCharsets.UTF_8).contains("package com.sample.echo;"));
+        assertFalse(new File(transformedAppFolder, "README.md").exists());
+        assertTrue(new File(transformedAppFolder, "src/main/webapp/WEB-INF/web.xml").exists());
+        assertEquals(FileUtils.readFileToString(new File(transformedAppFolder, "pom.xml"), StandardCharsets.UTF_8), FileUtils.readFileToString(new File("../tests/sample-apps/echo/pom.xml"), StandardCharsets.UTF_8));
+        assertFalse(appFolder.exists());
+        assertTrue(archive.isFile());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Applications read from archives cannot be transformed in place, nor with blank transformation templates")
+    public void archiveInPlaceTest() throws IOException {
+        File appFolder = new File(Files.createTempDir(), "echo");
+        FileUtils.copyDirectory(new File("../tests/sample-apps/echo"), appFolder);
+        File archive = new File(appFolder.getAbsolutePath() + ".zip");
+        new ParallelZipWriter(1).write(appFolder, archive);
+
+        new TemplateTransformationRequest(new ApplicationImpl(archive), getNewTestTransformationTemplate(), new ConfigurationImpl(null));
+    }
+
+    @Test
+    public void planTest() throws IOException, ExecutionException, InterruptedException {
+        File appFolder = new File(Files.createTempDir(), "echo");
+        FileUtils.copyDirectory(new File("../tests/sample-apps/echo"), appFolder);
+        Application application = new ApplicationImpl(appFolder);
+        File echoFile = new File(appFolder, "src/main/java/com/sample/app/Echo.java");
+        String originalContent = FileUtils.readFileToString(echoFile, StandardCharsets.UTF_8);
+
+        TransformationTemplate transformationTemplate = getNewTestTransformationTemplate();
+        String javaFiles = transformationTemplate.add(new FindFiles(".*\\.java", true).relative("src/main/java"));
+        transformationTemplate.add(new MultipleOperations(new ReplaceText("com\\.sample\\.app", "com.sample.echo")).setFiles(javaFiles));
+        transformationTemplate.add(new ReplaceText("echo", "ECHO").relative("pom.xml").executeIf("undefinedCondition"));
+
+        Configuration configuration = new ConfigurationImpl(null, false);
+        AbstractTransformationRequest transformation = new TemplateTransformationRequest(application, transformationTemplate, configuration);
+
+        TransformationPlan transformationPlan = transformationEngine.plan(transformation).get();
+        assertTrue(transformationPlan.isComplete());
+        assertEquals(transformationPlan.getTransformationRequest(), transformation);
+        assertEquals(transformationPlan.getOperationsCount(), 4);
+        assertEquals(transformationPlan.getSkippedOperationsCount(), 1);
+
+        long targetFilesSize = 0;
+        for (TransformationPlan.PlannedOperation plannedOperation : transformationPlan.getOperations()) {
+            assertEquals(plannedOperation.getClassName(), ReplaceText.class.getName());
+            assertTrue(plannedOperation.getOrder().startsWith("1."));
+            assertTrue(plannedOperation.getTargetFile().isFile());
+            assertEquals(plannedOperation.getTargetFileSize(), plannedOperation.getTargetFile().length());
+            targetFilesSize += plannedOperation.getTargetFileSize();
+        }
+        assertEquals(transformationPlan.getEstimatedBytesRead(), targetFilesSize);
+        assertEquals(transformationPlan.getEstimatedBytesWritten(), targetFilesSize + FileUtils.sizeOfDirectory(appFolder));
+
+        // Nothing has been written
+        assertEquals(FileUtils.readFileToString(echoFile, StandardCharsets.UTF_8), originalContent);
+        assertEquals(appFolder.getParentFile().list().length, 1);
+    }
+
+    @Test
+    public void flightRecorderEventsTest() throws IOException, ExecutionException, InterruptedException, ReflectiveOperationException {
+        // JDK Flight Recorder is used via reflection, so that this test is skipped, instead of failing, on runtimes without it
+        Class<?> recordingClass;
+        try {
+            recordingClass = Class.forName("jdk.jfr.Recording");
+        } catch (ClassNotFoundException e) {
+            throw new SkipException("JDK Flight Recorder is not available");
+        }
+        Class<?> recordingFileClass = Class.forName("jdk.jfr.consumer.RecordingFile");
+        Class<?> recordedEventClass = Class.forName("jdk.jfr.consumer.RecordedEvent");
+        Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType");
+
+        Application application = new ApplicationImpl(transformedAppFolder);
+        Configuration configuration = new ConfigurationImpl(null);
+
+        TransformationTemplate transformationTemplate = getNewTestTransformationTemplate();
+        TransformationUtility transformationUtility = getNewTestTransformationUtility();
+        transformationTemplate.add(transformationUtility);
+        AbstractTransformationRequest transformation = new TemplateTransformationRequest(application, transformationTemplate, configuration);
+
+        Path recordingFile = java.nio.file.Files.createTempFile("butterfly-", ".jfr");
+        Object recording = recordingClass.newInstance();
+        try {
+            Method enable = recordingClass.getMethod("enable", String.class);
+            enable.invoke(recording, "com.paypal.butterfly.Transformation");
+            enable.invoke(recording, "com.paypal.butterfly.Utility");
+            recordingClass.getMethod("start").invoke(recording);
+            assertTrue(transformationEngine.perform(transformation).get().isSuccessful());
+            recordingClass.getMethod("stop").invoke(recording);
+            recordingClass.getMethod("dump", Path.class).invoke(recording, recordingFile);
+        } finally {
+            recordingClass.getMethod("close").invoke(recording);
+        }
+
+        Method getEventType = recordedEventClass.getMethod("getEventType");
+        Method getName = eventTypeClass.getMethod("getName");
+        Method getString = recordedEventClass.getMethod("getString", String.class);
+        Method getBoolean = recordedEventClass.getMethod("getBoolean", String.class);
+        List<Object> transformationEvents = new ArrayList<>();
+        List<Object> utilityEvents = new ArrayList<>();
+        for (Object event : (List<?>) recordingFileClass.getMethod("readAllEvents", Path.class).invoke(null, recordingFile)) {
+            Object eventTypeName = getName.invoke(getEventType.invoke(event));
+            if (eventTypeName.equals("com.paypal.butterfly.Transformation")) {
+                transformationEvents.add(event);
+            } else if (eventTypeName.equals("com.paypal.butterfly.Utility")) {
+                utilityEvents.add(event);
+            }
+        }
+
+        assertEquals(transformationEvents.size(), 1);
+        assertEquals(getString.invoke(transformationEvents.get(0), "requestId"), transformation.getId());
+        assertEquals(getBoolean.invoke(transformationEvents.get(0), "successful"), true);
+
+        assertEquals(utilityEvents.size(), 1);
+        assertEquals(getString.invoke(utilityEvents.get(0), "utilityName"), transformationUtility.getName());
+        assertEquals(getString.invoke(utilityEvents.get(0), "order"), "1");
+        assertEquals(getString.invoke(utilityEvents.get(0), "performResultType"), "EXECUTION_RESULT");
+    }
+
+    @Test
+    public void utilityTimeoutTest() throws IOException, ExecutionException, InterruptedException {
+        File appFolder = new File(Files.createTempDir(), "echo");
+        FileUtils.copyDirectory(new File("../tests/sample-apps/echo"), appFolder);
+        Application application = new ApplicationImpl(appFolder);
+
+        // The first utility runs out of time, but the transformation goes on, while the second one aborts it
+        TransformationTemplate transformationTemplate = getNewTestTransformationTemplate();
+        Sleep sleep = new Sleep(10000).timeout(100, TimeUnit.MILLISECONDS);
+        transformationTemplate.add(sleep);
+        transformationTemplate.add(new DeleteFile().relative("README.md"));
+        transformationTemplate.add(new Sleep(10000).abortOnFailure(true));
+        transformationTemplate.add(new DeleteFile().relative("pom.xml"));
+
+        Configuration configuration = new ConfigurationImpl(null, false).setUtilityTimeout(200);
+        AbstractTransformationRequest transformation = new TemplateTransformationRequest(application, transformationTemplate, configuration);
+
+        TransformationResult transformationResult = transformationEngine.perform(transformation).get();
+        assertFalse(transformationResult.isSuccessful());
+        assertTrue(sleep.interrupted);
+        assertTrue(sleep.thread.getName().startsWith("butterfly-utility-"));
+        assertEquals(transformationResult.getAbortDetails().getUtilityName(), transformationTemplate.getUtilities().get(2).getName());
+        assertEquals(transformationResult.getAbortDetails().getExceptionMessage(), transformationTemplate.getUtilities().get(2).getName() + " has not finished within 200 ms");
+        assertFalse(new File(transformationResult.getTransformedApplicationDir(), "README.md").exists());
+        assertTrue(new File(transformationResult.getTransformedApplicationDir(), "pom.xml").exists());
+    }
+
+    @Test
+    public void transformationTimeoutTest() throws IOException, ExecutionException, InterruptedException {
+        File appFolder = new File(Files.createTempDir(), "echo");
+        FileUtils.copyDirectory(new File("../tests/sample-apps/echo"), appFolder);
+        Application application = new ApplicationImpl(appFolder);
+
+        // The sleeping utility is performed by the transformation thread, which is interrupted once it runs out of time
+        TransformationTemplate transformationTemplate = getNewTestTransformationTemplate();
+        Sleep sleep = new Sleep(10000);
+        transformationTemplate.add(sleep);
+        transformationTemplate.add(new DeleteFile().relative("README.md"));
+
+        Configuration configuration = new ConfigurationImpl(null, false).setTransformationTimeout(200);
+        AbstractTransformationRequest transformation = new TemplateTransformationRequest(application, transformationTemplate, configuration);
+
+        TransformationResult transformationResult = transformationEngine.perform(transformation).get();
+        assertTrue(sleep.interrupted);
+        assertFalse(sleep.thread.getName().startsWith("butterfly-utility-"));
+        assertFalse(transformationResult.isSuccessful());
+        assertEquals(transformationResult.getAbortDetails().getAbortMessage(), "Transformation has not finished within 200 ms");
+        assertTrue(new File(transformationResult.getTransformedApplicationDir(), "README.md").exists());
+    }
+
+    @Test
+    public void cancelTest() throws IOException, InterruptedException {
+        File appFolder = new File(Files.createTempDir(), "echo");
+        FileUtils.copyDirectory(new File("../tests/sample-apps/echo"), appFolder);
+        Application application = new ApplicationImpl(appFolder);
+
+        TransformationTemplate transformationTemplate = getNewTestTransformationTemplate();
+        Sleep sleep = new Sleep(10000);
+        transformationTemplate.add(sleep);
+        transformationTemplate.add(new DeleteFile().relative("README.md"));
+
+        AbstractTransformationRequest transformation = new TemplateTransformationRequest(application, transformationTemplate, new ConfigurationImpl(null, false));
+        Transformer transformer = Transformer.createTransformer(transformation, Collections.emptyList(), new ManualInstructionsHandler(), new TransformationValidatorImpl());
+        TransformationResult[] transformationResult = new TransformationResult[1];
+        Thread thread = new Thread(() -> transformationResult[0] = transformer.get());
+        thread.start();
+        Thread.sleep(200);
+        transformer.cancel();
+        thread.join(5000);
+
+        // The sleeping utility is interrupted, and the transformation is aborted right after it
+        assertFalse(thread.isAlive());
+        assertTrue(sleep.interrupted);
+        assertFalse(transformationResult[0].isSuccessful());
+        assertEquals(transformationResult[0].getAbortDetails().getAbortMessage(), "Transformation has been cancelled");
+        assertTrue(new File(transformationResult[0].getTransformedApplicationDir(), "README.md").exists());
+    }
+
+    /*
+     * Sleeps for the given time, unless interrupted, which results in an error
+     */
+    private static class Sleep extends TransformationUtility<Sleep> {
+
+        private final long millis;
+        private volatile boolean interrupted = false;
+        private volatile Thread thread;
+
+        private Sleep(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Sleeps for " + millis + " ms";
+        }
+
+        @Override
+        protected ExecutionResult execution(File transformedAppFolder, TransformationContext transformationContext) {
+            thread = Thread.currentThread();
+            try {
+                Thread.sleep(millis);
+                return TUExecutionResult.nullResult(this);
+            } catch (InterruptedException e) {
+                interrupted = true;
+                return TUExecutionResult.error(this, e);
+            }
+        }
+
+    }
+
+    /*
+     * Appends a comment to every Java file under its folder
+     */
+    private static class AppendToJavaFiles extends TransformationOperation<AppendToJavaFiles> {
+
+        @Override
+        public String getDescription() {
+            return "Appends a comment to every Java file";
+        }
+
+        @Override
+        protected TOExecutionResult execution(File transformedAppFolder, TransformationContext transformationContext) {
+            try {
+                for (File javaFile : FileUtils.listFiles(getAbsoluteFile(transformedAppFolder, transformationContext), new String[]{"java"}, true)) {
+                    FileUtils.writeStringToFile(javaFile, "// appended\n", StandardCharsets.UTF_8, true);
+                }
+                return TOExecutionResult.success(this, "Comment appended to Java files");
+            } catch (IOException | TransformationUtilityException e) {
+                return TOExecutionResult.error(this, e);
+            }
+        }
+
+    }
+
+    /*
+     * Records the threads it is performed by, which might change any file
+     */
+    private static class RecordThread extends TransformationOperation<RecordThread> {
+
+        // Shared by its copies
+        private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        @Override
+        public String getDescription() {
+            return "Records the threads it is performed by";
+        }
+
+        @Override
+        protected TOExecutionResult execution(File transformedAppFolder, TransformationContext transformationContext) {
+            threads.add(Thread.currentThread());
+            return TOExecutionResult.noOp(this, "Thread recorded");
+        }
+
+    }
+
+    /*
+     * Appends a comment to the pom file, without being an operation
+     */
+    private static class AppendToPom extends TransformationUtility<AppendToPom> {
+
+        @Override
+        public String getDescription() {
+            return "Appends a comment to the pom file";
+        }
+
+        @Override
+        protected TUExecutionResult execution(File transformedAppFolder, TransformationContext transformationContext) {
+            try {
+                FileUtils.writeStringToFile(new File(transformedAppFolder, "pom.xml"), "<!-- appended -->\n", StandardCharsets.UTF_8, true);
+                return TUExecutionResult.nullResult(this);
+            } catch (IOException e) {
+                return TUExecutionResult.error(this, e);
+            }
+        }
+
+    }
+
     @Test
     public void pendingManualChangesTest() throws IOException, URISyntaxException, InterruptedException {
         File appFolder = new File(getClass().getResource("/test-app-3").toURI());
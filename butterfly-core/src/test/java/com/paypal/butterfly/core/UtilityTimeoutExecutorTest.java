@@ -0,0 +1,56 @@
+package com.paypal.butterfly.core;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests for {@link UtilityTimeoutExecutor}
+ *
+ * @author agent
+ */
+public class UtilityTimeoutExecutorTest {
+
+    @Test
+    public void abandonedThreadReplacedTest() throws Exception {
+        UtilityTimeoutExecutor utilityTimeoutExecutor = new UtilityTimeoutExecutor(1);
+        CountDownLatch hung = new CountDownLatch(1);
+        try {
+            // Hung utility, which does not react to interruption
+            try {
+                utilityTimeoutExecutor.call(() -> {
+                    while (true) {
+                        try {
+                            if (hung.await(10, TimeUnit.SECONDS)) {
+                                return null;
+                            }
+                        } catch (InterruptedException e) {
+                            // Ignored on purpose
+                        }
+                    }
+                }, 100, runnable -> runnable);
+                fail("TimeoutException was supposed to be thrown");
+            } catch (TimeoutException e) {
+                // Expected
+            }
+            assertEquals(utilityTimeoutExecutor.getAbandonedCount(), 1);
+
+            // Performed by the thread replacing the one left behind
+            assertEquals(utilityTimeoutExecutor.call(() -> "done", 1000, runnable -> runnable), "done");
+
+            hung.countDown();
+            for (int i = 0; i < 100 && utilityTimeoutExecutor.getAbandonedCount() > 0; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(utilityTimeoutExecutor.getAbandonedCount(), 0);
+        } finally {
+            hung.countDown();
+            utilityTimeoutExecutor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,359 @@
+package com.paypal.butterfly.extensions.api;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Results of {@link UtilityCondition} objects set via {@link TransformationUtility#executeIf(UtilityCondition)},
+ * kept during one transformation, so that the same condition is not evaluated again against the same file,
+ * as long as the file has not changed. Objects of this type are retrieved via {@link TransformationContext#getConditionCache()}.
+ * <br>
+ * Results are kept per target file and per condition fingerprint, which is made of the condition class and the
+ * values of its properties, compared by value. Fingerprints are calculated once per condition object, whose properties
+ * are not supposed to change once it is set via {@link TransformationUtility#executeIf(UtilityCondition)}.
+ * Only conditions confined to their target file (see {@link TransformationUtility#isConfinedToFile()}), evaluated
+ * against a regular file, or against a file that does not exist, have their results kept. Each file is stamped with
+ * its identity, size and modification time, and, whenever any of them changes, but not its size, its results are only
+ * used again if its content has not changed, which is verified via a SHA-256 digest, since operations often rewrite
+ * files with the same content, when there is nothing to be changed. The digest is calculated once per file content,
+ * when its first result is kept, and then only again when its stamp changes.
+ * Besides that, Butterfly explicitly invalidates the results of a file whenever an operation is performed against it,
+ * or of all files, if the operation is not confined to a file
+ *
+ * @author agent
+ */
+public final class ConditionCache {
+
+    // Depth limit when fingerprinting objects referred to by conditions, protecting against cyclic references
+    private static final int MAX_FINGERPRINT_DEPTH = 8;
+
+    // Instance fields declared by each condition class, and its super classes, up to UtilityCondition,
+    // or up to Object for any other class, whose values make up the fingerprint of its objects
+    private static final ClassValue<Field[]> FINGERPRINT_FIELDS = new ClassValue<Field[]>() {
+        @Override
+        protected Field[] computeValue(Class<?> clazz) {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = clazz; c != null && c != Object.class && c != UtilityCondition.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers()) && !Modifier.isTransient(field.getModifiers()) && !field.isSynthetic()) {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+            }
+            return fields.toArray(new Field[0]);
+        }
+    };
+
+    // Stands for conditions whose fingerprint could not be calculated
+    private static final Object NO_FINGERPRINT = new Object();
+
+    private final ConcurrentMap<File, FileResults> results = new ConcurrentHashMap<>();
+
+    // Fingerprint of each condition object, calculated only once
+    private final Map<UtilityCondition, Object> fingerprints = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    // Incremented on every invalidation, so that results evaluated meanwhile are not kept
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Returns the result of {@code condition} against {@code file}, evaluating it via {@code evaluation},
+     * unless a result has been kept for it already. Boolean results are kept, unless the condition
+     * or the file is not supposed to have its results kept, in which case {@code evaluation} is always called
+     *
+     * @param condition the condition, as set via {@link TransformationUtility#executeIf(UtilityCondition)}
+     * @param file the file the condition is evaluated against
+     * @param evaluation evaluates the condition, returning its result value
+     * @return the condition result value
+     * @throws Exception if {@code evaluation} throws an exception, which is not kept
+     */
+    Object evaluate(UtilityCondition condition, File file, Callable<Object> evaluation) throws Exception {
+        Object fingerprint = (condition.isConfinedToFile() ? fingerprints.computeIfAbsent(condition, ConditionCache::getFingerprint) : NO_FINGERPRINT);
+        FileStamp stamp = (fingerprint != NO_FINGERPRINT && file != null ? FileStamp.of(file) : null);
+        if (stamp == null) {
+            return evaluation.call();
+        }
+
+        // Digest of the file content, only calculated if necessary
+        byte[] digest = null;
+
+        FileResults fileResults = results.get(file);
+        boolean valid = fileResults != null && stamp.equals(fileResults.stamp);
+        if (fileResults != null && !valid && fileResults.digest != null && stamp.size == fileResults.size) {
+            // The file might have been rewritten with the same content
+            digest = getDigest(file);
+            valid = fileResults.hasContent(stamp, digest);
+        }
+        if (valid) {
+            Boolean result = fileResults.results.get(fingerprint);
+            if (result != null) {
+                hits.increment();
+                return result;
+            }
+        }
+        misses.increment();
+
+        long invalidationsBefore = invalidations.get();
+        Object result = evaluation.call();
+
+        // The result is only kept if the file has not changed while the condition was evaluated
+        if (!(result instanceof Boolean) || !stamp.equals(FileStamp.of(file))) {
+            return result;
+        }
+        if (!valid && digest == null && stamp != FileStamp.ABSENT) {
+            digest = getDigest(file);
+            if (digest == null) {
+                return result;
+            }
+        }
+        byte[] keptDigest = digest;
+        results.compute(file, (f, r) -> {
+            if (invalidations.get() != invalidationsBefore) {
+                return r;
+            }
+            FileResults keptResults = (r != null && r.hasContent(stamp, keptDigest) ? r : new FileResults(stamp, keptDigest));
+            keptResults.results.put(fingerprint, (Boolean) result);
+            return keptResults;
+        });
+        return result;
+    }
+
+    /**
+     * Invalidates the results kept for a file, or for all files under it, if it is a folder.
+     * From then on, they are only used again after making sure the file content has not changed
+     *
+     * @param file the file, or folder, whose results should be invalidated
+     */
+    public void invalidate(File file) {
+        if (file == null) {
+            return;
+        }
+        invalidations.incrementAndGet();
+        if (results.computeIfPresent(file, (f, r) -> r.invalidate()) == null && !results.isEmpty()) {
+            String folderPath = file.getPath() + File.separator;
+            results.forEach((f, r) -> {
+                if (f.getPath().startsWith(folderPath)) {
+                    r.invalidate();
+                }
+            });
+        }
+    }
+
+    /**
+     * Invalidates the results kept for all files. From then on, they are
+     * only used again after making sure the file content has not changed
+     */
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        results.forEach((f, r) -> r.invalidate());
+    }
+
+    /**
+     * Returns how many times a condition result was found kept
+     *
+     * @return how many times a condition result was found kept
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns how many times a condition, supposed to have its result kept, had to be evaluated
+     *
+     * @return how many times a condition, supposed to have its result kept, had to be evaluated
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /*
+     * Returns the fingerprint of a condition, which is equal to the fingerprint
+     * of another condition only if both are of the same class and their properties
+     * have the same values, or NO_FINGERPRINT, if it could not be calculated
+     */
+    private static Object getFingerprint(UtilityCondition condition) {
+        try {
+            return getObjectFingerprint(condition, 0);
+        } catch (IllegalAccessException | RuntimeException e) {
+            return NO_FINGERPRINT;
+        }
+    }
+
+    private static Object getObjectFingerprint(Object object, int depth) throws IllegalAccessException {
+        Field[] fields = FINGERPRINT_FIELDS.get(object.getClass());
+        List<Object> fingerprint = new ArrayList<>(fields.length + 1);
+        fingerprint.add(object.getClass());
+        for (Field field : fields) {
+            fingerprint.add(getValueFingerprint(field.get(object), depth + 1));
+        }
+        return fingerprint;
+    }
+
+    private static Object getValueFingerprint(Object value, int depth) throws IllegalAccessException {
+        if (value == null || value instanceof Enum || depth > MAX_FINGERPRINT_DEPTH) {
+            return value;
+        }
+        if (value instanceof Pattern) {
+            return Arrays.asList(Pattern.class, ((Pattern) value).pattern(), ((Pattern) value).flags());
+        }
+        if (value instanceof Set) {
+            Set<Object> fingerprint = new HashSet<>();
+            for (Object element : (Set<?>) value) {
+                fingerprint.add(getValueFingerprint(element, depth + 1));
+            }
+            return fingerprint;
+        }
+        if (value instanceof Collection) {
+            List<Object> fingerprint = new ArrayList<>();
+            for (Object element : (Collection<?>) value) {
+                fingerprint.add(getValueFingerprint(element, depth + 1));
+            }
+            return fingerprint;
+        }
+        if (value instanceof Map) {
+            Map<Object, Object> fingerprint = new HashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                fingerprint.put(getValueFingerprint(entry.getKey(), depth + 1), getValueFingerprint(entry.getValue(), depth + 1));
+            }
+            return fingerprint;
+        }
+        if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            List<Object> fingerprint = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                fingerprint.add(getValueFingerprint(Array.get(value, i), depth + 1));
+            }
+            return fingerprint;
+        }
+        String className = value.getClass().getName();
+        if (className.startsWith("java.") || className.startsWith("javax.") || className.startsWith("jdk.") || className.startsWith("sun.")) {
+            return value;
+        }
+        return getObjectFingerprint(value, depth);
+    }
+
+    /*
+     * Returns the SHA-256 digest of a file content, or null, if it could not be read
+     */
+    private static byte[] getDigest(File file) {
+        try (InputStream inputStream = Files.newInputStream(file.toPath())) {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                messageDigest.update(buffer, 0, read);
+            }
+            return messageDigest.digest();
+        } catch (IOException | NoSuchAlgorithmException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    // Results kept for one file, as long as its stamp, or at least its content, does not change
+    private static final class FileResults {
+
+        // Null once invalidated, until the file content is found unchanged
+        private volatile FileStamp stamp;
+
+        // Null if the file does not exist, or if its content has not been digested
+        private final byte[] digest;
+
+        private final long size;
+        private final ConcurrentMap<Object, Boolean> results = new ConcurrentHashMap<>();
+
+        private FileResults(FileStamp stamp, byte[] digest) {
+            this.stamp = stamp;
+            this.digest = digest;
+            this.size = stamp.size;
+        }
+
+        private FileResults invalidate() {
+            stamp = null;
+            return this;
+        }
+
+        /*
+         * Returns true if the file had the given stamp, or content digest, when
+         * these results were kept, in which case the stamp is kept from then on
+         */
+        private boolean hasContent(FileStamp currentStamp, byte[] currentDigest) {
+            if (currentStamp.equals(stamp) || digest != null && Arrays.equals(currentDigest, digest)) {
+                stamp = currentStamp;
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+    // Identity, size and modification time of a regular file, or absence of any file
+    private static final class FileStamp {
+
+        private static final FileStamp ABSENT = new FileStamp(null, -1, null);
+
+        private final Object fileKey;
+        private final long size;
+        private final FileTime lastModified;
+
+        private FileStamp(Object fileKey, long size, FileTime lastModified) {
+            this.fileKey = fileKey;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        /*
+         * Returns the stamp of a file, or null, if it is a folder,
+         * or if its attributes could not be read
+         */
+        private static FileStamp of(File file) {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                return ABSENT;
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+            if (!attributes.isRegularFile()) {
+                return null;
+            }
+            return new FileStamp(attributes.fileKey(), attributes.size(), attributes.lastModifiedTime());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof FileStamp)) return false;
+
+            FileStamp stamp = (FileStamp) obj;
+            return size == stamp.size && Objects.equals(lastModified, stamp.lastModified) && Objects.equals(fileKey, stamp.fileKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fileKey, size, lastModified);
+        }
+
+    }
+
+}
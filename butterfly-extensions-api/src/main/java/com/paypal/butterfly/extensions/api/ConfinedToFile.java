@@ -0,0 +1,20 @@
+package com.paypal.butterfly.extensions.api;
+
+import java.lang.annotation.*;
+
+/**
+ * Declares that a transformation utility reads, or changes in case of operations,
+ * nothing in the application folder other than the file or folder it has been
+ * set to perform against (including its content, if it is a folder).
+ * <br>
+ * This declaration is inherited by subclasses, so it is enough to place it on their
+ * common abstract base class. See {@link TransformationUtility#isConfinedToFile()}
+ *
+ * @author agent
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ConfinedToFile {
+}
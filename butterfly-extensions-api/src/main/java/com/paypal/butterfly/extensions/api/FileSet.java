@@ -0,0 +1,448 @@
+package com.paypal.butterfly.extensions.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Compact and immutable set of files, sorted by path, used by {@link MultipleOperations},
+ * {@link FilterFiles}, {@link MultipleConditions}, and by utilities that find files, to hold potentially very
+ * large numbers of files.
+ * <br>
+ * Instead of keeping a {@link File} object, and its absolute path, per file, only paths relative to a root folder
+ * are kept, sorted, and encoded as UTF-8 bytes in a single byte array, in which each path stores only
+ * what is different from the previous one (front coding). Every {@value #BLOCK_SIZE} paths a complete one is stored, which
+ * allows files to be looked up by binary search. {@link File} objects are created on demand, while iterating.
+ * <br>
+ * For compatibility with utilities and transformation templates that read lists of files from the
+ * transformation context, this is also a {@link List}, without duplicates, and with a {@link List} equality
+ * contract. Modification methods throw {@link UnsupportedOperationException}.
+ *
+ * @author agent
+ */
+public final class FileSet extends AbstractList<File> implements RandomAccess, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int BLOCK_SIZE = 16;
+
+    private static final Comparator<byte[]> PATH_COMPARATOR = (path1, path2) -> compare(path1, path1.length, path2, path2.length);
+
+    // Root folder all paths are relative to
+    private final File root;
+
+    private final int size;
+
+    // Front coded relative paths: the length of the prefix shared
+    // with the previous path, the length of the suffix, and the suffix
+    private final byte[] data;
+
+    // Position in data of the first path of each block, which is stored complete
+    private final int[] blocks;
+
+    private FileSet(File root, int size, byte[] data, int[] blocks) {
+        this.root = root;
+        this.size = size;
+        this.data = data;
+        this.blocks = blocks;
+    }
+
+    /**
+     * Returns an empty file set
+     *
+     * @param root the root folder
+     * @return an empty file set
+     */
+    public static FileSet empty(File root) {
+        if (root == null) {
+            throw new IllegalArgumentException("Root folder cannot be null");
+        }
+        return new FileSet(root, 0, new byte[0], new int[0]);
+    }
+
+    /**
+     * Returns a file set containing the given files, ignoring duplicates.
+     * If any file is not under {@code root}, the closest ancestor of
+     * {@code root} containing all files is used as root folder instead
+     *
+     * @param root the root folder
+     * @param files the files
+     * @return a file set containing the given files
+     * @throws IllegalArgumentException if {@code root} or any file is null, or if there is no folder containing all files
+     */
+    public static FileSet of(File root, Collection<? extends File> files) {
+        if (root == null) {
+            throw new IllegalArgumentException("Root folder cannot be null");
+        }
+        if (files instanceof FileSet && ((FileSet) files).root.equals(root)) {
+            return (FileSet) files;
+        }
+        File actualRoot = getCommonRoot(root, files);
+        String prefix = getPrefix(actualRoot);
+        byte[][] paths = new byte[files.size()][];
+        int i = 0;
+        for (File file : files) {
+            paths[i++] = encode(file, prefix);
+        }
+        Arrays.sort(paths, PATH_COMPARATOR);
+
+        Encoder encoder = new Encoder(actualRoot);
+        for (byte[] path : paths) {
+            encoder.add(path, path.length);
+        }
+        return encoder.toFileSet();
+    }
+
+    /**
+     * Returns the root folder all files in this set are relative to
+     *
+     * @return the root folder all files in this set are relative to
+     */
+    public File getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns a file set containing all files in this set and in {@code files}
+     *
+     * @param files the files to be added
+     * @return a file set containing all files in this set and in {@code files}
+     */
+    public FileSet union(Collection<? extends File> files) {
+        FileSet other = of(root, files);
+        if (!other.root.equals(root)) {
+            return of(other.root, this).union(other);
+        }
+        if (other.isEmpty()) {
+            return this;
+        }
+        if (isEmpty()) {
+            return other;
+        }
+
+        Encoder encoder = new Encoder(root);
+        Cursor cursor1 = new Cursor(0);
+        Cursor cursor2 = other.new Cursor(0);
+        boolean next1 = cursor1.next();
+        boolean next2 = cursor2.next();
+        while (next1 || next2) {
+            int comparison = (!next1 ? 1 : !next2 ? -1 : cursor1.compareTo(cursor2));
+            if (comparison <= 0) {
+                encoder.add(cursor1.path, cursor1.length);
+                next2 = (comparison == 0 ? cursor2.next() : next2);
+                next1 = cursor1.next();
+            } else {
+                encoder.add(cursor2.path, cursor2.length);
+                next2 = cursor2.next();
+            }
+        }
+        return encoder.toFileSet();
+    }
+
+    /**
+     * Returns a file set containing only the files in this set that are also in {@code files}
+     *
+     * @param files the files to be retained
+     * @return a file set containing only the files in this set that are also in {@code files}
+     */
+    public FileSet intersection(Collection<? extends File> files) {
+        FileSet other = of(root, files);
+        if (!other.root.equals(root)) {
+            return of(other.root, this).intersection(other);
+        }
+
+        Encoder encoder = new Encoder(root);
+        Cursor cursor1 = new Cursor(0);
+        Cursor cursor2 = other.new Cursor(0);
+        boolean next1 = cursor1.next();
+        boolean next2 = cursor2.next();
+        while (next1 && next2) {
+            int comparison = cursor1.compareTo(cursor2);
+            if (comparison == 0) {
+                encoder.add(cursor1.path, cursor1.length);
+            }
+            if (comparison <= 0) {
+                next1 = cursor1.next();
+            }
+            if (comparison >= 0) {
+                next2 = cursor2.next();
+            }
+        }
+        return encoder.toFileSet();
+    }
+
+    @Override
+    public File get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        Cursor cursor = new Cursor(index / BLOCK_SIZE);
+        for (int i = index % BLOCK_SIZE; i >= 0; i--) {
+            cursor.next();
+        }
+        return cursor.toFile();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof File) || size == 0) {
+            return -1;
+        }
+        String prefix = getPrefix(root);
+        if (!isUnder((File) o, prefix)) {
+            return -1;
+        }
+        byte[] path = encode((File) o, prefix);
+
+        // Last block whose first path is not greater than the one searched for
+        int low = 0;
+        int high = blocks.length - 1;
+        Cursor cursor = new Cursor(0);
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            cursor.seek(middle);
+            cursor.next();
+            if (compare(cursor.path, cursor.length, path, path.length) <= 0) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        cursor.seek(low);
+        for (int i = low * BLOCK_SIZE; i < Math.min(size, (low + 1) * BLOCK_SIZE); i++) {
+            cursor.next();
+            int comparison = compare(cursor.path, cursor.length, path, path.length);
+            if (comparison == 0) {
+                return i;
+            }
+            if (comparison > 0) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public Iterator<File> iterator() {
+        return new Iterator<File>() {
+            private final Cursor cursor = new Cursor(0);
+            private int remaining = size;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0;
+            }
+
+            @Override
+            public File next() {
+                if (remaining == 0) {
+                    throw new NoSuchElementException();
+                }
+                remaining--;
+                cursor.next();
+                return cursor.toFile();
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof FileSet && ((FileSet) o).root.equals(root)) {
+            return ((FileSet) o).size == size && Arrays.equals(((FileSet) o).data, data);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    /*
+     * Reads front coded paths, starting from a given block
+     */
+    private final class Cursor {
+
+        private int position;
+        private byte[] path = new byte[64];
+        private int length;
+
+        private Cursor(int block) {
+            seek(block);
+        }
+
+        private void seek(int block) {
+            position = (block < blocks.length ? blocks[block] : data.length);
+            length = 0;
+        }
+
+        private boolean next() {
+            if (position >= data.length) {
+                return false;
+            }
+            int shared = readVarInt();
+            int suffix = readVarInt();
+            length = shared + suffix;
+            if (length > path.length) {
+                path = Arrays.copyOf(path, Math.max(length, path.length * 2));
+            }
+            System.arraycopy(data, position, path, shared, suffix);
+            position += suffix;
+            return true;
+        }
+
+        private int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+        private int compareTo(Cursor other) {
+            return compare(path, length, other.path, other.length);
+        }
+
+        private File toFile() {
+            String relativePath = new String(path, 0, length, StandardCharsets.UTF_8);
+            if (File.separatorChar != '/') {
+                relativePath = relativePath.replace('/', File.separatorChar);
+            }
+            return new File(root, relativePath);
+        }
+
+    }
+
+    /*
+     * Front codes sorted paths, ignoring duplicates
+     */
+    private static final class Encoder {
+
+        private final File root;
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        private int[] blocks = new int[8];
+        private int size;
+        private byte[] previous = new byte[0];
+        private int previousLength = -1;
+
+        private Encoder(File root) {
+            this.root = root;
+        }
+
+        private void add(byte[] path, int length) {
+            if (length == previousLength && compare(path, length, previous, previousLength) == 0) {
+                return;
+            }
+            int shared = 0;
+            if (size % BLOCK_SIZE == 0) {
+                int block = size / BLOCK_SIZE;
+                if (block == blocks.length) {
+                    blocks = Arrays.copyOf(blocks, blocks.length * 2);
+                }
+                blocks[block] = data.size();
+            } else {
+                int max = Math.min(length, previousLength);
+                while (shared < max && path[shared] == previous[shared]) {
+                    shared++;
+                }
+            }
+            writeVarInt(shared);
+            writeVarInt(length - shared);
+            data.write(path, shared, length - shared);
+
+            if (previous.length < length) {
+                previous = new byte[Math.max(length, previous.length * 2)];
+            }
+            System.arraycopy(path, 0, previous, 0, length);
+            previousLength = length;
+            size++;
+        }
+
+        private void writeVarInt(int value) {
+            while ((value & ~0x7F) != 0) {
+                data.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data.write(value);
+        }
+
+        private FileSet toFileSet() {
+            int blocksCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            return new FileSet(root, size, data.toByteArray(), Arrays.copyOf(blocks, blocksCount));
+        }
+
+    }
+
+    private static int compare(byte[] path1, int length1, byte[] path2, int length2) {
+        int max = Math.min(length1, length2);
+        for (int i = 0; i < max; i++) {
+            if (path1[i] != path2[i]) {
+                return (path1[i] & 0xFF) - (path2[i] & 0xFF);
+            }
+        }
+        return length1 - length2;
+    }
+
+    /*
+     * Returns the given root folder, if all files are under it, or its closest ancestor containing all files
+     */
+    private static File getCommonRoot(File root, Collection<? extends File> files) {
+        File commonRoot = root;
+        String prefix = getPrefix(commonRoot);
+        for (File file : files) {
+            if (file == null) {
+                throw new IllegalArgumentException("Files cannot be null");
+            }
+            while (!isUnder(file, prefix)) {
+                commonRoot = commonRoot.getAbsoluteFile().getParentFile();
+                if (commonRoot == null) {
+                    throw new IllegalArgumentException("There is no folder containing both " + root + " and " + file);
+                }
+                prefix = getPrefix(commonRoot);
+            }
+        }
+        return commonRoot;
+    }
+
+    private static String getPrefix(File root) {
+        String prefix = root.getAbsolutePath();
+        return (prefix.endsWith(File.separator) ? prefix : prefix + File.separatorChar);
+    }
+
+    private static boolean isUnder(File file, String prefix) {
+        String path = file.getAbsolutePath();
+        return path.startsWith(prefix) || path.length() == prefix.length() - 1 && prefix.startsWith(path);
+    }
+
+    private static byte[] encode(File file, String prefix) {
+        String path = file.getAbsolutePath();
+        String relativePath = (path.length() < prefix.length() ? "" : path.substring(prefix.length()));
+        if (File.separatorChar != '/') {
+            relativePath = relativePath.replace(File.separatorChar, '/');
+        }
+        return relativePath.getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -7,13 +7,14 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * Transformation utility to filter a list of files based on a given
  * {@link com.paypal.butterfly.extensions.api.SingleCondition},
  * returning in a sub-list of files.
+ * <br>
+ * The sub-list is a {@link FileSet}, sorted by path,
+ * which, unlike in previous versions, cannot be modified.
  *
  * @author facarvalho
  */
@@ -92,6 +93,12 @@ public class FilterFiles extends TransformationUtility<FilterFiles> {
         return DESCRIPTION;
     }
 
+    @Override
+    public boolean isOverlayAware() {
+        // Files are copied up by the condition instances, when resolving them
+        return conditionTemplate != null && (conditionTemplate.isConfinedToFile() || conditionTemplate.isOverlayAware());
+    }
+
     /**
      * Return an array containing the name of transformation context attributes
      * that hold the list of files to be filtered
@@ -124,12 +131,12 @@ public class FilterFiles extends TransformationUtility<FilterFiles> {
         }
 
         Collection<File> files;
-        Set<File> allFiles = new HashSet<>();
+        FileSet allFiles = FileSet.empty(transformedAppFolder);
 
         for(String attribute: filesAttributes) {
             files = (Collection<File>) transformationContext.get(attribute);
             if (files != null) {
-                allFiles.addAll(files);
+                allFiles = allFiles.union(files);
             }
         }
 
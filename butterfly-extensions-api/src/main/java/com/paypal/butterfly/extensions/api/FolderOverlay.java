@@ -0,0 +1,33 @@
+package com.paypal.butterfly.extensions.api;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Overlay of the transformed application folder on top of the original application folder.
+ * When a transformation is performed with an overlay, the transformed application folder starts empty,
+ * and files are copied up to it from the original application folder only when a transformation utility
+ * needs them, which happens automatically for the file or folder returned by
+ * {@link TransformationUtility#getAbsoluteFile(File, TransformationContext)}. Every other file is
+ * only placed in the transformed application folder at the end of the transformation.
+ * <br>
+ * Objects of this type are retrieved via {@link TransformationContext#getFolderOverlay()}.
+ * Transformation utilities usually do not need to use it directly, but via
+ * {@link TransformationUtility#copyUp(File, TransformationContext)}
+ *
+ * @author agent
+ */
+public interface FolderOverlay {
+
+    /**
+     * Makes sure a file, or folder, under the transformed application folder, has been copied up
+     * from the original application folder, if it exists there, and has not been deleted or moved
+     * during the transformation. If it is a folder, its whole content is copied up.
+     * Files outside of the transformed application folder are ignored.
+     *
+     * @param file the file or folder, under the transformed application folder
+     * @throws IOException if the file or folder could not be copied up
+     */
+    void copyUp(File file) throws IOException;
+
+}
@@ -7,8 +7,6 @@ import org.slf4j.LoggerFactory;
 import java.io.File;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
 
 /**
  * Transformation utility condition to determine if a transformation utility should be executed or not,
@@ -169,6 +167,12 @@ public class MultipleConditions extends UtilityCondition<MultipleConditions> {
         return String.format(DESCRIPTION, conditionTemplate.getName());
     }
 
+    @Override
+    public boolean isOverlayAware() {
+        // Files are copied up by the condition instances, when resolving them
+        return conditionTemplate != null && (conditionTemplate.isConfinedToFile() || conditionTemplate.isOverlayAware());
+    }
+
     @Override
     protected TUExecutionResult execution(File transformedAppFolder, TransformationContext transformationContext) {
 
@@ -181,11 +185,11 @@ public class MultipleConditions extends UtilityCondition<MultipleConditions> {
         }
 
         Collection<File> files;
-        Set<File> allFiles = new HashSet<>();
+        FileSet allFiles = FileSet.empty(transformedAppFolder);
         for(String attribute: filesAttributes) {
             files = (Collection<File>) transformationContext.get(attribute);
             if (files != null) {
-                allFiles.addAll(files);
+                allFiles = allFiles.union(files);
             }
         }
 
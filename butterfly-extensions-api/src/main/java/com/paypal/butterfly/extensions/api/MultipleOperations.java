@@ -2,7 +2,6 @@ package com.paypal.butterfly.extensions.api;
 
 import java.io.File;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.*;
 
 import org.slf4j.Logger;
@@ -60,7 +59,7 @@ public class MultipleOperations extends TransformationUtility<MultipleOperations
 
     // This is the setter method in the template operation to be used to set the
     // property in case of multiple configurations
-    private Method propertySetter;
+    private PropertySetter propertySetter;
 
     // A template of transformation operation to be performed against all
     // specified files
@@ -69,6 +68,10 @@ public class MultipleOperations extends TransformationUtility<MultipleOperations
     // Actual operations to performed against all specified files
     private List<TransformationUtility> operations;
 
+    // Maximum number of operations to be performed concurrently,
+    // provided they are performed against different files
+    private int parallelism = 1;
+
     /**
      * Utility to perform multiple transformation operations. Multiple transformation operations
      * are defined based on an operation template and two other factors, that could be applied
@@ -181,6 +184,30 @@ public class MultipleOperations extends TransformationUtility<MultipleOperations
         return this;
     }
 
+    /**
+     * Sets the maximum number of operations to be performed concurrently.
+     * Operations are partitioned by the file they are performed against, so
+     * operations against the same file are always performed sequentially,
+     * while operations against different files may be performed concurrently.
+     * Results are still reported in the original operations order.
+     * The default value is 1, which means operations are all performed sequentially.
+     * <br>
+     * <strong>Important:</strong> only set this to a value greater than 1 if the
+     * template operation changes nothing but the file it is performed against.
+     * Also, if the template operation is set to abort on failure, operations
+     * are performed sequentially regardless of this setting
+     *
+     * @param parallelism the maximum number of operations to be performed concurrently
+     * @return this transformation utility object
+     */
+    public MultipleOperations setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new TransformationDefinitionException("Parallelism must be greater than zero");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
     @Override
     public MultipleOperations setName(String name) {
         templateOperation.setName(String.format("%s-%s-TEMPLATE_OPERATION", name, templateOperation.getSimpleClassName()));
@@ -198,6 +225,26 @@ public class MultipleOperations extends TransformationUtility<MultipleOperations
         return Arrays.copyOf(filesAttributes, filesAttributes.length);
     }
 
+    /**
+     * Returns the maximum number of operations to be performed concurrently
+     *
+     * @return the maximum number of operations to be performed concurrently
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Returns the name of the transformation context attribute that holds the values set to
+     * each operation, via {@link #setProperties(String, String)}, or null, if not set
+     *
+     * @return the name of the transformation context attribute that holds the values set to
+     * each operation, or null, if not set
+     */
+    public String getPropertyAttribute() {
+        return propertyAttribute;
+    }
+
     public TransformationOperation getTemplateOperation() {
         return templateOperation;
     }
@@ -207,14 +254,15 @@ public class MultipleOperations extends TransformationUtility<MultipleOperations
         return String.format(DESCRIPTION, templateOperation.getSimpleClassName());
     }
 
-    public void setPropertySetter() {
-        String methodName = String.format("set%s%s", propertyName.substring(0, 1).toUpperCase(), propertyName.substring(1));
+    @Override
+    public boolean isOverlayAware() {
+        return true;
+    }
 
-        for(Method method : templateOperation.getClass().getMethods()) {
-            if(method.getName().equals(methodName)) {
-                propertySetter = method;
-                return;
-            }
+    public void setPropertySetter() {
+        propertySetter = PropertySetter.get(templateOperation.getClass(), propertyName);
+        if (propertySetter != null) {
+            return;
         }
 
         String exceptionMessage = String.format("%s is not a valid property", propertyName);
@@ -224,12 +272,12 @@ public class MultipleOperations extends TransformationUtility<MultipleOperations
     @Override
     protected TUExecutionResult execution(File transformedAppFolder, TransformationContext transformationContext) {
         Collection<File> files;
-        Set<File> allFiles = new HashSet<>();
+        FileSet allFiles = FileSet.empty(transformedAppFolder);
 
         for(String attribute: filesAttributes) {
             files = (Collection<File>) transformationContext.get(attribute);
             if (files != null) {
-                allFiles.addAll(files);
+                allFiles = allFiles.union(files);
             }
         }
 
@@ -240,7 +288,7 @@ public class MultipleOperations extends TransformationUtility<MultipleOperations
                 // based on multiple files, but based on multiple configuration
                 // Because of that, the single file the multiple operations should
                 // run against is defined as usual
-                allFiles.add(getAbsoluteFile(transformedAppFolder, transformationContext));
+                allFiles = FileSet.of(transformedAppFolder, Collections.singleton(getAbsoluteFile(transformedAppFolder, transformationContext)));
                 multipleFiles = false;
             } else {
                 if (logger.isDebugEnabled()) {
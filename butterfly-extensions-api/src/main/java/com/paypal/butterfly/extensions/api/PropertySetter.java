@@ -0,0 +1,148 @@
+package com.paypal.butterfly.extensions.api;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Setter method of a transformation utility Java bean property, used to set properties during transformation time,
+ * via {@link TransformationUtility#set(String, String)} and {@link MultipleOperations#setProperties(String, String)}.
+ * <br>
+ * Setters are resolved once per class, and kept in a class level cache, as method handles,
+ * together with the conversion to be applied to numeric values, according to their parameter type.
+ * Whenever a value could not be set via a method handle exactly the same way it would be via
+ * reflection (for example, when widening primitive values), reflection is used instead.
+ *
+ * @author agent
+ */
+final class PropertySetter {
+
+    private enum Conversion {
+        NONE, INT, SHORT
+    }
+
+    // Setters per class, by method name. If more than one public method has the
+    // same name, the first one returned by Class.getMethods() is used
+    private static final ClassValue<Map<String, PropertySetter>> SETTERS = new ClassValue<Map<String, PropertySetter>>() {
+        @Override
+        protected Map<String, PropertySetter> computeValue(Class<?> clazz) {
+            Map<String, PropertySetter> setters = new HashMap<>();
+            for (Method method : clazz.getMethods()) {
+                if (method.getName().startsWith("set") && !setters.containsKey(method.getName())) {
+                    setters.put(method.getName(), new PropertySetter(method));
+                }
+            }
+            return Collections.unmodifiableMap(setters);
+        }
+    };
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Method method;
+
+    // Null if this setter can only be invoked via reflection
+    private final MethodHandle methodHandle;
+
+    private final Class<?> parameterType;
+    private final Class<?> wrappedParameterType;
+    private final Conversion conversion;
+
+    private PropertySetter(Method method) {
+        this.method = method;
+        if (method.getParameterCount() == 1) {
+            parameterType = method.getParameterTypes()[0];
+            wrappedParameterType = MethodType.methodType(parameterType).wrap().returnType();
+            methodHandle = (Modifier.isStatic(method.getModifiers()) ? null : getMethodHandle(method));
+        } else {
+            parameterType = null;
+            wrappedParameterType = null;
+            methodHandle = null;
+        }
+        if (parameterType == int.class || parameterType == Integer.class) {
+            conversion = Conversion.INT;
+        } else if (parameterType == short.class || parameterType == Short.class) {
+            conversion = Conversion.SHORT;
+        } else {
+            conversion = Conversion.NONE;
+        }
+    }
+
+    private static MethodHandle getMethodHandle(Method method) {
+        try {
+            return MethodHandles.lookup().unreflect(method).asType(SETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the setter of the given property in the given class,
+     * or null, if there is no public method named after it
+     *
+     * @param clazz the transformation utility class
+     * @param propertyName the Java bean property name
+     * @return the setter of the given property in the given class
+     */
+    static PropertySetter get(Class<?> clazz, String propertyName) {
+        String methodName = String.format("set%s%s", propertyName.substring(0, 1).toUpperCase(), propertyName.substring(1));
+        return SETTERS.get(clazz).get(methodName);
+    }
+
+    /**
+     * Converts {@link Long} values, as returned for example by
+     * {@code com.paypal.butterfly.utilities.misc.RunScript}, since Java script and
+     * Java data types differ, to {@code int} or {@code short}, if that is the setter parameter type
+     *
+     * @param value the value to be set
+     * @return the converted value, or {@code value} itself, if no conversion is necessary
+     */
+    Object convert(Object value) {
+        if (!(value instanceof Long)) {
+            return value;
+        }
+        switch (conversion) {
+            case INT:
+                return ((Long) value).intValue();
+            case SHORT:
+                return ((Long) value).shortValue();
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Invokes the setter, following the same rules as {@link Method#invoke(Object, Object...)}
+     *
+     * @param target the object whose property is to be set
+     * @param value the property value
+     * @throws IllegalAccessException if the setter is not accessible
+     * @throws IllegalArgumentException if the value cannot be set to the setter parameter
+     * @throws InvocationTargetException if the setter throws an exception
+     */
+    void invoke(Object target, Object value) throws IllegalAccessException, InvocationTargetException {
+        if (methodHandle == null || !method.getDeclaringClass().isInstance(target)) {
+            method.invoke(target, value);
+            return;
+        }
+        if (value == null) {
+            if (parameterType.isPrimitive()) {
+                throw new IllegalArgumentException();
+            }
+        } else if (!wrappedParameterType.isInstance(value)) {
+            method.invoke(target, value);
+            return;
+        }
+        try {
+            methodHandle.invokeExact(target, value);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+}
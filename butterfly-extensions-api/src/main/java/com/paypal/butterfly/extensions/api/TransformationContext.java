@@ -38,4 +38,35 @@ public interface TransformationContext {
      */
     boolean contains(String name);
 
+    /**
+     * Returns the overlay of the transformed application folder on top
+     * of the original application folder, or null, if the transformation
+     * is not performed with an overlay. See {@link FolderOverlay}
+     *
+     * @return the overlay of the transformed application folder, or null
+     */
+    default FolderOverlay getFolderOverlay() {
+        return null;
+    }
+
+    /**
+     * Returns the tree copier transformation utilities should use to copy folders,
+     * which is set according to the transformation configuration. See {@link TreeCopier}
+     *
+     * @return the tree copier to be used to copy folders
+     */
+    default TreeCopier getTreeCopier() {
+        return TreeCopier.SEQUENTIAL;
+    }
+
+    /**
+     * Returns the results of utility conditions kept during this transformation,
+     * or null, if they are not supposed to be kept. See {@link ConditionCache}
+     *
+     * @return the results of utility conditions kept during this transformation, or null
+     */
+    default ConditionCache getConditionCache() {
+        return null;
+    }
+
 }
\ No newline at end of file
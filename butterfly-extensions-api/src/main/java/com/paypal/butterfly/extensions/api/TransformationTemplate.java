@@ -330,4 +330,25 @@ public abstract class TransformationTemplate implements TransformationUtilityLis
         return blank;
     }
 
+    /**
+     * Returns true only if this transformation template can be instantiated once, and then
+     * reused by every transformation performed with it, concurrent or not, instead of being
+     * instantiated again for each one of them.
+     * <br>
+     * In that case, every transformation performs its own copy of the template utilities, via
+     * {@link TransformationUtility#clone()}, in which references from one utility to another,
+     * and standard collections and maps, are copied as well. Any other object the utilities
+     * refer to, for example helper objects, arrays, string builders, or caches, is shared among
+     * all transformations. Because of that, templates must only return true if none of their
+     * utilities, including the ones provided by other extensions, changes any such object
+     * during transformation time, or if they create their own in {@link TransformationUtility#clone()}.
+     * <br>
+     * The default value is {@code false}, which is always safe.
+     *
+     * @return true only if this transformation template can be reused by every transformation
+     */
+    public boolean isReusable() {
+        return false;
+    }
+
 }
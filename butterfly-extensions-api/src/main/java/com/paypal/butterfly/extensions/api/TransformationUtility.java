@@ -9,8 +9,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.lang.reflect.Method;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -92,7 +94,7 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
     // Map of properties to be set later, during transformation time.
     // The keys must be utility Java property names, and the values
     // must be the setter methods
-    private Map<String, Method> latePropertiesSetters = new HashMap<>();
+    private Map<String, PropertySetter> latePropertiesSetters = new HashMap<>();
 
     // Abort the whole transformation if this operation fails
     private boolean abortOnFailure = false;
@@ -101,6 +103,9 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
     // has to be aborted
     private String abortionMessage;
 
+    // How long, in milliseconds, this utility is allowed to run, zero if not set
+    private long timeout = 0;
+
     // See comments in isSaveResult method
     private boolean saveResult = true;
 
@@ -320,7 +325,7 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
      * @return relative path (from the application root folder) to the
      * file or folder the transformation utility is suppose to perform against
      */
-    protected final String getRelativePath() {
+    public final String getRelativePath() {
         return relativePath;
     }
 
@@ -332,15 +337,42 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
      * @param transformationContext the transformation context object
      * @return an absolute path to the file or folder the transformation
      * utility is suppose to perform against
+     * @throws TransformationUtilityException if the file or folder could not be resolved
      */
-    protected final File getAbsoluteFile(File transformedAppFolder, TransformationContext transformationContext) throws TransformationUtilityException {
+    public final File getAbsoluteFile(File transformedAppFolder, TransformationContext transformationContext) throws TransformationUtilityException {
         if(absoluteFile == null) {
             setAbsoluteFile(transformedAppFolder, transformationContext);
+            copyUp(absoluteFile, transformationContext);
         }
 
         return absoluteFile;
     }
 
+    /**
+     * If the transformation is performed with an overlay (see {@link FolderOverlay}),
+     * makes sure {@code file} has been copied up from the original application folder,
+     * so that it can be read or changed. That is automatically done for the file or folder
+     * returned by {@link #getAbsoluteFile(File, TransformationContext)}. Utilities that also read
+     * or change other files must call this method for each one of them, before doing so,
+     * and then override {@link #isOverlayAware()}.
+     *
+     * @param file the file or folder, under the transformed application folder
+     * @param transformationContext the transformation context object
+     * @throws TransformationUtilityException if the file or folder could not be copied up
+     */
+    protected final void copyUp(File file, TransformationContext transformationContext) throws TransformationUtilityException {
+        FolderOverlay folderOverlay = transformationContext.getFolderOverlay();
+        if (folderOverlay == null || file == null) {
+            return;
+        }
+        try {
+            folderOverlay.copyUp(file);
+        } catch (IOException e) {
+            String exceptionMessage = String.format("File %s could not be copied up from the original application folder for %s", file, name);
+            throw new TransformationUtilityException(exceptionMessage, e);
+        }
+    }
+
     private void setAbsoluteFile(File transformedAppFolder, TransformationContext transformationContext) throws TransformationUtilityException {
         if(absoluteFileFromContextAttribute != null) {
             if(!transformationContext.contains(absoluteFileFromContextAttribute)) {
@@ -429,8 +461,8 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
      * which would result in an error ({@link TransformationUtilityException}) with
      * {@link IllegalArgumentException}) as root cause.
      * <br>
-     * Notice that, because this feature relies on reflection, executing it is not
-     * cheap, especially because it happens during transformation time.
+     * Notice that, although setters are resolved only once per class, and cached,
+     * this feature still relies on the transformation context during transformation time.
      * So, use it only when really necessary.
      *
      * @param propertyName the transformation utility Java property name
@@ -445,21 +477,17 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
      * @return this transformation utility instance
      */
     public final T set(String propertyName, String contextAttributeName) {
-        Method method = getMethod(propertyName);
+        PropertySetter setter = getSetter(propertyName);
         latePropertiesAttributes.put(propertyName, contextAttributeName);
-        latePropertiesSetters.put(propertyName, method);
+        latePropertiesSetters.put(propertyName, setter);
 
         return (T) this;
     }
 
-    private Method getMethod(String propertyName) {
-        String methodName = getMethodName(propertyName);
-        Class clazz = ((T) this).getClass();
-
-        for(Method method : clazz.getMethods()) {
-            if(method.getName().equals(methodName)) {
-                return method;
-            }
+    private PropertySetter getSetter(String propertyName) {
+        PropertySetter setter = PropertySetter.get(getClass(), propertyName);
+        if (setter != null) {
+            return setter;
         }
 
         String exceptionMessage = String.format("%s is not a valid property", propertyName);
@@ -478,7 +506,7 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
      */
     protected final void applyPropertiesFromContext(TransformationContext transformationContext) throws TransformationUtilityException {
         String attributeName;
-        Method method;
+        PropertySetter setter;
         Object value = null;
         for (final Iterator itr = latePropertiesAttributes.entrySet().iterator(); itr.hasNext();) {
             Map.Entry<String, String> entry = (Map.Entry) itr.next();
@@ -491,20 +519,17 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
             }
 
             try {
-                method = latePropertiesSetters.get(propertyName);
+                setter = latePropertiesSetters.get(propertyName);
                 value = transformationContext.get(attributeName);
 
                 // Numeric values returned from {@link com.paypal.butterfly.utilities.misc.RunScript} might need to be converted,
                 // since Java script and Java data types differ.
-                if ((method.getParameterTypes()[0].getTypeName().equals("int") || method.getParameterTypes()[0].getTypeName().equals("java.lang.Integer")) && value instanceof Long) {
-                    value = ((Long) value).intValue();
-                    logger.debug("Converting value from Long to int. Value came from {} and is being set for property {} in {}", attributeName, propertyName, name);
-                } else if ((method.getParameterTypes()[0].getTypeName().equals("short") || method.getParameterTypes()[0].getTypeName().equals("java.lang.Short")) && value instanceof Long) {
-                    value = ((Long) value).shortValue();
-                    logger.debug("Converting value from Long to short. Value came from {} and is being set for property {} in {}", attributeName, propertyName, name);
+                Object convertedValue = setter.convert(value);
+                if (convertedValue != value && logger.isDebugEnabled()) {
+                    logger.debug("Converting value from Long to {}. Value came from {} and is being set for property {} in {}", (convertedValue instanceof Integer ? "int" : "short"), attributeName, propertyName, name);
                 }
 
-                method.invoke(this, value);
+                setter.invoke(this, convertedValue);
             } catch (Exception e) {
                 String exceptionMessage = String.format("An exception happened when setting property '%s' from context attribute '%s' in '%s'", propertyName, attributeName, name);
                 throw new TransformationUtilityException(exceptionMessage, e);
@@ -512,10 +537,6 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
         }
     }
 
-    private String getMethodName(String propertyName) {
-        return String.format("set%s%s", propertyName.substring(0, 1).toUpperCase(), propertyName.substring(1));
-    }
-
     /**
      * This is a package private way to let Butterfly internally set the
      * absolute file this TU is supposed to execute against.
@@ -587,10 +608,67 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
         return (T) this;
     }
 
-    private final String getAbsoluteFileFromContextAttribute() {
+    /**
+     * Returns the name of the transformation context attribute whose value
+     * will be set as the absolute file right before execution, or null, if
+     * none has been set. See {@link #absolute(String)}.
+     *
+     * @return the name of the transformation context attribute whose value
+     * will be set as the absolute file right before execution
+     */
+    public final String getAbsoluteFileFromContextAttribute() {
         return absoluteFileFromContextAttribute;
     }
 
+    /**
+     * Returns an unmodifiable map of all properties to be set during transformation time,
+     * where the keys are the utility Java property names, and the values are the
+     * transformation context attribute names. See {@link #set(String, String)}.
+     *
+     * @return an unmodifiable map of all properties to be set during transformation time
+     */
+    public final Map<String, String> getLatePropertiesAttributes() {
+        return Collections.unmodifiableMap(latePropertiesAttributes);
+    }
+
+    /**
+     * Returns true only if this utility reads, or changes in case of operations,
+     * nothing in the application folder other than the file or folder it has been
+     * set to perform against (including its content, if it is a folder).
+     * <br>
+     * This information is used by Butterfly to decide which utilities can be
+     * performed concurrently, when that is enabled. Utilities that also read or
+     * change any other file, for example by getting it from a transformation context
+     * attribute, must not be annotated with {@link ConfinedToFile}.
+     * <br>
+     * It returns true only if this utility class, or any of its superclasses, is annotated
+     * with {@link ConfinedToFile}. Otherwise it returns {@code false}, which is always safe.
+     *
+     * @return true only if this utility is confined to the file or folder it has
+     * been set to perform against
+     */
+    public boolean isConfinedToFile() {
+        return getClass().isAnnotationPresent(ConfinedToFile.class);
+    }
+
+    /**
+     * Returns true only if this utility, besides the file or folder it has been set to perform
+     * against, reads or changes nothing in the application folder, or only files it has
+     * copied up first, via {@link #copyUp(File, TransformationContext)}.
+     * <br>
+     * This information is used by Butterfly when the transformation is performed with an overlay
+     * (see {@link FolderOverlay}). Before performing a utility that is neither confined to a file
+     * (see {@link #isConfinedToFile()}) nor overlay aware, all files are copied up from the original
+     * application folder, which is always safe, but makes the overlay pointless from then on.
+     * <br>
+     * The default value is {@code false}, which is always safe.
+     *
+     * @return true only if this utility copies up any file it reads or changes
+     */
+    public boolean isOverlayAware() {
+        return false;
+    }
+
     /**
      * Performs the transformation utility against
      * the application to be transformed. After this method is called,
@@ -621,6 +699,82 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
             return PerformResult.error(this, e);
         }
 
+        PerformResult result = checkConditions(transformedAppFolder, transformationContext);
+        if (result != null) {
+            hasBeenPerformed.set(true);
+            return result;
+        }
+
+        TransformationUtilityException ex = null;
+
+        try {
+            // Applying properties during transformation time
+            applyPropertiesFromContext(transformationContext);
+
+            ExecutionResult executionResult = execution(transformedAppFolder, transformationContext);
+            result = PerformResult.executionResult(this, executionResult);
+        } catch(Exception e) {
+            String exceptionMessage = String.format("Utility %s has failed", getName());
+            ex = new TransformationUtilityException(exceptionMessage, e);
+            hasBeenPerformed.set(true);
+            return PerformResult.error(this, ex);
+        } finally {
+            // This if and the following below, even though similar, address different execution paths,
+            // so they must both be here, do not remove none of them thinking that this is redundant code
+            if (result == null && ex == null) {
+                String exceptionMessage = String.format("Utility %s has failed but has not produced any exception, check if its code is defective.", getName());
+                ex = new TransformationUtilityException(exceptionMessage);
+                logger.error("", ex);
+            }
+            hasBeenPerformed.set(true);
+        }
+
+        if (result == null) {
+            String exceptionMessage = String.format("Utility %s has failed but has not produced any exception, check if its code is defective.", getName());
+            ex = new TransformationUtilityException(exceptionMessage);
+            result = PerformResult.error(this, ex);
+        }
+
+        return result;
+    }
+
+    /**
+     * Plans this utility, as opposed to performing it. Its conditions and dependencies
+     * are evaluated, and its properties set via transformation context attributes are applied,
+     * exactly as in {@link #perform(File, TransformationContext)}, but it is not executed.
+     * This is used to find out which utilities would be executed, without changing the application.
+     * <br>
+     * Just like {@link #perform(File, TransformationContext)}, a utility is supposed to be planned
+     * only once, and it cannot be performed after being planned.
+     *
+     * @param transformedAppFolder the folder where the transformed application code is
+     * @param transformationContext the transformation context object
+     * @return null, if this utility would be executed, or a perform result stating
+     * why it would be skipped, or why planning it failed
+     */
+    public final PerformResult plan(File transformedAppFolder, TransformationContext transformationContext) {
+        if(hasBeenPerformed.getAndSet(true)) {
+            String exceptionMessage = String.format("Utility %s has already been performed", getName());
+            TransformationUtilityException e = new TransformationUtilityException(exceptionMessage);
+            return PerformResult.error(this, e);
+        }
+        PerformResult result = checkConditions(transformedAppFolder, transformationContext);
+        if (result != null) {
+            return result;
+        }
+        try {
+            applyPropertiesFromContext(transformationContext);
+        } catch (TransformationUtilityException e) {
+            return PerformResult.error(this, e);
+        }
+        return null;
+    }
+
+    /*
+     * Evaluates this utility conditions and dependencies, returning a perform result
+     * if they are not met, or null, if this utility is supposed to be executed
+     */
+    private PerformResult checkConditions(File transformedAppFolder, TransformationContext transformationContext) {
         // Checking for IF condition
         if(ifConditionAttributeName != null) {
             Object conditionResult = transformationContext.get(ifConditionAttributeName);
@@ -629,7 +783,6 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
                     || (conditionResult instanceof String && !conditionResult.equals("true"))) {
 
                 String details = String.format("%s was skipped due to failing 'if' condition: %s", getName(), ifConditionAttributeName);
-                hasBeenPerformed.set(true);
                 return PerformResult.skippedCondition(this, details);
             }
         }
@@ -641,7 +794,6 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
                     ((conditionResult instanceof Boolean && ((Boolean) conditionResult).booleanValue()) || (conditionResult instanceof String && conditionResult.equals("true")))) {
 
                 String details = String.format("%s was skipped due to failing 'unless' condition: %s", getName(), unlessConditionAttributeName);
-                hasBeenPerformed.set(true);
                 return PerformResult.skippedCondition(this, details);
             }
         }
@@ -658,58 +810,26 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
 
             Object conditionResult = null;
             try {
-                TUExecutionResult conditionExecutionResult = (TUExecutionResult) utilityCondition.execution(transformedAppFolder, transformationContext);
-                conditionResult = conditionExecutionResult.getValue();
+                Callable<Object> evaluation = () -> ((TUExecutionResult) utilityCondition.execution(transformedAppFolder, transformationContext)).getValue();
+                ConditionCache conditionCache = transformationContext.getConditionCache();
+                if (conditionCache == null) {
+                    conditionResult = evaluation.call();
+                } else {
+                    conditionResult = conditionCache.evaluate(this.utilityCondition, utilityCondition.getAbsoluteFile(transformedAppFolder, transformationContext), evaluation);
+                }
             } catch (Exception e) {
                 logger.error("An exception happened when executing utility condition " + utilityCondition.getName(), e);
             } finally {
                 if (conditionResult == null || conditionResult instanceof Boolean && !((Boolean) conditionResult).booleanValue()) {
                     String utilityConditionName = (utilityCondition.getName() == null ? utilityCondition.toString() : utilityCondition.getName());
                     String details = String.format("%s was skipped due to failing UtilityCondition '%s'", getName(), utilityConditionName);
-                    hasBeenPerformed.set(true);
                     return PerformResult.skippedCondition(this, details);
                 }
             }
         }
 
         // Checking for dependencies
-        PerformResult result = (PerformResult) checkDependencies(transformationContext);
-        if (result != null) {
-            hasBeenPerformed.set(true);
-            return result;
-        }
-
-        TransformationUtilityException ex = null;
-
-        try {
-            // Applying properties during transformation time
-            applyPropertiesFromContext(transformationContext);
-
-            ExecutionResult executionResult = execution(transformedAppFolder, transformationContext);
-            result = PerformResult.executionResult(this, executionResult);
-        } catch(Exception e) {
-            String exceptionMessage = String.format("Utility %s has failed", getName());
-            ex = new TransformationUtilityException(exceptionMessage, e);
-            hasBeenPerformed.set(true);
-            return PerformResult.error(this, ex);
-        } finally {
-            // This if and the following below, even though similar, address different execution paths,
-            // so they must both be here, do not remove none of them thinking that this is redundant code
-            if (result == null && ex == null) {
-                String exceptionMessage = String.format("Utility %s has failed but has not produced any exception, check if its code is defective.", getName());
-                ex = new TransformationUtilityException(exceptionMessage);
-                logger.error("", ex);
-            }
-            hasBeenPerformed.set(true);
-        }
-
-        if (result == null) {
-            String exceptionMessage = String.format("Utility %s has failed but has not produced any exception, check if its code is defective.", getName());
-            ex = new TransformationUtilityException(exceptionMessage);
-            result = PerformResult.error(this, ex);
-        }
-
-        return result;
+        return (PerformResult) checkDependencies(transformationContext);
     }
 
     /**
@@ -771,6 +891,38 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
         return abortOnFailure;
     }
 
+    /**
+     * Sets how long this utility is allowed to run. If it runs out of time, it is interrupted,
+     * and results in an error, which aborts the transformation if this utility is set to abort on failure.
+     * If not set, the utility timeout of the transformation configuration applies.
+     * <br>
+     * Utilities that wait on external processes, or loop for long, should react to
+     * thread interruption, otherwise they keep running, although the transformation moves on,
+     * and might still be changing files while the next utilities are performed
+     *
+     * @param timeout how long this utility is allowed to run
+     * @param unit the time unit of {@code timeout}
+     * @return this transformation utility instance
+     * @throws TransformationDefinitionException if {@code timeout} is not positive
+     */
+    public final T timeout(long timeout, TimeUnit unit) {
+        if (timeout <= 0) {
+            throw new TransformationDefinitionException("Timeout must be greater than zero");
+        }
+        this.timeout = unit.toMillis(timeout);
+        return (T) this;
+    }
+
+    /**
+     * Returns how long, in milliseconds, this utility is allowed to run,
+     * or zero, if that has not been set. See {@link #timeout(long, TimeUnit)}
+     *
+     * @return how long, in milliseconds, this utility is allowed to run, or zero
+     */
+    public final long getTimeout() {
+        return timeout;
+    }
+
     /**
      * This flag indicates whether the value produced by the transformation utility execution,
      * and also its result object as a whole, should both be saved in the transformation
@@ -872,7 +1024,7 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
      *
      * @return an unmodifiable list of names of utilities this utility instance depends on
      */
-    protected final List<String> getDependencies() {
+    public final List<String> getDependencies() {
         if (dependencies != null) {
             return Collections.unmodifiableList(Arrays.asList(dependencies));
         }
@@ -1003,6 +1155,16 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
         return unlessConditionAttributeName;
     }
 
+    /**
+     * Return the {@link UtilityCondition} object set via {@link #executeIf(UtilityCondition)},
+     * or null, if there is none
+     *
+     * @return the utility condition object associated with this transformation utility
+     */
+    public final UtilityCondition getUtilityCondition() {
+        return utilityCondition;
+    }
+
     /**
      * The implementation execution of this transformation utility.
      * The returned object is the result of the execution and is always
@@ -1070,7 +1232,7 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
         // Non-primitive and mutable object properties that need to be manually cloned from original object
         if (absoluteFile != null) clone.absoluteFile = new File(this.absoluteFile.getAbsolutePath());
         clone.latePropertiesAttributes = new HashMap<String, String>();
-        clone.latePropertiesSetters = new HashMap<String, Method>();
+        clone.latePropertiesSetters = new HashMap<String, PropertySetter>();
         clone.latePropertiesAttributes.putAll(this.latePropertiesAttributes);
         clone.latePropertiesSetters.putAll(this.latePropertiesSetters);
 
@@ -1177,6 +1339,7 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
 
         if (!Objects.equals(this.abortionMessage, tu.abortionMessage)) return false;
         if (this.abortOnFailure != tu.abortOnFailure) return false;
+        if (this.timeout != tu.timeout) return false;
         if (!Objects.equals(this.absoluteFile, tu.absoluteFile)) return false;
         if (!Objects.equals(this.absoluteFileFromContextAttribute, tu.absoluteFileFromContextAttribute)) return false;
         if (!Objects.equals(this.additionalRelativePath, tu.additionalRelativePath)) return false;
@@ -1200,6 +1363,7 @@ public abstract class TransformationUtility<T extends TransformationUtility> imp
         return hashCode(1,
                 abortionMessage,
                 abortOnFailure,
+                timeout,
                 absoluteFile,
                 absoluteFileFromContextAttribute,
                 additionalRelativePath,
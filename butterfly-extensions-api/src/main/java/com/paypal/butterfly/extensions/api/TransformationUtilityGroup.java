@@ -36,6 +36,11 @@ public class TransformationUtilityGroup extends TransformationUtility<Transforma
         return DESCRIPTION;
     }
 
+    @Override
+    public boolean isOverlayAware() {
+        return true;
+    }
+
     @Override
     public String add(TransformationUtility utility) {
         if (getParent() == null) {
@@ -203,6 +203,11 @@ public class TransformationUtilityLoop extends TransformationUtility<Transformat
         return String.format(DESCRIPTION, executionCondition);
     }
 
+    @Override
+    public boolean isOverlayAware() {
+        return true;
+    }
+
     @Override
     public List<TransformationUtility> getChildren() {
         return Collections.unmodifiableList(childrenList);
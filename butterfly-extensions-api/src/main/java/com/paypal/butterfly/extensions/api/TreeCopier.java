@@ -0,0 +1,334 @@
+package com.paypal.butterfly.extensions.api;
+
+import org.apache.commons.io.FileExistsException;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Copies folders, and all their content, using several threads. Folders are walked,
+ * and created, by the calling thread, in depth-first order, with the entries of each folder
+ * sorted by name, while files are copied by worker threads, via {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+ * <br>
+ * The result is the same as {@link FileUtils#copyDirectory(File, File)}, which means the content
+ * of the source folder is merged into the target folder, with the source taking precedence,
+ * symbolic links are followed, and file and folder dates are preserved.
+ * <br>
+ * Regardless of the parallelism, if any file or folder cannot be copied, the error reported is
+ * always the one of the first file or folder that failed in walking order, which is the same one
+ * reported if the copy were sequential. Other errors, if any, are added to it as suppressed exceptions,
+ * in walking order as well. After the first error, no new file is copied, although files
+ * already being copied are allowed to finish
+ *
+ * @author agent
+ */
+public final class TreeCopier {
+
+    /**
+     * Default number of threads used to copy files
+     */
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    /**
+     * Tree copier that copies files using only the calling thread
+     */
+    public static final TreeCopier SEQUENTIAL = new TreeCopier(1);
+
+    // Maximum number of files waiting to be copied, per worker thread
+    private static final int QUEUED_FILES_PER_THREAD = 64;
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private final int parallelism;
+
+    /**
+     * Creates a tree copier
+     *
+     * @param parallelism the number of threads used to copy files
+     * @throws IllegalArgumentException if {@code parallelism} is smaller than 1
+     */
+    public TreeCopier(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Tree copier parallelism must be greater than zero");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the number of threads used to copy files
+     *
+     * @return the number of threads used to copy files
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Copies the content of a folder to another folder, which is created if it does not exist.
+     * If the target folder is under the source folder, it is not copied to itself
+     *
+     * @param sourceFolder the folder whose content is copied
+     * @param targetFolder the folder the content is copied to
+     * @throws IOException if the source folder does not exist, or if any file or folder could not be copied
+     */
+    public void copy(File sourceFolder, File targetFolder) throws IOException {
+        if (sourceFolder == null || targetFolder == null) {
+            throw new IllegalArgumentException("Source and target folders cannot be null");
+        }
+        if (!sourceFolder.exists()) {
+            throw new FileNotFoundException("Source folder " + sourceFolder + " does not exist");
+        }
+        if (!sourceFolder.isDirectory()) {
+            throw new IOException("Source " + sourceFolder + " is not a folder");
+        }
+        Path source = sourceFolder.toPath().toAbsolutePath().normalize();
+        Path target = targetFolder.toPath().toAbsolutePath().normalize();
+        if (source.equals(target)) {
+            throw new IOException("Source " + sourceFolder + " and target " + targetFolder + " are the same folder");
+        }
+        if (targetFolder.exists() && !targetFolder.isDirectory()) {
+            throw new IOException("Target " + targetFolder + " is not a folder");
+        }
+
+        new Copy(source, target).run();
+    }
+
+    /**
+     * Moves a folder to another location, which must not exist yet. If the folder cannot
+     * simply be renamed, for example because the target location is in another file system,
+     * its content is copied, and then the source folder is deleted
+     *
+     * @param sourceFolder the folder to be moved
+     * @param targetFolder the new location of the folder
+     * @throws IOException if the source folder does not exist, if the target folder already exists,
+     * if the target folder is under the source folder, or if the folder could not be moved
+     */
+    public void move(File sourceFolder, File targetFolder) throws IOException {
+        if (sourceFolder == null || targetFolder == null) {
+            throw new IllegalArgumentException("Source and target folders cannot be null");
+        }
+        if (!sourceFolder.exists()) {
+            throw new FileNotFoundException("Source folder " + sourceFolder + " does not exist");
+        }
+        if (!sourceFolder.isDirectory()) {
+            throw new IOException("Source " + sourceFolder + " is not a folder");
+        }
+        if (targetFolder.exists()) {
+            throw new FileExistsException("Target folder " + targetFolder + " already exists");
+        }
+        if (sourceFolder.renameTo(targetFolder)) {
+            return;
+        }
+        if (targetFolder.getCanonicalPath().startsWith(sourceFolder.getCanonicalPath() + File.separator)) {
+            throw new IOException("Folder " + sourceFolder + " cannot be moved to its own subfolder " + targetFolder);
+        }
+        copy(sourceFolder, targetFolder);
+        FileUtils.deleteDirectory(sourceFolder);
+        if (sourceFolder.exists()) {
+            throw new IOException("Folder " + sourceFolder + " has been copied to " + targetFolder + ", but could not be deleted");
+        }
+    }
+
+    /*
+     * A single copy of a folder. Every file and folder is given a sequence number,
+     * in walking order, which is used to sort errors
+     */
+    private final class Copy {
+
+        private final Path source;
+        private final Path target;
+
+        private final ExecutorService executor;
+        private final Semaphore queuedFiles;
+
+        private final ConcurrentSkipListMap<Long, IOException> errors = new ConcurrentSkipListMap<>();
+        private volatile boolean failed = false;
+        private long sequence = 0;
+
+        // Folders dates are only set once all files have been copied
+        private final List<Path> targetFolders = new ArrayList<>();
+        private final List<FileTime> folderDates = new ArrayList<>();
+
+        // File keys of the folders being walked, used to detect symbolic link loops
+        private final Deque<Object> ancestors = new ArrayDeque<>();
+
+        private Copy(Path source, Path target) {
+            this.source = source;
+            this.target = target;
+            if (parallelism > 1) {
+                executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+                    Thread thread = new Thread(runnable, "butterfly-tree-copier-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                queuedFiles = new Semaphore(parallelism * QUEUED_FILES_PER_THREAD);
+            } else {
+                executor = null;
+                queuedFiles = null;
+            }
+        }
+
+        private void run() throws IOException {
+            try {
+                walk(source, target, Files.readAttributes(source, BasicFileAttributes.class));
+            } finally {
+                if (executor != null) {
+                    awaitFiles();
+                }
+            }
+
+            if (!errors.isEmpty()) {
+                Iterator<IOException> iterator = errors.values().iterator();
+                IOException first = iterator.next();
+                while (iterator.hasNext()) {
+                    first.addSuppressed(iterator.next());
+                }
+                throw first;
+            }
+
+            for (int i = targetFolders.size() - 1; i >= 0; i--) {
+                Files.setLastModifiedTime(targetFolders.get(i), folderDates.get(i));
+            }
+        }
+
+        private void walk(Path sourceFolder, Path targetFolder, BasicFileAttributes folderAttributes) throws IOException {
+            long folderSequence = sequence++;
+            Object fileKey = folderAttributes.fileKey();
+            if (fileKey != null && ancestors.contains(fileKey)) {
+                fail(folderSequence, new FileSystemLoopException(sourceFolder.toString()));
+                return;
+            }
+
+            List<Path> entries = new ArrayList<>();
+            try {
+                Files.createDirectories(targetFolder);
+                try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(sourceFolder)) {
+                    for (Path entry : directoryStream) {
+                        entries.add(entry);
+                    }
+                }
+            } catch (IOException e) {
+                fail(folderSequence, e);
+                return;
+            }
+            entries.sort(Comparator.comparing(entry -> entry.getFileName().toString()));
+            targetFolders.add(targetFolder);
+            folderDates.add(folderAttributes.lastModifiedTime());
+
+            if (fileKey != null) {
+                ancestors.push(fileKey);
+            }
+            try {
+                for (Path entry : entries) {
+                    if (failed) {
+                        return;
+                    }
+                    if (entry.equals(target)) {
+                        // The target folder is under the source folder
+                        continue;
+                    }
+                    Path targetEntry = targetFolder.resolve(entry.getFileName().toString());
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+                    } catch (IOException e) {
+                        fail(sequence++, e);
+                        return;
+                    }
+                    if (attributes.isDirectory()) {
+                        walk(entry, targetEntry, attributes);
+                    } else {
+                        copyFile(sequence++, entry, targetEntry, attributes);
+                    }
+                }
+            } finally {
+                if (fileKey != null) {
+                    ancestors.pop();
+                }
+            }
+        }
+
+        private void copyFile(long fileSequence, Path sourceFile, Path targetFile, BasicFileAttributes attributes) throws IOException {
+            if (executor == null) {
+                try {
+                    transfer(sourceFile, targetFile, attributes);
+                } catch (IOException e) {
+                    fail(fileSequence, e);
+                }
+                return;
+            }
+            try {
+                queuedFiles.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while copying " + source + " to " + target);
+            }
+            executor.execute(() -> {
+                try {
+                    if (!failed) {
+                        transfer(sourceFile, targetFile, attributes);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    fail(fileSequence, (e instanceof IOException ? (IOException) e : new IOException("File " + sourceFile + " could not be copied", e)));
+                } finally {
+                    queuedFiles.release();
+                }
+            });
+        }
+
+        private void fail(long entrySequence, IOException e) {
+            errors.put(entrySequence, e);
+            failed = true;
+        }
+
+        private void awaitFiles() throws InterruptedIOException {
+            executor.shutdown();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    // Large files might take long to be copied
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while copying " + source + " to " + target);
+            }
+        }
+
+    }
+
+    /*
+     * Copies a regular file, replacing the target file if it exists, and preserving its date, and permissions, if supported
+     */
+    private static void transfer(Path sourceFile, Path targetFile, BasicFileAttributes attributes) throws IOException {
+        try (FileChannel in = FileChannel.open(sourceFile, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(targetFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                long transferred = in.transferTo(position, size - position, out);
+                if (transferred <= 0) {
+                    // The source file has been truncated while being copied
+                    break;
+                }
+                position += transferred;
+            }
+        }
+        Files.setLastModifiedTime(targetFile, attributes.lastModifiedTime());
+        if (POSIX) {
+            Files.setPosixFilePermissions(targetFile, Files.getPosixFilePermissions(sourceFile));
+        }
+    }
+
+}
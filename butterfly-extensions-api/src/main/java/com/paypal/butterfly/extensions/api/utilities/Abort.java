@@ -58,6 +58,11 @@ public class Abort extends TransformationUtility<Abort> {
         return String.format("%s", DESCRIPTION);
     }
 
+    @Override
+    public boolean isOverlayAware() {
+        return true;
+    }
+
     @Override
     protected ExecutionResult execution(File transformedAppFolder, TransformationContext transformationContext) {
         return TUExecutionResult.error(this, new TransformationUtilityException("Abort transformation utility has been executed"));
@@ -116,6 +116,11 @@ public class Log extends TransformationUtility<Log> {
         return "Logging statement";
     }
 
+    @Override
+    public boolean isOverlayAware() {
+        return true;
+    }
+
     @Override
     protected TUExecutionResult execution(File transformedAppFolder, TransformationContext transformationContext) {
         Object[] attributes = getAttributes(transformedAppFolder, transformationContext);
@@ -43,6 +43,11 @@ public class ManualInstruction extends TransformationUtility<ManualInstruction>
         return description;
     }
 
+    @Override
+    public boolean isOverlayAware() {
+        return true;
+    }
+
     /**
      * Returns the instruction resource name
      *
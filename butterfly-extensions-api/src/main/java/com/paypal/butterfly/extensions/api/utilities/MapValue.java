@@ -103,6 +103,11 @@ public class MapValue extends TransformationUtility<MapValue> {
         return String.format(DESCRIPTION, key, mapName);
     }
 
+    @Override
+    public boolean isOverlayAware() {
+        return true;
+    }
+
     @Override
     protected ExecutionResult execution(File transformedAppFolder, TransformationContext transformationContext) {
         ExecutionResult executionResult;
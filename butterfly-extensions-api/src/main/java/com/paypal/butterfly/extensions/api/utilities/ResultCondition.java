@@ -92,6 +92,11 @@ public class ResultCondition extends UtilityCondition<ResultCondition> {
         return String.format(DESCRIPTION, utilityName, possibleResultTypes);
     }
 
+    @Override
+    public boolean isOverlayAware() {
+        return true;
+    }
+
     @Override
     protected TUExecutionResult execution(File transformedAppFolder, TransformationContext transformationContext) {
         PerformResult performResult = transformationContext.getResult(utilityName);
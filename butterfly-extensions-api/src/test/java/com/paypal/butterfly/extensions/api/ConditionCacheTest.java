@@ -0,0 +1,205 @@
+package com.paypal.butterfly.extensions.api;
+
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests for {@link ConditionCache}
+ *
+ * @author agent
+ */
+public class ConditionCacheTest {
+
+    private static final AtomicInteger evaluations = new AtomicInteger();
+
+    @ConfinedToFile
+    public static class ContainsText extends SingleCondition<ContainsText> {
+
+        private String text;
+        private List<String> options = Arrays.asList("a", "b");
+
+        public ContainsText() {
+        }
+
+        public ContainsText(String text) {
+            this.text = text;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public ContainsText setText(String text) {
+            this.text = text;
+            return this;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Check if file contains " + text;
+        }
+
+        @Override
+        protected TUExecutionResult execution(File transformedAppFolder, TransformationContext transformationContext) {
+            evaluations.incrementAndGet();
+            try {
+                File file = getAbsoluteFile(transformedAppFolder, transformationContext);
+                return TUExecutionResult.value(this, file.exists() && FileUtils.readFileToString(file, StandardCharsets.UTF_8).contains(text));
+            } catch (Exception e) {
+                return TUExecutionResult.error(this, e);
+            }
+        }
+
+    }
+
+    @Test
+    public void evaluateTest() throws Exception {
+        File file = new File(Files.createTempDirectory("butterfly-condition-cache").toFile(), "file.txt");
+        FileUtils.write(file, "hello", StandardCharsets.UTF_8);
+
+        ConditionCache conditionCache = new ConditionCache();
+        AtomicInteger calls = new AtomicInteger();
+        Callable<Object> evaluation = () -> calls.incrementAndGet() > 0;
+
+        assertEquals(conditionCache.evaluate(new ContainsText("hello"), file, evaluation), true);
+        assertEquals(conditionCache.evaluate(new ContainsText("hello"), file, evaluation), true);
+        assertEquals(calls.get(), 1);
+
+        // Different properties, or a different file, result in different results
+        conditionCache.evaluate(new ContainsText("bye"), file, evaluation);
+        conditionCache.evaluate(new ContainsText("hello"), new File(file.getParentFile(), "other.txt"), evaluation);
+        assertEquals(calls.get(), 3);
+        conditionCache.evaluate(new ContainsText("hello").setText("bye"), file, evaluation);
+        assertEquals(calls.get(), 3);
+
+        // Changed file
+        FileUtils.write(file, "hello world", StandardCharsets.UTF_8);
+        conditionCache.evaluate(new ContainsText("hello"), file, evaluation);
+        assertEquals(calls.get(), 4);
+
+        // File rewritten with the same content, and invalidated file whose content has not changed
+        assertTrue(file.setLastModified(file.lastModified() - 10000));
+        FileUtils.write(file, "hello world", StandardCharsets.UTF_8);
+        conditionCache.evaluate(new ContainsText("hello"), file, evaluation);
+        conditionCache.invalidate(file);
+        conditionCache.evaluate(new ContainsText("hello"), file, evaluation);
+        assertEquals(calls.get(), 4);
+
+        // Invalidated file, and invalidated folder, whose content has changed, keeping the same size
+        FileUtils.write(file, "hello WORLD", StandardCharsets.UTF_8);
+        conditionCache.invalidate(file);
+        conditionCache.evaluate(new ContainsText("hello"), file, evaluation);
+        FileUtils.write(file, "HELLO WORLD", StandardCharsets.UTF_8);
+        conditionCache.invalidate(file.getParentFile());
+        conditionCache.evaluate(new ContainsText("hello"), file, evaluation);
+        assertEquals(calls.get(), 6);
+        FileUtils.write(file, "hello world", StandardCharsets.UTF_8);
+        conditionCache.invalidateAll();
+        conditionCache.evaluate(new ContainsText("hello"), file, evaluation);
+        assertEquals(calls.get(), 7);
+
+        assertEquals(conditionCache.getHitCount(), 4);
+        assertEquals(conditionCache.getMissCount(), 7);
+    }
+
+    @Test
+    public void fingerprintTest() throws Exception {
+        File file = new File(Files.createTempDirectory("butterfly-condition-cache").toFile(), "file.txt");
+        FileUtils.write(file, "hello", StandardCharsets.UTF_8);
+        ConditionCache conditionCache = new ConditionCache();
+        AtomicInteger calls = new AtomicInteger();
+
+        // The fingerprint of a condition object is calculated only once,
+        // since its properties are not supposed to change afterwards
+        ContainsText condition = new ContainsText("hello");
+        conditionCache.evaluate(condition, file, () -> calls.incrementAndGet() > 0);
+        condition.setText("bye");
+        conditionCache.evaluate(condition, file, () -> calls.incrementAndGet() > 0);
+        assertEquals(calls.get(), 1);
+
+        // While another object, with the same properties values, has the same fingerprint
+        conditionCache.evaluate(new ContainsText("hello"), file, () -> calls.incrementAndGet() > 0);
+        conditionCache.evaluate(new ContainsText("bye"), file, () -> calls.incrementAndGet() > 0);
+        assertEquals(calls.get(), 2);
+    }
+
+    @Test
+    public void notKeptTest() throws Exception {
+        File folder = Files.createTempDirectory("butterfly-condition-cache").toFile();
+        ConditionCache conditionCache = new ConditionCache();
+        AtomicInteger calls = new AtomicInteger();
+
+        // Conditions not confined to their files
+        UtilityCondition condition = new ContainsText("hello") {
+            @Override
+            public boolean isConfinedToFile() {
+                return false;
+            }
+        };
+        conditionCache.evaluate(condition, new File(folder, "file.txt"), () -> calls.incrementAndGet() > 0);
+        conditionCache.evaluate(condition, new File(folder, "file.txt"), () -> calls.incrementAndGet() > 0);
+
+        // Folders
+        conditionCache.evaluate(new ContainsText("hello"), folder, () -> calls.incrementAndGet() > 0);
+        conditionCache.evaluate(new ContainsText("hello"), folder, () -> calls.incrementAndGet() > 0);
+        assertEquals(calls.get(), 4);
+        assertEquals(conditionCache.getMissCount(), 0);
+
+        // Results other than boolean
+        conditionCache.evaluate(new ContainsText("hello"), new File(folder, "file.txt"), () -> calls.incrementAndGet() > 0 ? null : false);
+        conditionCache.evaluate(new ContainsText("hello"), new File(folder, "file.txt"), () -> calls.incrementAndGet() > 0 ? null : false);
+        assertEquals(calls.get(), 6);
+        assertEquals(conditionCache.getHitCount(), 0);
+    }
+
+    @Test
+    public void executeIfTest() throws IOException {
+        File transformedAppFolder = Files.createTempDirectory("butterfly-condition-cache").toFile();
+        FileUtils.write(new File(transformedAppFolder, "file.txt"), "hello", StandardCharsets.UTF_8);
+        ConditionCache conditionCache = new ConditionCache();
+        TransformationContext transformationContext = new TransformationContext() {
+            @Override
+            public Object get(String name) {
+                return null;
+            }
+            @Override
+            public PerformResult getResult(String utilityName) {
+                return null;
+            }
+            @Override
+            public boolean contains(String name) {
+                return false;
+            }
+            @Override
+            public ConditionCache getConditionCache() {
+                return conditionCache;
+            }
+        };
+
+        evaluations.set(0);
+        for (int i = 0; i < 3; i++) {
+            TransformationUtility utility = new ContainsText("world").relative("file.txt").executeIf(new ContainsText("hello"));
+            PerformResult performResult = utility.perform(transformedAppFolder, transformationContext);
+            assertEquals(performResult.getType(), PerformResult.Type.EXECUTION_RESULT);
+        }
+        TransformationUtility utility = new ContainsText("world").relative("file.txt").executeIf(new ContainsText("bye"));
+        assertEquals(utility.perform(transformedAppFolder, transformationContext).getType(), PerformResult.Type.SKIPPED_CONDITION);
+
+        // Three utilities executions, plus two conditions evaluations
+        assertEquals(evaluations.get(), 5);
+        assertEquals(conditionCache.getHitCount(), 2);
+        assertEquals(conditionCache.getMissCount(), 2);
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.paypal.butterfly.extensions.api;
+
+import org.testng.annotations.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests for {@link FileSet}
+ *
+ * @author agent
+ */
+public class FileSetTest {
+
+    private static final File ROOT = new File("/app");
+
+    @Test
+    public void ofTest() {
+        List<File> files = new ArrayList<>();
+        for (int i = 99; i >= 0; i--) {
+            files.add(new File(ROOT, String.format("src/main/java/com/sample/File%02d.java", i)));
+        }
+        files.add(new File(ROOT, "pom.xml"));
+        files.add(new File(ROOT, "src/main/java/com/sample/File42.java"));
+        files.add(new File(ROOT, "src/main/resources/áé.properties"));
+
+        FileSet fileSet = FileSet.of(ROOT, files);
+        assertEquals(fileSet.getRoot(), ROOT);
+        assertEquals(fileSet.size(), 102);
+        assertEquals(fileSet.get(0), new File(ROOT, "pom.xml"));
+        assertEquals(fileSet.get(1), new File(ROOT, "src/main/java/com/sample/File00.java"));
+        assertEquals(fileSet.get(17), new File(ROOT, "src/main/java/com/sample/File16.java"));
+        assertEquals(fileSet.get(101), new File(ROOT, "src/main/resources/áé.properties"));
+
+        List<File> sorted = new ArrayList<>(new TreeSet<>(files));
+        assertEquals(new ArrayList<>(fileSet), sorted);
+        for (int i = 0; i < sorted.size(); i++) {
+            assertEquals(fileSet.indexOf(sorted.get(i)), i);
+        }
+        assertFalse(fileSet.contains(new File(ROOT, "src/main/java/com/sample/File100.java")));
+        assertFalse(fileSet.contains(new File(ROOT, "a.xml")));
+        assertFalse(fileSet.contains(new File(ROOT, "z.xml")));
+        assertFalse(fileSet.contains(new File("/other/pom.xml")));
+        assertFalse(fileSet.contains("pom.xml"));
+
+        assertEquals(fileSet, sorted);
+        assertEquals(fileSet.hashCode(), sorted.hashCode());
+        assertEquals(FileSet.of(ROOT, sorted), fileSet);
+        assertSame(FileSet.of(ROOT, fileSet), fileSet);
+    }
+
+    @Test
+    public void unionTest() {
+        FileSet fileSet1 = FileSet.of(ROOT, Arrays.asList(new File(ROOT, "a.txt"), new File(ROOT, "c.txt")));
+        FileSet fileSet2 = FileSet.of(ROOT, Arrays.asList(new File(ROOT, "b.txt"), new File(ROOT, "c.txt"), new File(ROOT, "d/e.txt")));
+
+        FileSet union = fileSet1.union(fileSet2);
+        assertEquals(union, Arrays.asList(new File(ROOT, "a.txt"), new File(ROOT, "b.txt"), new File(ROOT, "c.txt"), new File(ROOT, "d/e.txt")));
+        assertEquals(fileSet1.union(Collections.singleton(new File(ROOT, "a.txt"))), fileSet1);
+        assertSame(FileSet.empty(ROOT).union(fileSet2), fileSet2);
+
+        // Files outside the root folder
+        FileSet outside = fileSet1.union(Collections.singleton(new File("/baseline/a.txt")));
+        assertEquals(outside.getRoot(), new File("/"));
+        assertEquals(outside, Arrays.asList(new File("/app/a.txt"), new File("/app/c.txt"), new File("/baseline/a.txt")));
+        assertTrue(outside.contains(new File(ROOT, "c.txt")));
+    }
+
+    @Test
+    public void intersectionTest() {
+        FileSet fileSet1 = FileSet.of(ROOT, Arrays.asList(new File(ROOT, "a.txt"), new File(ROOT, "c.txt"), new File(ROOT, "d/e.txt")));
+        FileSet fileSet2 = FileSet.of(ROOT, Arrays.asList(new File(ROOT, "b.txt"), new File(ROOT, "c.txt"), new File(ROOT, "d/e.txt")));
+
+        assertEquals(fileSet1.intersection(fileSet2), Arrays.asList(new File(ROOT, "c.txt"), new File(ROOT, "d/e.txt")));
+        assertTrue(fileSet1.intersection(Collections.singleton(new File(ROOT, "b.txt"))).isEmpty());
+        assertTrue(fileSet1.intersection(Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void serializationTest() throws IOException, ClassNotFoundException {
+        FileSet fileSet = FileSet.of(ROOT, Arrays.asList(new File(ROOT, "a.txt"), new File(ROOT, "b/c.txt")));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(fileSet);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(in.readObject(), fileSet);
+        }
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void immutableTest() {
+        FileSet.of(ROOT, Collections.singleton(new File(ROOT, "a.txt"))).add(new File(ROOT, "b.txt"));
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.paypal.butterfly.extensions.api;
+
+import org.testng.annotations.Test;
+
+import java.lang.reflect.InvocationTargetException;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests for {@link PropertySetter}
+ *
+ * @author agent
+ */
+public class PropertySetterTest {
+
+    public static class Bean {
+
+        private int number;
+        private long total;
+        private Short code;
+        private String color;
+
+        public Bean setNumber(int number) {
+            this.number = number;
+            return this;
+        }
+
+        public void setTotal(long total) {
+            this.total = total;
+        }
+
+        public void setCode(Short code) {
+            this.code = code;
+        }
+
+        public void setColor(String color) {
+            if ("none".equals(color)) {
+                throw new IllegalStateException("Invalid color");
+            }
+            this.color = color;
+        }
+
+    }
+
+    @Test
+    public void cacheTest() {
+        PropertySetter setter = PropertySetter.get(Bean.class, "number");
+        assertNotNull(setter);
+        assertSame(PropertySetter.get(Bean.class, "number"), setter);
+        assertNull(PropertySetter.get(Bean.class, "size"));
+    }
+
+    @Test
+    public void invokeTest() throws Exception {
+        Bean bean = new Bean();
+
+        PropertySetter numberSetter = PropertySetter.get(Bean.class, "number");
+        numberSetter.invoke(bean, numberSetter.convert(7L));
+        assertEquals(bean.number, 7);
+
+        PropertySetter codeSetter = PropertySetter.get(Bean.class, "code");
+        codeSetter.invoke(bean, codeSetter.convert(3L));
+        assertEquals(bean.code, Short.valueOf((short) 3));
+        codeSetter.invoke(bean, null);
+        assertNull(bean.code);
+
+        // Widening, as done by reflection
+        PropertySetter totalSetter = PropertySetter.get(Bean.class, "total");
+        assertEquals(totalSetter.convert(5L), 5L);
+        totalSetter.invoke(bean, 5);
+        assertEquals(bean.total, 5L);
+
+        PropertySetter colorSetter = PropertySetter.get(Bean.class, "color");
+        colorSetter.invoke(bean, "blue");
+        assertEquals(bean.color, "blue");
+        try {
+            colorSetter.invoke(bean, "none");
+            fail("InvocationTargetException was supposed to be thrown");
+        } catch (InvocationTargetException e) {
+            assertEquals(e.getCause().getMessage(), "Invalid color");
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void nullPrimitiveTest() throws Exception {
+        PropertySetter.get(Bean.class, "number").invoke(new Bean(), null);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void typeMismatchTest() throws Exception {
+        PropertySetter.get(Bean.class, "color").invoke(new Bean(), 3);
+    }
+
+}
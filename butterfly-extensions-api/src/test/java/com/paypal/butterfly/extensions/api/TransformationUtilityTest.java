@@ -6,6 +6,7 @@ import org.mockito.Mockito;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.util.concurrent.TimeUnit;
 
 import static org.testng.Assert.*;
 
@@ -316,6 +317,21 @@ public class TransformationUtilityTest extends TestHelper {
         assertNull(transformationUtility.getAbortionMessage());
     }
 
+    @Test
+    public void timeoutTest() {
+        TransformationUtility transformationUtility = getNewTestTransformationUtility();
+        assertEquals(transformationUtility.getTimeout(), 0);
+
+        assertEquals(transformationUtility.timeout(2, TimeUnit.SECONDS), transformationUtility);
+        assertEquals(transformationUtility.getTimeout(), 2000);
+        assertEquals(transformationUtility.clone().getTimeout(), 2000);
+    }
+
+    @Test(expectedExceptions = TransformationDefinitionException.class, expectedExceptionsMessageRegExp = "Timeout must be greater than zero")
+    public void invalidTimeoutTest() {
+        getNewTestTransformationUtility().timeout(0, TimeUnit.SECONDS);
+    }
+
     @Test
     public void runtimePropertyTest() {
         TransformationUtility transformationUtility = new TransformationUtility() {
@@ -0,0 +1,104 @@
+package com.paypal.butterfly.extensions.api;
+
+import org.apache.commons.io.FileExistsException;
+import org.apache.commons.io.FileUtils;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+
+import static org.testng.Assert.*;
+
+/**
+ * Unit tests for {@link TreeCopier}
+ *
+ * @author agent
+ */
+public class TreeCopierTest {
+
+    @Test
+    public void copyTest() throws IOException {
+        File sourceFolder = createSourceFolder();
+        File targetFolder = new File(Files.createTempDirectory("butterfly-tree-copier").toFile(), "target");
+        assertTrue(targetFolder.mkdir());
+        FileUtils.write(new File(targetFolder, "a/b/file1.txt"), "to be replaced", StandardCharsets.UTF_8);
+        FileUtils.write(new File(targetFolder, "kept.txt"), "kept", StandardCharsets.UTF_8);
+
+        new TreeCopier(4).copy(sourceFolder, targetFolder);
+
+        for (File sourceFile : FileUtils.listFiles(sourceFolder, null, true)) {
+            File targetFile = new File(targetFolder, sourceFolder.toPath().relativize(sourceFile.toPath()).toString());
+            assertTrue(FileUtils.contentEquals(sourceFile, targetFile));
+            assertEquals(targetFile.lastModified(), sourceFile.lastModified());
+        }
+        assertEquals(new File(targetFolder, "a/b").lastModified(), new File(sourceFolder, "a/b").lastModified());
+        assertTrue(new File(targetFolder, "empty").isDirectory());
+        assertEquals(FileUtils.readFileToString(new File(targetFolder, "kept.txt"), StandardCharsets.UTF_8), "kept");
+    }
+
+    @Test
+    public void copyToSubfolderTest() throws IOException {
+        File sourceFolder = createSourceFolder();
+        File targetFolder = new File(sourceFolder, "a/copy");
+
+        new TreeCopier(2).copy(sourceFolder, targetFolder);
+
+        assertTrue(new File(targetFolder, "a/b/file1.txt").isFile());
+        assertFalse(new File(targetFolder, "a/copy").exists());
+    }
+
+    @Test
+    public void errorOrderTest() throws IOException {
+        File sourceFolder = createSourceFolder();
+        Files.createSymbolicLink(new File(sourceFolder, "a/b/broken").toPath(), new File(sourceFolder, "missing1").toPath());
+        Files.createSymbolicLink(new File(sourceFolder, "z").toPath(), new File(sourceFolder, "missing2").toPath());
+
+        // The error reported is always the first one in walking order, regardless of parallelism
+        for (int parallelism : new int[]{1, 4}) {
+            File targetFolder = new File(Files.createTempDirectory("butterfly-tree-copier").toFile(), "target");
+            try {
+                new TreeCopier(parallelism).copy(sourceFolder, targetFolder);
+                fail("Copy was expected to fail");
+            } catch (NoSuchFileException e) {
+                assertEquals(e.getFile(), new File(sourceFolder, "a/b/broken").getAbsolutePath());
+            }
+        }
+    }
+
+    @Test
+    public void moveTest() throws IOException {
+        File sourceFolder = createSourceFolder();
+        File targetFolder = new File(sourceFolder.getParentFile(), "moved");
+
+        new TreeCopier(2).move(sourceFolder, targetFolder);
+
+        assertFalse(sourceFolder.exists());
+        assertTrue(new File(targetFolder, "a/b/file1.txt").isFile());
+    }
+
+    @Test(expectedExceptions = FileExistsException.class)
+    public void moveToExistingFolderTest() throws IOException {
+        File sourceFolder = createSourceFolder();
+        new TreeCopier(2).move(sourceFolder, new File(sourceFolder, "a"));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class, expectedExceptionsMessageRegExp = "Tree copier parallelism must be greater than zero")
+    public void invalidParallelismTest() {
+        new TreeCopier(0);
+    }
+
+    private static File createSourceFolder() throws IOException {
+        File sourceFolder = new File(Files.createTempDirectory("butterfly-tree-copier").toFile(), "source");
+        for (int i = 0; i < 50; i++) {
+            FileUtils.write(new File(sourceFolder, "a/b/file" + i + ".txt"), "content " + i, StandardCharsets.UTF_8);
+            FileUtils.write(new File(sourceFolder, "c/file" + i + ".txt"), "other content " + i, StandardCharsets.UTF_8);
+        }
+        assertTrue(new File(sourceFolder, "empty").mkdir());
+        assertTrue(new File(sourceFolder, "a/b").setLastModified(1000000000000L));
+        return sourceFolder;
+    }
+
+}
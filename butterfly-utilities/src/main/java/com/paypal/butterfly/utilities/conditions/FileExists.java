@@ -1,5 +1,6 @@
 package com.paypal.butterfly.utilities.conditions;
 
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.TUExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.SingleCondition;
@@ -12,6 +13,7 @@ import java.io.File;
  *
  * @author facarvalho
  */
+@ConfinedToFile
 public class FileExists extends SingleCondition<FileExists> {
 
     private static final String DESCRIPTION = "Check if file or folder '%s' exists";
@@ -1,5 +1,6 @@
 package com.paypal.butterfly.utilities.conditions;
 
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.SingleCondition;
 import com.paypal.butterfly.extensions.api.TUExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
@@ -19,6 +20,7 @@ import java.util.regex.Pattern;
  *
  * @author facarvalho
  */
+@ConfinedToFile
 public class PropertyExists extends SingleCondition<PropertyExists> {
 
     private static final String DESCRIPTION = "Check if property '%s' exists in a property file";
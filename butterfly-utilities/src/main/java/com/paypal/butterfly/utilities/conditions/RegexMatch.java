@@ -1,5 +1,6 @@
 package com.paypal.butterfly.utilities.conditions;
 
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.SingleCondition;
 import com.paypal.butterfly.extensions.api.TUExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
@@ -15,6 +16,7 @@ import java.util.regex.Pattern;
  *
  * @author facarvalho
  */
+@ConfinedToFile
 public class RegexMatch extends SingleCondition<RegexMatch> {
 
     private static final String DESCRIPTION = "Check if regular expression '%s' matches against any line in file %s";
@@ -16,6 +16,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.SingleCondition;
 import com.paypal.butterfly.extensions.api.TUExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
@@ -31,6 +32,7 @@ import com.paypal.butterfly.extensions.api.exception.TransformationUtilityExcept
  *
  * @author mmcrockett
  */
+@ConfinedToFile
 public class XmlXPathExists extends SingleCondition<XmlXPathExists> {
     private String xpathExpressionString;
     private XPathExpression xpathExpression;
@@ -129,4 +131,16 @@ public class XmlXPathExists extends SingleCondition<XmlXPathExists> {
 
         return expr;
     }
+
+    @Override
+    public XmlXPathExists clone() {
+        XmlXPathExists clone = super.clone();
+
+        // XPath expressions are not thread safe, so clones, which might
+        // be performed concurrently, get their own compiled expression
+        if (xpathExpressionString != null) {
+            clone.xpathExpression = checkXPathCompile(xpathExpressionString);
+        }
+        return clone;
+    }
 }
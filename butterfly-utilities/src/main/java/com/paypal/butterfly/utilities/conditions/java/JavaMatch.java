@@ -2,6 +2,7 @@ package com.paypal.butterfly.utilities.conditions.java;
 
 import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.SingleCondition;
 import com.paypal.butterfly.extensions.api.TUExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
@@ -26,6 +27,7 @@ import java.util.Set;
  *
  * @author facarvalho
  */
+@ConfinedToFile
 public class JavaMatch extends SingleCondition<JavaMatch> {
 
     private static final String DESCRIPTION = "Check if Java class in '%s' matches all specified criteria";
@@ -1,5 +1,6 @@
 package com.paypal.butterfly.utilities.conditions.pom;
 
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.SingleCondition;
 import com.paypal.butterfly.extensions.api.TUExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
@@ -19,6 +20,7 @@ import java.io.IOException;
  *
  * @author facarvalho
  */
+@ConfinedToFile
 public class PomDependencyExists extends SingleCondition<PomDependencyExists> {
 
     private static final String DESCRIPTION = "Check if dependency '%s:%s%s' exists in a POM file";
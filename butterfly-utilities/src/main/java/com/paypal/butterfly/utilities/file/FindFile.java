@@ -1,5 +1,6 @@
 package com.paypal.butterfly.utilities.file;
 
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.TUExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.TransformationUtility;
@@ -29,6 +30,7 @@ import java.util.List;
  *
  * @author facarvalho
  */
+@ConfinedToFile
 public class FindFile extends TransformationUtility<FindFile> {
 
     private static final String DESCRIPTION = "Find file named %s under %s";
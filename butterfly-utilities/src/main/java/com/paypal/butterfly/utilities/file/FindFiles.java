@@ -4,11 +4,13 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
 
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.exception.TransformationUtilityException;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.filefilter.*;
 import org.apache.commons.lang3.StringUtils;
 
+import com.paypal.butterfly.extensions.api.FileSet;
 import com.paypal.butterfly.extensions.api.TUExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.TransformationUtility;
@@ -33,6 +35,15 @@ import com.paypal.butterfly.extensions.api.TransformationUtility;
  * of the transformed application, which is equivalent to setting
  * {@link #relative(String)} to {@code "."}
  * <br>
+ * Files found are returned as a {@link FileSet}, which is also a list,
+ * kept compact even for very large applications.
+ * <strong>Notice that, unlike in previous versions, the returned list
+ * cannot be modified, and it is sorted by path, with files and folders
+ * mixed, instead of listing files first, and then folders, in the order
+ * they were found.</strong> Transformation templates and utilities that
+ * need to change it, or that depend on the previous order, must copy it
+ * first, for example into a new {@link ArrayList}.
+ * <br>
  * If no files are found, an empty list is returned and the
  * result type is {@link TUExecutionResult.Type#VALUE}, unless
  * {@link #warnIfNoFilesFound()} is called, then an empty list is still returned,
@@ -40,6 +51,7 @@ import com.paypal.butterfly.extensions.api.TransformationUtility;
  *
  * @author facarvalho
  */
+@ConfinedToFile
 public class FindFiles extends TransformationUtility<FindFiles> {
 
     private static final String DESCRIPTION = "Find files whose name and/or path match regular expression and are under %s%s";
@@ -352,15 +364,16 @@ public class FindFiles extends TransformationUtility<FindFiles> {
             files.addAll(folders);
         }
 
+        FileSet fileSet = FileSet.of(transformedAppFolder, files);
         TUExecutionResult result;
 
-        if(files.isEmpty() && warnIfNoFilesFound) {
-            result = TUExecutionResult.warning(this, "No files have been found", new ArrayList<>(files));
-        } else if(files.isEmpty() && errorIfNoFilesFound) {
-            result = TUExecutionResult.error(this, new TransformationUtilityException("No files have been found"), new ArrayList<>(files));
+        if(fileSet.isEmpty() && warnIfNoFilesFound) {
+            result = TUExecutionResult.warning(this, "No files have been found", fileSet);
+        } else if(fileSet.isEmpty() && errorIfNoFilesFound) {
+            result = TUExecutionResult.error(this, new TransformationUtilityException("No files have been found"), fileSet);
         } else {
-            result = TUExecutionResult.value(this, new ArrayList<>(files));
-            if (files.isEmpty()) {
+            result = TUExecutionResult.value(this, fileSet);
+            if (fileSet.isEmpty()) {
                 result.setDetails("No files have been found");
             }
         }
@@ -3,6 +3,7 @@ package com.paypal.butterfly.utilities.java;
 import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.PackageDeclaration;
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.TUExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.TransformationUtility;
@@ -19,6 +20,7 @@ import java.util.Optional;
  *
  * @author facarvalho
  */
+@ConfinedToFile
 public class JavaPackage extends TransformationUtility<JavaPackage> {
 
     private static final String DESCRIPTION = "Retrieve the package of a Java class file %s";
@@ -145,6 +145,7 @@ public abstract class AbstractToOperation<A extends AbstractToOperation> extends
                 fileTo = new File((File) transformationContext.get(toAbsoluteAttribute), additionalRelativePath);
             }
         }
+        copyUp(fileTo, transformationContext);
 
         return fileTo;
     }
@@ -154,4 +155,9 @@ public abstract class AbstractToOperation<A extends AbstractToOperation> extends
         return String.format(description, getRelativePath(), (toRelative != null ? toRelative : "the location defined by transformation context attribute " + toAbsoluteAttribute));
     }
 
+    @Override
+    public boolean isOverlayAware() {
+        return true;
+    }
+
 }
\ No newline at end of file
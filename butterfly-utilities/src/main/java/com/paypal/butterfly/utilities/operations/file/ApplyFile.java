@@ -97,6 +97,11 @@ public class ApplyFile extends TransformationOperation<ApplyFile> {
         return String.format(DESCRIPTION, fileUrl.getFile(), fileLocation);
     }
 
+    @Override
+    public boolean isOverlayAware() {
+        return true;
+    }
+
     @Override
     @edu.umd.cs.findbugs.annotations.SuppressFBWarnings (value="NP_ALWAYS_NULL_EXCEPTION")
     protected TOExecutionResult execution(File transformedAppFolder, TransformationContext transformationContext) {
@@ -75,6 +75,11 @@ public class ApplyZip extends TransformationOperation<ApplyZip> {
         return String.format(DESCRIPTION, zipFileUrl.getFile(), getRelativePath());
     }
 
+    @Override
+    public boolean isOverlayAware() {
+        return true;
+    }
+
     @Override
     @edu.umd.cs.findbugs.annotations.SuppressFBWarnings (value="NP_ALWAYS_NULL_EXCEPTION")
     protected TOExecutionResult execution(File transformedAppFolder, TransformationContext transformationContext) {
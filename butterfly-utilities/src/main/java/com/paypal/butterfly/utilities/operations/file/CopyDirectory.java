@@ -4,7 +4,6 @@ import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.TOExecutionResult;
 import com.paypal.butterfly.extensions.api.exception.TransformationOperationException;
 import com.paypal.butterfly.utilities.operations.AbstractToOperation;
-import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
@@ -51,7 +50,7 @@ public class CopyDirectory extends AbstractToOperation<CopyDirectory> {
         TOExecutionResult result = null;
 
         try {
-            FileUtils.copyDirectory(filesFrom, fileTo);
+            transformationContext.getTreeCopier().copy(filesFrom, fileTo);
             String details = String.format("Files from '%s' have been copied to '%s'", getRelativePath(transformedAppFolder, filesFrom), getRelativePath(transformedAppFolder, fileTo));
             result = TOExecutionResult.success(this, details);
         } catch (IOException e) {
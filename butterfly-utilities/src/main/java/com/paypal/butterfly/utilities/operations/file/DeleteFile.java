@@ -39,6 +39,11 @@ public class DeleteFile extends TransformationOperation<DeleteFile> {
         return String.format(DESCRIPTION, getRelativePath());
     }
 
+    @Override
+    public boolean isOverlayAware() {
+        return true;
+    }
+
     @Override
     protected TOExecutionResult execution(File transformedAppFolder, TransformationContext transformationContext) {
         File fileToBeRemoved;
@@ -4,7 +4,6 @@ import com.paypal.butterfly.extensions.api.TOExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.exception.TransformationOperationException;
 import com.paypal.butterfly.utilities.operations.AbstractToOperation;
-import org.apache.commons.io.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
@@ -49,7 +48,7 @@ public class MoveDirectory extends AbstractToOperation<MoveDirectory> {
         TOExecutionResult result = null;
 
         try {
-            FileUtils.moveDirectory(filesFrom, fileTo);
+            transformationContext.getTreeCopier().move(filesFrom, fileTo);
             String details = String.format("Directory '%s' has been moved to '%s'", getRelativePath(transformedAppFolder, filesFrom), getRelativePath(transformedAppFolder, fileTo));
             result = TOExecutionResult.success(this, details);
         } catch (IOException e) {
@@ -50,12 +50,18 @@ public class RenameFile extends TransformationOperation<RenameFile> {
         return String.format(DESCRIPTION, getRelativePath(), newName);
     }
 
+    @Override
+    public boolean isOverlayAware() {
+        return true;
+    }
+
     @Override
     protected TOExecutionResult execution(File transformedAppFolder, TransformationContext transformationContext) {
         TOExecutionResult result = null;
 
         File fileToBeRenamed = getAbsoluteFile(transformedAppFolder, transformationContext);
         File newNameFile = new File(fileToBeRenamed.getParent(), newName);
+        copyUp(newNameFile, transformationContext);
         try {
             FileUtils.moveFile(fileToBeRenamed, newNameFile);
             String details = String.format("File '%s' has been renamed to '%s'", getRelativePath(), newName);
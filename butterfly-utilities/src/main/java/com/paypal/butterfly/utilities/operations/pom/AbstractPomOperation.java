@@ -1,5 +1,6 @@
 package com.paypal.butterfly.utilities.operations.pom;
 
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.TOExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.TransformationOperation;
@@ -19,6 +20,7 @@ import java.io.IOException;
  *
  * @author facarvalho
  */
+@ConfinedToFile
 abstract class AbstractPomOperation<T extends AbstractPomOperation> extends TransformationOperation<T> {
 
     @Override
@@ -1,5 +1,6 @@
 package com.paypal.butterfly.utilities.operations.pom.stax;
 
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.TOExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.TransformationOperation;
@@ -16,6 +17,7 @@ import java.io.*;
  *
  * @author facarvalho
  */
+@ConfinedToFile
 public abstract class AbstractStaxOperation<T extends AbstractStaxOperation> extends TransformationOperation<T> {
 
     protected static final XMLEventFactory eventFactory;
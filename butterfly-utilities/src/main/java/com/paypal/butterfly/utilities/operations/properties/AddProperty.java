@@ -1,5 +1,6 @@
 package com.paypal.butterfly.utilities.operations.properties;
 
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.TOExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.TransformationOperation;
@@ -21,6 +22,7 @@ import static com.paypal.butterfly.utilities.operations.EolHelper.removeEol;
  *
  * @author facarvalho
  */
+@ConfinedToFile
 public class AddProperty extends TransformationOperation<AddProperty> {
 
     private static final String DESCRIPTION = "Add new property (%s = %s) to file %s";
@@ -1,5 +1,6 @@
 package com.paypal.butterfly.utilities.operations.text;
 
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.TOExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.TransformationOperation;
@@ -28,6 +29,7 @@ import static com.paypal.butterfly.utilities.operations.EolHelper.removeEol;
  *
  * @author facarvalho
  */
+@ConfinedToFile
 public abstract class AbstractLineOperation<T extends AbstractLineOperation> extends TransformationOperation<T> {
 
     private static final boolean FIRST_ONLY_DEFAULT_VALUE = true;
@@ -1,5 +1,6 @@
 package com.paypal.butterfly.utilities.operations.text;
 
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.TransformationOperation;
 import com.paypal.butterfly.extensions.api.TOExecutionResult;
@@ -15,6 +16,7 @@ import java.io.IOException;
  *
  * @author facarvalho
  */
+@ConfinedToFile
 public class AddLine extends TransformationOperation<AddLine> {
 
     private static final String DESCRIPTION = "Add line '%s' to file %s";
@@ -1,5 +1,6 @@
 package com.paypal.butterfly.utilities.operations.text;
 
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.TOExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.TransformationOperation;
@@ -33,6 +34,7 @@ import static com.paypal.butterfly.utilities.operations.EolHelper.removeEol;
  * @see InsertionMode
  * @author facarvalho
  */
+@ConfinedToFile
 public class InsertText extends TransformationOperation<InsertText> {
 
     /**
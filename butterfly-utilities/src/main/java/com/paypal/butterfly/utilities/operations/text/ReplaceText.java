@@ -1,5 +1,6 @@
 package com.paypal.butterfly.utilities.operations.text;
 
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.TOExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.TransformationOperation;
@@ -18,6 +19,7 @@ import static com.paypal.butterfly.utilities.operations.EolHelper.removeEol;
  *
  * @author facarvalho
  */
+@ConfinedToFile
 public class ReplaceText extends TransformationOperation<ReplaceText> {
 
     private static final String DESCRIPTION = "Replace text in %s based on regular expression %s";
@@ -1,5 +1,6 @@
 package com.paypal.butterfly.utilities.operations.xml;
 
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.TOExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.TransformationOperation;
@@ -38,6 +39,7 @@ import java.io.IOException;
  *
  * @author mmcrockett
  */
+@ConfinedToFile
 public class XmlXPathReplace extends TransformationOperation<XmlXPathReplace> {
 
     private static final String DESCRIPTION = "Replace %s of XPath %s in XML file %s with %s";
@@ -241,4 +243,19 @@ public class XmlXPathReplace extends TransformationOperation<XmlXPathReplace> {
         return result;
     }
 
+    @Override
+    public XmlXPathReplace clone() {
+        XmlXPathReplace clone = super.clone();
+
+        // Neither XPath expressions nor DOM elements are thread safe, so clones,
+        // which might be performed concurrently, get their own copies of them
+        if (xpathExpressionString != null) {
+            clone.xpathExpression = checkXPathCompile(xpathExpressionString);
+        }
+        if (replacementObject instanceof Element) {
+            clone.replacementObject = ((Element) replacementObject).cloneNode(true);
+        }
+        return clone;
+    }
+
 }
@@ -8,6 +8,7 @@ import org.apache.maven.model.Model;
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
 import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
 
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.TUExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.TransformationUtility;
@@ -18,6 +19,7 @@ import com.paypal.butterfly.extensions.api.exception.TransformationUtilityExcept
  *
  * @author facarvalho
  */
+@ConfinedToFile
 public abstract class AbstractPomGetUtility<T extends AbstractPomGetUtility> extends TransformationUtility<T> {
 
     private String modelAttributeName;
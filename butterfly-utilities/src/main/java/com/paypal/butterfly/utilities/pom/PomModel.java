@@ -1,5 +1,6 @@
 package com.paypal.butterfly.utilities.pom;
 
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.TUExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.TransformationUtility;
@@ -26,6 +27,7 @@ import java.net.URL;
  *
  * @author vkuncham, radkrish, facarvalho
  */
+@ConfinedToFile
 public class PomModel extends TransformationUtility<PomModel> {
 
     private String groupId;
@@ -81,6 +81,11 @@ public class StringFormat extends TransformationUtility<StringFormat> {
         return String.format(DESCRIPTION, Arrays.toString(attributeNames), format);
     }
 
+    @Override
+    public boolean isOverlayAware() {
+        return true;
+    }
+
     @Override
     protected TUExecutionResult execution(File transformedAppFolder, TransformationContext transformationContext) {
         TUExecutionResult result = null;
@@ -1,5 +1,6 @@
 package com.paypal.butterfly.utilities.xml;
 
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.TransformationUtility;
 import com.paypal.butterfly.extensions.api.TUExecutionResult;
@@ -25,6 +26,7 @@ import java.util.regex.Pattern;
  * @author facarvalho
  */
 @Deprecated
+@ConfinedToFile
 public class XmlElement extends TransformationUtility<XmlElement> {
 
     private String xmlElement;
@@ -1,6 +1,7 @@
 package com.paypal.butterfly.utilities.xml;
 
 import com.ctc.wstx.exc.WstxUnexpectedCharException;
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.TUExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.TransformationUtility;
@@ -23,6 +24,7 @@ import java.io.FileNotFoundException;
  *
  * @author facarvalho
  */
+@ConfinedToFile
 public class XmlIndentation extends TransformationUtility<XmlIndentation> {
 
     private static final String DESCRIPTION = "Returns the indentation used in XML file %s";
@@ -17,6 +17,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
+import com.paypal.butterfly.extensions.api.ConfinedToFile;
 import com.paypal.butterfly.extensions.api.TUExecutionResult;
 import com.paypal.butterfly.extensions.api.TransformationContext;
 import com.paypal.butterfly.extensions.api.TransformationUtility;
@@ -33,6 +34,7 @@ import com.paypal.butterfly.extensions.api.exception.TransformationUtilityExcept
  *
  * @author spetratos
  */
+@ConfinedToFile
 public class XmlXPathRetrieve extends TransformationUtility<XmlXPathRetrieve> {
 
     private String xpathExpressionString;
@@ -213,4 +215,16 @@ public class XmlXPathRetrieve extends TransformationUtility<XmlXPathRetrieve> {
         }
         return false;
     }
+
+    @Override
+    public XmlXPathRetrieve clone() {
+        XmlXPathRetrieve clone = super.clone();
+
+        // XPath expressions are not thread safe, so clones, which might
+        // be performed concurrently, get their own compiled expression
+        if (xpathExpressionString != null) {
+            clone.xpathExpression = checkXPathCompile(xpathExpressionString);
+        }
+        return clone;
+    }
 }
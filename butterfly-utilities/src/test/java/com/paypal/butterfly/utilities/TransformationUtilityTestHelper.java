@@ -3,6 +3,7 @@ package com.paypal.butterfly.utilities;
 import com.esotericsoftware.yamlbeans.YamlReader;
 import com.google.common.io.Files;
 import com.paypal.butterfly.extensions.api.TransformationContext;
+import com.paypal.butterfly.extensions.api.TreeCopier;
 import org.apache.commons.io.FileUtils;
 import org.apache.maven.model.Model;
 import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
@@ -47,6 +48,7 @@ public abstract class TransformationUtilityTestHelper {
         FileUtils.copyDirectory(appFolder, transformedAppFolder);
         System.out.printf("Transformed app folder: %s\n", transformedAppFolder.getAbsolutePath());
         transformationContext = Mockito.mock(TransformationContext.class);
+        Mockito.when(transformationContext.getTreeCopier()).thenReturn(new TreeCopier(2));
     }
 
     /**